@@ -0,0 +1,58 @@
+package com.github.autoftp;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.autoftp.benchmark.Synthetic;
+
+/**
+ * The cost of turning the configured filters into something that can be matched, paid whenever the filter
+ * list changes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatternBuilderBenchmark {
+
+	@Param({ "1", "100", "10000" })
+	private int filterCount;
+
+	private List<String> filters;
+
+	private PatternBuilder patternBuilder;
+
+	@Setup
+	public void setUp() {
+
+		filters = Synthetic.filters(filterCount);
+		patternBuilder = new PatternBuilder();
+	}
+
+	@Benchmark
+	public void buildFromFilterString(Blackhole blackhole) {
+
+		for (int i = 0; i < filters.size(); i++)
+			blackhole.consume(patternBuilder.buildFromFilterString(filters.get(i)));
+	}
+
+	@Benchmark
+	public FilterMatcher compileFilterMatcher() {
+		return new FilterMatcher(filters);
+	}
+}
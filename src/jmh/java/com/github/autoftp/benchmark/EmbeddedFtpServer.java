@@ -0,0 +1,68 @@
+package com.github.autoftp.benchmark;
+
+import java.io.File;
+
+import jftp.client.ClientFactory.ClientType;
+
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.UserManager;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.ClearTextPasswordEncryptor;
+import org.apache.ftpserver.usermanager.PropertiesUserManagerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+
+/**
+ * Apache FtpServer with passive data connections on any free port.
+ */
+public class EmbeddedFtpServer implements LoopbackServer {
+
+	private FtpServer server;
+
+	@Override
+	public ClientType getClientType() {
+		return ClientType.FTP;
+	}
+
+	@Override
+	public int start(File root) throws Exception {
+
+		int port = Synthetic.freePort();
+
+		ListenerFactory listenerFactory = new ListenerFactory();
+		listenerFactory.setServerAddress("127.0.0.1");
+		listenerFactory.setPort(port);
+
+		PropertiesUserManagerFactory userManagerFactory = new PropertiesUserManagerFactory();
+		userManagerFactory.setPasswordEncryptor(new ClearTextPasswordEncryptor());
+
+		UserManager userManager = userManagerFactory.createUserManager();
+
+		BaseUser user = new BaseUser();
+		user.setName(USERNAME);
+		user.setPassword(PASSWORD);
+		user.setHomeDirectory(root.getAbsolutePath());
+		userManager.save(user);
+
+		FtpServerFactory serverFactory = new FtpServerFactory();
+		serverFactory.addListener("default", listenerFactory.createListener());
+		serverFactory.setUserManager(userManager);
+
+		server = serverFactory.createServer();
+		server.start();
+
+		return port;
+	}
+
+	@Override
+	public String getRootDirectory() {
+		return "/";
+	}
+
+	@Override
+	public void stop() {
+
+		if (server != null)
+			server.stop();
+	}
+}
@@ -0,0 +1,78 @@
+package com.github.autoftp.benchmark;
+
+import java.io.File;
+import java.util.Arrays;
+
+import jftp.client.ClientFactory.ClientType;
+
+import org.apache.sshd.SshServer;
+import org.apache.sshd.common.NamedFactory;
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.server.Command;
+import org.apache.sshd.server.CommandFactory;
+import org.apache.sshd.server.PasswordAuthenticator;
+import org.apache.sshd.server.command.UnknownCommand;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.server.session.ServerSession;
+import org.apache.sshd.server.sftp.SftpSubsystem;
+
+/**
+ * MINA SSHD with only the SFTP subsystem, rooted at the served directory. Commands, such as the checksum
+ * ones, fail straight away as they would for an account without a shell. The host key is generated into a
+ * temp file on start.
+ */
+public class EmbeddedSftpServer implements LoopbackServer {
+
+	private SshServer server;
+
+	@Override
+	public ClientType getClientType() {
+		return ClientType.SFTP;
+	}
+
+	@Override
+	public int start(File root) throws Exception {
+
+		int port = Synthetic.freePort();
+		File hostKey = Synthetic.tempFile("loopback-host", ".key");
+
+		hostKey.delete();
+
+		server = SshServer.setUpDefaultServer();
+		server.setHost("127.0.0.1");
+		server.setPort(port);
+		server.setKeyPairProvider(new SimpleGeneratorHostKeyProvider(hostKey.getAbsolutePath(), "RSA", 2048));
+		server.setFileSystemFactory(new VirtualFileSystemFactory(root.getAbsolutePath()));
+		server.setSubsystemFactories(Arrays.<NamedFactory<Command>> asList(new SftpSubsystem.Factory()));
+		server.setCommandFactory(new CommandFactory() {
+
+			@Override
+			public Command createCommand(String command) {
+				return new UnknownCommand(command);
+			}
+		});
+		server.setPasswordAuthenticator(new PasswordAuthenticator() {
+
+			@Override
+			public boolean authenticate(String username, String password, ServerSession session) {
+				return USERNAME.equals(username) && PASSWORD.equals(password);
+			}
+		});
+
+		server.start();
+
+		return port;
+	}
+
+	@Override
+	public String getRootDirectory() {
+		return "/";
+	}
+
+	@Override
+	public void stop() throws InterruptedException {
+
+		if (server != null)
+			server.stop(true);
+	}
+}
@@ -0,0 +1,378 @@
+package com.github.autoftp.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jftp.connection.FtpFile;
+
+import org.apache.commons.io.FileUtils;
+import org.joda.time.DateTime;
+
+import com.github.autoftp.ConnectionListener;
+import com.github.autoftp.benchmark.Synthetic.SizeDistribution;
+import com.github.autoftp.config.HostConfig;
+import com.github.autoftp.config.SettingsProvider;
+import com.github.autoftp.config.SettingsWatcher;
+import com.github.autoftp.metrics.HostMetrics;
+import com.github.autoftp.schedule.ConnectionSchedule;
+
+/**
+ * Downloads a synthetic file tree from FTP and SFTP servers running in this process on loopback, through
+ * a real {@link ConnectionSchedule} and JFTP client, and reports what each run achieved. Nothing leaves
+ * the machine, so runs are comparable between builds on the same box.
+ * <p>
+ * Each run starts from an empty download directory and seen file index so that every file is fetched.
+ * Time to first byte is from the start of the run until a downloaded file first has data in it, found by
+ * watching the download directory, so it is only accurate to a millisecond or so. The connect, list and
+ * download times are the means recorded by the schedule's own metrics.
+ * <p>
+ * Options, all optional: --protocol ftp|sftp|both, --files N, --size BYTES (K, M and G suffixes allowed),
+ * --distribution fixed|uniform|exponential, --dirs N, --connections N, --segments N,
+ * --checksum crc32|crc32c|md5|sha256, --direct true|false, --warmup N and --runs N.
+ */
+public class LoopbackBenchmark {
+
+	private static final double MB = 1024 * 1024;
+
+	private List<LoopbackServer> servers = new ArrayList<LoopbackServer>();
+	private int fileCount = 200;
+	private long meanSize = 1024 * 1024;
+	private SizeDistribution distribution = SizeDistribution.EXPONENTIAL;
+	private int directoryCount = 0;
+	private int connections = 1;
+	private int segments = 1;
+	private String checksum = "";
+	private boolean directDownload;
+	private int warmupRuns = 1;
+	private int runs = 3;
+
+	public static void main(String[] args) throws Exception {
+
+		System.setProperty("org.apache.commons.logging.Log", "org.apache.commons.logging.impl.NoOpLog");
+
+		LoopbackBenchmark benchmark = new LoopbackBenchmark();
+
+		benchmark.parse(Arrays.asList(args));
+		benchmark.run();
+
+		System.exit(0);
+	}
+
+	private void parse(List<String> args) {
+
+		String protocol = "both";
+
+		for (int i = 0; i + 1 < args.size(); i += 2) {
+
+			String option = args.get(i);
+			String value = args.get(i + 1);
+
+			if ("--protocol".equals(option))
+				protocol = value;
+			else if ("--files".equals(option))
+				fileCount = Integer.parseInt(value);
+			else if ("--size".equals(option))
+				meanSize = parseSize(value);
+			else if ("--distribution".equals(option))
+				distribution = SizeDistribution.valueOf(value.toUpperCase(Locale.ROOT));
+			else if ("--dirs".equals(option))
+				directoryCount = Integer.parseInt(value);
+			else if ("--connections".equals(option))
+				connections = Integer.parseInt(value);
+			else if ("--segments".equals(option))
+				segments = Integer.parseInt(value);
+			else if ("--checksum".equals(option))
+				checksum = value;
+			else if ("--direct".equals(option))
+				directDownload = Boolean.parseBoolean(value);
+			else if ("--warmup".equals(option))
+				warmupRuns = Integer.parseInt(value);
+			else if ("--runs".equals(option))
+				runs = Integer.parseInt(value);
+			else
+				throw new IllegalArgumentException("Unknown option " + option);
+		}
+
+		if (!"sftp".equals(protocol))
+			servers.add(new EmbeddedFtpServer());
+
+		if (!"ftp".equals(protocol))
+			servers.add(new EmbeddedSftpServer());
+	}
+
+	private long parseSize(String value) {
+
+		String upper = value.toUpperCase(Locale.ROOT);
+		long multiple = 1;
+
+		if (upper.endsWith("K"))
+			multiple = 1024;
+		else if (upper.endsWith("M"))
+			multiple = 1024 * 1024;
+		else if (upper.endsWith("G"))
+			multiple = 1024 * 1024 * 1024;
+
+		return Long.parseLong(multiple == 1 ? upper : upper.substring(0, upper.length() - 1)) * multiple;
+	}
+
+	private void run() throws Exception {
+
+		File root = Synthetic.tempDirectory("loopback-served");
+
+		try {
+
+			long totalSize = Synthetic.tree(root, fileCount, directoryCount, meanSize, distribution);
+
+			System.out.println(String.format(Locale.ROOT,
+			        "Serving %d files, %.1f MB, %s sizes, in %d directories; %d connection(s), %d segment(s)",
+			        fileCount, totalSize / MB, distribution.toString().toLowerCase(Locale.ROOT), directoryCount,
+			        connections, segments));
+
+			for (LoopbackServer server : servers)
+				runAgainst(server, root);
+
+		} finally {
+			FileUtils.deleteQuietly(root);
+		}
+	}
+
+	private void runAgainst(LoopbackServer server, File root) throws Exception {
+
+		int port = server.start(root);
+
+		try {
+
+			for (int run = 1; run <= warmupRuns + runs; run++) {
+
+				Result result = runOnce(server, port);
+				String label = run <= warmupRuns ? "warmup" : "run " + (run - warmupRuns);
+
+				System.out.println(String.format("%-5s %-7s %s", server.getClientType(), label, result));
+			}
+
+		} finally {
+			server.stop();
+		}
+	}
+
+	private Result runOnce(LoopbackServer server, int port) throws IOException, InterruptedException {
+
+		File workDirectory = Synthetic.tempDirectory("loopback-run");
+		File downloadDirectory = new File(workDirectory, "downloads");
+		File indexDirectory = new File(workDirectory, "index");
+
+		downloadDirectory.mkdirs();
+		indexDirectory.mkdirs();
+
+		try {
+
+			SettingsWatcher settings = new SettingsWatcher(createSettings(server, port, workDirectory,
+			        downloadDirectory, indexDirectory));
+			ConnectionSchedule schedule = new ConnectionSchedule(null, settings);
+			CountingListener listener = new CountingListener();
+			FirstByteWatch firstByteWatch = new FirstByteWatch(downloadDirectory);
+
+			schedule.registerListener(listener);
+
+			long start = System.nanoTime();
+
+			firstByteWatch.start(start);
+			schedule.run();
+
+			long elapsed = System.nanoTime() - start;
+
+			firstByteWatch.interrupt();
+			firstByteWatch.join();
+
+			return new Result(elapsed, firstByteWatch.firstByteNanos, schedule.getMetricsRegistry().host("host"),
+			        listener);
+
+		} finally {
+			FileUtils.deleteQuietly(workDirectory);
+		}
+	}
+
+	/**
+	 * A config file like autoftp.conf with one host. The last run is set to the epoch so that a new seen
+	 * file index doesn't treat the served files as already downloaded.
+	 */
+	private SettingsProvider createSettings(LoopbackServer server, int port, File workDirectory,
+	        File downloadDirectory, File indexDirectory) throws IOException {
+
+		File settingsFile = new File(workDirectory, "autoftp.conf");
+		Writer writer = new FileWriter(settingsFile);
+
+		try {
+
+			writer.write("index.directory = " + indexDirectory.getAbsolutePath() + "\n");
+			writer.write("move.enabled = false\npushbullet.notify.enabled = false\n");
+
+		} finally {
+			writer.close();
+		}
+
+		SettingsProvider settingsProvider = new SettingsProvider(settingsFile.getAbsolutePath());
+		HostConfig host = new HostConfig();
+
+		host.setHostname("127.0.0.1");
+		host.setPort(port);
+		host.setUsername(LoopbackServer.USERNAME);
+		host.setPassword(LoopbackServer.PASSWORD);
+		host.setClientType(server.getClientType());
+		host.setFileDirectory(server.getRootDirectory());
+		host.setMaxConnections(connections);
+		host.setSegments(segments);
+		host.setMinSegmentSize(1024 * 1024);
+		host.setRecursive(directoryCount > 0);
+		host.setMaxDepth(1);
+		host.setBandwidthWeight(1);
+		host.setChecksum(checksum);
+		host.setDirectDownload(directDownload);
+
+		settingsProvider.setHost(host);
+		settingsProvider.setDownloadDirectory(downloadDirectory.getAbsolutePath());
+		settingsProvider.setFilterExpressions(Arrays.asList("*"));
+		settingsProvider.setLastRunDate(host, new DateTime(0));
+
+		return settingsProvider;
+	}
+
+	private static class Result {
+
+		private long elapsedNanos;
+		private long firstByteNanos;
+		private HostMetrics metrics;
+		private CountingListener listener;
+
+		private Result(long elapsedNanos, long firstByteNanos, HostMetrics metrics, CountingListener listener) {
+
+			this.elapsedNanos = elapsedNanos;
+			this.firstByteNanos = firstByteNanos;
+			this.metrics = metrics;
+			this.listener = listener;
+		}
+
+		@Override
+		public String toString() {
+
+			double seconds = elapsedNanos / 1e9;
+			String firstByte = firstByteNanos < 0 ? "-" : String.format(Locale.ROOT, "%.1f ms",
+			        firstByteNanos / 1e6);
+
+			return String.format(Locale.ROOT, "%d files, %.1f MB in %.2f s: %.1f files/s, %.1f MB/s; "
+			        + "first byte %s; connect %.1f ms, list %.1f ms, download %.1f ms/file%s",
+			        metrics.getFilesDownloaded(), metrics.getBytesDownloaded() / MB, seconds,
+			        metrics.getFilesDownloaded() / seconds, metrics.getBytesDownloaded() / MB / seconds, firstByte,
+			        metrics.getMeanConnectMillis(), metrics.getMeanListMillis(), metrics.getMeanDownloadMillis(),
+			        listener.errors.get() == 0 ? "" : "; " + listener.errors.get() + " errors, last: "
+			                + listener.lastError);
+		}
+	}
+
+	private static class CountingListener implements ConnectionListener {
+
+		private AtomicInteger errors = new AtomicInteger();
+		private volatile String lastError;
+
+		@Override
+		public void onConnection() {
+		}
+
+		@Override
+		public void onDisconnection() {
+		}
+
+		@Override
+		public void onFilterListObtained(List<FtpFile> files) {
+		}
+
+		@Override
+		public void onError(String errorMessage) {
+
+			errors.incrementAndGet();
+			lastError = errorMessage;
+		}
+
+		@Override
+		public void onDownloadStarted(String filename) {
+		}
+
+		@Override
+		public void onDownloadProgress(String filename, long bytesTransferred, long totalBytes, long bytesPerSecond) {
+		}
+
+		@Override
+		public void onDownloadFinished(String filename) {
+		}
+
+		@Override
+		public void onRunFinished() {
+		}
+	}
+
+	/**
+	 * Polls the download directory every millisecond until a file that isn't hidden has any data in it.
+	 */
+	private static class FirstByteWatch extends Thread {
+
+		private File downloadDirectory;
+		private long start;
+		private volatile long firstByteNanos = -1;
+
+		private FirstByteWatch(File downloadDirectory) {
+
+			this.downloadDirectory = downloadDirectory;
+
+			setDaemon(true);
+		}
+
+		private void start(long start) {
+
+			this.start = start;
+
+			start();
+		}
+
+		@Override
+		public void run() {
+
+			try {
+
+				while (!hasData(downloadDirectory))
+					TimeUnit.MILLISECONDS.sleep(1);
+
+				firstByteNanos = System.nanoTime() - start;
+
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+
+		private boolean hasData(File directory) {
+
+			File[] files = directory.listFiles();
+
+			if (files == null)
+				return false;
+
+			for (File file : files) {
+
+				if (file.getName().startsWith("."))
+					continue;
+
+				if (file.isDirectory() ? hasData(file) : file.length() > 0)
+					return true;
+			}
+
+			return false;
+		}
+	}
+}
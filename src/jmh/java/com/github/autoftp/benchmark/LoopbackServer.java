@@ -0,0 +1,28 @@
+package com.github.autoftp.benchmark;
+
+import java.io.File;
+
+import jftp.client.ClientFactory.ClientType;
+
+/**
+ * A server started in this process, on loopback, serving a local directory to a single user.
+ */
+public interface LoopbackServer {
+
+	String USERNAME = "autoftp";
+	String PASSWORD = "autoftp";
+
+	ClientType getClientType();
+
+	/**
+	 * Starts serving root on a free port, returning the port.
+	 */
+	int start(File root) throws Exception;
+
+	/**
+	 * The remote path that root is served as.
+	 */
+	String getRootDirectory();
+
+	void stop() throws Exception;
+}
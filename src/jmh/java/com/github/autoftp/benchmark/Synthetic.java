@@ -0,0 +1,216 @@
+package com.github.autoftp.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import jftp.connection.FtpFile;
+
+import org.joda.time.DateTime;
+
+/**
+ * Listings, filters and scratch files for benchmarks. Everything is generated from a fixed seed so that
+ * runs are comparable with each other.
+ */
+public final class Synthetic {
+
+	private static final String[] SHOWS = { "the.daily.show", "last.week.tonight", "top.gear", "doctor.who",
+	        "the.expanse", "mythbusters", "qi.xl", "taskmaster", "the.wire", "planet.earth" };
+	private static final String[] QUALITIES = { "720p.hdtv.x264", "1080p.web-dl.h264", "480p.sdtv.xvid" };
+	private static final String[] EXTENSIONS = { "mkv", "mp4", "avi", "nfo", "srt" };
+
+	private Synthetic() {
+	}
+
+	/**
+	 * Files named like the releases a seedbox would see, each with a distinct path, size and modified time.
+	 */
+	public static List<FtpFile> listing(int size) {
+
+		Random random = new Random(size);
+		List<FtpFile> files = new ArrayList<FtpFile>(size);
+		long now = DateTime.now().getMillis();
+
+		for (int i = 0; i < size; i++) {
+
+			String name = String.format("%s.s%02de%02d.%s-grp%d.%s", SHOWS[random.nextInt(SHOWS.length)],
+			        random.nextInt(30), i % 100, QUALITIES[random.nextInt(QUALITIES.length)], i,
+			        EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+
+			files.add(new FtpFile(name, 1 + random.nextInt(Integer.MAX_VALUE), "/home/user/files/" + name, now
+			        - random.nextInt(Integer.MAX_VALUE), false));
+		}
+
+		return files;
+	}
+
+	/**
+	 * A mix of the expressions people actually write: show prefixes, extension suffixes, '?' wildcards and
+	 * the occasional real regex, one in a hundred.
+	 */
+	public static List<String> filters(int count) {
+
+		Random random = new Random(count);
+		List<String> filters = new ArrayList<String>(count);
+
+		for (int i = 0; i < count; i++) {
+
+			switch (i % 100 == 99 ? 3 : i % 3) {
+
+			case 0:
+				filters.add(SHOWS[random.nextInt(SHOWS.length)] + ".s" + random.nextInt(30) + "*");
+				break;
+			case 1:
+				filters.add("*" + QUALITIES[random.nextInt(QUALITIES.length)] + "-grp" + i + ".mkv");
+				break;
+			case 2:
+				filters.add(SHOWS[random.nextInt(SHOWS.length)] + ".s??e" + (i % 100) + "*");
+				break;
+			default:
+				filters.add("(grp" + i + "|grp" + (i + 1) + ")\\.srt");
+			}
+		}
+
+		return filters;
+	}
+
+	public enum SizeDistribution {
+
+		FIXED, UNIFORM, EXPONENTIAL;
+
+		private long next(Random random, long mean) {
+
+			switch (this) {
+
+			case UNIFORM:
+				return (long) (random.nextDouble() * 2 * mean);
+			case EXPONENTIAL:
+				return (long) (-mean * Math.log(1 - random.nextDouble()));
+			default:
+				return mean;
+			}
+		}
+	}
+
+	/**
+	 * Writes fileCount files of random content spread evenly over directoryCount subdirectories of root, or
+	 * straight into root if directoryCount is 0. Returns the total size written.
+	 */
+	public static long tree(File root, int fileCount, int directoryCount, long meanSize, SizeDistribution sizes)
+	        throws IOException {
+
+		Random random = new Random(fileCount);
+		byte[] buffer = new byte[64 * 1024];
+		long total = 0;
+
+		random.nextBytes(buffer);
+
+		for (int i = 0; i < fileCount; i++) {
+
+			File directory = directoryCount == 0 ? root : new File(root, "dir" + (i % directoryCount));
+			directory.mkdirs();
+
+			long size = sizes.next(random, meanSize);
+			OutputStream out = new FileOutputStream(new File(directory, String.format("file%06d.bin", i)));
+
+			try {
+
+				for (long written = 0; written < size; written += buffer.length)
+					out.write(buffer, 0, (int) Math.min(buffer.length, size - written));
+
+			} finally {
+				out.close();
+			}
+
+			total += size;
+		}
+
+		return total;
+	}
+
+	public static File tempDirectory(String prefix) throws IOException {
+
+		File directory = File.createTempFile(prefix, "");
+
+		directory.delete();
+		directory.mkdirs();
+
+		return directory;
+	}
+
+	public static int freePort() throws IOException {
+
+		ServerSocket socket = new ServerSocket(0);
+
+		try {
+
+			return socket.getLocalPort();
+
+		} finally {
+			socket.close();
+		}
+	}
+
+	/**
+	 * A config file with a single FTP host and a download directory, the least that makes valid settings.
+	 */
+	public static File settingsFile(String prefix) throws IOException {
+
+		File file = tempFile(prefix, ".conf");
+		OutputStream out = new FileOutputStream(file);
+
+		try {
+
+			out.write(("host.name = 127.0.0.1\nhost.port = 21\nhost.type = FTP\nhost.file-dir = /\n"
+			        + "download-dir = " + System.getProperty("java.io.tmpdir") + "\n"
+			        + "move.enabled = false\npushbullet.notify.enabled = false\n").getBytes("UTF-8"));
+
+		} finally {
+			out.close();
+		}
+
+		return file;
+	}
+
+	public static File tempFile(String prefix, String suffix) throws IOException {
+
+		File file = File.createTempFile(prefix, suffix);
+
+		file.deleteOnExit();
+
+		return file;
+	}
+
+	/**
+	 * Sets a private field the way Mockito's {@code @InjectMocks} would, for classes that create their own
+	 * collaborators.
+	 */
+	public static void inject(Object target, String fieldName, Object value) {
+
+		for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass()) {
+
+			try {
+
+				Field field = type.getDeclaredField(fieldName);
+
+				field.setAccessible(true);
+				field.set(target, value);
+
+				return;
+
+			} catch (NoSuchFieldException e) {
+				continue;
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		throw new IllegalArgumentException("No field " + fieldName + " on " + target.getClass());
+	}
+}
@@ -0,0 +1,115 @@
+package com.github.autoftp.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import jftp.client.ClientFactory.ClientType;
+
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.autoftp.benchmark.Synthetic;
+
+/**
+ * The getters every scheduled run goes through, against a config file with a number of hosts in it, read
+ * through the config file and from a settings snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SettingsProviderBenchmark {
+
+	@Param({ "1", "10", "100" })
+	private int hostCount;
+
+	private SettingsProvider settingsProvider;
+
+	private SettingsWatcher settings;
+
+	private HostConfig host;
+
+	private File settingsFile;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+
+		settingsFile = Synthetic.tempFile("settings-benchmark", ".conf");
+		settingsProvider = new SettingsProvider(settingsFile.getAbsolutePath());
+
+		settingsProvider.setFilterExpressions(Synthetic.filters(20));
+
+		for (int i = 0; i < hostCount; i++) {
+
+			HostConfig hostConfig = new HostConfig();
+
+			hostConfig.setId("host" + i);
+			hostConfig.setHostname("ftp" + i + ".example.com");
+			hostConfig.setPort(21);
+			hostConfig.setClientType(ClientType.SFTP);
+			hostConfig.setFileDirectory("/home/user/files");
+			hostConfig.setInterval(5);
+
+			settingsProvider.setHost(hostConfig);
+			settingsProvider.setLastRunDate(hostConfig, DateTime.now());
+		}
+
+		settingsProvider.setDownloadDirectory(settingsFile.getParent());
+		settingsProvider.setMoveEnabled(false);
+		settingsProvider.setPushbulletNotificationEnabled(false);
+
+		host = settingsProvider.getHost("host" + (hostCount - 1));
+		settings = new SettingsWatcher(settingsProvider);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		settingsFile.delete();
+	}
+
+	@Benchmark
+	public List<String> getFilterExpressions() {
+		return settingsProvider.getFilterExpressions();
+	}
+
+	@Benchmark
+	public HostConfig getHost() {
+		return settingsProvider.getHost(host.getId());
+	}
+
+	@Benchmark
+	public List<HostConfig> getHosts() {
+		return settingsProvider.getHosts();
+	}
+
+	@Benchmark
+	public List<String> snapshotGetFilterExpressions() {
+		return settings.get().getFilterExpressions();
+	}
+
+	@Benchmark
+	public HostConfig snapshotGetHost() {
+		return settings.get().getHost(host.getId());
+	}
+
+	@Benchmark
+	public DateTime getLastRunDate() {
+		return settingsProvider.getLastRunDate(host);
+	}
+}
@@ -0,0 +1,71 @@
+package com.github.autoftp.log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What logging a line costs the thread that logs it. {@code println} is how the screen printed each line
+ * before {@link AsyncLog}: a Joda DateTime formatted for the line, then a synchronous, flushing println.
+ * Both write to a stream that discards everything, so the time is the logging rather than the terminal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AsyncLogBenchmark {
+
+	private static final String FILE_LINE = "the.expanse.s01e01.720p.hdtv.x264-grp.mkv (1.17GB)";
+
+	private PrintStream discard;
+
+	private AsyncLog log;
+
+	@Setup
+	public void setUp() {
+
+		discard = new PrintStream(new OutputStream() {
+
+			@Override
+			public void write(int b) throws IOException {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+			}
+		}, true);
+
+		log = new AsyncLog(new ConsoleOutput(discard));
+	}
+
+	@TearDown
+	public void tearDown() {
+		log.close();
+	}
+
+	@Benchmark
+	public void println() {
+		discard.println(String.format("%s [File]\t %s", DateTime.now().toString("dd/MM/yyy HH:mm:ss"), FILE_LINE));
+	}
+
+	@Benchmark
+	public void asyncLog() {
+		log.log(Category.FILE, FILE_LINE);
+	}
+}
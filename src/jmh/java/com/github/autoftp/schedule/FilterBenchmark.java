@@ -0,0 +1,74 @@
+package com.github.autoftp.schedule;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import jftp.connection.FtpFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.autoftp.benchmark.Synthetic;
+import com.github.autoftp.config.SettingsProvider;
+import com.github.autoftp.config.SettingsWatcher;
+
+/**
+ * Matching a listing against the configured filters, including reading the filters back out of the
+ * settings as every run does. The largest listings against the most filters take a while; narrow a run
+ * with e.g. {@code -PjmhArgs="FilterBenchmark -p listingSize=1000"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+
+	@Param({ "1000", "10000", "100000", "1000000" })
+	private int listingSize;
+
+	@Param({ "1", "100", "10000" })
+	private int filterCount;
+
+	private List<FtpFile> listing;
+
+	private ConnectionSchedule connectionSchedule;
+
+	private File settingsFile;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+
+		listing = Synthetic.listing(listingSize);
+		settingsFile = Synthetic.settingsFile("filter-benchmark");
+
+		SettingsProvider settingsProvider = new SettingsProvider(settingsFile.getAbsolutePath());
+
+		settingsProvider.setFilterExpressions(Synthetic.filters(filterCount));
+
+		connectionSchedule = new ConnectionSchedule(null, new SettingsWatcher(settingsProvider));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		settingsFile.delete();
+	}
+
+	@Benchmark
+	public List<FtpFile> filterFilesToCreateDownloadQueue() {
+		return connectionSchedule.filterFilesToCreateDownloadQueue(listing);
+	}
+}
@@ -0,0 +1,121 @@
+package com.github.autoftp.schedule;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import jftp.connection.FtpFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.autoftp.ConnectionListener;
+import com.github.autoftp.benchmark.Synthetic;
+
+/**
+ * The overhead of handing events to listeners that do next to nothing, i.e. what the notifier itself costs
+ * each event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotifierBenchmark {
+
+	@Param({ "1", "4", "16" })
+	private int listenerCount;
+
+	private ConnectionNotifier notifier;
+
+	private List<FtpFile> filesToDownload;
+
+	@Setup
+	public void setUp(Blackhole blackhole) {
+
+		notifier = new ConnectionNotifier();
+		filesToDownload = Synthetic.listing(10);
+
+		for (int i = 0; i < listenerCount; i++)
+			notifier.registerListener(new ConsumingListener(blackhole));
+	}
+
+	@Benchmark
+	public void notifyOnDownloadStart() {
+		notifier.notifyOnDownloadStart("the.expanse.s01e01.720p.hdtv.x264-grp.mkv");
+	}
+
+	@Benchmark
+	public void notifyOfDownloadProgress() {
+		notifier.notifyOfDownloadProgress("the.expanse.s01e01.720p.hdtv.x264-grp.mkv", 512l << 20, 1l << 30, 12l << 20);
+	}
+
+	@Benchmark
+	public void notifyOfFilesToDownload() {
+		notifier.notifyOfFilesToDownload(filesToDownload);
+	}
+
+	@Benchmark
+	public void notifyOfError() {
+		notifier.notifyOfError("Unable to connect to host");
+	}
+
+	private static class ConsumingListener implements ConnectionListener {
+
+		private Blackhole blackhole;
+
+		private ConsumingListener(Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+
+		@Override
+		public void onConnection() {
+			blackhole.consume(this);
+		}
+
+		@Override
+		public void onDisconnection() {
+			blackhole.consume(this);
+		}
+
+		@Override
+		public void onFilterListObtained(List<FtpFile> files) {
+			blackhole.consume(files);
+		}
+
+		@Override
+		public void onError(String errorMessage) {
+			blackhole.consume(errorMessage);
+		}
+
+		@Override
+		public void onDownloadStarted(String filename) {
+			blackhole.consume(filename);
+		}
+
+		@Override
+		public void onDownloadProgress(String filename, long bytesTransferred, long totalBytes, long bytesPerSecond) {
+			blackhole.consume(bytesTransferred);
+		}
+
+		@Override
+		public void onDownloadFinished(String filename) {
+			blackhole.consume(filename);
+		}
+
+		@Override
+		public void onRunFinished() {
+			blackhole.consume(this);
+		}
+	}
+}
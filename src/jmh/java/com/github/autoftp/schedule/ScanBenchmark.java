@@ -0,0 +1,105 @@
+package com.github.autoftp.schedule;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import jftp.connection.Connection;
+import jftp.connection.FtpFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.autoftp.benchmark.Synthetic;
+import com.github.autoftp.config.SettingsWatcher;
+import com.github.autoftp.index.SeenFileIndex;
+
+/**
+ * Picking the new files out of a listing, with half of it already in the seen file index. The listing
+ * itself comes from memory so only the scan is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScanBenchmark {
+
+	@Param({ "1000", "10000", "100000", "1000000" })
+	private int listingSize;
+
+	private ConnectionSchedule connectionSchedule;
+
+	private SeenFileIndex seenFileIndex;
+
+	private File indexFile;
+
+	private File settingsFile;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+
+		List<FtpFile> listing = Synthetic.listing(listingSize);
+
+		settingsFile = Synthetic.settingsFile("scan-benchmark");
+		indexFile = Synthetic.tempFile("scan-benchmark", ".idx");
+		seenFileIndex = new SeenFileIndex(indexFile);
+
+		for (int i = 0; i < listing.size(); i += 2)
+			seenFileIndex.record(listing.get(i));
+
+		connectionSchedule = new ConnectionSchedule(null, new SettingsWatcher(settingsFile.getAbsolutePath()));
+
+		Synthetic.inject(connectionSchedule, "connection", new ListedConnection(listing));
+		Synthetic.inject(connectionSchedule, "seenFileIndex", seenFileIndex);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+
+		seenFileIndex.close();
+		indexFile.delete();
+		settingsFile.delete();
+	}
+
+	@Benchmark
+	public List<FtpFile> retrieveFilesAfterLastScan() {
+		return connectionSchedule.retrieveFilesAfterLastScan();
+	}
+
+	private static class ListedConnection implements Connection {
+
+		private List<FtpFile> listing;
+
+		private ListedConnection(List<FtpFile> listing) {
+			this.listing = listing;
+		}
+
+		@Override
+		public void setRemoteDirectory(String directory) {
+		}
+
+		@Override
+		public List<FtpFile> listFiles() {
+			return listing;
+		}
+
+		@Override
+		public void download(FtpFile file, String localDirectory) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package com.github.autoftp.transfer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.autoftp.benchmark.Synthetic;
+
+/**
+ * Writing a download to a local file from a socket, as a data connection is read. A thread in the same
+ * process serves {@code fileSize} bytes on loopback to each connection, so the time is the socket and the
+ * file system rather than any server.
+ * <p>
+ * {@code copyStream} is how downloads were written before {@link DownloadWriter}: commons-io copying a
+ * socket's stream into a FileOutputStream. {@code transferFrom} is FileChannel.transferFrom straight from
+ * the socket channel, which the JDK only does without a copy for file sources. Compare buffer sizes with
+ * e.g. {@code -PjmhArgs="DownloadWriterBenchmark -p bufferSize=65536,1048576"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownloadWriterBenchmark {
+
+	@Param({ "16777216", "268435456" })
+	private long fileSize;
+
+	@Param({ "65536", "262144", "1048576" })
+	private int bufferSize;
+
+	private ServerSocketChannel server;
+
+	private Thread serverThread;
+
+	private File localFile;
+
+	private DownloadWriter downloadWriter;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+
+		localFile = Synthetic.tempFile("download-writer-benchmark", ".bin");
+
+		downloadWriter = new DownloadWriter();
+		downloadWriter.setBufferSize(bufferSize);
+
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+		serverThread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				serve();
+			}
+		}, "download-writer-benchmark-server");
+
+		serverThread.setDaemon(true);
+		serverThread.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+
+		server.close();
+		localFile.delete();
+	}
+
+	@Benchmark
+	public long copyStream() throws IOException {
+
+		Socket socket = connect().socket();
+		OutputStream localStream = new FileOutputStream(localFile);
+
+		try {
+
+			return IOUtils.copyLarge(socket.getInputStream(), localStream);
+
+		} finally {
+
+			localStream.close();
+			socket.close();
+		}
+	}
+
+	@Benchmark
+	public long writerFromStream() throws IOException {
+
+		SocketChannel channel = connect();
+
+		try {
+
+			return downloadWriter.write(channel.socket().getInputStream(), localFile, 0, fileSize, null, null, null);
+
+		} finally {
+			channel.close();
+		}
+	}
+
+	@Benchmark
+	public long writerFromChannel() throws IOException {
+
+		SocketChannel channel = connect();
+
+		try {
+
+			return downloadWriter.write(new ChannelStream(channel), localFile, 0, fileSize, null, null, null);
+
+		} finally {
+			channel.close();
+		}
+	}
+
+	@Benchmark
+	public long transferFrom() throws IOException {
+
+		SocketChannel channel = connect();
+		RandomAccessFile file = new RandomAccessFile(localFile, "rw");
+
+		try {
+
+			FileChannel target = file.getChannel();
+			long position = 0;
+			long transferred;
+
+			file.setLength(fileSize);
+
+			while (position < fileSize && (transferred = target.transferFrom(channel, position, fileSize - position)) > 0)
+				position += transferred;
+
+			return position;
+
+		} finally {
+
+			file.close();
+			channel.close();
+		}
+	}
+
+	private SocketChannel connect() throws IOException {
+		return SocketChannel.open(server.getLocalAddress());
+	}
+
+	private void serve() {
+
+		ByteBuffer content = ByteBuffer.allocateDirect(1024 * 1024);
+
+		while (server.isOpen()) {
+
+			try {
+
+				SocketChannel client = server.accept();
+
+				try {
+
+					for (long sent = 0; sent < fileSize;) {
+
+						content.clear();
+						content.limit((int) Math.min(content.capacity(), fileSize - sent));
+						sent += client.write(content);
+					}
+
+				} finally {
+					client.close();
+				}
+
+			} catch (IOException e) {
+				// Closed by the tear down, or the client went away; either way wait for the next one.
+			}
+		}
+	}
+
+	private static class ChannelStream extends FilterInputStream implements ChannelSource {
+
+		private ReadableByteChannel channel;
+
+		private ChannelStream(SocketChannel channel) throws IOException {
+
+			super(channel.socket().getInputStream());
+
+			this.channel = channel;
+		}
+
+		@Override
+		public ReadableByteChannel getChannel() {
+			return channel;
+		}
+	}
+}
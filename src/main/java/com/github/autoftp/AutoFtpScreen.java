@@ -1,23 +1,43 @@
 package com.github.autoftp;
 
-import java.text.DecimalFormat;
 import java.util.List;
 
 import jftp.connection.FtpFile;
 
-import org.joda.time.DateTime;
+import org.joda.time.Period;
+import org.joda.time.PeriodType;
+import org.joda.time.format.PeriodFormatter;
+import org.joda.time.format.PeriodFormatterBuilder;
 
+import com.github.autoftp.config.SettingsWatcher;
+import com.github.autoftp.log.AsyncLog;
+import com.github.autoftp.log.Category;
 import com.github.autoftp.schedule.ConnectionScheduleExecutor;
 
+/**
+ * Writes every event to the shared {@link AsyncLog}, so that the thread raising it only hands the line
+ * over rather than waiting for the console.
+ */
 public class AutoFtpScreen implements ConnectionListener {
 
-	private static final double MB = 1024.0 * 1024.0;
+	private static final long MB = 1024 * 1024;
+	private static final long GB = 1024 * MB;
+	private static final PeriodFormatter REMAINING_FORMAT = new PeriodFormatterBuilder().printZeroAlways()
+	        .minimumPrintedDigits(2).appendHours().appendSeparator(":").appendMinutes().appendSeparator(":")
+	        .appendSeconds().toFormatter();
 
 	private ConnectionScheduleExecutor executor;
+	private SettingsWatcher settings;
+	private AsyncLog log;
 
 	public AutoFtpScreen() {
 
-		executor = new ConnectionScheduleExecutor();
+		settings = new SettingsWatcher("/etc/autoftp/autoftp.conf");
+
+		log = AsyncLog.shared();
+		log.configure(settings.get());
+
+		executor = new ConnectionScheduleExecutor(settings);
 		executor.scheduleAndListen(this);
 	}
 
@@ -31,15 +51,22 @@ public class AutoFtpScreen implements ConnectionListener {
 		printInfo("Disconnected from server. Going idle.");
 	}
 
+	/**
+	 * A listing longer than log.max-listed-files is cut short, with a line summing up the rest.
+	 */
 	@Override
 	public void onFilterListObtained(List<FtpFile> files) {
 
 		int fileCount = files.size();
+		int listed = Math.min(fileCount, settings.get().getLogMaxListedFiles());
 
 		printInfo(String.format("%d %s found:", fileCount, (fileCount == 1 ? "file" : "files")));
 
-		for (FtpFile file : files)
-			printFile(file);
+		for (int i = 0; i < listed; i++)
+			printFile(files.get(i));
+
+		if (listed < fileCount)
+			printSummary(files.subList(listed, fileCount));
 	}
 
 	@Override
@@ -52,55 +79,72 @@ public class AutoFtpScreen implements ConnectionListener {
 		printDownload(filename);
 	}
 
+	@Override
+	public void onDownloadProgress(String filename, long bytesTransferred, long totalBytes, long bytesPerSecond) {
+		printProgress(filename, bytesTransferred, totalBytes, bytesPerSecond);
+	}
+
 	@Override
 	public void onDownloadFinished(String filename) {
 		printInfo("Download finished.");
 	}
 
+	@Override
+	public void onRunFinished() {
+	}
+
 	public void printDownload(String filename) {
+		log.log(Category.DOWNLOAD, filename);
+	}
 
-		String formattedMessage = String.format("%s [Download]\t %s", formattedTime(), filename);
+	public void printProgress(String filename, long bytesTransferred, long totalBytes, long bytesPerSecond) {
 
-		System.out.println(formattedMessage);
+		long percent = totalBytes > 0 ? bytesTransferred * 100 / totalBytes : 100;
+		String remaining = bytesPerSecond > 0 ? new Period((totalBytes - bytesTransferred) / bytesPerSecond * 1000,
+		        PeriodType.time()).toString(REMAINING_FORMAT) + " left" : "stalled";
+
+		log.log(Category.PROGRESS, String.format("%s %d%% (%s of %s) at %s/s, %s", filename, percent,
+		        formatSize(bytesTransferred), formatSize(totalBytes), formatSize(bytesPerSecond), remaining));
 	}
 
 	public void printError(String message) {
-
-		String formattedMessage = String.format("%s [Error]\t %s", formattedTime(), message);
-
-		System.out.println(formattedMessage);
+		log.log(Category.ERROR, message);
 	}
 
 	public void printInfo(String info) {
-
-		String formattedMessage = String.format("%s [Info]\t %s", formattedTime(), info);
-
-		System.out.println(formattedMessage);
+		log.log(Category.INFO, info);
 	}
 
 	public void printFile(FtpFile file) {
+		log.log(Category.FILE, file.getName() + " (" + formatSize(file.getSize()) + ")");
+	}
+
+	private void printSummary(List<FtpFile> unlisted) {
 
-		DecimalFormat format = new DecimalFormat("#.##");
+		long totalSize = 0;
 
-		String extension = "MB";
+		for (FtpFile file : unlisted)
+			totalSize += file.getSize();
 
-		long fileSize = file.getSize();
-		double sizeInMb = fileSize / MB;
+		printInfo(String.format("... and %d more (%s)", unlisted.size(), formatSize(totalSize)));
+	}
 
-		double printableSize = sizeInMb;
+	/**
+	 * In MB, or GB above 1024MB, to at most two decimal places. Worked out in whole hundredths rather than
+	 * through a DecimalFormat, which would have to be created for each call as it can't be shared between
+	 * threads.
+	 */
+	static String formatSize(long bytes) {
 
-		if (sizeInMb > 1024.0) {
-			printableSize = (sizeInMb / 1024);
-			extension = "GB";
-		}
+		long unit = bytes > 1024 * MB ? GB : MB;
+		long hundredths = Math.round(bytes * 100.0 / unit);
 
-		String formattedMessage = String.format("%s [File]\t %s (%s%s)", formattedTime(), file.getName(),
-		        format.format(printableSize), extension);
+		StringBuilder size = new StringBuilder().append(hundredths / 100);
+		long fraction = hundredths % 100;
 
-		System.out.println(formattedMessage);
-	}
+		if (fraction != 0)
+			size.append('.').append(fraction < 10 ? "0" : "").append(fraction % 10 == 0 ? fraction / 10 : fraction);
 
-	private String formattedTime() {
-		return DateTime.now().toString("dd/MM/yyy HH:mm:ss");
+		return size.append(unit == GB ? "GB" : "MB").toString();
 	}
 }
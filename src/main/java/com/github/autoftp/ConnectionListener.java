@@ -11,5 +11,18 @@ public interface ConnectionListener {
 	void onFilterListObtained(List<FtpFile> files);
 	void onError(String errorMessage);
 	void onDownloadStarted(String filename);
+
+	/**
+	 * Sampled while a file downloads, at the rate set by progress.interval and progress.bytes. The rate is
+	 * over the time since the previous sample, in bytes per second.
+	 */
+	void onDownloadProgress(String filename, long bytesTransferred, long totalBytes, long bytesPerSecond);
+
 	void onDownloadFinished(String filename);
+
+	/**
+	 * After every check of a host that got as far as connecting, once its downloads have finished, whether
+	 * or not its connection is kept open until the next check.
+	 */
+	void onRunFinished();
 }
@@ -2,16 +2,93 @@ package com.github.autoftp;
 
 import java.io.File;
 import java.io.IOException;
-
-import org.apache.commons.io.FileUtils;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 public class FileUtilities {
 
+	private static final String PARTIAL_PREFIX = ".";
+	private static final String PARTIAL_SUFFIX = ".autoftp-moving";
+
 	public File getFile(String filePathWithName) {
 		return new File(filePathWithName);
 	}
-	
+
+	/**
+	 * Moves the file into the destination directory, creating it if needed. On the same filesystem this is
+	 * a single atomic rename; otherwise the file is copied with {@link FileChannel#transferTo} into a hidden
+	 * file beside its destination, renamed into place, and only then deleted from its source.
+	 */
 	public void moveFile(File source, File destination) throws IOException {
-		FileUtils.moveFileToDirectory(source, destination, true);
+
+		if (!source.exists())
+			throw new IOException(String.format("Source '%s' does not exist", source));
+
+		destination.mkdirs();
+
+		if (!destination.isDirectory())
+			throw new IOException(String.format("Destination '%s' is not a directory", destination));
+
+		Path target = new File(destination, source.getName()).toPath();
+
+		if (Files.exists(target))
+			throw new FileAlreadyExistsException(target.toString(), null, "Destination already exists");
+
+		try {
+
+			Files.move(source.toPath(), target, StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (AtomicMoveNotSupportedException e) {
+
+			transferFile(source.toPath(), target);
+			Files.delete(source.toPath());
+		}
+	}
+
+	/**
+	 * Copies across filesystems without passing the data through a user-space buffer, then publishes the
+	 * copy with a rename so the destination never holds a partial file.
+	 */
+	protected void transferFile(Path source, Path target) throws IOException {
+
+		Path partial = target.resolveSibling(PARTIAL_PREFIX + target.getFileName() + PARTIAL_SUFFIX);
+
+		FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+
+		try {
+
+			FileChannel out = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+			        StandardOpenOption.WRITE);
+
+			try {
+
+				long size = in.size();
+				long position = 0;
+
+				while (position < size)
+					position += in.transferTo(position, size - position, out);
+
+				out.force(true);
+
+			} finally {
+				out.close();
+			}
+
+		} catch (IOException e) {
+
+			Files.deleteIfExists(partial);
+			throw e;
+
+		} finally {
+			in.close();
+		}
+
+		Files.setLastModifiedTime(partial, Files.getLastModifiedTime(source));
+		Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
 	}
 }
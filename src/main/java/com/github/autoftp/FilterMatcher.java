@@ -0,0 +1,251 @@
+package com.github.autoftp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * All of the filter expressions compiled once into a single matcher. It matches exactly what
+ * {@link PatternBuilder} regexes would (ignoring case, '?' and '.' match any one character and '*' matches
+ * one or more), but without running every expression against every name.
+ * <p>
+ * Expressions made only of literal characters and wildcards are indexed by their leading literal text in
+ * a prefix tree or, if they start with a wildcard, by their trailing literal text in a suffix tree. A name
+ * is only checked against the expressions found while walking it through the trees. Expressions using any
+ * other regex syntax are compiled to a {@link Pattern} and checked in turn.
+ */
+public class FilterMatcher {
+
+	private static final String REGEX_SYNTAX = "\\[](){}|+^$";
+	private static final char ANY_ONE = '\uFFFE';
+	private static final char ANY_MANY = '\uFFFF';
+
+	private Node prefixTree = new Node();
+	private Node suffixTree = new Node();
+	private List<char[]> unindexedGlobs = new ArrayList<char[]>();
+	private List<Pattern> regexes = new ArrayList<Pattern>();
+
+	public FilterMatcher(List<String> filterExpressions) {
+
+		PatternBuilder patternBuilder = new PatternBuilder();
+
+		for (String expression : filterExpressions) {
+
+			String lowerCaseExpression = expression.toLowerCase();
+
+			if (isGlob(lowerCaseExpression))
+				addGlob(compileGlob(lowerCaseExpression));
+			else
+				regexes.add(Pattern.compile(patternBuilder.buildFromFilterString(expression).toLowerCase()));
+		}
+	}
+
+	public boolean matches(String filename) {
+
+		String name = filename.toLowerCase();
+
+		return matchesFromPrefix(name) || matchesFromSuffix(name) || matchesAny(unindexedGlobs, name)
+		        || matchesRegex(name);
+	}
+
+	private boolean matchesFromPrefix(String name) {
+
+		Node node = prefixTree;
+
+		for (int i = 0; node != null; i++) {
+
+			if (matchesAny(node.globs, name))
+				return true;
+
+			node = i < name.length() ? node.child(name.charAt(i)) : null;
+		}
+
+		return false;
+	}
+
+	private boolean matchesFromSuffix(String name) {
+
+		Node node = suffixTree;
+
+		for (int i = name.length() - 1; node != null; i--) {
+
+			if (matchesAny(node.globs, name))
+				return true;
+
+			node = i >= 0 ? node.child(name.charAt(i)) : null;
+		}
+
+		return false;
+	}
+
+	private boolean matchesAny(List<char[]> globs, String name) {
+
+		for (int i = 0; i < globs.size(); i++) {
+
+			if (globMatches(globs.get(i), name))
+				return true;
+		}
+
+		return false;
+	}
+
+	private boolean matchesRegex(String name) {
+
+		for (int i = 0; i < regexes.size(); i++) {
+
+			if (regexes.get(i).matcher(name).matches())
+				return true;
+		}
+
+		return false;
+	}
+
+	private boolean isGlob(String expression) {
+
+		for (int i = 0; i < expression.length(); i++) {
+
+			if (REGEX_SYNTAX.indexOf(expression.charAt(i)) >= 0)
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * '*' means one or more characters, so it is stored as a single-character wildcard followed by a
+	 * zero-or-more wildcard.
+	 */
+	private char[] compileGlob(String expression) {
+
+		StringBuilder glob = new StringBuilder();
+
+		for (int i = 0; i < expression.length(); i++) {
+
+			char c = expression.charAt(i);
+
+			if (c == '?' || c == '.')
+				glob.append(ANY_ONE);
+			else if (c == '*')
+				glob.append(ANY_ONE).append(ANY_MANY);
+			else
+				glob.append(c);
+		}
+
+		return glob.toString().toCharArray();
+	}
+
+	private void addGlob(char[] glob) {
+
+		int prefixLength = 0;
+
+		while (prefixLength < glob.length && !isWildcard(glob[prefixLength]))
+			prefixLength++;
+
+		int suffixLength = 0;
+
+		while (suffixLength < glob.length && !isWildcard(glob[glob.length - 1 - suffixLength]))
+			suffixLength++;
+
+		if (prefixLength > 0) {
+
+			Node node = prefixTree;
+
+			for (int i = 0; i < prefixLength; i++)
+				node = node.childOrAdd(glob[i]);
+
+			node.globs.add(glob);
+
+		} else if (suffixLength > 0) {
+
+			Node node = suffixTree;
+
+			for (int i = glob.length - 1; i >= glob.length - suffixLength; i--)
+				node = node.childOrAdd(glob[i]);
+
+			node.globs.add(glob);
+
+		} else {
+			unindexedGlobs.add(glob);
+		}
+	}
+
+	private boolean isWildcard(char c) {
+		return c == ANY_ONE || c == ANY_MANY;
+	}
+
+	private boolean globMatches(char[] glob, String name) {
+
+		int g = 0;
+		int n = 0;
+		int starG = -1;
+		int starN = 0;
+
+		while (n < name.length()) {
+
+			if (g < glob.length && glob[g] == ANY_MANY) {
+
+				starG = g++;
+				starN = n;
+
+			} else if (g < glob.length && (glob[g] == ANY_ONE || glob[g] == name.charAt(n))) {
+
+				g++;
+				n++;
+
+			} else if (starG >= 0) {
+
+				g = starG + 1;
+				n = ++starN;
+
+			} else {
+				return false;
+			}
+		}
+
+		while (g < glob.length && glob[g] == ANY_MANY)
+			g++;
+
+		return g == glob.length;
+	}
+
+	private static class Node {
+
+		private char[] labels = new char[0];
+		private Node[] children = new Node[0];
+		private List<char[]> globs = new ArrayList<char[]>();
+
+		private Node child(char label) {
+
+			int index = Arrays.binarySearch(labels, label);
+
+			return index >= 0 ? children[index] : null;
+		}
+
+		private Node childOrAdd(char label) {
+
+			int index = Arrays.binarySearch(labels, label);
+
+			if (index >= 0)
+				return children[index];
+
+			int insertAt = -index - 1;
+
+			char[] newLabels = new char[labels.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+
+			System.arraycopy(labels, 0, newLabels, 0, insertAt);
+			System.arraycopy(children, 0, newChildren, 0, insertAt);
+			System.arraycopy(labels, insertAt, newLabels, insertAt + 1, labels.length - insertAt);
+			System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+
+			newLabels[insertAt] = label;
+			newChildren[insertAt] = new Node();
+
+			labels = newLabels;
+			children = newChildren;
+
+			return newChildren[insertAt];
+		}
+	}
+}
@@ -1,21 +1,79 @@
 package com.github.autoftp.config;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import jftp.client.ClientFactory.ClientType;
 
+/**
+ * One host's settings. Hosts handed out by {@link Settings} are frozen, since every component reading the
+ * snapshot shares them; setting anything on one of those throws an {@link UnsupportedOperationException}.
+ */
 public class HostConfig {
 
+	private String id;
 	private String hostname;
 	private int port;
 	private String username;
 	private String password;
 	private ClientType clientType;
 	private String fileDirectory;
+	private int maxConnections = 1;
+	private int segments = 1;
+	private long minSegmentSize;
+	private int interval;
+	private boolean keepAlive;
+	private int keepAliveInterval;
+	private int prewarmSeconds;
+	private boolean recursive;
+	private int maxDepth;
+	private List<String> includedDirectories = new ArrayList<String>();
+	private List<String> excludedDirectories = new ArrayList<String>();
+	private boolean streamingListing;
+	private long bandwidthLimit;
+	private int bandwidthWeight = 1;
+	private boolean adaptiveInterval;
+	private int minInterval;
+	private int maxInterval;
+	private boolean changeProbe;
+	private int fullListingEvery;
+	private String checksum = "";
+	private boolean directDownload;
+	private boolean ignoreTouched;
+	private boolean frozen;
+
+	/**
+	 * Identifies the host in file names, metrics and limits: its id, or "host" for the single host.
+	 */
+	public String getKey() {
+		return keyFor(id);
+	}
+
+	/**
+	 * The key of the host with the given id, which is null for the single host.
+	 */
+	public static String keyFor(String id) {
+		return id == null ? "host" : id;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+
+		checkModifiable();
+		this.id = id;
+	}
 
 	public String getHostname() {
 		return hostname;
 	}
 
 	public void setHostname(String hostname) {
+
+		checkModifiable();
 		this.hostname = hostname;
 	}
 
@@ -24,6 +82,8 @@ public class HostConfig {
 	}
 
 	public void setPort(int port) {
+
+		checkModifiable();
 		this.port = port;
 	}
 
@@ -32,6 +92,8 @@ public class HostConfig {
 	}
 
 	public void setUsername(String username) {
+
+		checkModifiable();
 		this.username = username;
 	}
 
@@ -40,6 +102,8 @@ public class HostConfig {
 	}
 
 	public void setPassword(String password) {
+
+		checkModifiable();
 		this.password = password;
 	}
 
@@ -48,6 +112,8 @@ public class HostConfig {
 	}
 
 	public void setClientType(ClientType clientType) {
+
+		checkModifiable();
 		this.clientType = clientType;
 	}
 
@@ -56,6 +122,257 @@ public class HostConfig {
 	}
 
 	public void setFileDirectory(String fileDirectory) {
+
+		checkModifiable();
 		this.fileDirectory = fileDirectory;
 	}
+
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	public void setMaxConnections(int maxConnections) {
+
+		checkModifiable();
+		this.maxConnections = maxConnections;
+	}
+
+	public int getSegments() {
+		return segments;
+	}
+
+	public void setSegments(int segments) {
+
+		checkModifiable();
+		this.segments = segments;
+	}
+
+	public long getMinSegmentSize() {
+		return minSegmentSize;
+	}
+
+	public void setMinSegmentSize(long minSegmentSize) {
+
+		checkModifiable();
+		this.minSegmentSize = minSegmentSize;
+	}
+
+	public int getInterval() {
+		return interval;
+	}
+
+	public void setInterval(int interval) {
+
+		checkModifiable();
+		this.interval = interval;
+	}
+
+	public boolean isKeepAlive() {
+		return keepAlive;
+	}
+
+	public void setKeepAlive(boolean keepAlive) {
+
+		checkModifiable();
+		this.keepAlive = keepAlive;
+	}
+
+	public int getKeepAliveInterval() {
+		return keepAliveInterval;
+	}
+
+	public void setKeepAliveInterval(int keepAliveInterval) {
+
+		checkModifiable();
+		this.keepAliveInterval = keepAliveInterval;
+	}
+
+	public int getPrewarmSeconds() {
+		return prewarmSeconds;
+	}
+
+	public void setPrewarmSeconds(int prewarmSeconds) {
+
+		checkModifiable();
+		this.prewarmSeconds = prewarmSeconds;
+	}
+
+	public boolean isRecursive() {
+		return recursive;
+	}
+
+	public void setRecursive(boolean recursive) {
+
+		checkModifiable();
+		this.recursive = recursive;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public void setMaxDepth(int maxDepth) {
+
+		checkModifiable();
+		this.maxDepth = maxDepth;
+	}
+
+	public List<String> getIncludedDirectories() {
+		return includedDirectories;
+	}
+
+	public void setIncludedDirectories(List<String> includedDirectories) {
+
+		checkModifiable();
+		this.includedDirectories = includedDirectories;
+	}
+
+	public List<String> getExcludedDirectories() {
+		return excludedDirectories;
+	}
+
+	public void setExcludedDirectories(List<String> excludedDirectories) {
+
+		checkModifiable();
+		this.excludedDirectories = excludedDirectories;
+	}
+
+	public boolean isStreamingListing() {
+		return streamingListing;
+	}
+
+	public void setStreamingListing(boolean streamingListing) {
+
+		checkModifiable();
+		this.streamingListing = streamingListing;
+	}
+
+	/**
+	 * In bytes per second; zero for no limit.
+	 */
+	public long getBandwidthLimit() {
+		return bandwidthLimit;
+	}
+
+	public void setBandwidthLimit(long bandwidthLimit) {
+
+		checkModifiable();
+		this.bandwidthLimit = bandwidthLimit;
+	}
+
+	public int getBandwidthWeight() {
+		return bandwidthWeight;
+	}
+
+	public void setBandwidthWeight(int bandwidthWeight) {
+
+		checkModifiable();
+		this.bandwidthWeight = bandwidthWeight;
+	}
+
+	public boolean isAdaptiveInterval() {
+		return adaptiveInterval;
+	}
+
+	public void setAdaptiveInterval(boolean adaptiveInterval) {
+
+		checkModifiable();
+		this.adaptiveInterval = adaptiveInterval;
+	}
+
+	public int getMinInterval() {
+		return minInterval;
+	}
+
+	public void setMinInterval(int minInterval) {
+
+		checkModifiable();
+		this.minInterval = minInterval;
+	}
+
+	public int getMaxInterval() {
+		return maxInterval;
+	}
+
+	public void setMaxInterval(int maxInterval) {
+
+		checkModifiable();
+		this.maxInterval = maxInterval;
+	}
+
+	public boolean isChangeProbe() {
+		return changeProbe;
+	}
+
+	public void setChangeProbe(boolean changeProbe) {
+
+		checkModifiable();
+		this.changeProbe = changeProbe;
+	}
+
+	public int getFullListingEvery() {
+		return fullListingEvery;
+	}
+
+	public void setFullListingEvery(int fullListingEvery) {
+
+		checkModifiable();
+		this.fullListingEvery = fullListingEvery;
+	}
+
+	/**
+	 * The digest worked out for each download as written in the config file, e.g. "sha256", or blank for
+	 * none.
+	 */
+	public String getChecksum() {
+		return checksum;
+	}
+
+	public void setChecksum(String checksum) {
+
+		checkModifiable();
+		this.checksum = checksum;
+	}
+
+	/**
+	 * True if files are downloaded over this application's own connection rather than JFTP's.
+	 */
+	public boolean isDirectDownload() {
+		return directDownload;
+	}
+
+	public void setDirectDownload(boolean directDownload) {
+
+		checkModifiable();
+		this.directDownload = directDownload;
+	}
+
+	/**
+	 * True if a file already downloaded is only fetched again when its size changes, not its modified time.
+	 */
+	public boolean isIgnoreTouched() {
+		return ignoreTouched;
+	}
+
+	public void setIgnoreTouched(boolean ignoreTouched) {
+
+		checkModifiable();
+		this.ignoreTouched = ignoreTouched;
+	}
+
+	/**
+	 * Stops any further changes, including to the directory lists.
+	 */
+	void freeze() {
+
+		includedDirectories = Collections.unmodifiableList(includedDirectories);
+		excludedDirectories = Collections.unmodifiableList(excludedDirectories);
+		frozen = true;
+	}
+
+	private void checkModifiable() {
+
+		if (frozen)
+			throw new UnsupportedOperationException(String.format("Settings for %s can't be changed", getKey()));
+	}
 }
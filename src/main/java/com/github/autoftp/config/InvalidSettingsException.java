@@ -0,0 +1,22 @@
+package com.github.autoftp.config;
+
+import java.util.List;
+
+public class InvalidSettingsException extends RuntimeException {
+
+	private static final long serialVersionUID = -3158275608931412095L;
+
+	public InvalidSettingsException(List<String> problems) {
+		super(join(problems));
+	}
+
+	private static String join(List<String> problems) {
+
+		StringBuilder message = new StringBuilder("Invalid settings: ");
+
+		for (int i = 0; i < problems.size(); i++)
+			message.append(i == 0 ? "" : "; ").append(problems.get(i));
+
+		return message.toString();
+	}
+}
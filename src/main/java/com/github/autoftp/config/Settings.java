@@ -0,0 +1,332 @@
+package com.github.autoftp.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.autoftp.schedule.OverflowPolicy;
+import com.github.autoftp.transfer.ChecksumAlgorithm;
+
+/**
+ * Every setting read from the config file at one moment, checked and then never changed. Components hold
+ * on to a {@link SettingsWatcher} and read the latest snapshot from it, so a value read on a hot path is a
+ * plain field rather than a trip through the config file.
+ * <p>
+ * The host configs are shared by everything reading the snapshot, so they are frozen as they are read.
+ */
+public class Settings {
+
+	private final String downloadDirectory;
+	private final String indexDirectory;
+	private final List<String> filterExpressions;
+	private final List<HostConfig> hosts;
+	private final Map<String, HostConfig> hostsById;
+	private final boolean moveEnabled;
+	private final String moveDirectory;
+	private final int moveThreads;
+	private final boolean pushbulletNotificationEnabled;
+	private final String pushbulletApiKey;
+	private final String pushbulletApiUrl;
+	private final int pushbulletNotifyWindowSeconds;
+	private final int schedulerThreads;
+	private final int startJitterSeconds;
+	private final long bandwidthLimit;
+	private final int downloadBufferSize;
+	private final boolean stagingEnabled;
+	private final int progressIntervalSeconds;
+	private final long progressBytes;
+	private final String logFile;
+	private final long logMaxSize;
+	private final int logMaxFiles;
+	private final int logMaxListedFiles;
+	private final boolean jmxMetricsEnabled;
+	private final String metricsTextFile;
+	private final int metricsTextFileIntervalSeconds;
+	private final boolean asyncListenersEnabled;
+	private final int listenerQueueSize;
+	private final String listenerOverflowPolicy;
+
+	/**
+	 * Reads everything from the provider, throwing an {@link InvalidSettingsException} that lists every
+	 * problem found if any of it can't be used.
+	 */
+	Settings(SettingsProvider settingsProvider) {
+
+		List<String> problems = new ArrayList<String>();
+
+		hosts = Collections.unmodifiableList(readHosts(settingsProvider, problems));
+		hostsById = new HashMap<String, HostConfig>();
+
+		for (HostConfig host : hosts) {
+
+			host.freeze();
+			hostsById.put(host.getId(), host);
+			checkHost(host, problems);
+		}
+
+		downloadDirectory = settingsProvider.getDownloadDirectory();
+		indexDirectory = settingsProvider.getIndexDirectory();
+		filterExpressions = Collections.unmodifiableList(settingsProvider.getFilterExpressions());
+		moveEnabled = settingsProvider.isMoveEnabled();
+		moveDirectory = settingsProvider.getMoveDirectory();
+		moveThreads = settingsProvider.getMoveThreads();
+		pushbulletNotificationEnabled = settingsProvider.isPushbulletNotificationEnabled();
+		pushbulletApiKey = settingsProvider.getPushbulletApiKey();
+		pushbulletApiUrl = settingsProvider.getPushbulletApiUrl();
+		pushbulletNotifyWindowSeconds = settingsProvider.getPushbulletNotifyWindowSeconds();
+		schedulerThreads = settingsProvider.getSchedulerThreads(hosts.size());
+		startJitterSeconds = settingsProvider.getStartJitterSeconds();
+		bandwidthLimit = settingsProvider.getBandwidthLimit();
+		downloadBufferSize = settingsProvider.getDownloadBufferSize();
+		stagingEnabled = settingsProvider.isStagingEnabled();
+		progressIntervalSeconds = settingsProvider.getProgressIntervalSeconds();
+		progressBytes = settingsProvider.getProgressBytes();
+		logFile = settingsProvider.getLogFile();
+		logMaxSize = settingsProvider.getLogMaxSize();
+		logMaxFiles = settingsProvider.getLogMaxFiles();
+		logMaxListedFiles = settingsProvider.getLogMaxListedFiles();
+		jmxMetricsEnabled = settingsProvider.isJmxMetricsEnabled();
+		metricsTextFile = settingsProvider.getMetricsTextFile();
+		metricsTextFileIntervalSeconds = settingsProvider.getMetricsTextFileIntervalSeconds();
+		asyncListenersEnabled = settingsProvider.isAsyncListenersEnabled();
+		listenerQueueSize = settingsProvider.getListenerQueueSize();
+		listenerOverflowPolicy = settingsProvider.getListenerOverflowPolicy();
+
+		check(isSet(downloadDirectory), "download-dir must be set", problems);
+		check(!moveEnabled || isSet(moveDirectory), "move.directory must be set when move.enabled is true", problems);
+		check(moveThreads > 0, "move.threads must be at least 1", problems);
+		check(pushbulletNotifyWindowSeconds >= 0, "pushbullet.notify.window can't be negative", problems);
+		check(schedulerThreads > 0, "scheduler.threads must be at least 1", problems);
+		check(startJitterSeconds >= 0, "scheduler.start-jitter can't be negative", problems);
+		check(bandwidthLimit >= 0, "bandwidth.limit can't be negative", problems);
+		check(downloadBufferSize > 0, "download.buffer-size must be at least 1", problems);
+		check(progressIntervalSeconds >= 0, "progress.interval can't be negative", problems);
+		check(progressBytes >= 0, "progress.bytes can't be negative", problems);
+		check(logMaxSize > 0, "log.max-size must be at least 1", problems);
+		check(logMaxFiles > 0, "log.max-files must be at least 1", problems);
+		check(logMaxListedFiles >= 0, "log.max-listed-files can't be negative", problems);
+		check(listenerQueueSize > 0, "listeners.queue-size must be at least 1", problems);
+		check(isOverflowPolicy(listenerOverflowPolicy),
+		        "listeners.overflow must be one of block, discard-newest and discard-oldest", problems);
+
+		if (!problems.isEmpty())
+			throw new InvalidSettingsException(problems);
+	}
+
+	public String getDownloadDirectory() {
+		return downloadDirectory;
+	}
+
+	public String getIndexDirectory() {
+		return indexDirectory;
+	}
+
+	public List<String> getFilterExpressions() {
+		return filterExpressions;
+	}
+
+	public List<HostConfig> getHosts() {
+		return hosts;
+	}
+
+	/**
+	 * The host with the given id, the single host.* host for a null id, or null if there is no such host.
+	 */
+	public HostConfig getHost(String id) {
+		return hostsById.get(id);
+	}
+
+	public boolean isMoveEnabled() {
+		return moveEnabled;
+	}
+
+	public String getMoveDirectory() {
+		return moveDirectory;
+	}
+
+	public int getMoveThreads() {
+		return moveThreads;
+	}
+
+	public boolean isPushbulletNotificationEnabled() {
+		return pushbulletNotificationEnabled;
+	}
+
+	public String getPushbulletApiKey() {
+		return pushbulletApiKey;
+	}
+
+	public String getPushbulletApiUrl() {
+		return pushbulletApiUrl;
+	}
+
+	/**
+	 * Zero if downloads are summed up once per run instead.
+	 */
+	public int getPushbulletNotifyWindowSeconds() {
+		return pushbulletNotifyWindowSeconds;
+	}
+
+	public int getSchedulerThreads() {
+		return schedulerThreads;
+	}
+
+	public int getStartJitterSeconds() {
+		return startJitterSeconds;
+	}
+
+	/**
+	 * In bytes per second, across every host; zero for no limit.
+	 */
+	public long getBandwidthLimit() {
+		return bandwidthLimit;
+	}
+
+	/**
+	 * In bytes.
+	 */
+	public int getDownloadBufferSize() {
+		return downloadBufferSize;
+	}
+
+	/**
+	 * True if downloads are written to a hidden staging directory and renamed into place once complete.
+	 */
+	public boolean isStagingEnabled() {
+		return stagingEnabled;
+	}
+
+	/**
+	 * Zero if progress isn't sampled by time.
+	 */
+	public int getProgressIntervalSeconds() {
+		return progressIntervalSeconds;
+	}
+
+	/**
+	 * In bytes; zero if progress isn't sampled by bytes.
+	 */
+	public long getProgressBytes() {
+		return progressBytes;
+	}
+
+	/**
+	 * Blank if the log is written to the console.
+	 */
+	public String getLogFile() {
+		return logFile;
+	}
+
+	/**
+	 * In bytes.
+	 */
+	public long getLogMaxSize() {
+		return logMaxSize;
+	}
+
+	public int getLogMaxFiles() {
+		return logMaxFiles;
+	}
+
+	public int getLogMaxListedFiles() {
+		return logMaxListedFiles;
+	}
+
+	public boolean isJmxMetricsEnabled() {
+		return jmxMetricsEnabled;
+	}
+
+	/**
+	 * Blank if metrics shouldn't be written to a file.
+	 */
+	public String getMetricsTextFile() {
+		return metricsTextFile;
+	}
+
+	public int getMetricsTextFileIntervalSeconds() {
+		return metricsTextFileIntervalSeconds;
+	}
+
+	public boolean isAsyncListenersEnabled() {
+		return asyncListenersEnabled;
+	}
+
+	public int getListenerQueueSize() {
+		return listenerQueueSize;
+	}
+
+	public String getListenerOverflowPolicy() {
+		return listenerOverflowPolicy;
+	}
+
+	/**
+	 * A host with a missing port or an unknown type can't be read at all, so that is reported as a problem
+	 * with the hosts as a whole.
+	 */
+	private List<HostConfig> readHosts(SettingsProvider settingsProvider, List<String> problems) {
+
+		try {
+
+			return settingsProvider.getHosts();
+
+		} catch (RuntimeException e) {
+			problems.add("Unable to read hosts: " + e.getMessage());
+		}
+
+		return new ArrayList<HostConfig>();
+	}
+
+	private void checkHost(HostConfig host, List<String> problems) {
+
+		String name = host.getId() == null ? "host" : "hosts." + host.getId();
+
+		check(isSet(host.getHostname()), name + ".name must be set", problems);
+		check(host.getPort() > 0 && host.getPort() <= 65535, name + ".port must be between 1 and 65535", problems);
+		check(host.getMaxConnections() > 0, name + ".max-connections must be at least 1", problems);
+		check(host.getSegments() > 0, name + ".segments must be at least 1", problems);
+		check(host.getInterval() > 0, name + " interval must be at least 1 minute", problems);
+		check(host.getMinInterval() <= host.getMaxInterval(), name + ".min-interval can't be more than "
+		        + name + ".max-interval", problems);
+		check(host.getBandwidthLimit() >= 0, name + ".bandwidth-limit can't be negative", problems);
+		check(host.getBandwidthWeight() > 0, name + ".bandwidth-weight must be at least 1", problems);
+		check(host.getFullListingEvery() > 0, name + ".full-listing-every must be at least 1", problems);
+		check(isChecksum(host.getChecksum()), name + ".checksum must be blank or one of crc32, crc32c, md5 and sha256",
+		        problems);
+	}
+
+	private boolean isChecksum(String setting) {
+
+		try {
+
+			ChecksumAlgorithm.fromSetting(setting);
+			return true;
+
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private boolean isOverflowPolicy(String setting) {
+
+		try {
+
+			OverflowPolicy.fromSetting(setting);
+			return true;
+
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private void check(boolean valid, String problem, List<String> problems) {
+
+		if (!valid)
+			problems.add(problem);
+	}
+
+	private boolean isSet(String value) {
+		return value != null && !value.trim().isEmpty();
+	}
+}
@@ -3,32 +3,105 @@ package com.github.autoftp.config;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import jftp.client.ClientFactory.ClientType;
 import jftp.exception.FileConfigurationException;
 
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
-import org.apache.commons.configuration.reloading.FileChangedReloadingStrategy;
 import org.joda.time.DateTime;
 
 public class SettingsProvider {
 
 	private static final String INTERVAL = "interval";
-	private static final String HOST_FILE_DIR = "host.file-dir";
-	private static final String HOST_PORT = "host.port";
-	private static final String HOST_TYPE = "host.type";
-	private static final String HOST_PASSWORD = "host.password";
-	private static final String HOST_USER = "host.user";
-	private static final String HOST_NAME = "host.name";
 	private static final String LAST_RUN = "last-run";
+	private static final String POLL_DELAY = "poll-delay";
+	private static final String SINGLE_HOST = "host.";
+	private static final String HOSTS = "hosts";
+	private static final String FILE_DIR = "file-dir";
+	private static final String PORT = "port";
+	private static final String TYPE = "type";
+	private static final String PASSWORD = "password";
+	private static final String USER = "user";
+	private static final String NAME = "name";
+	private static final String MAX_CONNECTIONS = "max-connections";
+	private static final String SEGMENTS = "segments";
+	private static final String SEGMENT_MIN_SIZE = "segment-min-size";
+	private static final String KEEP_ALIVE = "keep-alive";
+	private static final String KEEP_ALIVE_INTERVAL = "keep-alive-interval";
+	private static final String PREWARM = "prewarm";
+	private static final String RECURSIVE = "recursive";
+	private static final String MAX_DEPTH = "max-depth";
+	private static final String INCLUDE_DIRS = "include-dirs";
+	private static final String EXCLUDE_DIRS = "exclude-dirs";
+	private static final String STREAM_LISTING = "stream-listing";
+	private static final String BANDWIDTH_LIMIT = "bandwidth-limit";
+	private static final String BANDWIDTH_WEIGHT = "bandwidth-weight";
+	private static final String GLOBAL_BANDWIDTH_LIMIT = "bandwidth.limit";
+	private static final String DOWNLOAD_BUFFER_SIZE = "download.buffer-size";
+	private static final String DOWNLOAD_STAGING = "download.staging";
+	private static final String PROGRESS_INTERVAL = "progress.interval";
+	private static final String PROGRESS_BYTES = "progress.bytes";
+	private static final String LOG_FILE = "log.file";
+	private static final String LOG_MAX_SIZE = "log.max-size";
+	private static final String LOG_MAX_FILES = "log.max-files";
+	private static final String LOG_MAX_LISTED_FILES = "log.max-listed-files";
+	private static final String ADAPTIVE_INTERVAL = "adaptive-interval";
+	private static final String MIN_INTERVAL = "min-interval";
+	private static final String MAX_INTERVAL = "max-interval";
+	private static final String CHANGE_PROBE = "change-probe";
+	private static final String FULL_LISTING_EVERY = "full-listing-every";
+	private static final String CHECKSUM = "checksum";
+	private static final String DIRECT_DOWNLOAD = "direct-download";
+	private static final String IGNORE_TOUCHED = "ignore-touched";
+	private static final String INDEX_DIRECTORY = "index.directory";
+	private static final String SCHEDULER_THREADS = "scheduler.threads";
+	private static final String SCHEDULER_START_JITTER = "scheduler.start-jitter";
+	private static final String LISTENERS_ASYNC = "listeners.async";
+	private static final String METRICS_JMX = "metrics.jmx";
+	private static final String METRICS_TEXTFILE = "metrics.textfile";
+	private static final String METRICS_TEXTFILE_INTERVAL = "metrics.textfile-interval";
+	private static final String LISTENERS_QUEUE_SIZE = "listeners.queue-size";
+	private static final String LISTENERS_OVERFLOW = "listeners.overflow";
 	private static final String APP_DOWNLOAD_DIR = "download-dir";
 	private static final String FILE_FILTER_LIST = "filters.expression";
 	private static final String MOVE_ENABLED = "move.enabled";
 	private static final String MOVE_DIRECTORY = "move.directory";
+	private static final String MOVE_THREADS = "move.threads";
 	private static final String PUSHBULLET_API_KEY = "pushbullet.api.key";
 	private static final String PUSHBULLET_NOTIFICATIONS_ENABLED = "pushbullet.notify.enabled";
+	private static final String PUSHBULLET_API_URL = "pushbullet.api.url";
+	private static final String PUSHBULLET_NOTIFY_WINDOW = "pushbullet.notify.window";
+
+	private static final int DEFAULT_MAX_CONNECTIONS = 1;
+	private static final int DEFAULT_SEGMENTS = 1;
+	private static final long DEFAULT_SEGMENT_MIN_SIZE_MB = 64;
+	private static final String DEFAULT_INDEX_DIRECTORY = "/etc/autoftp";
+	private static final int DEFAULT_INTERVAL = 60;
+	private static final int DEFAULT_MIN_INTERVAL = 1;
+	private static final int DEFAULT_MAX_INTERVAL_MULTIPLE = 4;
+	private static final int DEFAULT_KEEP_ALIVE_INTERVAL = 60;
+	private static final int DEFAULT_MAX_DEPTH = 5;
+	private static final int DEFAULT_FULL_LISTING_EVERY = 10;
+	private static final int DEFAULT_MAX_SCHEDULER_THREADS = 16;
+	private static final int DEFAULT_START_JITTER = 60;
+	private static final int DEFAULT_LISTENER_QUEUE_SIZE = 1000;
+	private static final int DEFAULT_MOVE_THREADS = 2;
+	private static final int DEFAULT_METRICS_TEXTFILE_INTERVAL = 15;
+	private static final int DEFAULT_DOWNLOAD_BUFFER_SIZE_KB = 256;
+	private static final int DEFAULT_PROGRESS_INTERVAL = 10;
+	private static final long DEFAULT_LOG_MAX_SIZE_MB = 10;
+	private static final int DEFAULT_LOG_MAX_FILES = 5;
+	private static final int DEFAULT_LOG_MAX_LISTED_FILES = 100;
+	private static final String DEFAULT_LISTENER_OVERFLOW = "block";
+	private static final String DEFAULT_PUSHBULLET_API_URL = "https://api.pushbullet.com/v2/pushes";
+	private static final long MB = 1024 * 1024;
+	private static final long KB = 1024;
 
 	private String configFileLocation;
 
@@ -51,7 +124,6 @@ public class SettingsProvider {
 				xmlConfigFile.createNewFile();
 
 			propertiesConfiguration = new PropertiesConfiguration(xmlConfigFile);
-			propertiesConfiguration.setReloadingStrategy(new FileChangedReloadingStrategy());
 
 		} catch (ConfigurationException e) {
 			throw new FileConfigurationException("Unable to load config file", e);
@@ -60,6 +132,25 @@ public class SettingsProvider {
 		}
 	}
 
+	/**
+	 * Re-reads the config file. Nothing else re-reads it, so changes made to the file by hand are only seen
+	 * after this is called; see {@link SettingsWatcher}.
+	 */
+	public void reload() {
+
+		try {
+
+			propertiesConfiguration.refresh();
+
+		} catch (ConfigurationException e) {
+			throw new FileConfigurationException("Unable to reload config file", e);
+		}
+	}
+
+	public File getConfigFile() {
+		return new File(configFileLocation);
+	}
+
 	public void setDownloadDirectory(String directory) {
 
 		propertiesConfiguration.setProperty(APP_DOWNLOAD_DIR, directory);
@@ -71,6 +162,10 @@ public class SettingsProvider {
 		return propertiesConfiguration.getString(APP_DOWNLOAD_DIR);
 	}
 
+	public String getIndexDirectory() {
+		return propertiesConfiguration.getString(INDEX_DIRECTORY, DEFAULT_INDEX_DIRECTORY);
+	}
+
 	public boolean isMoveEnabled() {
 		return propertiesConfiguration.getBoolean(MOVE_ENABLED);
 	}
@@ -86,6 +181,10 @@ public class SettingsProvider {
 		return propertiesConfiguration.getString(MOVE_DIRECTORY);
 	}
 
+	public int getMoveThreads() {
+		return propertiesConfiguration.getInt(MOVE_THREADS, DEFAULT_MOVE_THREADS);
+	}
+
 	public String getPushbulletApiKey() {
 		return propertiesConfiguration.getString(PUSHBULLET_API_KEY);
 	}
@@ -108,6 +207,14 @@ public class SettingsProvider {
 		saveConfig();
 	}
 
+	public String getPushbulletApiUrl() {
+		return propertiesConfiguration.getString(PUSHBULLET_API_URL, DEFAULT_PUSHBULLET_API_URL);
+	}
+
+	public int getPushbulletNotifyWindowSeconds() {
+		return propertiesConfiguration.getInt(PUSHBULLET_NOTIFY_WINDOW, 0);
+	}
+
 	public void setMoveDirectory(String moveDirectory) {
 
 		propertiesConfiguration.setProperty(MOVE_DIRECTORY, moveDirectory);
@@ -123,57 +230,213 @@ public class SettingsProvider {
 	}
 
 	public List<String> getFilterExpressions() {
+		return getStringList(FILE_FILTER_LIST);
+	}
 
-		List<Object> configObjects = propertiesConfiguration.getList(FILE_FILTER_LIST);
-		List<String> filters = new ArrayList<String>();
-
-		for (Object object : configObjects)
-			filters.add(object.toString());
+	public void setLastRunDate(DateTime date) {
+		setLastRunDate(null, date);
+	}
 
-		return filters;
+	public DateTime getLastRunDate() {
+		return getLastRunDate(null);
 	}
 
-	public void setLastRunDate(DateTime date) {
+	public void setLastRunDate(HostConfig host, DateTime date) {
 
-		propertiesConfiguration.setProperty(LAST_RUN, date.getMillis());
+		propertiesConfiguration.setProperty(lastRunKey(host), date.getMillis());
 
 		saveConfig();
 	}
 
-	public DateTime getLastRunDate() {
+	/**
+	 * The last run set in the config file, which is only a starting point: runs are recorded in the
+	 * runtime state journal rather than here.
+	 */
+	public DateTime getLastRunDate(HostConfig host) {
 
 		long timeAsOfNowInMilliseconds = DateTime.now().getMillis();
-		long lastRunInMilliseconds = propertiesConfiguration.getLong(LAST_RUN, timeAsOfNowInMilliseconds);
+		long lastRunInMilliseconds = propertiesConfiguration.getLong(lastRunKey(host), timeAsOfNowInMilliseconds);
 
 		return new DateTime(lastRunInMilliseconds);
 	}
 
+	/**
+	 * The delay, in seconds, chosen before the host's next check when its interval is adaptive, as older
+	 * versions recorded it, only read to carry it over into the runtime state journal.
+	 */
+	public long getPollDelay(HostConfig host) {
+		return propertiesConfiguration.getLong(runtimeKey(host, POLL_DELAY), 0);
+	}
+
 	public void setHost(HostConfig hostConfig) {
 
-		propertiesConfiguration.setProperty(HOST_NAME, hostConfig.getHostname());
-		propertiesConfiguration.setProperty(HOST_PASSWORD, hostConfig.getPassword());
-		propertiesConfiguration.setProperty(HOST_PORT, hostConfig.getPort());
-		propertiesConfiguration.setProperty(HOST_TYPE, hostConfig.getClientType().toString());
-		propertiesConfiguration.setProperty(HOST_USER, hostConfig.getUsername());
-		propertiesConfiguration.setProperty(HOST_FILE_DIR, hostConfig.getFileDirectory());
+		String prefix = prefixFor(hostConfig.getId());
+
+		propertiesConfiguration.setProperty(prefix + NAME, hostConfig.getHostname());
+		propertiesConfiguration.setProperty(prefix + PASSWORD, hostConfig.getPassword());
+		propertiesConfiguration.setProperty(prefix + PORT, hostConfig.getPort());
+		propertiesConfiguration.setProperty(prefix + TYPE, hostConfig.getClientType().toString());
+		propertiesConfiguration.setProperty(prefix + USER, hostConfig.getUsername());
+		propertiesConfiguration.setProperty(prefix + FILE_DIR, hostConfig.getFileDirectory());
+		propertiesConfiguration.setProperty(prefix + MAX_CONNECTIONS, hostConfig.getMaxConnections());
+		propertiesConfiguration.setProperty(prefix + SEGMENTS, hostConfig.getSegments());
+		propertiesConfiguration.setProperty(prefix + SEGMENT_MIN_SIZE, hostConfig.getMinSegmentSize() / MB);
+		propertiesConfiguration.setProperty(prefix + KEEP_ALIVE, hostConfig.isKeepAlive());
+		propertiesConfiguration.setProperty(prefix + KEEP_ALIVE_INTERVAL, hostConfig.getKeepAliveInterval());
+		propertiesConfiguration.setProperty(prefix + PREWARM, hostConfig.getPrewarmSeconds());
+		propertiesConfiguration.setProperty(prefix + RECURSIVE, hostConfig.isRecursive());
+		propertiesConfiguration.setProperty(prefix + MAX_DEPTH, hostConfig.getMaxDepth());
+		propertiesConfiguration.setProperty(prefix + INCLUDE_DIRS, hostConfig.getIncludedDirectories());
+		propertiesConfiguration.setProperty(prefix + EXCLUDE_DIRS, hostConfig.getExcludedDirectories());
+		propertiesConfiguration.setProperty(prefix + STREAM_LISTING, hostConfig.isStreamingListing());
+		propertiesConfiguration.setProperty(prefix + BANDWIDTH_LIMIT, hostConfig.getBandwidthLimit() / KB);
+		propertiesConfiguration.setProperty(prefix + BANDWIDTH_WEIGHT, hostConfig.getBandwidthWeight());
+		propertiesConfiguration.setProperty(prefix + CHECKSUM, hostConfig.getChecksum());
+		propertiesConfiguration.setProperty(prefix + DIRECT_DOWNLOAD, hostConfig.isDirectDownload());
+		propertiesConfiguration.setProperty(prefix + IGNORE_TOUCHED, hostConfig.isIgnoreTouched());
+
+		if (hostConfig.getId() != null)
+			propertiesConfiguration.setProperty(prefix + INTERVAL, hostConfig.getInterval());
 
 		saveConfig();
 	}
 
 	public HostConfig getHost() {
 
-		HostConfig hostConfig = new HostConfig();
+		HostConfig hostConfig = readHost(SINGLE_HOST);
+
+		hostConfig.setInterval(propertiesConfiguration.getInt(INTERVAL, DEFAULT_INTERVAL));
+		readIntervalBounds(SINGLE_HOST, hostConfig);
+
+		return hostConfig;
+	}
+
+	public HostConfig getHost(String id) {
 
-		hostConfig.setHostname(propertiesConfiguration.getString(HOST_NAME));
-		hostConfig.setPort(propertiesConfiguration.getInt(HOST_PORT));
-		hostConfig.setUsername(propertiesConfiguration.getString(HOST_USER));
-		hostConfig.setPassword(propertiesConfiguration.getString(HOST_PASSWORD));
-		hostConfig.setClientType(ClientType.valueOf(propertiesConfiguration.getString(HOST_TYPE)));
-		hostConfig.setFileDirectory(propertiesConfiguration.getString(HOST_FILE_DIR));
+		if (id == null)
+			return getHost();
+
+		HostConfig hostConfig = readHost(prefixFor(id));
+
+		hostConfig.setId(id);
+		hostConfig.setInterval(propertiesConfiguration.getInt(prefixFor(id) + INTERVAL,
+		        propertiesConfiguration.getInt(INTERVAL, DEFAULT_INTERVAL)));
+		readIntervalBounds(prefixFor(id), hostConfig);
 
 		return hostConfig;
 	}
 
+	/**
+	 * Returns every host defined with hosts.&lt;id&gt;.* keys, in the order they appear in the file. If none
+	 * are defined then the single host.* host is returned on its own.
+	 */
+	public List<HostConfig> getHosts() {
+
+		Set<String> ids = new LinkedHashSet<String>();
+		Iterator<String> keys = propertiesConfiguration.getKeys(HOSTS);
+
+		while (keys.hasNext()) {
+
+			String[] keyParts = keys.next().split("\\.", 3);
+
+			if (keyParts.length == 3)
+				ids.add(keyParts[1]);
+		}
+
+		List<HostConfig> hosts = new ArrayList<HostConfig>();
+
+		if (ids.isEmpty())
+			hosts.add(getHost());
+
+		for (String id : ids)
+			hosts.add(getHost(id));
+
+		return hosts;
+	}
+
+	public int getSchedulerThreads(int hostCount) {
+		return propertiesConfiguration.getInt(SCHEDULER_THREADS, Math.min(hostCount, DEFAULT_MAX_SCHEDULER_THREADS));
+	}
+
+	public int getStartJitterSeconds() {
+		return propertiesConfiguration.getInt(SCHEDULER_START_JITTER, DEFAULT_START_JITTER);
+	}
+
+	/**
+	 * In bytes per second, across every host; zero for no limit.
+	 */
+	public long getBandwidthLimit() {
+		return propertiesConfiguration.getLong(GLOBAL_BANDWIDTH_LIMIT, 0) * KB;
+	}
+
+	/**
+	 * In bytes.
+	 */
+	public int getDownloadBufferSize() {
+		return (int) (propertiesConfiguration.getInt(DOWNLOAD_BUFFER_SIZE, DEFAULT_DOWNLOAD_BUFFER_SIZE_KB) * KB);
+	}
+
+	public boolean isStagingEnabled() {
+		return propertiesConfiguration.getBoolean(DOWNLOAD_STAGING, false);
+	}
+
+	public int getProgressIntervalSeconds() {
+		return propertiesConfiguration.getInt(PROGRESS_INTERVAL, DEFAULT_PROGRESS_INTERVAL);
+	}
+
+	/**
+	 * In bytes.
+	 */
+	public long getProgressBytes() {
+		return propertiesConfiguration.getLong(PROGRESS_BYTES, 0) * MB;
+	}
+
+	public String getLogFile() {
+		return propertiesConfiguration.getString(LOG_FILE, "");
+	}
+
+	/**
+	 * In bytes.
+	 */
+	public long getLogMaxSize() {
+		return propertiesConfiguration.getLong(LOG_MAX_SIZE, DEFAULT_LOG_MAX_SIZE_MB) * MB;
+	}
+
+	public int getLogMaxFiles() {
+		return propertiesConfiguration.getInt(LOG_MAX_FILES, DEFAULT_LOG_MAX_FILES);
+	}
+
+	public int getLogMaxListedFiles() {
+		return propertiesConfiguration.getInt(LOG_MAX_LISTED_FILES, DEFAULT_LOG_MAX_LISTED_FILES);
+	}
+
+	public boolean isJmxMetricsEnabled() {
+		return propertiesConfiguration.getBoolean(METRICS_JMX, false);
+	}
+
+	/**
+	 * Blank if metrics shouldn't be written to a file.
+	 */
+	public String getMetricsTextFile() {
+		return propertiesConfiguration.getString(METRICS_TEXTFILE, "");
+	}
+
+	public int getMetricsTextFileIntervalSeconds() {
+		return propertiesConfiguration.getInt(METRICS_TEXTFILE_INTERVAL, DEFAULT_METRICS_TEXTFILE_INTERVAL);
+	}
+
+	public boolean isAsyncListenersEnabled() {
+		return propertiesConfiguration.getBoolean(LISTENERS_ASYNC, false);
+	}
+
+	public int getListenerQueueSize() {
+		return propertiesConfiguration.getInt(LISTENERS_QUEUE_SIZE, DEFAULT_LISTENER_QUEUE_SIZE);
+	}
+
+	public String getListenerOverflowPolicy() {
+		return propertiesConfiguration.getString(LISTENERS_OVERFLOW, DEFAULT_LISTENER_OVERFLOW);
+	}
+
 	public void setConnectionInterval(int minutes) {
 
 		propertiesConfiguration.setProperty(INTERVAL, minutes);
@@ -185,6 +448,84 @@ public class SettingsProvider {
 		return propertiesConfiguration.getInt(INTERVAL);
 	}
 
+	private HostConfig readHost(String prefix) {
+
+		HostConfig hostConfig = new HostConfig();
+
+		hostConfig.setHostname(propertiesConfiguration.getString(prefix + NAME));
+		hostConfig.setPort(propertiesConfiguration.getInt(prefix + PORT));
+		hostConfig.setUsername(propertiesConfiguration.getString(prefix + USER));
+		hostConfig.setPassword(propertiesConfiguration.getString(prefix + PASSWORD));
+		hostConfig.setClientType(ClientType.valueOf(propertiesConfiguration.getString(prefix + TYPE)));
+		hostConfig.setFileDirectory(propertiesConfiguration.getString(prefix + FILE_DIR));
+		hostConfig.setMaxConnections(propertiesConfiguration.getInt(prefix + MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS));
+		hostConfig.setSegments(propertiesConfiguration.getInt(prefix + SEGMENTS, DEFAULT_SEGMENTS));
+		hostConfig.setMinSegmentSize(propertiesConfiguration.getLong(prefix + SEGMENT_MIN_SIZE, DEFAULT_SEGMENT_MIN_SIZE_MB)
+		        * MB);
+		hostConfig.setKeepAlive(propertiesConfiguration.getBoolean(prefix + KEEP_ALIVE, false));
+		hostConfig.setKeepAliveInterval(propertiesConfiguration.getInt(prefix + KEEP_ALIVE_INTERVAL,
+		        DEFAULT_KEEP_ALIVE_INTERVAL));
+		hostConfig.setPrewarmSeconds(propertiesConfiguration.getInt(prefix + PREWARM, 0));
+		hostConfig.setRecursive(propertiesConfiguration.getBoolean(prefix + RECURSIVE, false));
+		hostConfig.setMaxDepth(propertiesConfiguration.getInt(prefix + MAX_DEPTH, DEFAULT_MAX_DEPTH));
+		hostConfig.setIncludedDirectories(getNonEmptyStringList(prefix + INCLUDE_DIRS));
+		hostConfig.setExcludedDirectories(getNonEmptyStringList(prefix + EXCLUDE_DIRS));
+		hostConfig.setStreamingListing(propertiesConfiguration.getBoolean(prefix + STREAM_LISTING, false));
+		hostConfig.setBandwidthLimit(propertiesConfiguration.getLong(prefix + BANDWIDTH_LIMIT, 0) * KB);
+		hostConfig.setBandwidthWeight(propertiesConfiguration.getInt(prefix + BANDWIDTH_WEIGHT, 1));
+		hostConfig.setChangeProbe(propertiesConfiguration.getBoolean(prefix + CHANGE_PROBE, false));
+		hostConfig.setFullListingEvery(propertiesConfiguration.getInt(prefix + FULL_LISTING_EVERY,
+		        DEFAULT_FULL_LISTING_EVERY));
+		hostConfig.setChecksum(propertiesConfiguration.getString(prefix + CHECKSUM, ""));
+		hostConfig.setDirectDownload(propertiesConfiguration.getBoolean(prefix + DIRECT_DOWNLOAD, false));
+		hostConfig.setIgnoreTouched(propertiesConfiguration.getBoolean(prefix + IGNORE_TOUCHED, false));
+
+		return hostConfig;
+	}
+
+	private List<String> getStringList(String key) {
+
+		List<Object> configObjects = propertiesConfiguration.getList(key);
+		List<String> values = new ArrayList<String>();
+
+		for (Object object : configObjects)
+			values.add(object.toString());
+
+		return values;
+	}
+
+	private List<String> getNonEmptyStringList(String key) {
+
+		List<String> values = getStringList(key);
+
+		values.removeAll(Collections.singleton(""));
+
+		return values;
+	}
+
+	private String prefixFor(String hostId) {
+		return hostId == null ? SINGLE_HOST : HOSTS + "." + hostId + ".";
+	}
+
+	/**
+	 * The adaptive bounds default to one minute and four times the host's interval.
+	 */
+	private void readIntervalBounds(String prefix, HostConfig hostConfig) {
+
+		hostConfig.setAdaptiveInterval(propertiesConfiguration.getBoolean(prefix + ADAPTIVE_INTERVAL, false));
+		hostConfig.setMinInterval(propertiesConfiguration.getInt(prefix + MIN_INTERVAL, DEFAULT_MIN_INTERVAL));
+		hostConfig.setMaxInterval(propertiesConfiguration.getInt(prefix + MAX_INTERVAL, hostConfig.getInterval()
+		        * DEFAULT_MAX_INTERVAL_MULTIPLE));
+	}
+
+	private String lastRunKey(HostConfig host) {
+		return runtimeKey(host, LAST_RUN);
+	}
+
+	private String runtimeKey(HostConfig host, String key) {
+		return (host == null || host.getId() == null) ? key : prefixFor(host.getId()) + key;
+	}
+
 	private void saveConfig() {
 
 		try {
@@ -0,0 +1,179 @@
+package com.github.autoftp.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import jftp.exception.FileConfigurationException;
+
+/**
+ * Holds the current {@link Settings} snapshot and, once started, replaces it whenever the config file
+ * changes. A new snapshot is only swapped in once it has been read and checked in full, so readers see
+ * either the old settings or the new ones, never a mix, and a bad edit leaves the old settings in place.
+ * <p>
+ * Editors often write a file in several steps, so a change is only read once the file has been quiet for
+ * a moment.
+ */
+public class SettingsWatcher {
+
+	private static final long SETTLE_MILLIS = 200;
+
+	private SettingsProvider settingsProvider;
+	private volatile Settings settings;
+	private WatchService watchService;
+	private Thread watchThread;
+
+	public interface ErrorHandler {
+
+		void onReloadFailed(String message);
+	}
+
+	public SettingsWatcher(String configFileLocation) {
+		this(new SettingsProvider(configFileLocation));
+	}
+
+	public SettingsWatcher(SettingsProvider settingsProvider) {
+
+		this.settingsProvider = settingsProvider;
+		this.settings = read();
+	}
+
+	public Settings get() {
+		return settings;
+	}
+
+	/**
+	 * For the runtime state still kept in the config file, which isn't part of a snapshot.
+	 */
+	public SettingsProvider getSettingsProvider() {
+		return settingsProvider;
+	}
+
+	/**
+	 * Re-reads the config file, keeping the current settings if it can't be read or isn't valid.
+	 */
+	public void reload() throws InvalidSettingsException {
+
+		settingsProvider.reload();
+		settings = read();
+	}
+
+	/**
+	 * A setting that is required but missing, or that isn't the right type, can't be read at all.
+	 */
+	private Settings read() {
+
+		try {
+
+			return new Settings(settingsProvider);
+
+		} catch (InvalidSettingsException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw new InvalidSettingsException(Collections.singletonList(String.valueOf(e.getMessage())));
+		}
+	}
+
+	public synchronized void start(final ErrorHandler errorHandler) throws IOException {
+
+		if (watchThread != null)
+			return;
+
+		final File configFile = settingsProvider.getConfigFile().getAbsoluteFile();
+		Path directory = configFile.getParentFile().toPath();
+
+		watchService = directory.getFileSystem().newWatchService();
+		directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+		watchThread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				watch(configFile.getName(), errorHandler);
+			}
+		}, "settings-watcher");
+
+		watchThread.setDaemon(true);
+		watchThread.start();
+	}
+
+	public synchronized void stop() {
+
+		if (watchThread == null)
+			return;
+
+		watchThread.interrupt();
+		watchThread = null;
+
+		try {
+
+			watchService.close();
+
+		} catch (IOException e) {
+			// The watching thread has already been told to stop, which is all that matters.
+		}
+	}
+
+	private void watch(String fileName, ErrorHandler errorHandler) {
+
+		try {
+
+			while (!Thread.currentThread().isInterrupted()) {
+
+				if (!isConfigFileChanged(watchService.take(), fileName))
+					continue;
+
+				TimeUnit.MILLISECONDS.sleep(SETTLE_MILLIS);
+				discardPendingEvents();
+
+				try {
+
+					reload();
+
+				} catch (InvalidSettingsException e) {
+					errorHandler.onReloadFailed(e.getMessage() + ". Keeping the previous settings.");
+				} catch (FileConfigurationException e) {
+					errorHandler.onReloadFailed(e.getMessage() + ". Keeping the previous settings.");
+				}
+			}
+
+		} catch (InterruptedException e) {
+			return;
+		} catch (ClosedWatchServiceException e) {
+			return;
+		}
+	}
+
+	private boolean isConfigFileChanged(WatchKey key, String fileName) {
+
+		boolean changed = false;
+
+		for (WatchEvent<?> event : key.pollEvents()) {
+
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context().toString()))
+				changed = true;
+		}
+
+		key.reset();
+
+		return changed;
+	}
+
+	private void discardPendingEvents() {
+
+		WatchKey key;
+
+		while ((key = watchService.poll()) != null) {
+
+			key.pollEvents();
+			key.reset();
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package com.github.autoftp.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import jftp.connection.FtpFile;
+
+/**
+ * An on-disk record of every file that has been downloaded from a host, so that each scan can tell which
+ * remote files are new without relying on modified times.
+ * <p>
+ * The file is an open-addressing hash table that is memory-mapped rather than read onto the heap. Each
+ * slot holds a 64-bit hash of the remote full path along with the size and modified time the file had when
+ * it was downloaded. A file is considered seen when its path is in the table with the same size and modified
+ * time, so one that is rewritten in place is fetched again. Modified times can be left out of the match, for
+ * servers whose listed times change on their own, in which case a file that is only touched is not fetched
+ * again but one rewritten with a different size still is.
+ */
+public class SeenFileIndex {
+
+	private static final int MAGIC = 0x41465849;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 24;
+	private static final int SLOT_SIZE = 24;
+	private static final int DEFAULT_CAPACITY = 1 << 16;
+	private static final long EMPTY = 0;
+
+	private File indexFile;
+	private RandomAccessFile file;
+	private MappedByteBuffer table;
+	private int capacity;
+	private int count;
+	private boolean created;
+	private boolean matchModifiedTime = true;
+
+	public SeenFileIndex(File indexFile) {
+		this(indexFile, DEFAULT_CAPACITY);
+	}
+
+	SeenFileIndex(File indexFile, int initialCapacity) {
+
+		this.indexFile = indexFile;
+
+		try {
+
+			created = !indexFile.exists() || indexFile.length() == 0;
+
+			if (created)
+				createTable(indexFile, Integer.highestOneBit(Math.max(2, initialCapacity - 1)) << 1);
+			else
+				openTable();
+
+		} catch (IOException e) {
+			throw new SeenFileIndexException(String.format("Unable to open seen file index %s", indexFile), e);
+		}
+	}
+
+	/**
+	 * True if the index file didn't exist before it was opened, meaning nothing has been recorded yet.
+	 */
+	public boolean isNewlyCreated() {
+		return created;
+	}
+
+	public synchronized int size() {
+		return count;
+	}
+
+	public synchronized void setMatchModifiedTime(boolean matchModifiedTime) {
+		this.matchModifiedTime = matchModifiedTime;
+	}
+
+	public synchronized boolean isSeen(FtpFile remoteFile) {
+
+		int slot = findSlot(hash(remoteFile.getFullPath()));
+
+		if (table.getLong(offset(slot)) == EMPTY || table.getLong(offset(slot) + 8) != remoteFile.getSize())
+			return false;
+
+		return !matchModifiedTime || table.getLong(offset(slot) + 16) == remoteFile.getLastModified().getMillis();
+	}
+
+	public synchronized void record(FtpFile remoteFile) {
+
+		if (count + 1 > capacity - (capacity >> 2))
+			grow();
+
+		long key = hash(remoteFile.getFullPath());
+		int slot = findSlot(key);
+
+		if (table.getLong(offset(slot)) == EMPTY) {
+
+			count++;
+			table.putInt(12, count);
+		}
+
+		table.putLong(offset(slot), key);
+		table.putLong(offset(slot) + 8, remoteFile.getSize());
+		table.putLong(offset(slot) + 16, remoteFile.getLastModified().getMillis());
+	}
+
+	/**
+	 * Writes any recorded entries still held in the page cache through to disk.
+	 */
+	public synchronized void flush() {
+		table.force();
+	}
+
+	public synchronized void close() {
+
+		flush();
+
+		try {
+			file.close();
+		} catch (IOException e) {
+			throw new SeenFileIndexException(String.format("Unable to close seen file index %s", indexFile), e);
+		}
+	}
+
+	private int findSlot(long key) {
+
+		int mask = capacity - 1;
+		int slot = (int) (key ^ (key >>> 32)) & mask;
+
+		while (true) {
+
+			long current = table.getLong(offset(slot));
+
+			if (current == EMPTY || current == key)
+				return slot;
+
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private void grow() {
+
+		File grownFile = new File(indexFile.getPath() + ".grow");
+
+		MappedByteBuffer oldTable = table;
+		RandomAccessFile oldFile = file;
+		int oldCapacity = capacity;
+
+		try {
+
+			createTable(grownFile, oldCapacity << 1);
+
+			for (int slot = 0; slot < oldCapacity; slot++) {
+
+				int oldOffset = HEADER_SIZE + slot * SLOT_SIZE;
+				long key = oldTable.getLong(oldOffset);
+
+				if (key == EMPTY)
+					continue;
+
+				int newSlot = findSlot(key);
+
+				table.putLong(offset(newSlot), key);
+				table.putLong(offset(newSlot) + 8, oldTable.getLong(oldOffset + 8));
+				table.putLong(offset(newSlot) + 16, oldTable.getLong(oldOffset + 16));
+			}
+
+			table.putInt(12, count);
+			table.force();
+
+			oldFile.close();
+
+			if (!grownFile.renameTo(indexFile))
+				throw new IOException(String.format("Unable to replace %s with %s", indexFile, grownFile));
+
+		} catch (IOException e) {
+			throw new SeenFileIndexException(String.format("Unable to grow seen file index %s", indexFile), e);
+		}
+	}
+
+	private void createTable(File target, int newCapacity) throws IOException {
+
+		file = new RandomAccessFile(target, "rw");
+		file.setLength(HEADER_SIZE + (long) newCapacity * SLOT_SIZE);
+
+		table = file.getChannel().map(MapMode.READ_WRITE, 0, file.length());
+		capacity = newCapacity;
+
+		table.putInt(0, MAGIC);
+		table.putInt(4, VERSION);
+		table.putInt(8, capacity);
+		table.putInt(12, count);
+	}
+
+	private void openTable() throws IOException {
+
+		file = new RandomAccessFile(indexFile, "rw");
+
+		FileChannel channel = file.getChannel();
+		table = channel.map(MapMode.READ_WRITE, 0, channel.size());
+
+		if (table.getInt(0) != MAGIC || table.getInt(4) != VERSION)
+			throw new SeenFileIndexException(String.format("%s is not a seen file index", indexFile));
+
+		capacity = table.getInt(8);
+		count = table.getInt(12);
+	}
+
+	private int offset(int slot) {
+		return HEADER_SIZE + slot * SLOT_SIZE;
+	}
+
+	/**
+	 * 64-bit FNV-1a of the path, finished with the MurmurHash3 mixer. Zero marks an empty slot, so it is
+	 * never returned.
+	 */
+	private long hash(String path) {
+
+		long hash = 0xcbf29ce484222325L;
+
+		for (int i = 0; i < path.length(); i++) {
+
+			hash ^= path.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+
+		return hash == EMPTY ? 1 : hash;
+	}
+}
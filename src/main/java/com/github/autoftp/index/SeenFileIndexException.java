@@ -0,0 +1,14 @@
+package com.github.autoftp.index;
+
+public class SeenFileIndexException extends RuntimeException {
+
+	private static final long serialVersionUID = 4126911720316483452L;
+
+	public SeenFileIndexException(String message) {
+		super(message);
+	}
+
+	public SeenFileIndexException(String message, Exception cause) {
+		super(message, cause);
+	}
+}
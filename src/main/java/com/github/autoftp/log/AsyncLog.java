@@ -0,0 +1,272 @@
+package com.github.autoftp.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.github.autoftp.config.Settings;
+
+/**
+ * The application's log, shared by the screen and the strategies. Logging a line only records its time,
+ * category and message in a fixed ring of slots and returns; a thread of its own formats whatever has
+ * built up and writes it to the output in a single batch. Slots are reused, so nothing is allocated for a
+ * line beyond its message, and the time is only formatted afresh when the second changes.
+ * <p>
+ * When the ring is full, logging waits for room rather than losing lines. Anything still in the ring when
+ * the process exits is written out first.
+ */
+public class AsyncLog {
+
+	private static final int CAPACITY = 8192;
+	private static final long CLOSE_TIMEOUT_SECONDS = 5;
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	private static AsyncLog shared;
+
+	private long[] times;
+	private Category[] categories;
+	private String[] messages;
+	private int head;
+	private int count;
+	private boolean closed;
+
+	private ReentrantLock lock = new ReentrantLock();
+	private Condition notEmpty = lock.newCondition();
+	private Condition notFull = lock.newCondition();
+
+	private Object outputLock = new Object();
+	private LogOutput output;
+	private TimestampFormat timestampFormat = new TimestampFormat();
+	private StringBuilder batch = new StringBuilder();
+	private Thread writer;
+
+	public AsyncLog(LogOutput output) {
+		this(output, CAPACITY);
+	}
+
+	AsyncLog(LogOutput output, int capacity) {
+
+		this.output = output;
+
+		times = new long[capacity];
+		categories = new Category[capacity];
+		messages = new String[capacity];
+
+		writer = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "log-writer");
+
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * The log everything writes to, on the console until it is configured otherwise.
+	 */
+	public static synchronized AsyncLog shared() {
+
+		if (shared == null) {
+
+			shared = new AsyncLog(new ConsoleOutput(System.out));
+
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					shared.close();
+				}
+			}, "log-shutdown"));
+		}
+
+		return shared;
+	}
+
+	/**
+	 * Writes to log.file, rotating it at log.max-size, or to the console if it isn't set.
+	 */
+	public void configure(Settings settings) {
+
+		if (settings.getLogFile().trim().isEmpty())
+			setOutput(new ConsoleOutput(System.out));
+		else
+			setOutput(new RotatingFileOutput(new File(settings.getLogFile().trim()), settings.getLogMaxSize(),
+			        settings.getLogMaxFiles()));
+	}
+
+	/**
+	 * Lines already taken by the writer still go to the old output, which is then closed.
+	 */
+	public void setOutput(LogOutput output) {
+
+		synchronized (outputLock) {
+
+			this.output.close();
+			this.output = output;
+		}
+	}
+
+	public void log(Category category, String message) {
+
+		long time = System.currentTimeMillis();
+
+		lock.lock();
+
+		try {
+
+			while (count == messages.length && !closed)
+				notFull.awaitUninterruptibly();
+
+			if (!closed) {
+
+				int tail = (head + count) % messages.length;
+
+				times[tail] = time;
+				categories[tail] = category;
+				messages[tail] = message;
+				count++;
+
+				notEmpty.signal();
+				return;
+			}
+
+		} finally {
+			lock.unlock();
+		}
+
+		writeDirectly(time, category, message);
+	}
+
+	/**
+	 * Writes out everything logged so far, waiting up to a few seconds, then stops the writer. Lines logged
+	 * afterwards are written straight away on the thread that logs them.
+	 */
+	public void close() {
+
+		lock.lock();
+
+		try {
+
+			closed = true;
+
+			notEmpty.signalAll();
+			notFull.signalAll();
+
+		} finally {
+			lock.unlock();
+		}
+
+		try {
+
+			writer.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT_SECONDS));
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		synchronized (outputLock) {
+			output.close();
+		}
+	}
+
+	/**
+	 * Slots are only handed back once their lines have been formatted, so producers never overwrite a line
+	 * that is still being read.
+	 */
+	private void drain() {
+
+		while (true) {
+
+			int first;
+			int taken;
+
+			lock.lock();
+
+			try {
+
+				while (count == 0) {
+
+					if (closed)
+						return;
+
+					notEmpty.awaitUninterruptibly();
+				}
+
+				first = head;
+				taken = count;
+
+			} finally {
+				lock.unlock();
+			}
+
+			batch.setLength(0);
+
+			for (int i = 0; i < taken; i++) {
+
+				int slot = (first + i) % messages.length;
+
+				format(batch, timestampFormat, times[slot], categories[slot], messages[slot]);
+			}
+
+			lock.lock();
+
+			try {
+
+				for (int i = 0; i < taken; i++)
+					messages[(first + i) % messages.length] = null;
+
+				head = (first + taken) % messages.length;
+				count -= taken;
+
+				notFull.signalAll();
+
+			} finally {
+				lock.unlock();
+			}
+
+			write(batch);
+		}
+	}
+
+	private void format(StringBuilder lines, TimestampFormat timestamps, long time, Category category, String message) {
+
+		timestamps.appendTo(lines, time);
+		lines.append(" [").append(category.getLabel()).append("]\t ").append(message).append(LINE_SEPARATOR);
+	}
+
+	/**
+	 * A batch that can't be written to the output goes to the console instead, so that it isn't lost.
+	 */
+	private void write(CharSequence lines) {
+
+		synchronized (outputLock) {
+
+			try {
+
+				output.write(lines);
+
+			} catch (IOException e) {
+
+				System.err.print(lines);
+				System.err.println("Unable to write log: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Only after the log is closed, when the writer may still be finishing its last batch, so nothing of
+	 * the writer's is reused.
+	 */
+	private void writeDirectly(long time, Category category, String message) {
+
+		StringBuilder line = new StringBuilder();
+
+		format(line, new TimestampFormat(), time, category, message);
+		write(line);
+	}
+}
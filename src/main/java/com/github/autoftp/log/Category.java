@@ -0,0 +1,27 @@
+package com.github.autoftp.log;
+
+/**
+ * What a line in the log is about, shown in brackets after its time.
+ */
+public enum Category {
+
+	INFO("Info"),
+
+	ERROR("Error"),
+
+	DOWNLOAD("Download"),
+
+	FILE("File"),
+
+	PROGRESS("Progress");
+
+	private String label;
+
+	private Category(String label) {
+		this.label = label;
+	}
+
+	public String getLabel() {
+		return label;
+	}
+}
@@ -0,0 +1,27 @@
+package com.github.autoftp.log;
+
+import java.io.PrintStream;
+
+public class ConsoleOutput implements LogOutput {
+
+	private PrintStream out;
+
+	public ConsoleOutput(PrintStream out) {
+		this.out = out;
+	}
+
+	@Override
+	public void write(CharSequence batch) {
+
+		out.append(batch);
+		out.flush();
+	}
+
+	/**
+	 * The console is left open for anything else printing to it.
+	 */
+	@Override
+	public void close() {
+		out.flush();
+	}
+}
@@ -0,0 +1,13 @@
+package com.github.autoftp.log;
+
+import java.io.IOException;
+
+/**
+ * Where the log's lines end up. Lines are written a batch at a time, from the log's own thread only.
+ */
+public interface LogOutput {
+
+	void write(CharSequence batch) throws IOException;
+
+	void close();
+}
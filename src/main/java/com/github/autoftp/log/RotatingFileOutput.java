@@ -0,0 +1,87 @@
+package com.github.autoftp.log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Appends to a file until it would grow past its maximum size, then renames it to name.1 (name.1 to
+ * name.2 and so on) and starts a new one, keeping at most the given number of files in all.
+ */
+public class RotatingFileOutput implements LogOutput {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private File file;
+	private long maxBytes;
+	private int maxFiles;
+	private OutputStream out;
+	private long size;
+
+	public RotatingFileOutput(File file, long maxBytes, int maxFiles) {
+
+		this.file = file;
+		this.maxBytes = maxBytes;
+		this.maxFiles = maxFiles;
+	}
+
+	@Override
+	public void write(CharSequence batch) throws IOException {
+
+		byte[] bytes = batch.toString().getBytes(UTF_8);
+
+		if (out == null)
+			open();
+
+		if (size > 0 && size + bytes.length > maxBytes)
+			rotate();
+
+		out.write(bytes);
+		out.flush();
+
+		size += bytes.length;
+	}
+
+	@Override
+	public void close() {
+
+		try {
+
+			if (out != null)
+				out.close();
+
+		} catch (IOException e) {
+			// Everything written has already been flushed.
+		}
+
+		out = null;
+	}
+
+	private void open() throws IOException {
+
+		if (file.getParentFile() != null)
+			file.getParentFile().mkdirs();
+
+		out = new FileOutputStream(file, true);
+		size = file.length();
+	}
+
+	private void rotate() throws IOException {
+
+		close();
+
+		new File(file.getPath() + "." + (maxFiles - 1)).delete();
+
+		for (int i = maxFiles - 2; i >= 1; i--)
+			new File(file.getPath() + "." + i).renameTo(new File(file.getPath() + "." + (i + 1)));
+
+		if (maxFiles > 1)
+			file.renameTo(new File(file.getPath() + ".1"));
+		else
+			file.delete();
+
+		open();
+	}
+}
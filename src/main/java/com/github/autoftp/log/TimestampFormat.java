@@ -0,0 +1,29 @@
+package com.github.autoftp.log;
+
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+/**
+ * Formats the time of each line, formatting it afresh only when the second changes. Used from the log's
+ * own thread only.
+ */
+class TimestampFormat {
+
+	private static final DateTimeFormatter FORMAT = DateTimeFormat.forPattern("dd/MM/yyy HH:mm:ss");
+
+	private long cachedSecond = Long.MIN_VALUE;
+	private String cached;
+
+	void appendTo(StringBuilder builder, long millis) {
+
+		long second = millis / 1000;
+
+		if (second != cachedSecond) {
+
+			cached = FORMAT.print(millis);
+			cachedSecond = second;
+		}
+
+		builder.append(cached);
+	}
+}
@@ -0,0 +1,76 @@
+package com.github.autoftp.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations into fixed buckets, from a millisecond up to an hour. Recording only updates atomic
+ * counters, so it allocates nothing and can be called from any thread.
+ */
+public class Histogram {
+
+	private static final long[] BUCKET_BOUNDS_NANOS = { millis(1), millis(5), millis(10), millis(50), millis(100),
+	        millis(250), millis(500), seconds(1), millis(2500), seconds(5), seconds(10), seconds(30), seconds(60),
+	        seconds(300), seconds(900), seconds(3600) };
+
+	private AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_BOUNDS_NANOS.length + 1);
+	private AtomicLong count = new AtomicLong();
+	private AtomicLong sumNanos = new AtomicLong();
+
+	public void record(long nanos) {
+
+		int bucket = 0;
+
+		while (bucket < BUCKET_BOUNDS_NANOS.length && nanos > BUCKET_BOUNDS_NANOS[bucket])
+			bucket++;
+
+		bucketCounts.incrementAndGet(bucket);
+		count.incrementAndGet();
+		sumNanos.addAndGet(nanos);
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getSumNanos() {
+		return sumNanos.get();
+	}
+
+	public double getMeanMillis() {
+
+		long recorded = count.get();
+
+		return recorded == 0 ? 0 : (double) sumNanos.get() / recorded / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	public static int getBucketCount() {
+		return BUCKET_BOUNDS_NANOS.length;
+	}
+
+	public static long getBucketBoundNanos(int bucket) {
+		return BUCKET_BOUNDS_NANOS[bucket];
+	}
+
+	/**
+	 * The number of durations at or below the bucket's bound, i.e. including every smaller bucket.
+	 */
+	public long getCumulativeCount(int bucket) {
+
+		long cumulative = 0;
+
+		for (int i = 0; i <= bucket; i++)
+			cumulative += bucketCounts.get(i);
+
+		return cumulative;
+	}
+
+	private static long millis(long millis) {
+		return TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	private static long seconds(long seconds) {
+		return TimeUnit.SECONDS.toNanos(seconds);
+	}
+}
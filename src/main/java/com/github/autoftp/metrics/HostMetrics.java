@@ -0,0 +1,137 @@
+package com.github.autoftp.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.autoftp.schedule.DownloadQueue;
+
+/**
+ * Everything measured for one host. Connecting covers both connecting and logging in, since the JFTP
+ * client does the two in one call.
+ */
+public class HostMetrics implements HostMetricsMXBean {
+
+	private static final double NANOS_IN_SECOND = 1e9;
+
+	private String hostKey;
+	private Histogram connectLatency = new Histogram();
+	private Histogram listLatency = new Histogram();
+	private Histogram downloadLatency = new Histogram();
+	private AtomicLong bytesDownloaded = new AtomicLong();
+	private AtomicLong filesDownloaded = new AtomicLong();
+	private AtomicLong failedDownloads = new AtomicLong();
+	private int runningDownloads;
+	private long busySince;
+	private long busyNanos;
+	private volatile DownloadQueue downloadQueue;
+
+	public HostMetrics(String hostKey) {
+		this.hostKey = hostKey;
+	}
+
+	public String getHostKey() {
+		return hostKey;
+	}
+
+	public Histogram getConnectLatency() {
+		return connectLatency;
+	}
+
+	public Histogram getListLatency() {
+		return listLatency;
+	}
+
+	public Histogram getDownloadLatency() {
+		return downloadLatency;
+	}
+
+	/**
+	 * Marks a download as running from the given {@link System#nanoTime()}. Time during which any download
+	 * is running counts as busy, however many are running at once.
+	 */
+	public synchronized void downloadStarted(long nanoTime) {
+
+		if (runningDownloads++ == 0)
+			busySince = nanoTime;
+	}
+
+	/**
+	 * Marks a download started with {@link #downloadStarted(long)} as over, whether or not it succeeded.
+	 */
+	public synchronized void downloadEnded(long nanoTime) {
+
+		if (--runningDownloads == 0)
+			busyNanos += nanoTime - busySince;
+	}
+
+	public void recordDownload(long bytes, long nanos) {
+
+		downloadLatency.record(nanos);
+		bytesDownloaded.addAndGet(bytes);
+		filesDownloaded.incrementAndGet();
+	}
+
+	public void recordFailedDownload() {
+		failedDownloads.incrementAndGet();
+	}
+
+	/**
+	 * The queue currently being downloaded from, whose size is reported as the queue depth.
+	 */
+	public void watchQueue(DownloadQueue downloadQueue) {
+		this.downloadQueue = downloadQueue;
+	}
+
+	@Override
+	public long getBytesDownloaded() {
+		return bytesDownloaded.get();
+	}
+
+	@Override
+	public long getFilesDownloaded() {
+		return filesDownloaded.get();
+	}
+
+	@Override
+	public long getFailedDownloads() {
+		return failedDownloads.get();
+	}
+
+	@Override
+	public int getQueueDepth() {
+
+		DownloadQueue queue = downloadQueue;
+
+		return queue == null ? 0 : queue.size();
+	}
+
+	/**
+	 * Bytes downloaded over the wall-clock time that at least one download was running, so that downloads
+	 * running side by side over several connections add up rather than each being counted on its own.
+	 */
+	@Override
+	public double getThroughputBytesPerSecond() {
+
+		long downloadNanos;
+
+		synchronized (this) {
+			downloadNanos = busyNanos + (runningDownloads > 0 ? System.nanoTime() - busySince : 0);
+		}
+
+		return downloadNanos <= 0 ? 0 : bytesDownloaded.get() / (downloadNanos / NANOS_IN_SECOND);
+	}
+
+	@Override
+	public double getMeanConnectMillis() {
+		return connectLatency.getMeanMillis();
+	}
+
+	@Override
+	public double getMeanListMillis() {
+		return listLatency.getMeanMillis();
+	}
+
+	@Override
+	public double getMeanDownloadMillis() {
+		return downloadLatency.getMeanMillis();
+	}
+}
@@ -0,0 +1,20 @@
+package com.github.autoftp.metrics;
+
+public interface HostMetricsMXBean {
+
+	long getBytesDownloaded();
+
+	long getFilesDownloaded();
+
+	long getFailedDownloads();
+
+	int getQueueDepth();
+
+	double getThroughputBytesPerSecond();
+
+	double getMeanConnectMillis();
+
+	double getMeanListMillis();
+
+	double getMeanDownloadMillis();
+}
@@ -0,0 +1,43 @@
+package com.github.autoftp.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registers the process-wide metrics and each host's metrics as MXBeans under com.github.autoftp.
+ */
+public class JmxExporter {
+
+	private static final String DOMAIN = "com.github.autoftp";
+
+	private MBeanServer mBeanServer;
+
+	public JmxExporter() {
+		mBeanServer = ManagementFactory.getPlatformMBeanServer();
+	}
+
+	public void register(MetricsRegistry registry) throws JMException {
+
+		register(registry, new ObjectName(DOMAIN + ":type=Metrics"));
+
+		for (HostMetrics host : registry.getHosts())
+			register(host, new ObjectName(DOMAIN + ":type=Host,name=" + ObjectName.quote(host.getHostKey())));
+	}
+
+	private void register(Object bean, ObjectName name) throws JMException {
+
+		try {
+
+			mBeanServer.registerMBean(bean, name);
+
+		} catch (InstanceAlreadyExistsException e) {
+
+			mBeanServer.unregisterMBean(name);
+			mBeanServer.registerMBean(bean, name);
+		}
+	}
+}
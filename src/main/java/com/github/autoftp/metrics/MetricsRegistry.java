@@ -0,0 +1,111 @@
+package com.github.autoftp.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.autoftp.ConnectionListener;
+import com.github.autoftp.schedule.AsyncConnectionListener;
+
+/**
+ * Holds every metric in the process. Metrics are created the first time they are asked for; after that,
+ * looking one up and recording into it allocates nothing.
+ */
+public class MetricsRegistry implements ProcessMetricsMXBean {
+
+	private ConcurrentMap<String, HostMetrics> hosts = new ConcurrentHashMap<String, HostMetrics>();
+	private ConcurrentMap<Class<?>, AtomicLong> errorCounts = new ConcurrentHashMap<Class<?>, AtomicLong>();
+	private ConcurrentMap<String, Histogram> listenerDispatchByName = new ConcurrentHashMap<String, Histogram>();
+	private ConcurrentMap<ConnectionListener, Histogram> listenerDispatch = new ConcurrentHashMap<ConnectionListener, Histogram>();
+
+	public HostMetrics host(String hostKey) {
+
+		HostMetrics metrics = hosts.get(hostKey);
+
+		if (metrics == null) {
+
+			hosts.putIfAbsent(hostKey, new HostMetrics(hostKey));
+			metrics = hosts.get(hostKey);
+		}
+
+		return metrics;
+	}
+
+	public Collection<HostMetrics> getHosts() {
+		return new ArrayList<HostMetrics>(hosts.values());
+	}
+
+	public void recordError(Class<?> exceptionType) {
+
+		AtomicLong count = errorCounts.get(exceptionType);
+
+		if (count == null) {
+
+			errorCounts.putIfAbsent(exceptionType, new AtomicLong());
+			count = errorCounts.get(exceptionType);
+		}
+
+		count.incrementAndGet();
+	}
+
+	/**
+	 * Listeners of the same type share a histogram, named after the type. A listener wrapped for
+	 * asynchronous delivery is named after the listener it wraps.
+	 */
+	public Histogram listenerDispatch(ConnectionListener listener) {
+
+		Histogram histogram = listenerDispatch.get(listener);
+
+		if (histogram == null) {
+
+			String name = nameOf(listener);
+
+			listenerDispatchByName.putIfAbsent(name, new Histogram());
+			histogram = listenerDispatchByName.get(name);
+
+			listenerDispatch.putIfAbsent(listener, histogram);
+		}
+
+		return histogram;
+	}
+
+	public Map<String, Histogram> getListenerDispatch() {
+		return new TreeMap<String, Histogram>(listenerDispatchByName);
+	}
+
+	@Override
+	public Map<String, Long> getErrorCounts() {
+
+		Map<String, Long> counts = new TreeMap<String, Long>();
+
+		for (Map.Entry<Class<?>, AtomicLong> entry : errorCounts.entrySet())
+			counts.put(entry.getKey().getSimpleName(), entry.getValue().get());
+
+		return counts;
+	}
+
+	@Override
+	public Map<String, Double> getListenerDispatchMeanMillis() {
+
+		Map<String, Double> means = new TreeMap<String, Double>();
+
+		for (Map.Entry<String, Histogram> entry : listenerDispatchByName.entrySet())
+			means.put(entry.getKey(), entry.getValue().getMeanMillis());
+
+		return means;
+	}
+
+	private String nameOf(ConnectionListener listener) {
+
+		if (listener instanceof AsyncConnectionListener)
+			return nameOf(((AsyncConnectionListener) listener).getListener()) + "-async";
+
+		String name = listener.getClass().getSimpleName();
+
+		return name.isEmpty() ? listener.getClass().getName() : name;
+	}
+}
@@ -0,0 +1,16 @@
+package com.github.autoftp.metrics;
+
+import java.util.Map;
+
+public interface ProcessMetricsMXBean {
+
+	/**
+	 * Errors seen so far, by exception type.
+	 */
+	Map<String, Long> getErrorCounts();
+
+	/**
+	 * Mean time the notifying thread spent handing each event to a listener, by listener.
+	 */
+	Map<String, Double> getListenerDispatchMeanMillis();
+}
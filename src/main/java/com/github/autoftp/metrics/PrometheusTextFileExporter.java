@@ -0,0 +1,183 @@
+package com.github.autoftp.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes every metric in the Prometheus text format to a file for node_exporter's textfile collector.
+ * The file is written beside its final name and renamed over it, so the collector never reads half a
+ * file.
+ */
+public class PrometheusTextFileExporter implements Runnable {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final double NANOS_IN_SECOND = 1e9;
+
+	private MetricsRegistry registry;
+	private File textFile;
+	private ErrorHandler errorHandler;
+
+	public interface ErrorHandler {
+
+		void onExportFailed(IOException e);
+	}
+
+	public PrometheusTextFileExporter(MetricsRegistry registry, File textFile, ErrorHandler errorHandler) {
+
+		this.registry = registry;
+		this.textFile = textFile;
+		this.errorHandler = errorHandler;
+	}
+
+	@Override
+	public void run() {
+
+		try {
+
+			export();
+
+		} catch (IOException e) {
+			errorHandler.onExportFailed(e);
+		}
+	}
+
+	public void export() throws IOException {
+
+		File partial = new File(textFile.getParentFile(), "." + textFile.getName() + ".tmp");
+		Writer writer = new OutputStreamWriter(Files.newOutputStream(partial.toPath()), UTF_8);
+
+		try {
+
+			write(writer);
+
+		} finally {
+			writer.close();
+		}
+
+		Files.move(partial.toPath(), textFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+		        StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	protected void write(Writer writer) throws IOException {
+
+		writeHostHistograms(writer, "autoftp_connect_seconds", "Time taken to connect and log in to a host.",
+		        HostHistogram.CONNECT);
+		writeHostHistograms(writer, "autoftp_list_seconds", "Time taken to list a host's remote directory.",
+		        HostHistogram.LIST);
+		writeHostHistograms(writer, "autoftp_download_seconds", "Time taken to download a file.",
+		        HostHistogram.DOWNLOAD);
+
+		header(writer, "autoftp_downloaded_bytes_total", "Bytes downloaded from a host.", "counter");
+		for (HostMetrics host : registry.getHosts())
+			sample(writer, "autoftp_downloaded_bytes_total", hostLabel(host), host.getBytesDownloaded());
+
+		header(writer, "autoftp_downloaded_files_total", "Files downloaded from a host.", "counter");
+		for (HostMetrics host : registry.getHosts())
+			sample(writer, "autoftp_downloaded_files_total", hostLabel(host), host.getFilesDownloaded());
+
+		header(writer, "autoftp_failed_downloads_total", "Downloads from a host that failed.", "counter");
+		for (HostMetrics host : registry.getHosts())
+			sample(writer, "autoftp_failed_downloads_total", hostLabel(host), host.getFailedDownloads());
+
+		header(writer, "autoftp_throughput_bytes_per_second", "Bytes downloaded over wall-clock time with any download running.", "gauge");
+		for (HostMetrics host : registry.getHosts())
+			sample(writer, "autoftp_throughput_bytes_per_second", hostLabel(host), host.getThroughputBytesPerSecond());
+
+		header(writer, "autoftp_download_queue_depth", "Files waiting to be downloaded from a host.", "gauge");
+		for (HostMetrics host : registry.getHosts())
+			sample(writer, "autoftp_download_queue_depth", hostLabel(host), host.getQueueDepth());
+
+		header(writer, "autoftp_listener_dispatch_seconds", "Time spent handing an event to a listener.", "histogram");
+		for (Map.Entry<String, Histogram> listener : registry.getListenerDispatch().entrySet())
+			histogram(writer, "autoftp_listener_dispatch_seconds", label("listener", listener.getKey()),
+			        listener.getValue());
+
+		header(writer, "autoftp_errors_total", "Errors by exception type.", "counter");
+		for (Map.Entry<String, Long> error : registry.getErrorCounts().entrySet())
+			sample(writer, "autoftp_errors_total", label("type", error.getKey()), error.getValue());
+	}
+
+	private void writeHostHistograms(Writer writer, String name, String help, HostHistogram which) throws IOException {
+
+		header(writer, name, help, "histogram");
+
+		for (HostMetrics host : registry.getHosts())
+			histogram(writer, name, hostLabel(host), which.of(host));
+	}
+
+	private void histogram(Writer writer, String name, String labels, Histogram histogram) throws IOException {
+
+		for (int bucket = 0; bucket < Histogram.getBucketCount(); bucket++) {
+
+			String bound = format(Histogram.getBucketBoundNanos(bucket) / NANOS_IN_SECOND);
+
+			sample(writer, name + "_bucket", labels + ",le=\"" + bound + "\"", histogram.getCumulativeCount(bucket));
+		}
+
+		sample(writer, name + "_bucket", labels + ",le=\"+Inf\"", histogram.getCount());
+		sample(writer, name + "_sum", labels, histogram.getSumNanos() / NANOS_IN_SECOND);
+		sample(writer, name + "_count", labels, histogram.getCount());
+	}
+
+	private void header(Writer writer, String name, String help, String type) throws IOException {
+
+		writer.write(String.format("# HELP %s %s\n", name, help));
+		writer.write(String.format("# TYPE %s %s\n", name, type));
+	}
+
+	private void sample(Writer writer, String name, String labels, long value) throws IOException {
+		writer.write(String.format("%s{%s} %d\n", name, labels, value));
+	}
+
+	private void sample(Writer writer, String name, String labels, double value) throws IOException {
+		writer.write(String.format("%s{%s} %s\n", name, labels, format(value)));
+	}
+
+	private String hostLabel(HostMetrics host) {
+		return label("host", host.getHostKey());
+	}
+
+	private String label(String name, String value) {
+		return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+	}
+
+	private String format(double value) {
+		return String.format(Locale.ROOT, "%s", value);
+	}
+
+	private enum HostHistogram {
+
+		CONNECT {
+
+			@Override
+			Histogram of(HostMetrics host) {
+				return host.getConnectLatency();
+			}
+		},
+
+		LIST {
+
+			@Override
+			Histogram of(HostMetrics host) {
+				return host.getListLatency();
+			}
+		},
+
+		DOWNLOAD {
+
+			@Override
+			Histogram of(HostMetrics host) {
+				return host.getDownloadLatency();
+			}
+		};
+
+		abstract Histogram of(HostMetrics host);
+	}
+}
@@ -0,0 +1,114 @@
+package com.github.autoftp.schedule;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.github.autoftp.config.HostConfig;
+import com.github.autoftp.config.SettingsWatcher;
+import com.github.autoftp.state.RuntimeStateJournal;
+
+/**
+ * Runs a host's checks one after another, choosing the wait before each from the result of the one before:
+ * back down to the minimum interval after a check that found files, otherwise double the last wait, up to
+ * the maximum interval. The next check is only scheduled once the current one has finished, so checks of
+ * the same host never overlap and a long check doesn't leave others queued up behind it. Polling stops if
+ * the host is removed from the config file.
+ */
+public class AdaptivePoller implements Runnable {
+
+	private static final long SECONDS_IN_MINUTE = 60;
+
+	private ConnectionSchedule connectionSchedule;
+	private HostConfig host;
+	private ScheduledExecutorService scheduledExecutorService;
+	private SettingsWatcher settings;
+	private RuntimeStateJournal runtimeState;
+	private volatile long currentDelaySeconds;
+
+	public AdaptivePoller(ConnectionSchedule connectionSchedule, HostConfig host,
+	        ScheduledExecutorService scheduledExecutorService, SettingsWatcher settings,
+	        RuntimeStateJournal runtimeState) {
+
+		this.connectionSchedule = connectionSchedule;
+		this.host = host;
+		this.scheduledExecutorService = scheduledExecutorService;
+		this.settings = settings;
+		this.runtimeState = runtimeState;
+	}
+
+	/**
+	 * Schedules the first check. The backoff carries on from the last recorded wait, if there is one, which
+	 * older versions recorded in the config file.
+	 */
+	public void start(long initialDelaySeconds) {
+
+		currentDelaySeconds = Math.max(minDelaySeconds(), Math.min(maxDelaySeconds(),
+		        runtimeState.getPollDelay(host, settings.getSettingsProvider().getPollDelay(host))));
+
+		scheduleCheck(initialDelaySeconds);
+	}
+
+	@Override
+	public void run() {
+
+		boolean foundFiles = false;
+
+		try {
+
+			connectionSchedule.run();
+			foundFiles = connectionSchedule.getFilesFoundInLastRun() > 0;
+
+		} finally {
+
+			HostConfig currentHost = settings.get().getHost(host.getId());
+
+			if (currentHost != null) {
+
+				host = currentHost;
+				currentDelaySeconds = nextDelaySeconds(foundFiles);
+
+				scheduleCheck(currentDelaySeconds);
+				runtimeState.setPollDelay(host, currentDelaySeconds);
+			}
+		}
+	}
+
+	public long getCurrentDelaySeconds() {
+		return currentDelaySeconds;
+	}
+
+	protected long nextDelaySeconds(boolean foundFiles) {
+
+		if (foundFiles)
+			return minDelaySeconds();
+
+		return Math.min(maxDelaySeconds(), Math.max(minDelaySeconds(), currentDelaySeconds * 2));
+	}
+
+	private void scheduleCheck(long delaySeconds) {
+
+		if (scheduledExecutorService.isShutdown())
+			return;
+
+		scheduledExecutorService.schedule(this, delaySeconds, TimeUnit.SECONDS);
+
+		if (host.isKeepAlive() && host.getPrewarmSeconds() > 0 && host.getPrewarmSeconds() < delaySeconds) {
+
+			scheduledExecutorService.schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					connectionSchedule.prewarmConnection();
+				}
+			}, delaySeconds - host.getPrewarmSeconds(), TimeUnit.SECONDS);
+		}
+	}
+
+	private long minDelaySeconds() {
+		return Math.max(1, host.getMinInterval()) * SECONDS_IN_MINUTE;
+	}
+
+	private long maxDelaySeconds() {
+		return Math.max(minDelaySeconds(), host.getMaxInterval() * SECONDS_IN_MINUTE);
+	}
+}
@@ -0,0 +1,277 @@
+package com.github.autoftp.schedule;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jftp.connection.FtpFile;
+
+import com.github.autoftp.ConnectionListener;
+
+/**
+ * Passes events on to another listener from its own thread, so that a slow listener doesn't hold up the
+ * connection that raised them. Events wait in a bounded queue and are delivered in the order they were
+ * raised; when the queue is full the {@link OverflowPolicy} decides what happens. Latency is measured
+ * from when an event is raised to when the listener has finished with it.
+ */
+public class AsyncConnectionListener implements ConnectionListener {
+
+	private static final long NANOS_IN_MILLI = 1000000;
+
+	private ConnectionListener listener;
+	private ThreadPoolExecutor dispatcher;
+
+	private AtomicLong deliveredEvents = new AtomicLong();
+	private AtomicLong droppedEvents = new AtomicLong();
+	private AtomicLong totalLatencyNanos = new AtomicLong();
+	private AtomicLong maxLatencyNanos = new AtomicLong();
+
+	public AsyncConnectionListener(final ConnectionListener listener, int queueSize, OverflowPolicy overflowPolicy) {
+
+		this.listener = listener;
+
+		dispatcher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(Math.max(1,
+		        queueSize)), new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+
+				Thread thread = new Thread(runnable, "listener-" + listener.getClass().getSimpleName());
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		}, overflowHandler(overflowPolicy));
+	}
+
+	public ConnectionListener getListener() {
+		return listener;
+	}
+
+	@Override
+	public void onConnection() {
+
+		dispatch(new ListenerEvent() {
+
+			@Override
+			protected void deliver() {
+				listener.onConnection();
+			}
+		});
+	}
+
+	@Override
+	public void onDisconnection() {
+
+		dispatch(new ListenerEvent() {
+
+			@Override
+			protected void deliver() {
+				listener.onDisconnection();
+			}
+		});
+	}
+
+	@Override
+	public void onRunFinished() {
+
+		dispatch(new ListenerEvent() {
+
+			@Override
+			protected void deliver() {
+				listener.onRunFinished();
+			}
+		});
+	}
+
+	@Override
+	public void onFilterListObtained(final List<FtpFile> files) {
+
+		dispatch(new ListenerEvent() {
+
+			@Override
+			protected void deliver() {
+				listener.onFilterListObtained(files);
+			}
+		});
+	}
+
+	@Override
+	public void onError(final String errorMessage) {
+
+		dispatch(new ListenerEvent() {
+
+			@Override
+			protected void deliver() {
+				listener.onError(errorMessage);
+			}
+		});
+	}
+
+	@Override
+	public void onDownloadStarted(final String filename) {
+
+		dispatch(new ListenerEvent() {
+
+			@Override
+			protected void deliver() {
+				listener.onDownloadStarted(filename);
+			}
+		});
+	}
+
+	@Override
+	public void onDownloadProgress(final String filename, final long bytesTransferred, final long totalBytes,
+	        final long bytesPerSecond) {
+
+		dispatch(new ListenerEvent() {
+
+			@Override
+			protected void deliver() {
+				listener.onDownloadProgress(filename, bytesTransferred, totalBytes, bytesPerSecond);
+			}
+		});
+	}
+
+	@Override
+	public void onDownloadFinished(final String filename) {
+
+		dispatch(new ListenerEvent() {
+
+			@Override
+			protected void deliver() {
+				listener.onDownloadFinished(filename);
+			}
+		});
+	}
+
+	public long getDeliveredEvents() {
+		return deliveredEvents.get();
+	}
+
+	public long getDroppedEvents() {
+		return droppedEvents.get();
+	}
+
+	public int getQueueDepth() {
+		return dispatcher.getQueue().size();
+	}
+
+	public double getAverageLatencyMillis() {
+
+		long delivered = deliveredEvents.get();
+
+		return delivered == 0 ? 0 : (double) totalLatencyNanos.get() / delivered / NANOS_IN_MILLI;
+	}
+
+	public double getMaxLatencyMillis() {
+		return (double) maxLatencyNanos.get() / NANOS_IN_MILLI;
+	}
+
+	/**
+	 * Delivers whatever is already queued, waiting up to the given time, then stops the dispatch thread.
+	 */
+	public void shutdown(long timeout, TimeUnit unit) {
+
+		dispatcher.shutdown();
+
+		try {
+
+			dispatcher.awaitTermination(timeout, unit);
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void dispatch(ListenerEvent event) {
+		dispatcher.execute(event);
+	}
+
+	private void recordLatency(long latencyNanos) {
+
+		deliveredEvents.incrementAndGet();
+		totalLatencyNanos.addAndGet(latencyNanos);
+
+		long currentMax = maxLatencyNanos.get();
+
+		while (latencyNanos > currentMax && !maxLatencyNanos.compareAndSet(currentMax, latencyNanos))
+			currentMax = maxLatencyNanos.get();
+	}
+
+	private RejectedExecutionHandler overflowHandler(OverflowPolicy overflowPolicy) {
+
+		switch (overflowPolicy) {
+
+		case DISCARD_NEWEST:
+			return new RejectedExecutionHandler() {
+
+				@Override
+				public void rejectedExecution(Runnable event, ThreadPoolExecutor executor) {
+					droppedEvents.incrementAndGet();
+				}
+			};
+
+		case DISCARD_OLDEST:
+			return new RejectedExecutionHandler() {
+
+				@Override
+				public void rejectedExecution(Runnable event, ThreadPoolExecutor executor) {
+
+					if (executor.isShutdown())
+						return;
+
+					while (!executor.getQueue().offer(event)) {
+
+						if (executor.getQueue().poll() != null)
+							droppedEvents.incrementAndGet();
+					}
+				}
+			};
+
+		default:
+			return new RejectedExecutionHandler() {
+
+				@Override
+				public void rejectedExecution(Runnable event, ThreadPoolExecutor executor) {
+
+					if (executor.isShutdown())
+						return;
+
+					try {
+
+						executor.getQueue().put(event);
+
+					} catch (InterruptedException e) {
+
+						droppedEvents.incrementAndGet();
+						Thread.currentThread().interrupt();
+					}
+				}
+			};
+		}
+	}
+
+	private abstract class ListenerEvent implements Runnable {
+
+		private long raisedAt = System.nanoTime();
+
+		@Override
+		public void run() {
+
+			try {
+
+				deliver();
+
+			} finally {
+				recordLatency(System.nanoTime() - raisedAt);
+			}
+		}
+
+		protected abstract void deliver();
+	}
+}
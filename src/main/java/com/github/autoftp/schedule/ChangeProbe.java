@@ -0,0 +1,149 @@
+package com.github.autoftp.schedule;
+
+import jftp.exception.ClientDisconnectionException;
+
+import com.github.autoftp.config.HostConfig;
+import com.github.autoftp.transfer.RangedConnection;
+import com.github.autoftp.transfer.RangedConnectionFactory;
+
+/**
+ * Asks the server for a cheap fingerprint of the remote directory (its modified time) so that a check can
+ * be skipped, along with its full listing, when nothing has been added or removed since the last complete
+ * one. A file that changes in place doesn't change its directory's modified time, so a full listing is
+ * still done every so many checks regardless.
+ * <p>
+ * For keep-alive hosts the probe's connection is kept open between checks too, so a skipped check costs a
+ * single request rather than a login. If the kept connection can't give a fingerprint it may have dropped,
+ * so the probe is tried once more over a new one.
+ */
+public class ChangeProbe {
+
+	private RangedConnectionFactory rangedConnectionFactory;
+	private String lastFingerprint;
+	private int skippedChecks;
+	private KeptConnection kept;
+
+	public ChangeProbe() {
+		rangedConnectionFactory = new RangedConnectionFactory();
+	}
+
+	/**
+	 * Returns null if the server can't give a fingerprint, in which case the check goes ahead.
+	 */
+	public String fingerprint(HostConfig host) {
+
+		if (kept != null && (!host.isKeepAlive() || !PersistentConnection.describe(host).equals(kept.connectedTo)))
+			close();
+
+		if (kept != null) {
+
+			String fingerprint = probeQuietly(kept.connection, host);
+
+			if (fingerprint != null)
+				return fingerprint;
+
+			close();
+		}
+
+		RangedConnection connection = rangedConnectionFactory.createConnection(host.getClientType());
+		boolean keep = false;
+
+		try {
+
+			connection.connect(host);
+
+			String fingerprint = connection.probe(host.getFileDirectory());
+
+			keep = host.isKeepAlive();
+
+			return fingerprint;
+
+		} finally {
+
+			if (keep)
+				kept = new KeptConnection(connection, PersistentConnection.describe(host));
+			else
+				disconnectQuietly(connection);
+		}
+	}
+
+	/**
+	 * Closes the connection kept for keep-alive hosts, if there is one.
+	 */
+	public void close() {
+
+		if (kept != null)
+			disconnectQuietly(kept.connection);
+
+		kept = null;
+	}
+
+	/**
+	 * Whether the check can be skipped. Each skipped check counts towards the next forced full listing.
+	 */
+	public boolean isUnchanged(HostConfig host, String fingerprint) {
+
+		if (fingerprint == null || !fingerprint.equals(lastFingerprint))
+			return false;
+
+		if (skippedChecks + 1 >= Math.max(1, host.getFullListingEvery()))
+			return false;
+
+		skippedChecks++;
+
+		return true;
+	}
+
+	/**
+	 * Called once a check has listed the directory and downloaded everything new without errors, with the
+	 * fingerprint taken before it started.
+	 */
+	public void recordCompleteCheck(String fingerprint) {
+
+		lastFingerprint = fingerprint;
+		skippedChecks = 0;
+	}
+
+	/**
+	 * Forgets the last fingerprint, so the next check lists the directory in full.
+	 */
+	public void reset() {
+
+		lastFingerprint = null;
+		skippedChecks = 0;
+	}
+
+	private String probeQuietly(RangedConnection connection, HostConfig host) {
+
+		try {
+
+			return connection.probe(host.getFileDirectory());
+
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	private void disconnectQuietly(RangedConnection connection) {
+
+		try {
+
+			connection.disconnect();
+
+		} catch (ClientDisconnectionException e) {
+			// Nothing more is going to be asked over it.
+		}
+	}
+
+	private static class KeptConnection {
+
+		private RangedConnection connection;
+		private String connectedTo;
+
+		private KeptConnection(RangedConnection connection, String connectedTo) {
+
+			this.connection = connection;
+			this.connectedTo = connectedTo;
+		}
+	}
+}
@@ -1,15 +1,29 @@
 package com.github.autoftp.schedule;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import jftp.connection.FtpFile;
 
 import com.github.autoftp.ConnectionListener;
+import com.github.autoftp.metrics.MetricsRegistry;
 
+/**
+ * Tells every registered listener about each event, timing how long each listener holds up the notifying
+ * thread.
+ */
 public class ConnectionNotifier {
 
-	private List<ConnectionListener> listeners = new ArrayList<ConnectionListener>();
+	private List<ConnectionListener> listeners = new CopyOnWriteArrayList<ConnectionListener>();
+	private MetricsRegistry metricsRegistry = new MetricsRegistry();
+
+	public MetricsRegistry getMetricsRegistry() {
+		return metricsRegistry;
+	}
+
+	public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+		this.metricsRegistry = metricsRegistry;
+	}
 
 	public List<ConnectionListener> getListeners() {
 		return this.listeners;
@@ -21,37 +35,114 @@ public class ConnectionNotifier {
 
 	public void notifyOfConnectionOpening() {
 
-		for (ConnectionListener listener : listeners)
+		for (ConnectionListener listener : listeners) {
+
+			long start = System.nanoTime();
+
 			listener.onConnection();
+
+			recordDispatch(listener, start);
+		}
 	}
 
 	public void notifyOfConnectionClosing() {
 
-		for (ConnectionListener listener : listeners)
+		for (ConnectionListener listener : listeners) {
+
+			long start = System.nanoTime();
+
 			listener.onDisconnection();
+
+			recordDispatch(listener, start);
+		}
 	}
 
 	public void notifyOfFilesToDownload(List<FtpFile> filesToDownload) {
 
-		for (ConnectionListener listener : listeners)
+		for (ConnectionListener listener : listeners) {
+
+			long start = System.nanoTime();
+
 			listener.onFilterListObtained(filesToDownload);
+
+			recordDispatch(listener, start);
+		}
+	}
+
+	/**
+	 * Counts the error by its type before telling listeners its message.
+	 */
+	public void notifyOfError(Exception error) {
+
+		recordError(error);
+		notifyOfError(error.getMessage());
+	}
+
+	public void recordError(Exception error) {
+		metricsRegistry.recordError(error.getClass());
 	}
 
 	public void notifyOfError(String errorMessage) {
 
-		for (ConnectionListener listener : listeners)
+		for (ConnectionListener listener : listeners) {
+
+			long start = System.nanoTime();
+
 			listener.onError(errorMessage);
+
+			recordDispatch(listener, start);
+		}
 	}
 
 	public void notifyOnDownloadStart(String filename) {
 
-		for (ConnectionListener listener : listeners)
+		for (ConnectionListener listener : listeners) {
+
+			long start = System.nanoTime();
+
 			listener.onDownloadStarted(filename);
+
+			recordDispatch(listener, start);
+		}
+	}
+
+	public void notifyOfDownloadProgress(String filename, long bytesTransferred, long totalBytes, long bytesPerSecond) {
+
+		for (ConnectionListener listener : listeners) {
+
+			long start = System.nanoTime();
+
+			listener.onDownloadProgress(filename, bytesTransferred, totalBytes, bytesPerSecond);
+
+			recordDispatch(listener, start);
+		}
 	}
 
 	public void notifyOnDownloadFinished(String filename) {
 
-		for (ConnectionListener listener : listeners)
+		for (ConnectionListener listener : listeners) {
+
+			long start = System.nanoTime();
+
 			listener.onDownloadFinished(filename);
+
+			recordDispatch(listener, start);
+		}
+	}
+
+	public void notifyOfRunFinished() {
+
+		for (ConnectionListener listener : listeners) {
+
+			long start = System.nanoTime();
+
+			listener.onRunFinished();
+
+			recordDispatch(listener, start);
+		}
+	}
+
+	private void recordDispatch(ConnectionListener listener, long start) {
+		metricsRegistry.listenerDispatch(listener).record(System.nanoTime() - start);
 	}
 }
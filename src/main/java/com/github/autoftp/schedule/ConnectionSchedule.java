@@ -1,8 +1,12 @@
 package com.github.autoftp.schedule;
 
+import java.io.File;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import jftp.client.Client;
 import jftp.client.ClientFactory;
@@ -16,71 +20,300 @@ import jftp.exception.NoSuchDirectoryException;
 
 import org.joda.time.DateTime;
 
-import com.github.autoftp.PatternBuilder;
+import com.github.autoftp.FilterMatcher;
 import com.github.autoftp.config.HostConfig;
+import com.github.autoftp.config.Settings;
 import com.github.autoftp.config.SettingsProvider;
+import com.github.autoftp.config.SettingsWatcher;
+import com.github.autoftp.index.SeenFileIndex;
+import com.github.autoftp.index.SeenFileIndexException;
+import com.github.autoftp.metrics.HostMetrics;
+import com.github.autoftp.state.RuntimeStateJournal;
+import com.github.autoftp.state.RuntimeStateJournalException;
+import com.github.autoftp.transfer.BandwidthLimiter;
+import com.github.autoftp.transfer.ChecksumAlgorithm;
+import com.github.autoftp.transfer.ChecksumMismatchException;
+import com.github.autoftp.transfer.DownloadWriter;
+import com.github.autoftp.transfer.ProgressCallback;
+import com.github.autoftp.transfer.ProgressMonitor;
+import com.github.autoftp.transfer.ResumableDownload;
+import com.github.autoftp.transfer.SegmentedDownload;
+import com.github.autoftp.transfer.StagingArea;
+import com.github.autoftp.transfer.TransferProgress;
 
 public class ConnectionSchedule extends ConnectionNotifier implements Runnable {
 
+	private static final int MAX_CHECKSUM_ATTEMPTS = 3;
+
+	private String hostId;
+	private HostConfig host;
 	private Client client;
 	private Connection connection;
 	private ClientFactory clientFactory;
+	private SettingsWatcher settings;
 	private SettingsProvider settingsProvider;
-	private PatternBuilder patternBuilder;
+	private FilterMatcher filterMatcher;
+	private List<String> filterMatcherExpressions;
+	private SegmentedDownload segmentedDownload;
+	private ResumableDownload resumableDownload;
+	private DownloadWriter downloadWriter;
+	private StagingArea stagingArea;
+	private ProgressMonitor progressMonitor;
+	private BandwidthLimiter bandwidthLimiter;
+	private PersistentConnection persistentConnection;
+	private SeenFileIndex seenFileIndex;
+	private RuntimeStateJournal runtimeState;
+	private boolean flushRuntimeStateAfterRun;
+	private boolean seedIndexFromLastRun;
+	private String remoteRoot;
+	private volatile int filesFoundInLastRun;
+	private ChangeProbe changeProbe;
+	private boolean listingCompleted;
+	private AtomicInteger failedDownloads = new AtomicInteger();
 
 	public ConnectionSchedule() {
+		this(null);
+	}
+
+	public ConnectionSchedule(String hostId) {
+		this(hostId, new SettingsWatcher("/etc/autoftp/autoftp.conf"));
+	}
+
+	public ConnectionSchedule(String hostId, SettingsWatcher settings) {
+
+		this.hostId = hostId;
+		this.settings = settings;
+		this.settingsProvider = settings.getSettingsProvider();
 
 		clientFactory = new ClientFactory();
-		settingsProvider = new SettingsProvider("/etc/autoftp/autoftp.conf");
-		patternBuilder = new PatternBuilder();
+		segmentedDownload = new SegmentedDownload();
+		resumableDownload = new ResumableDownload();
+		downloadWriter = new DownloadWriter();
+		segmentedDownload.setDownloadWriter(downloadWriter);
+		resumableDownload.setDownloadWriter(downloadWriter);
+		stagingArea = new StagingArea();
+		persistentConnection = new PersistentConnection(this);
+		changeProbe = new ChangeProbe();
+
+		setBandwidthLimiter(new BandwidthLimiter());
+	}
+
+	/**
+	 * Hosts scheduled together share one limiter so that the overall cap covers all of them.
+	 */
+	public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+
+		this.bandwidthLimiter = bandwidthLimiter;
+
+		segmentedDownload.setBandwidthLimiter(bandwidthLimiter);
+		resumableDownload.setBandwidthLimiter(bandwidthLimiter);
+	}
+
+	/**
+	 * Hosts scheduled together share one monitor, which samples their downloads on a timer so that a stalled
+	 * download is still reported. Without one, downloads are only sampled as their bytes arrive.
+	 */
+	public void setProgressMonitor(ProgressMonitor progressMonitor) {
+		this.progressMonitor = progressMonitor;
+	}
+
+	/**
+	 * Hosts scheduled together share one journal, which is then flushed by whatever scheduled them rather
+	 * than after each run. Without one, the schedule opens its own in the index directory.
+	 */
+	public void setRuntimeState(RuntimeStateJournal runtimeState) {
+
+		this.runtimeState = runtimeState;
+
+		flushRuntimeStateAfterRun = false;
 	}
 
 	@Override
 	public void run() {
 
-		HostConfig host = settingsProvider.getHost();
+		Settings currentSettings = settings.get();
+		HostConfig host = currentSettings.getHost(hostId);
+
+		filesFoundInLastRun = 0;
+
+		if (host == null || !openSeenFileIndex(host) || !openRuntimeState())
+			return;
+
+		bandwidthLimiter.configure(currentSettings.getBandwidthLimit(), host);
+		downloadWriter.setBufferSize(currentSettings.getDownloadBufferSize());
+		seenFileIndex.setMatchModifiedTime(!host.isIgnoreTouched());
+
+		String fingerprint = null;
+
+		if (host.isChangeProbe() && !host.isRecursive()) {
+
+			fingerprint = probeRemoteDirectory(host);
+
+			if (changeProbe.isUnchanged(host, fingerprint))
+				return;
+
+		} else {
+			changeProbe.close();
+		}
+
+		listingCompleted = false;
+		failedDownloads.set(0);
 
 		if (openConnectionToHost(host)) {
 
 			try {
 
-				moveToRemoteDownloadFolder(host.getFileDirectory());
+				if (!host.isKeepAlive())
+					moveToRemoteDownloadFolder(host.getFileDirectory());
 
-				downloadFilteredFiles(retrieveFilesAfterLastScan());
+				if (host.isStreamingListing() && !host.isRecursive())
+					streamFilesToDownload(host);
+				else
+					downloadFilteredFiles(host, retrieveFilesAfterLastScan());
 
 			} catch (NoSuchDirectoryException e) {
-				notifyOfError(e.getMessage());
+				notifyOfError(e);
+			} catch (ConnectionInitialisationException e) {
+				notifyOfError(e);
 			}
 
 			closeConnectionToHost();
+			resumableDownload.closeConnections();
+			notifyOfRunFinished();
+		}
+
+		if (fingerprint != null) {
+
+			if (listingCompleted && failedDownloads.get() == 0)
+				changeProbe.recordCompleteCheck(fingerprint);
+			else
+				changeProbe.reset();
+		}
+
+		flushSeenFileIndex();
+
+		if (flushRuntimeStateAfterRun)
+			flushRuntimeState();
+	}
+
+	private String probeRemoteDirectory(HostConfig host) {
+
+		try {
+
+			return changeProbe.fingerprint(host);
+
+		} catch (ConnectionInitialisationException e) {
+			notifyOfError(e);
+		}
+
+		return null;
+	}
+
+	/**
+	 * The number of new files that the most recent run queued for download.
+	 */
+	public int getFilesFoundInLastRun() {
+		return filesFoundInLastRun;
+	}
+
+	/**
+	 * Called between runs to stop an idle persistent connection from timing out.
+	 */
+	public void keepConnectionAlive() {
+		persistentConnection.keepAlive();
+	}
+
+	/**
+	 * Called shortly before a run so that its persistent connection is already logged in when it starts.
+	 */
+	public void prewarmConnection() {
+
+		HostConfig host = settings.get().getHost(hostId);
+
+		if (host == null || !host.isKeepAlive())
+			return;
+
+		try {
+
+			persistentConnection.prewarm(host);
+
+		} catch (ConnectionInitialisationException e) {
+			notifyOfError(e);
+		} catch (NoSuchDirectoryException e) {
+			notifyOfError(e);
 		}
 	}
 
 	protected boolean openConnectionToHost(HostConfig host) {
 
-		client = clientFactory.createClient(host.getClientType());
+		this.host = host;
+
+		if (host.isKeepAlive())
+			return acquirePersistentConnection(host);
 
-		client.setHost(host.getHostname());
-		client.setPort(host.getPort());
-		client.setCredentials(host.getUsername(), host.getPassword());
+		persistentConnection.close();
+
+		client = createClient(host);
+
+		long start = System.nanoTime();
 
 		try {
 
 			connection = client.connect();
 
+			hostMetrics().getConnectLatency().record(System.nanoTime() - start);
+			notifyOfConnectionOpening();
+
+			return true;
+
+		} catch (ConnectionInitialisationException e) {
+			notifyOfError(e);
+		}
+
+		return false;
+	}
+
+	private boolean acquirePersistentConnection(HostConfig host) {
+
+		long start = System.nanoTime();
+
+		try {
+
+			connection = persistentConnection.acquire(host);
+
+			hostMetrics().getConnectLatency().record(System.nanoTime() - start);
 			notifyOfConnectionOpening();
 
 			return true;
 
 		} catch (ConnectionInitialisationException e) {
-			notifyOfError(e.getMessage());
+			notifyOfError(e);
+		} catch (NoSuchDirectoryException e) {
+			notifyOfError(e);
 		}
 
 		return false;
 	}
 
+	protected Client createClient(HostConfig host) {
+
+		Client newClient = clientFactory.createClient(host.getClientType());
+
+		newClient.setHost(host.getHostname());
+		newClient.setPort(host.getPort());
+		newClient.setCredentials(host.getUsername(), host.getPassword());
+
+		return newClient;
+	}
+
 	protected void closeConnectionToHost() {
 
+		if (host != null && host.isKeepAlive()) {
+
+			persistentConnection.release();
+			return;
+		}
+
 		try {
 
 			client.disconnect();
@@ -88,75 +321,405 @@ public class ConnectionSchedule extends ConnectionNotifier implements Runnable {
 			notifyOfConnectionClosing();
 
 		} catch (ClientDisconnectionException e) {
-			notifyOfError(e.getMessage());
+			notifyOfError(e);
 		}
 	}
 
 	protected List<FtpFile> retrieveFilesAfterLastScan() {
 
-		List<FtpFile> files = new ArrayList<FtpFile>();
+		List<FtpFile> newFiles = new ArrayList<FtpFile>();
 
 		try {
 
-			DateTime lastRun = settingsProvider.getLastRunDate();
+			DateTime seedBefore = seedCutoff();
 
-			files = connection.listFiles();
+			long listStart = System.nanoTime();
+			List<FtpFile> remoteFiles = listRemoteFiles();
 
-			Iterator<FtpFile> fileIterator = files.iterator();
+			hostMetrics().getListLatency().record(System.nanoTime() - listStart);
 
-			while (fileIterator.hasNext()) {
+			for (FtpFile file : remoteFiles) {
 
-				FtpFile currentFile = fileIterator.next();
-
-				if (currentFile.getLastModified().isBefore(lastRun) || currentFile.isDirectory())
-					fileIterator.remove();
+				if (isNewFile(file, seedBefore))
+					newFiles.add(file);
 			}
 
+			seedIndexFromLastRun = false;
+			listingCompleted = true;
+
 		} catch (FileListingException e) {
-			notifyOfError(e.getMessage());
+			notifyOfError(e);
+		}
+
+		return newFiles;
+	}
+
+	/**
+	 * Whether the file is one that hasn't been downloaded before. Files last modified before seedBefore,
+	 * if it is given, are recorded as seen instead.
+	 */
+	protected boolean isNewFile(FtpFile file, DateTime seedBefore) {
+
+		if (file.isDirectory())
+			return false;
+
+		if (seedBefore != null && file.getLastModified().isBefore(seedBefore)) {
+
+			recordSeen(file);
+			return false;
 		}
 
+		return !seenFileIndex.isSeen(file);
+	}
+
+	private List<FtpFile> listRemoteFiles() {
+
+		if (host == null || !host.isRecursive()) {
+
+			remoteRoot = null;
+			return connection.listFiles();
+		}
+
+		DirectoryWalker walker = new DirectoryWalker(this, host);
+		List<FtpFile> files = walker.walk(connection);
+
+		remoteRoot = walker.getRoot();
+
 		return files;
 	}
 
 	protected List<FtpFile> filterFilesToCreateDownloadQueue(List<FtpFile> filesToFilter) {
 
 		List<FtpFile> filteredFiles = new ArrayList<FtpFile>();
-		List<String> filterExpressions = settingsProvider.getFilterExpressions();
+		FilterMatcher matcher = currentFilterMatcher();
 
 		for (FtpFile file : filesToFilter) {
 
-			for (String expression : filterExpressions) {
-
-				String expressionRegex = patternBuilder.buildFromFilterString(expression);
-
-				if (file.getName().toLowerCase().matches(expressionRegex.toLowerCase()))
-					filteredFiles.add(file);
-			}
+			if (matcher.matches(file.getName()))
+				filteredFiles.add(file);
 		}
 
 		if (!filteredFiles.isEmpty())
 			notifyOfFilesToDownload(filteredFiles);
 
-		settingsProvider.setLastRunDate(DateTime.now());
-
 		return filteredFiles;
 	}
 
+	private FilterMatcher currentFilterMatcher() {
+
+		List<String> filterExpressions = settings.get().getFilterExpressions();
+
+		if (filterMatcher == null || !filterExpressions.equals(filterMatcherExpressions)) {
+
+			filterMatcher = new FilterMatcher(filterExpressions);
+			filterMatcherExpressions = filterExpressions;
+		}
+
+		return filterMatcher;
+	}
+
 	protected void downloadFile(FtpFile fileToDownload) {
+		downloadFile(connection, fileToDownload);
+	}
+
+	/**
+	 * When staging is enabled the file is downloaded into the staging area of the directory it is meant for,
+	 * and only renamed into that directory once it is complete.
+	 */
+	protected void downloadFile(Connection connection, FtpFile fileToDownload) {
 
-		String downloadDirectory = settingsProvider.getDownloadDirectory();
+		Settings currentSettings = settings.get();
+		String relativeDirectory = RemotePaths.relativeDirectoryOf(remoteRoot, fileToDownload);
+		String finalDirectory = localDirectoryFor(currentSettings, relativeDirectory);
+		String filename = relativeDirectory.isEmpty() ? fileToDownload.getName() : relativeDirectory + "/"
+		        + fileToDownload.getName();
 
-		notifyOnDownloadStart(fileToDownload.getName());
+		notifyOnDownloadStart(filename);
+
+		long start = System.nanoTime();
+		TransferProgress progress = trackProgress(currentSettings, fileToDownload, filename);
+
+		hostMetrics().downloadStarted(start);
 
 		try {
 
-			connection.download(fileToDownload, downloadDirectory);
+			String downloadDirectory = currentSettings.isStagingEnabled() ? stagingArea.directoryFor(finalDirectory)
+			        : finalDirectory;
+
+			transfer(connection, fileToDownload, downloadDirectory, progress);
 
-			notifyOnDownloadFinished(fileToDownload.getName());
+			if (currentSettings.isStagingEnabled())
+				stagingArea.publish(fileToDownload, finalDirectory,
+				        host == null ? null : ChecksumAlgorithm.fromSetting(host.getChecksum()));
+
+			resumableDownload.markFinished(fileToDownload, downloadDirectory);
+			recordSeen(fileToDownload);
+
+			hostMetrics().recordDownload(fileToDownload.getSize(), System.nanoTime() - start);
+			notifyOnDownloadFinished(filename);
 
 		} catch (DownloadFailedException e) {
+
+			recordFailedDownload();
+			recordError(e);
 			notifyOfError(e.getMessage() + (null == e.getCause() ? "" : e.getCause().getMessage()));
+
+		} catch (NoSuchDirectoryException e) {
+
+			recordFailedDownload();
+			notifyOfError(e);
+
+		} finally {
+
+			hostMetrics().downloadEnded(System.nanoTime());
+
+			if (progress != null && progressMonitor != null)
+				progressMonitor.remove(progress);
+		}
+	}
+
+	/**
+	 * Returns null if progress isn't sampled at all. One progress is allocated for each file, and nothing
+	 * for each chunk of it.
+	 */
+	private TransferProgress trackProgress(Settings currentSettings, FtpFile fileToDownload, final String filename) {
+
+		if (currentSettings.getProgressIntervalSeconds() == 0 && currentSettings.getProgressBytes() == 0)
+			return null;
+
+		TransferProgress progress = new TransferProgress(fileToDownload.getSize(), currentSettings.getProgressBytes(),
+		        TimeUnit.SECONDS.toMillis(currentSettings.getProgressIntervalSeconds()), new ProgressCallback() {
+
+			        @Override
+			        public void onProgress(long bytesTransferred, long totalBytes, long bytesPerSecond) {
+				        notifyOfDownloadProgress(filename, bytesTransferred, totalBytes, bytesPerSecond);
+			        }
+		        });
+
+		if (progressMonitor != null)
+			progressMonitor.add(progress);
+
+		return progress;
+	}
+
+	/**
+	 * A file whose digest doesn't match the server's is deleted and fetched again straight away, up to
+	 * {@link #MAX_CHECKSUM_ATTEMPTS} times in all, before the mismatch is reported as a failure.
+	 */
+	private void transfer(Connection connection, FtpFile fileToDownload, String downloadDirectory,
+	        TransferProgress progress) {
+
+		for (int attempt = 1;; attempt++) {
+
+			try {
+
+				transferOnce(connection, fileToDownload, downloadDirectory, progress);
+				return;
+
+			} catch (ChecksumMismatchException e) {
+
+				if (attempt >= MAX_CHECKSUM_ATTEMPTS)
+					throw e;
+
+				notifyOfError(e.getMessage() + ". Downloading it again.");
+			}
+		}
+	}
+
+	/**
+	 * Files that are checksummed or bandwidth limited are streamed through a ranged connection, since
+	 * JFTP's own download writes the file itself. Hosts set to download directly always are. The progress
+	 * of JFTP's download is sampled from the length of the file it writes. A file left partly downloaded
+	 * is resumed the way it was being downloaded, in segments or not.
+	 */
+	private void transferOnce(Connection connection, FtpFile fileToDownload, String downloadDirectory,
+	        TransferProgress progress) {
+
+		if (host != null && segmentedDownload.canResume(fileToDownload, downloadDirectory)) {
+
+			segmentedDownload.resume(host, fileToDownload, downloadDirectory, progress);
+
+		} else if (host != null && resumableDownload.canResume(fileToDownload, downloadDirectory)) {
+
+			resumableDownload.resume(host, fileToDownload, downloadDirectory, progress);
+
+		} else {
+
+			resumableDownload.markStarted(fileToDownload, downloadDirectory);
+
+			if (host != null && segmentedDownload.isSegmentable(host, fileToDownload))
+				segmentedDownload.download(host, fileToDownload, downloadDirectory, progress);
+			else if (host != null
+			        && (host.isDirectDownload() || bandwidthLimiter.isLimited(host)
+			                || ChecksumAlgorithm.fromSetting(host.getChecksum()) != null))
+				resumableDownload.download(host, fileToDownload, downloadDirectory, progress);
+			else
+				downloadOverConnection(connection, fileToDownload, downloadDirectory, progress);
+		}
+	}
+
+	private void recordFailedDownload() {
+
+		failedDownloads.incrementAndGet();
+		hostMetrics().recordFailedDownload();
+	}
+
+	private HostMetrics hostMetrics() {
+		return getMetricsRegistry().host(HostConfig.keyFor(hostId));
+	}
+
+	/**
+	 * JFTP's SFTP download is relative to the current remote directory, so files found below it by a
+	 * recursive scan are downloaded from their own directory.
+	 */
+	private void downloadOverConnection(Connection connection, FtpFile fileToDownload, String downloadDirectory,
+	        TransferProgress progress) {
+
+		if (remoteRoot != null)
+			connection.setRemoteDirectory(RemotePaths.parentOf(fileToDownload));
+
+		if (progress == null) {
+
+			connection.download(fileToDownload, downloadDirectory);
+			return;
+		}
+
+		progress.restart(0);
+		progress.watch(new File(downloadDirectory, fileToDownload.getName()));
+
+		try {
+			connection.download(fileToDownload, downloadDirectory);
+		} finally {
+			progress.watch(null);
+		}
+	}
+
+	/**
+	 * Staged files are published straight into the move directory when moving is enabled, so they are
+	 * never moved again.
+	 */
+	private String localDirectoryFor(Settings currentSettings, String relativeDirectory) {
+
+		String rootDirectory = currentSettings.isStagingEnabled() && currentSettings.isMoveEnabled() ? currentSettings
+		        .getMoveDirectory() : currentSettings.getDownloadDirectory();
+
+		if (relativeDirectory.isEmpty())
+			return rootDirectory;
+
+		File localDirectory = new File(rootDirectory, relativeDirectory);
+		localDirectory.mkdirs();
+
+		return localDirectory.getPath();
+	}
+
+	private boolean openSeenFileIndex(HostConfig host) {
+
+		if (seenFileIndex != null)
+			return true;
+
+		File indexFile = new File(settings.get().getIndexDirectory(), String.format("seen-%s.idx", host.getKey()));
+
+		try {
+
+			seenFileIndex = new SeenFileIndex(indexFile);
+			seedIndexFromLastRun = seenFileIndex.isNewlyCreated();
+
+			return true;
+
+		} catch (SeenFileIndexException e) {
+			notifyOfError(e);
+		}
+
+		return false;
+	}
+
+	/**
+	 * A file that can't be recorded, e.g. because the index couldn't grow, is reported and downloaded again
+	 * by a later run.
+	 */
+	private void recordSeen(FtpFile file) {
+
+		try {
+			seenFileIndex.record(file);
+		} catch (SeenFileIndexException e) {
+			notifyOfError(e);
+		}
+	}
+
+	private void flushSeenFileIndex() {
+
+		try {
+			seenFileIndex.flush();
+		} catch (SeenFileIndexException e) {
+			notifyOfError(e);
+		}
+	}
+
+	/**
+	 * Closes the seen file index, which the next run opens again if there is one.
+	 */
+	public void close() {
+
+		if (seenFileIndex == null)
+			return;
+
+		try {
+			seenFileIndex.close();
+		} catch (SeenFileIndexException e) {
+			notifyOfError(e);
+		}
+
+		seenFileIndex = null;
+	}
+
+	private boolean openRuntimeState() {
+
+		if (runtimeState != null)
+			return true;
+
+		try {
+
+			runtimeState = new RuntimeStateJournal(new File(settings.get().getIndexDirectory(),
+			        RuntimeStateJournal.FILE_NAME));
+			flushRuntimeStateAfterRun = true;
+
+			return true;
+
+		} catch (RuntimeStateJournalException e) {
+			notifyOfError(e);
+		}
+
+		return false;
+	}
+
+	private void flushRuntimeState() {
+
+		try {
+			runtimeState.flush();
+		} catch (RuntimeStateJournalException e) {
+			notifyOfError(e);
+		}
+	}
+
+	/**
+	 * The first scan against a new index records everything older than the last run as already seen, so
+	 * that moving from the last-run date to the index doesn't download old files again. A last run recorded
+	 * in the config file by an older version is used until the journal has one.
+	 */
+	private DateTime seedCutoff() {
+
+		if (!seedIndexFromLastRun)
+			return null;
+
+		return runtimeState.getLastRunDate(host, settingsProvider.getLastRunDate(host));
+	}
+
+	private void recordLastRun(HostConfig host) {
+
+		try {
+			runtimeState.setLastRunDate(host, DateTime.now());
+		} catch (RuntimeStateJournalException e) {
+			notifyOfError(e);
 		}
 	}
 
@@ -164,14 +727,95 @@ public class ConnectionSchedule extends ConnectionNotifier implements Runnable {
 		connection.setRemoteDirectory(remoteDirectory);
 	}
 
-	private void downloadFilteredFiles(List<FtpFile> files) {
+	/**
+	 * Drains the queue using the already open connection, plus up to (max-connections - 1) additional
+	 * {@link DownloadWorker}s that each open their own connection to the host.
+	 */
+	protected void downloadQueue(HostConfig host, DownloadQueue downloadQueue) {
+
+		int additionalWorkers = Math.min(host.getMaxConnections(), downloadQueue.size()) - 1;
+
+		hostMetrics().watchQueue(downloadQueue);
+
+		ExecutorService workerPool = null;
+
+		if (additionalWorkers > 0) {
+
+			workerPool = Executors.newFixedThreadPool(additionalWorkers);
+
+			for (int i = 0; i < additionalWorkers; i++)
+				workerPool.execute(new DownloadWorker(this, host, downloadQueue));
+		}
+
+		FtpFile file;
+
+		while ((file = downloadQueue.take()) != null)
+			downloadFile(file);
+
+		if (workerPool != null)
+			awaitWorkers(workerPool);
+
+		hostMetrics().watchQueue(null);
+	}
+
+	private void awaitWorkers(ExecutorService workerPool) {
+
+		workerPool.shutdown();
+
+		boolean finished = false;
+
+		try {
+
+			while (!finished)
+				finished = workerPool.awaitTermination(1, TimeUnit.MINUTES);
+
+		} catch (InterruptedException e) {
+
+			workerPool.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void downloadFilteredFiles(HostConfig host, List<FtpFile> files) {
 
 		if (!files.isEmpty()) {
 
 			List<FtpFile> filtered = filterFilesToCreateDownloadQueue(files);
 
-			for (FtpFile file : filtered)
-				downloadFile(file);
+			filesFoundInLastRun = filtered.size();
+
+			downloadQueue(host, new DownloadQueue(filtered));
+
+			if (remoteRoot != null)
+				connection.setRemoteDirectory(remoteRoot);
+
+			recordLastRun(host);
+		}
+	}
+
+	/**
+	 * Lists the remote directory entry by entry over a separate connection, downloading each wanted file
+	 * as soon as it is listed. Only the host's own directory is listed, not the ones below it.
+	 */
+	private void streamFilesToDownload(HostConfig host) {
+
+		remoteRoot = null;
+
+		StreamingScan scan = new StreamingScan(this, host, currentFilterMatcher(), seedCutoff());
+
+		try {
+
+			hostMetrics().watchQueue(scan.getDownloadQueue());
+			filesFoundInLastRun = scan.scan(connection).size();
+			hostMetrics().watchQueue(null);
+			hostMetrics().getListLatency().record(scan.getListingNanos());
+
+			recordLastRun(host);
+			seedIndexFromLastRun = false;
+			listingCompleted = true;
+
+		} catch (FileListingException e) {
+			notifyOfError(e);
 		}
 	}
 }
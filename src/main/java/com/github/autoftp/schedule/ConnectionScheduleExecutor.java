@@ -1,41 +1,319 @@
 package com.github.autoftp.schedule;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import javax.management.JMException;
+
 import com.github.autoftp.ConnectionListener;
-import com.github.autoftp.config.SettingsProvider;
+import com.github.autoftp.config.HostConfig;
+import com.github.autoftp.config.Settings;
+import com.github.autoftp.config.SettingsWatcher;
+import com.github.autoftp.metrics.JmxExporter;
+import com.github.autoftp.metrics.MetricsRegistry;
+import com.github.autoftp.metrics.PrometheusTextFileExporter;
+import com.github.autoftp.state.RuntimeStateJournal;
+import com.github.autoftp.state.RuntimeStateJournalException;
 import com.github.autoftp.strategies.ExternalNotificationStrategy;
 import com.github.autoftp.strategies.MoveOnCompleteStrategy;
+import com.github.autoftp.transfer.BandwidthLimiter;
+import com.github.autoftp.transfer.ProgressMonitor;
 
 public class ConnectionScheduleExecutor {
 
-	private static final int START_IMMEDIATELY = 0;
+	private static final long SECONDS_IN_MINUTE = 60;
+	private static final long RUNTIME_STATE_FLUSH_SECONDS = 1;
+	private static final long SHUTDOWN_WAIT_SECONDS = 10;
 
 	private ScheduledExecutorService scheduledExecutorService;
-	private SettingsProvider settingsProvider;
-	private ConnectionSchedule connectionSchedule;
+	private SettingsWatcher settings;
+	private Random random;
+	private List<AsyncConnectionListener> asyncListeners = new ArrayList<AsyncConnectionListener>();
+	private BandwidthLimiter bandwidthLimiter = new BandwidthLimiter();
+	private List<AdaptivePoller> adaptivePollers = new ArrayList<AdaptivePoller>();
+	private List<ConnectionSchedule> schedules = new ArrayList<ConnectionSchedule>();
+	private MetricsRegistry metricsRegistry = new MetricsRegistry();
+	private RuntimeStateJournal runtimeState;
+	private ProgressMonitor progressMonitor = new ProgressMonitor();
 
 	public ConnectionScheduleExecutor() {
+		this(new SettingsWatcher("/etc/autoftp/autoftp.conf"));
+	}
+
+	/**
+	 * Shares the settings of whatever created it, such as the screen, which needs them before anything is
+	 * scheduled.
+	 */
+	public ConnectionScheduleExecutor(SettingsWatcher settings) {
+		this(settings, Executors.newScheduledThreadPool(settings.get().getSchedulerThreads()));
+	}
+
+	ConnectionScheduleExecutor(SettingsWatcher settings, ScheduledExecutorService scheduledExecutorService) {
 
-		scheduledExecutorService = Executors.newScheduledThreadPool(1);
-		settingsProvider = new SettingsProvider("/etc/autoftp/autoftp.conf");
-		connectionSchedule = new ConnectionSchedule();
+		this.settings = settings;
+		this.scheduledExecutorService = scheduledExecutorService;
+		runtimeState = new RuntimeStateJournal(new File(settings.get().getIndexDirectory(),
+		        RuntimeStateJournal.FILE_NAME));
+		random = new Random();
 	}
 
+	/**
+	 * Hosts are scheduled from the settings as they are now. Later edits to the config file apply from each
+	 * host's next check, except that a fixed interval stays as it was. Hosts added to the file aren't
+	 * scheduled until the next start, and hosts removed from it stop being checked.
+	 */
 	public void scheduleAndListen(ConnectionListener listener) {
 
-		connectionSchedule.registerListener(listener);
+		Settings currentSettings = settings.get();
+		List<HostConfig> hosts = currentSettings.getHosts();
+
+		ConnectionListener screenListener = dispatchTo(listener);
+		ConnectionListener moveStrategy = currentSettings.isMoveEnabled() ? dispatchTo(new MoveOnCompleteStrategy(
+		        settings)) : null;
+		ConnectionListener notificationStrategy = currentSettings.isPushbulletNotificationEnabled() ? dispatchTo(new ExternalNotificationStrategy(
+		        settings)) : null;
+
+		int startJitter = currentSettings.getStartJitterSeconds();
+
+		for (HostConfig host : hosts) {
+
+			ConnectionSchedule connectionSchedule = createSchedule(host.getId());
+			connectionSchedule.setBandwidthLimiter(bandwidthLimiter);
+			connectionSchedule.setMetricsRegistry(metricsRegistry);
+			connectionSchedule.setRuntimeState(runtimeState);
+			connectionSchedule.setProgressMonitor(progressMonitor);
+			schedules.add(connectionSchedule);
+			metricsRegistry.host(host.getKey());
+			bandwidthLimiter.configure(currentSettings.getBandwidthLimit(), host);
+
+			connectionSchedule.registerListener(screenListener);
+
+			if (moveStrategy != null)
+				connectionSchedule.registerListener(moveStrategy);
+
+			if (notificationStrategy != null)
+				connectionSchedule.registerListener(notificationStrategy);
+
+			long intervalInSeconds = Math.max(1, host.getInterval()) * SECONDS_IN_MINUTE;
+			long startOffset = startOffset(startJitter, intervalInSeconds);
+
+			if (host.isAdaptiveInterval())
+				startAdaptivePoller(host, connectionSchedule, startOffset);
+			else
+				scheduledExecutorService.scheduleAtFixedRate(reporting(connectionSchedule, screenListener),
+				        startOffset, intervalInSeconds, TimeUnit.SECONDS);
+
+			if (host.isKeepAlive())
+				scheduleKeepAlive(host, connectionSchedule, startOffset, intervalInSeconds, screenListener);
+		}
+
+		exportMetrics(screenListener);
+		watchSettings(screenListener);
+		flushRuntimeState(screenListener);
+		progressMonitor.start();
+
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				shutdown();
+			}
+		}, "scheduler-shutdown"));
+	}
+
+	/**
+	 * Stops checking hosts and gives any check already running a short while to finish before closing each
+	 * host's seen file index.
+	 */
+	public void shutdown() {
+
+		scheduledExecutorService.shutdown();
+
+		try {
+			scheduledExecutorService.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		for (ConnectionSchedule connectionSchedule : schedules)
+			connectionSchedule.close();
+	}
+
+	/**
+	 * Every host records its runtime state in the one journal, which is forced to disk once a second
+	 * rather than after each change.
+	 */
+	private void flushRuntimeState(final ConnectionListener listener) {
+
+		scheduledExecutorService.scheduleWithFixedDelay(reporting(new Runnable() {
+
+			@Override
+			public void run() {
+
+				try {
+					runtimeState.flush();
+				} catch (RuntimeStateJournalException e) {
+					listener.onError(e.getMessage());
+				}
+			}
+		}, listener), RUNTIME_STATE_FLUSH_SECONDS, RUNTIME_STATE_FLUSH_SECONDS, TimeUnit.SECONDS);
+	}
+
+	private void watchSettings(final ConnectionListener listener) {
+
+		try {
+
+			settings.start(new SettingsWatcher.ErrorHandler() {
+
+				@Override
+				public void onReloadFailed(String message) {
+					listener.onError(message);
+				}
+			});
+
+		} catch (IOException e) {
+			listener.onError("Unable to watch the config file for changes: " + e.getMessage());
+		}
+	}
+
+	public MetricsRegistry getMetricsRegistry() {
+		return metricsRegistry;
+	}
+
+	private void exportMetrics(final ConnectionListener listener) {
+
+		if (settings.get().isJmxMetricsEnabled()) {
+
+			try {
+
+				new JmxExporter().register(metricsRegistry);
+
+			} catch (JMException e) {
+				listener.onError("Unable to register metrics with JMX: " + e.getMessage());
+			}
+		}
+
+		String textFile = settings.get().getMetricsTextFile();
+
+		if (textFile.trim().isEmpty())
+			return;
+
+		long interval = Math.max(1, settings.get().getMetricsTextFileIntervalSeconds());
+
+		scheduledExecutorService.scheduleWithFixedDelay(reporting(new PrometheusTextFileExporter(metricsRegistry,
+		        new File(textFile.trim()), new PrometheusTextFileExporter.ErrorHandler() {
+
+			        @Override
+			        public void onExportFailed(IOException e) {
+				        listener.onError("Unable to write metrics file: " + e.getMessage());
+			        }
+		        }), listener), interval, interval, TimeUnit.SECONDS);
+	}
+
+	private void scheduleKeepAlive(HostConfig host, final ConnectionSchedule connectionSchedule, long startOffset,
+	        long intervalInSeconds, ConnectionListener listener) {
+
+		long keepAliveInterval = Math.max(1, host.getKeepAliveInterval());
+
+		scheduledExecutorService.scheduleWithFixedDelay(reporting(new Runnable() {
+
+			@Override
+			public void run() {
+				connectionSchedule.keepConnectionAlive();
+			}
+		}, listener), startOffset + keepAliveInterval, keepAliveInterval, TimeUnit.SECONDS);
+
+		if (!host.isAdaptiveInterval() && host.getPrewarmSeconds() > 0 && host.getPrewarmSeconds() < intervalInSeconds) {
+
+			scheduledExecutorService.scheduleAtFixedRate(reporting(new Runnable() {
+
+				@Override
+				public void run() {
+					connectionSchedule.prewarmConnection();
+				}
+			}, listener), startOffset + intervalInSeconds - host.getPrewarmSeconds(), intervalInSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * A repeating task that throws is never run again by the scheduler, so anything it throws is reported
+	 * instead.
+	 */
+	private Runnable reporting(Runnable task, ConnectionListener listener) {
+		return new ReportingTask(task, listener, metricsRegistry);
+	}
+
+	/**
+	 * Shared by every host. Its limits can be changed while transfers are running.
+	 */
+	public BandwidthLimiter getBandwidthLimiter() {
+		return bandwidthLimiter;
+	}
+
+	/**
+	 * Listeners that receive their events on their own thread, with their queue and latency figures.
+	 */
+	public List<AsyncConnectionListener> getAsyncListeners() {
+		return asyncListeners;
+	}
+
+	/**
+	 * Each listener is wrapped once and the wrapper shared by every host, so that a listener still sees
+	 * all of its events in order on a single thread.
+	 */
+	private ConnectionListener dispatchTo(ConnectionListener listener) {
+
+		if (!settings.get().isAsyncListenersEnabled())
+			return listener;
+
+		AsyncConnectionListener asyncListener = new AsyncConnectionListener(listener,
+		        settings.get().getListenerQueueSize(),
+		        OverflowPolicy.fromSetting(settings.get().getListenerOverflowPolicy()));
+
+		asyncListeners.add(asyncListener);
+
+		return asyncListener;
+	}
+
+	/**
+	 * Each poller prewarms its own connection before the check it schedules, since the time between
+	 * checks isn't fixed.
+	 */
+	private void startAdaptivePoller(HostConfig host, ConnectionSchedule connectionSchedule, long startOffset) {
+
+		AdaptivePoller poller = new AdaptivePoller(connectionSchedule, host, scheduledExecutorService, settings,
+		        runtimeState);
+
+		adaptivePollers.add(poller);
+		poller.start(startOffset);
+	}
+
+	/**
+	 * Hosts with an adaptive interval, each with the wait it chose before its next check.
+	 */
+	public List<AdaptivePoller> getAdaptivePollers() {
+		return adaptivePollers;
+	}
+
+	protected ConnectionSchedule createSchedule(String hostId) {
+		return new ConnectionSchedule(hostId, settings);
+	}
 
-		if (settingsProvider.isMoveEnabled())
-			connectionSchedule.registerListener(new MoveOnCompleteStrategy());
-		
-		if (settingsProvider.isPushbulletNotificationEnabled())
-			connectionSchedule.registerListener(new ExternalNotificationStrategy());
+	/**
+	 * Spreads the first run of each host over the jitter window (capped at one interval) so that many
+	 * hosts don't all connect in the same second.
+	 */
+	private long startOffset(int startJitter, long intervalInSeconds) {
 
-		int connectionInterval = settingsProvider.getConnectionInterval();
+		if (startJitter <= 0)
+			return 0;
 
-		scheduledExecutorService.scheduleAtFixedRate(connectionSchedule, START_IMMEDIATELY, connectionInterval, TimeUnit.MINUTES);
+		return random.nextInt((int) Math.min(startJitter, intervalInSeconds) + 1);
 	}
 }
@@ -0,0 +1,206 @@
+package com.github.autoftp.schedule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jftp.client.Client;
+import jftp.connection.Connection;
+import jftp.connection.FtpFile;
+import jftp.exception.ClientDisconnectionException;
+import jftp.exception.ConnectionInitialisationException;
+import jftp.exception.FileListingException;
+import jftp.exception.NoSuchDirectoryException;
+
+import com.github.autoftp.FilterMatcher;
+import com.github.autoftp.config.HostConfig;
+
+/**
+ * Lists the host's remote directory and the directories below it, down to the host's maximum depth.
+ * Directories still waiting to be listed are shared between the schedule's own connection and up to
+ * (max-connections - 1) extra connections, so several directories are listed at once.
+ */
+public class DirectoryWalker {
+
+	private static final long POLL_MILLIS = 100;
+
+	private ConnectionSchedule connectionSchedule;
+	private HostConfig host;
+	private FilterMatcher includedDirectories;
+	private FilterMatcher excludedDirectories;
+
+	private BlockingQueue<RemoteDirectory> pendingDirectories = new LinkedBlockingQueue<RemoteDirectory>();
+	private AtomicInteger unfinishedDirectories = new AtomicInteger();
+	private List<FtpFile> files = Collections.synchronizedList(new ArrayList<FtpFile>());
+	private String root;
+
+	public DirectoryWalker(ConnectionSchedule connectionSchedule, HostConfig host) {
+
+		this.connectionSchedule = connectionSchedule;
+		this.host = host;
+		this.includedDirectories = new FilterMatcher(host.getIncludedDirectories());
+		this.excludedDirectories = new FilterMatcher(host.getExcludedDirectories());
+	}
+
+	/**
+	 * Lists every file below the connection's current directory. The connection is left in the directory
+	 * it started in.
+	 */
+	public List<FtpFile> walk(Connection connection) {
+
+		List<FtpFile> topLevel = connection.listFiles();
+
+		root = RemotePaths.rootOf(topLevel);
+
+		if (root == null)
+			return topLevel;
+
+		addEntries(topLevel, 1);
+
+		if (unfinishedDirectories.get() > 0)
+			listPendingDirectories(connection);
+
+		connection.setRemoteDirectory(root);
+
+		return new ArrayList<FtpFile>(files);
+	}
+
+	/**
+	 * The absolute path of the directory the walk started from, or null if it was empty.
+	 */
+	public String getRoot() {
+		return root;
+	}
+
+	private void listPendingDirectories(Connection connection) {
+
+		int additionalListers = Math.min(host.getMaxConnections(), unfinishedDirectories.get()) - 1;
+
+		ExecutorService listerPool = null;
+
+		if (additionalListers > 0) {
+
+			listerPool = Executors.newFixedThreadPool(additionalListers);
+
+			for (int i = 0; i < additionalListers; i++)
+				listerPool.execute(new ConnectedLister());
+		}
+
+		listUntilFinished(connection);
+
+		if (listerPool != null) {
+
+			listerPool.shutdown();
+
+			try {
+
+				listerPool.awaitTermination(1, TimeUnit.MINUTES);
+
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void listUntilFinished(Connection connection) {
+
+		try {
+
+			while (unfinishedDirectories.get() > 0) {
+
+				RemoteDirectory directory = pendingDirectories.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+
+				if (directory != null)
+					list(connection, directory);
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void list(Connection connection, RemoteDirectory directory) {
+
+		try {
+
+			connection.setRemoteDirectory(directory.path);
+
+			addEntries(connection.listFiles(), directory.depth + 1);
+
+		} catch (NoSuchDirectoryException e) {
+			connectionSchedule.notifyOfError(e.getMessage());
+		} catch (FileListingException e) {
+			connectionSchedule.notifyOfError(e.getMessage());
+		} finally {
+			unfinishedDirectories.decrementAndGet();
+		}
+	}
+
+	private void addEntries(List<FtpFile> entries, int depth) {
+
+		for (FtpFile entry : entries) {
+
+			if (!entry.isDirectory()) {
+
+				files.add(entry);
+
+			} else if (depth <= host.getMaxDepth() && isWanted(entry.getName())) {
+
+				unfinishedDirectories.incrementAndGet();
+				pendingDirectories.add(new RemoteDirectory(entry.getFullPath(), depth));
+			}
+		}
+	}
+
+	private boolean isWanted(String directoryName) {
+
+		if (".".equals(directoryName) || "..".equals(directoryName))
+			return false;
+
+		if (!host.getIncludedDirectories().isEmpty() && !includedDirectories.matches(directoryName))
+			return false;
+
+		return !excludedDirectories.matches(directoryName);
+	}
+
+	private static class RemoteDirectory {
+
+		private String path;
+		private int depth;
+
+		public RemoteDirectory(String path, int depth) {
+
+			this.path = path;
+			this.depth = depth;
+		}
+	}
+
+	private class ConnectedLister implements Runnable {
+
+		@Override
+		public void run() {
+
+			Client client = connectionSchedule.createClient(host);
+
+			try {
+
+				Connection connection = client.connect();
+
+				listUntilFinished(connection);
+
+				client.disconnect();
+
+			} catch (ConnectionInitialisationException e) {
+				connectionSchedule.notifyOfError(e.getMessage());
+			} catch (ClientDisconnectionException e) {
+				connectionSchedule.notifyOfError(e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.github.autoftp.schedule;
+
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import jftp.connection.FtpFile;
+
+/**
+ * Files waiting to be downloaded, shared by every connection to a host. Files can still be added while
+ * they are being taken, so a taker only stops once the queue has been closed and is empty.
+ */
+public class DownloadQueue {
+
+	private static final long POLL_MILLIS = 100;
+
+	private BlockingQueue<FtpFile> files = new LinkedBlockingQueue<FtpFile>();
+	private volatile boolean closed;
+
+	public DownloadQueue() {
+	}
+
+	/**
+	 * A queue that already holds every file it will ever have.
+	 */
+	public DownloadQueue(Collection<FtpFile> files) {
+
+		this.files.addAll(files);
+		this.closed = true;
+	}
+
+	public void add(FtpFile file) {
+		files.add(file);
+	}
+
+	/**
+	 * No more files will be added.
+	 */
+	public void close() {
+		closed = true;
+	}
+
+	public int size() {
+		return files.size();
+	}
+
+	public boolean isEmpty() {
+		return files.isEmpty();
+	}
+
+	/**
+	 * Waits for the next file, returning null once the queue is closed and empty.
+	 */
+	public FtpFile take() {
+
+		try {
+
+			while (true) {
+
+				boolean finalFiles = closed;
+				FtpFile file = files.poll(finalFiles ? 0 : POLL_MILLIS, TimeUnit.MILLISECONDS);
+
+				if (file != null || finalFiles)
+					return file;
+			}
+
+		} catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.github.autoftp.schedule;
+
+import jftp.client.Client;
+import jftp.connection.Connection;
+import jftp.connection.FtpFile;
+import jftp.exception.ClientDisconnectionException;
+import jftp.exception.ConnectionInitialisationException;
+import jftp.exception.NoSuchDirectoryException;
+
+import com.github.autoftp.config.HostConfig;
+
+/**
+ * Downloads files from a shared queue until it is closed and empty, either over its own connection to the
+ * host or over one it is given that is already in the remote directory.
+ */
+public class DownloadWorker implements Runnable {
+
+	private ConnectionSchedule connectionSchedule;
+	private HostConfig host;
+	private DownloadQueue downloadQueue;
+	private Connection openConnection;
+
+	public DownloadWorker(ConnectionSchedule connectionSchedule, HostConfig host, DownloadQueue downloadQueue) {
+		this(connectionSchedule, host, downloadQueue, null);
+	}
+
+	public DownloadWorker(ConnectionSchedule connectionSchedule, HostConfig host, DownloadQueue downloadQueue,
+	        Connection openConnection) {
+
+		this.connectionSchedule = connectionSchedule;
+		this.host = host;
+		this.downloadQueue = downloadQueue;
+		this.openConnection = openConnection;
+	}
+
+	@Override
+	public void run() {
+
+		if (openConnection != null) {
+
+			downloadQueuedFiles(openConnection);
+			return;
+		}
+
+		Client client = connectionSchedule.createClient(host);
+
+		try {
+
+			Connection connection = client.connect();
+
+			try {
+
+				connection.setRemoteDirectory(host.getFileDirectory());
+
+				downloadQueuedFiles(connection);
+
+			} catch (NoSuchDirectoryException e) {
+				connectionSchedule.notifyOfError(e.getMessage());
+			}
+
+			client.disconnect();
+
+		} catch (ConnectionInitialisationException e) {
+			connectionSchedule.notifyOfError(e.getMessage());
+		} catch (ClientDisconnectionException e) {
+			connectionSchedule.notifyOfError(e.getMessage());
+		}
+	}
+
+	private void downloadQueuedFiles(Connection connection) {
+
+		FtpFile file;
+
+		while ((file = downloadQueue.take()) != null)
+			connectionSchedule.downloadFile(connection, file);
+	}
+}
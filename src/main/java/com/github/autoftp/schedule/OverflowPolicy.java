@@ -0,0 +1,29 @@
+package com.github.autoftp.schedule;
+
+/**
+ * What an {@link AsyncConnectionListener} does with a new event when its queue is full.
+ */
+public enum OverflowPolicy {
+
+	/**
+	 * Wait for room in the queue. No events are lost, but the notifying thread is held up.
+	 */
+	BLOCK,
+
+	/**
+	 * Drop the new event.
+	 */
+	DISCARD_NEWEST,
+
+	/**
+	 * Drop the oldest queued event to make room for the new one.
+	 */
+	DISCARD_OLDEST;
+
+	/**
+	 * Reads a policy as written in the config file, e.g. "discard-oldest".
+	 */
+	public static OverflowPolicy fromSetting(String setting) {
+		return valueOf(setting.trim().toUpperCase().replace('-', '_'));
+	}
+}
@@ -0,0 +1,125 @@
+package com.github.autoftp.schedule;
+
+import jftp.client.Client;
+import jftp.connection.Connection;
+import jftp.exception.ClientDisconnectionException;
+
+import com.github.autoftp.config.HostConfig;
+
+/**
+ * A connection to a host that stays open between scheduled runs. JFTP connections have no NOOP, so
+ * "cd ." is used instead to keep the session alive and to check it is still usable before it is reused.
+ */
+public class PersistentConnection {
+
+	private static final String CURRENT_DIRECTORY = ".";
+
+	private ConnectionSchedule connectionSchedule;
+	private Client client;
+	private Connection connection;
+	private String connectedTo;
+	private boolean inUse;
+
+	public PersistentConnection(ConnectionSchedule connectionSchedule) {
+		this.connectionSchedule = connectionSchedule;
+	}
+
+	/**
+	 * Returns a healthy connection already in the host's remote directory, reconnecting if the previous
+	 * one has dropped or the host's settings have changed. It is not kept alive until released.
+	 */
+	public synchronized Connection acquire(HostConfig host) {
+
+		ensureOpen(host);
+
+		inUse = true;
+
+		return connection;
+	}
+
+	public synchronized void release() {
+		inUse = false;
+	}
+
+	public synchronized void keepAlive() {
+
+		if (connection != null && !inUse && !isHealthy())
+			close();
+	}
+
+	public synchronized void prewarm(HostConfig host) {
+
+		if (!inUse)
+			ensureOpen(host);
+	}
+
+	public synchronized boolean isOpen() {
+		return connection != null;
+	}
+
+	public synchronized void close() {
+
+		if (client != null) {
+
+			try {
+				client.disconnect();
+			} catch (ClientDisconnectionException e) {
+				// The session is being thrown away, so there's nothing to recover.
+			}
+		}
+
+		client = null;
+		connection = null;
+		connectedTo = null;
+	}
+
+	private void ensureOpen(HostConfig host) {
+
+		if (connection != null && (!describe(host).equals(connectedTo) || !isHealthy()))
+			close();
+
+		if (connection == null)
+			open(host);
+	}
+
+	private void open(HostConfig host) {
+
+		Client newClient = connectionSchedule.createClient(host);
+		Connection newConnection = newClient.connect();
+
+		try {
+
+			newConnection.setRemoteDirectory(host.getFileDirectory());
+
+		} catch (RuntimeException e) {
+
+			newClient.disconnect();
+			throw e;
+		}
+
+		client = newClient;
+		connection = newConnection;
+		connectedTo = describe(host);
+	}
+
+	private boolean isHealthy() {
+
+		try {
+
+			connection.setRemoteDirectory(CURRENT_DIRECTORY);
+
+			return true;
+
+		} catch (RuntimeException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Where a connection for the host goes and as whom, so a changed setting means connecting again.
+	 */
+	static String describe(HostConfig host) {
+		return String.format("%s://%s@%s:%d/%s", host.getClientType(), host.getUsername(), host.getHostname(),
+		        host.getPort(), host.getFileDirectory());
+	}
+}
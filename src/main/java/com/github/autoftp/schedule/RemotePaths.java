@@ -0,0 +1,62 @@
+package com.github.autoftp.schedule;
+
+import java.util.List;
+
+import jftp.connection.FtpFile;
+
+/**
+ * Works out where remote files sit relative to the host's remote directory, using the full paths JFTP
+ * gives each listed file.
+ */
+public class RemotePaths {
+
+	private RemotePaths() {
+	}
+
+	/**
+	 * The absolute path of the directory a listing was taken from, or null if the listing is empty.
+	 */
+	public static String rootOf(List<FtpFile> listing) {
+
+		for (FtpFile entry : listing) {
+
+			String fullPath = entry.getFullPath();
+
+			if (fullPath.endsWith(entry.getName()))
+				return stripTrailingSeparator(fullPath.substring(0, fullPath.length() - entry.getName().length()));
+		}
+
+		return null;
+	}
+
+	public static String parentOf(FtpFile file) {
+
+		String fullPath = file.getFullPath();
+
+		return stripTrailingSeparator(fullPath.substring(0, fullPath.length() - file.getName().length()));
+	}
+
+	/**
+	 * The path of the file's directory below the root, without leading or trailing separators. Files
+	 * directly in the root, or outside it, give an empty path.
+	 */
+	public static String relativeDirectoryOf(String root, FtpFile file) {
+
+		String parent = parentOf(file);
+
+		if (root == null || !parent.startsWith(root) || parent.length() == root.length())
+			return "";
+
+		String relative = parent.substring(root.length());
+
+		return relative.startsWith("/") || relative.startsWith("\\") ? relative.substring(1) : relative;
+	}
+
+	private static String stripTrailingSeparator(String path) {
+
+		if (path.length() > 1 && (path.endsWith("/") || path.endsWith("\\")))
+			return path.substring(0, path.length() - 1);
+
+		return path;
+	}
+}
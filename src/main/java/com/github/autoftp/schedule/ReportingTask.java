@@ -0,0 +1,36 @@
+package com.github.autoftp.schedule;
+
+import com.github.autoftp.ConnectionListener;
+import com.github.autoftp.metrics.MetricsRegistry;
+
+/**
+ * Runs a repeating task, counting and reporting anything it throws instead of letting it reach the
+ * scheduler, which would otherwise never run the task again.
+ */
+class ReportingTask implements Runnable {
+
+	private Runnable task;
+	private ConnectionListener listener;
+	private MetricsRegistry metricsRegistry;
+
+	ReportingTask(Runnable task, ConnectionListener listener, MetricsRegistry metricsRegistry) {
+
+		this.task = task;
+		this.listener = listener;
+		this.metricsRegistry = metricsRegistry;
+	}
+
+	@Override
+	public void run() {
+
+		try {
+
+			task.run();
+
+		} catch (RuntimeException e) {
+
+			metricsRegistry.recordError(e.getClass());
+			listener.onError(e.getMessage() == null ? e.toString() : e.getMessage());
+		}
+	}
+}
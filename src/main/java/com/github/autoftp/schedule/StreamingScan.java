@@ -0,0 +1,161 @@
+package com.github.autoftp.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import jftp.connection.Connection;
+import jftp.connection.FtpFile;
+import jftp.exception.ClientDisconnectionException;
+
+import org.joda.time.DateTime;
+
+import com.github.autoftp.FilterMatcher;
+import com.github.autoftp.config.HostConfig;
+import com.github.autoftp.transfer.ListingCallback;
+import com.github.autoftp.transfer.RangedConnection;
+import com.github.autoftp.transfer.RangedConnectionFactory;
+
+/**
+ * Lists the host's remote directory over a separate connection and queues each new, matching file as soon
+ * as its entry is read, so downloads start while the rest of the listing is still arriving. The
+ * schedule's own connection starts downloading straight away; up to (max-connections - 1) extra
+ * {@link DownloadWorker}s are started once files are waiting for a free connection.
+ */
+public class StreamingScan {
+
+	private ConnectionSchedule connectionSchedule;
+	private HostConfig host;
+	private FilterMatcher filterMatcher;
+	private DateTime seedBefore;
+	private RangedConnectionFactory rangedConnectionFactory;
+
+	private DownloadQueue downloadQueue = new DownloadQueue();
+	private List<FtpFile> queuedFiles = new ArrayList<FtpFile>();
+	private ExecutorService downloaders;
+	private int startedDownloaders;
+	private long listingNanos;
+
+	public StreamingScan(ConnectionSchedule connectionSchedule, HostConfig host, FilterMatcher filterMatcher,
+	        DateTime seedBefore) {
+		this(connectionSchedule, host, filterMatcher, seedBefore, new RangedConnectionFactory());
+	}
+
+	StreamingScan(ConnectionSchedule connectionSchedule, HostConfig host, FilterMatcher filterMatcher,
+	        DateTime seedBefore, RangedConnectionFactory rangedConnectionFactory) {
+
+		this.connectionSchedule = connectionSchedule;
+		this.host = host;
+		this.filterMatcher = filterMatcher;
+		this.seedBefore = seedBefore;
+		this.rangedConnectionFactory = rangedConnectionFactory;
+	}
+
+	/**
+	 * Lists and downloads everything wanted, returning once the last download has finished. The given
+	 * connection must already be in the remote directory.
+	 */
+	public List<FtpFile> scan(Connection connection) {
+
+		downloaders = Executors.newFixedThreadPool(Math.max(1, host.getMaxConnections()));
+
+		startDownloader(new DownloadWorker(connectionSchedule, host, downloadQueue, connection));
+
+		try {
+
+			listRemoteDirectory();
+
+			if (!queuedFiles.isEmpty())
+				connectionSchedule.notifyOfFilesToDownload(queuedFiles);
+
+		} finally {
+
+			downloadQueue.close();
+			awaitDownloaders();
+		}
+
+		return queuedFiles;
+	}
+
+	public DownloadQueue getDownloadQueue() {
+		return downloadQueue;
+	}
+
+	/**
+	 * How long the listing took, from connecting to reading its last entry.
+	 */
+	public long getListingNanos() {
+		return listingNanos;
+	}
+
+	private void listRemoteDirectory() {
+
+		RangedConnection lister = rangedConnectionFactory.createConnection(host.getClientType());
+		long start = System.nanoTime();
+
+		try {
+
+			lister.connect(host);
+			lister.listFiles(host.getFileDirectory(), new ListingCallback() {
+
+				@Override
+				public void onFile(FtpFile file) {
+
+					if (connectionSchedule.isNewFile(file, seedBefore) && filterMatcher.matches(file.getName()))
+						queue(file);
+				}
+			});
+
+			listingNanos = System.nanoTime() - start;
+
+		} finally {
+			disconnectQuietly(lister);
+		}
+	}
+
+	private void queue(FtpFile file) {
+
+		queuedFiles.add(file);
+		downloadQueue.add(file);
+
+		if (downloadQueue.size() > 1 && startedDownloaders < host.getMaxConnections())
+			startDownloader(new DownloadWorker(connectionSchedule, host, downloadQueue));
+	}
+
+	private void startDownloader(DownloadWorker worker) {
+
+		startedDownloaders++;
+		downloaders.execute(worker);
+	}
+
+	private void disconnectQuietly(RangedConnection lister) {
+
+		try {
+
+			lister.disconnect();
+
+		} catch (ClientDisconnectionException e) {
+			connectionSchedule.notifyOfError(e.getMessage());
+		}
+	}
+
+	private void awaitDownloaders() {
+
+		downloaders.shutdown();
+
+		boolean finished = false;
+
+		try {
+
+			while (!finished)
+				finished = downloaders.awaitTermination(1, TimeUnit.MINUTES);
+
+		} catch (InterruptedException e) {
+
+			downloaders.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -45,9 +45,20 @@ public class TestRunner implements ConnectionListener {
 		System.out.println("Started downloading " + filename);
 	}
 
+	@Override
+	public void onDownloadProgress(String filename, long bytesTransferred, long totalBytes, long bytesPerSecond) {
+		System.out.println(String.format("Downloaded %d of %d bytes at %d bytes/s", bytesTransferred, totalBytes,
+		        bytesPerSecond));
+	}
+
 	@Override
 	public void onDownloadFinished(String filename) {
 		System.out.println("Download complete.");
 	}
 
+	@Override
+	public void onRunFinished() {
+		System.out.println("Run finished.");
+	}
+
 }
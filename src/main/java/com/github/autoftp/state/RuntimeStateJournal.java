@@ -0,0 +1,241 @@
+package com.github.autoftp.state;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.joda.time.DateTime;
+
+import com.github.autoftp.config.HostConfig;
+
+/**
+ * Values the application records as it runs, such as when each host was last checked, kept apart from the
+ * config file so that recording them never rewrites the file the user edits.
+ * <p>
+ * Each change is appended to the journal as a line holding the key and the new value, and the latest value
+ * of every key is kept in memory so that reads never touch the disk. Appends are written straight through
+ * to the operating system, so they survive the process dying, but are only forced to the disk by
+ * {@link #flush()}, which is meant to be called every second or so rather than after each change. Once most
+ * of the lines in the journal have been replaced by later ones, flushing also compacts it by writing the
+ * current values to a new file and renaming that over the journal.
+ */
+public class RuntimeStateJournal {
+
+	/**
+	 * The name the journal has in the index directory.
+	 */
+	public static final String FILE_NAME = "runtime.journal";
+
+	private static final String LAST_RUN = "last-run";
+	private static final String POLL_DELAY = "poll-delay";
+	private static final int MIN_RECORDS_TO_COMPACT = 1024;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private File journalFile;
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private int minRecordsToCompact;
+	private Map<String, Long> values = new HashMap<String, Long>();
+	private int records;
+	private boolean dirty;
+
+	public RuntimeStateJournal(File journalFile) {
+		this(journalFile, MIN_RECORDS_TO_COMPACT);
+	}
+
+	RuntimeStateJournal(File journalFile, int minRecordsToCompact) {
+
+		this.journalFile = journalFile;
+		this.minRecordsToCompact = minRecordsToCompact;
+
+		try {
+
+			if (journalFile.getParentFile() != null)
+				journalFile.getParentFile().mkdirs();
+
+			file = new RandomAccessFile(journalFile, "rw");
+			channel = file.getChannel();
+
+			replay();
+
+		} catch (IOException e) {
+			throw new RuntimeStateJournalException(String.format("Unable to open runtime state journal %s",
+			        journalFile), e);
+		}
+	}
+
+	/**
+	 * When the host was last checked, or the default if that hasn't been recorded.
+	 */
+	public synchronized DateTime getLastRunDate(HostConfig host, DateTime defaultDate) {
+
+		Long millis = values.get(key(host, LAST_RUN));
+
+		return millis == null ? defaultDate : new DateTime(millis);
+	}
+
+	public void setLastRunDate(HostConfig host, DateTime date) {
+		put(key(host, LAST_RUN), date.getMillis());
+	}
+
+	/**
+	 * The delay, in seconds, chosen before the host's next check when its interval is adaptive, or the
+	 * default if that hasn't been recorded.
+	 */
+	public synchronized long getPollDelay(HostConfig host, long defaultSeconds) {
+
+		Long seconds = values.get(key(host, POLL_DELAY));
+
+		return seconds == null ? defaultSeconds : seconds;
+	}
+
+	public void setPollDelay(HostConfig host, long seconds) {
+		put(key(host, POLL_DELAY), seconds);
+	}
+
+	/**
+	 * Forces everything appended so far to the disk, compacting the journal first if it has grown to
+	 * more than twice the number of values it holds.
+	 */
+	public synchronized void flush() {
+
+		try {
+
+			if (records >= minRecordsToCompact && records > values.size() * 2)
+				compact();
+			else if (dirty)
+				channel.force(false);
+
+			dirty = false;
+
+		} catch (IOException e) {
+			throw new RuntimeStateJournalException(String.format("Unable to write runtime state journal %s",
+			        journalFile), e);
+		}
+	}
+
+	public synchronized void close() {
+
+		flush();
+
+		try {
+			file.close();
+		} catch (IOException e) {
+			throw new RuntimeStateJournalException(String.format("Unable to close runtime state journal %s",
+			        journalFile), e);
+		}
+	}
+
+	/**
+	 * A value that is the same as the one already held isn't appended again.
+	 */
+	private synchronized void put(String key, long value) {
+
+		Long previous = values.put(key, value);
+
+		if (previous != null && previous == value)
+			return;
+
+		try {
+
+			write(channel, key, value);
+
+		} catch (IOException e) {
+			throw new RuntimeStateJournalException(String.format("Unable to write runtime state journal %s",
+			        journalFile), e);
+		}
+
+		records++;
+		dirty = true;
+	}
+
+	/**
+	 * Reads every complete line, the later of two lines for the same key winning. A partial line left at the
+	 * end by a crash part way through an append is cut off so that the next append starts on a line of its
+	 * own.
+	 */
+	private void replay() throws IOException {
+
+		byte[] content = Files.readAllBytes(journalFile.toPath());
+		int length = content.length;
+
+		while (length > 0 && content[length - 1] != '\n')
+			length--;
+
+		for (String line : new String(content, 0, length, UTF_8).split("\n")) {
+
+			int separator = line.lastIndexOf('\t');
+
+			if (separator <= 0)
+				continue;
+
+			try {
+
+				values.put(line.substring(0, separator), Long.parseLong(line.substring(separator + 1)));
+				records++;
+
+			} catch (NumberFormatException e) {
+				continue;
+			}
+		}
+
+		if (length < content.length)
+			channel.truncate(length);
+
+		channel.position(length);
+	}
+
+	private void compact() throws IOException {
+
+		File compactedFile = new File(journalFile.getPath() + ".compact");
+		RandomAccessFile compacted = new RandomAccessFile(compactedFile, "rw");
+
+		try {
+
+			compacted.setLength(0);
+
+			for (Entry<String, Long> entry : values.entrySet())
+				write(compacted.getChannel(), entry.getKey(), entry.getValue());
+
+			compacted.getChannel().force(false);
+
+			if (!compactedFile.renameTo(journalFile))
+				throw new IOException(String.format("Unable to replace %s with %s", journalFile, compactedFile));
+
+		} catch (IOException e) {
+
+			compacted.close();
+			compactedFile.delete();
+
+			throw e;
+		}
+
+		file.close();
+
+		file = compacted;
+		channel = compacted.getChannel();
+		records = values.size();
+	}
+
+	private void write(FileChannel target, String key, long value) throws IOException {
+
+		ByteBuffer record = UTF_8.encode(key + "\t" + value + "\n");
+
+		while (record.hasRemaining())
+			target.write(record);
+	}
+
+	/**
+	 * Keys are named like the config file's, so a journal can be read alongside it.
+	 */
+	private String key(HostConfig host, String name) {
+		return (host == null || host.getId() == null) ? name : "hosts." + host.getId() + "." + name;
+	}
+}
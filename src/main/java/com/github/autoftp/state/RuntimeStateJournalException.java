@@ -0,0 +1,14 @@
+package com.github.autoftp.state;
+
+public class RuntimeStateJournalException extends RuntimeException {
+
+	private static final long serialVersionUID = -2284160923457613871L;
+
+	public RuntimeStateJournalException(String message) {
+		super(message);
+	}
+
+	public RuntimeStateJournalException(String message, Exception cause) {
+		super(message, cause);
+	}
+}
@@ -1,26 +1,54 @@
 package com.github.autoftp.strategies;
 
 import java.util.List;
-
-import org.joda.time.DateTime;
+import java.util.concurrent.TimeUnit;
 
 import jftp.connection.FtpFile;
 
 import com.github.autoftp.ConnectionListener;
-import com.github.autoftp.config.SettingsProvider;
+import com.github.autoftp.config.SettingsWatcher;
+import com.github.autoftp.log.AsyncLog;
+import com.github.autoftp.log.Category;
 import com.github.autoftp.url.PushbulletConnection;
 import com.github.autoftp.url.PushbulletException;
+import com.github.autoftp.url.PushbulletNotifier;
 
+/**
+ * Notifies Pushbullet of finished downloads, summed up in one push at the end of each run or for each
+ * pushbullet.notify.window seconds. Pushes are sent in the background, and anything not yet sent when the
+ * process exits is sent first.
+ */
 public class ExternalNotificationStrategy implements ConnectionListener {
 
-	private PushbulletConnection pushbulletConnection;
-	private SettingsProvider settingsProvider;
+	private PushbulletNotifier pushbulletNotifier;
+	private boolean notifyPerRun;
+	private AsyncLog log = AsyncLog.shared();
 
 	public ExternalNotificationStrategy() {
+		this(new SettingsWatcher("/etc/autoftp/autoftp.conf"));
+	}
+
+	public ExternalNotificationStrategy(SettingsWatcher settings) {
+
+		long windowMillis = TimeUnit.SECONDS.toMillis(settings.get().getPushbulletNotifyWindowSeconds());
+
+		notifyPerRun = windowMillis == 0;
+		pushbulletNotifier = new PushbulletNotifier(new PushbulletConnection(settings.get().getPushbulletApiUrl(),
+		        settings.get().getPushbulletApiKey()), windowMillis, new PushbulletNotifier.ErrorHandler() {
 
-		this.settingsProvider = new SettingsProvider("/etc/autoftp/autoftp.conf");
-		this.pushbulletConnection = new PushbulletConnection("https://api.pushbullet.com/v2/pushes",
-		        settingsProvider.getPushbulletApiKey());
+			@Override
+			public void onSendFailed(RuntimeException e) {
+				logFailure(e);
+			}
+		});
+
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				pushbulletNotifier.close();
+			}
+		}, "pushbullet-shutdown"));
 	}
 
 	@Override
@@ -44,28 +72,29 @@ public class ExternalNotificationStrategy implements ConnectionListener {
 	}
 
 	@Override
-	public void onDownloadFinished(String filename) {
-
-		try {
-
-			pushbulletConnection.sendNotification("A new file has been downloaded", filename);
-
-		} catch (PushbulletException e) {
-
-			String formattedMessage = String.format("%s [Error]\t Unable to notify. Reason: %s", formattedTime(), e.getMessage());
-
-			System.out.println(formattedMessage);
+	public void onDownloadProgress(String filename, long bytesTransferred, long totalBytes, long bytesPerSecond) {
+	}
 
-		} catch (Exception e) {
+	@Override
+	public void onDownloadFinished(String filename) {
+		pushbulletNotifier.add(filename);
+	}
 
-			String formattedMessage = String.format("%s [Error]\t Unknown exception when notifying. Reason: %s", formattedTime(),
-			        e.getMessage());
+	/**
+	 * Every check ends here, including those of hosts whose connection is kept open between checks.
+	 */
+	@Override
+	public void onRunFinished() {
 
-			System.out.println(formattedMessage);
-		}
+		if (notifyPerRun)
+			pushbulletNotifier.flush();
 	}
 
-	private String formattedTime() {
-		return DateTime.now().toString("dd/MM/yyy HH:mm:ss");
+	private void logFailure(RuntimeException e) {
+
+		if (e instanceof PushbulletException)
+			log.log(Category.ERROR, "Unable to notify. Reason: " + e.getMessage());
+		else
+			log.log(Category.ERROR, "Unknown exception when notifying. Reason: " + e.getMessage());
 	}
 }
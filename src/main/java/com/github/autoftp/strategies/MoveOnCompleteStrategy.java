@@ -3,24 +3,52 @@ package com.github.autoftp.strategies;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
-
-import org.joda.time.DateTime;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import jftp.connection.FtpFile;
 
 import com.github.autoftp.ConnectionListener;
 import com.github.autoftp.FileUtilities;
-import com.github.autoftp.config.SettingsProvider;
-
+import com.github.autoftp.config.Settings;
+import com.github.autoftp.config.SettingsWatcher;
+import com.github.autoftp.log.AsyncLog;
+import com.github.autoftp.log.Category;
+
+/**
+ * Moves each finished download into the move directory. Moves are handed to a small pool of their own, so
+ * a slow copy between filesystems never holds up the connection that finished the download, and several
+ * moves can run while other files are still downloading.
+ * <p>
+ * Staged downloads are published straight into the move directory, so there is nothing left to move.
+ */
 public class MoveOnCompleteStrategy implements ConnectionListener {
 
-	private SettingsProvider settingsProvider;
+	private SettingsWatcher settings;
 	private FileUtilities fileFactory;
+	private Executor moveWorkers;
+	private AsyncLog log = AsyncLog.shared();
 
 	public MoveOnCompleteStrategy() {
+		this(new SettingsWatcher("/etc/autoftp/autoftp.conf"));
+	}
 
-		settingsProvider = new SettingsProvider("/etc/autoftp/autoftp.conf");
+	public MoveOnCompleteStrategy(SettingsWatcher settings) {
+
+		this.settings = settings;
 		fileFactory = new FileUtilities();
+		moveWorkers = Executors.newFixedThreadPool(Math.max(1, settings.get().getMoveThreads()), new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+
+				Thread thread = new Thread(runnable, "move-worker");
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		});
 	}
 
 	@Override
@@ -43,13 +71,40 @@ public class MoveOnCompleteStrategy implements ConnectionListener {
 	public void onDownloadStarted(String filename) {
 	}
 
+	@Override
+	public void onDownloadProgress(String filename, long bytesTransferred, long totalBytes, long bytesPerSecond) {
+	}
+
+	@Override
+	public void onRunFinished() {
+	}
+
 	@Override
 	public void onDownloadFinished(String filename) {
 
-		String downloadDirectory = settingsProvider.getDownloadDirectory();
+		Settings currentSettings = settings.get();
+
+		if (currentSettings.isStagingEnabled())
+			return;
+
+		String downloadDirectory = currentSettings.getDownloadDirectory();
 
-		File fileToMove = fileFactory.getFile(downloadDirectory + "/" + filename);
-		File destination = fileFactory.getFile(settingsProvider.getMoveDirectory());
+		String subdirectory = new File(filename).getParent();
+
+		final File fileToMove = fileFactory.getFile(downloadDirectory + "/" + filename);
+		final File destination = fileFactory.getFile(subdirectory == null ? currentSettings.getMoveDirectory()
+		        : currentSettings.getMoveDirectory() + "/" + subdirectory);
+
+		moveWorkers.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				moveFile(fileToMove, destination);
+			}
+		});
+	}
+
+	private void moveFile(File fileToMove, File destination) {
 
 		try {
 
@@ -57,14 +112,7 @@ public class MoveOnCompleteStrategy implements ConnectionListener {
 
 		} catch (IOException e) {
 
-			String formattedMessage = String.format("%s [Error]\t Unable to move file. Reason: %s", formattedTime(),
-			        e.getMessage());
-
-			System.out.println(formattedMessage);
+			log.log(Category.ERROR, "Unable to move file. Reason: " + e.getMessage());
 		}
 	}
-
-	private String formattedTime() {
-		return DateTime.now().toString("dd/MM/yyy HH:mm:ss");
-	}
 }
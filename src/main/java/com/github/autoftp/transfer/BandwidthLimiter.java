@@ -0,0 +1,145 @@
+package com.github.autoftp.transfer;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.autoftp.config.HostConfig;
+
+/**
+ * Caps download bandwidth overall and per host. Each host's transfers share one {@link TokenBucket}. When
+ * there is an overall cap it is divided between the hosts that are downloading, in proportion to each
+ * host's weight times its number of open transfers, and no host gets more than its own cap. Shares are
+ * worked out again whenever a transfer starts or finishes or a limit changes, so new limits apply to
+ * transfers already running.
+ */
+public class BandwidthLimiter {
+
+	private long globalLimit;
+	private Map<String, HostShare> shares = new HashMap<String, HostShare>();
+
+	public synchronized long getGlobalLimit() {
+		return globalLimit;
+	}
+
+	/**
+	 * Bytes per second across every host; zero or less for no overall cap.
+	 */
+	public synchronized void setGlobalLimit(long bytesPerSecond) {
+
+		globalLimit = bytesPerSecond;
+
+		rebalance();
+	}
+
+	/**
+	 * Bytes per second for the host's transfers combined (zero or less for no cap of its own), and the
+	 * host's weight when the overall cap is shared out.
+	 */
+	public synchronized void setHostLimit(String hostKey, long bytesPerSecond, int weight) {
+
+		HostShare share = shareFor(hostKey);
+
+		share.limit = bytesPerSecond;
+		share.weight = Math.max(1, weight);
+
+		rebalance();
+	}
+
+	/**
+	 * Applies the overall cap and the host's own settings, as read from the config file.
+	 */
+	public synchronized void configure(long globalBytesPerSecond, HostConfig host) {
+
+		globalLimit = globalBytesPerSecond;
+
+		setHostLimit(host.getKey(), host.getBandwidthLimit(), host.getBandwidthWeight());
+	}
+
+	public synchronized boolean isLimited(HostConfig host) {
+
+		HostShare share = shares.get(host.getKey());
+
+		return globalLimit > 0 || (share != null && share.limit > 0);
+	}
+
+	/**
+	 * Wraps a download stream so that it reads within the host's share. Closing the returned stream ends
+	 * the transfer.
+	 */
+	public synchronized InputStream throttle(HostConfig host, InputStream remoteStream) {
+
+		if (!isLimited(host))
+			return remoteStream;
+
+		final HostShare share = shareFor(host.getKey());
+
+		share.activeTransfers++;
+		rebalance();
+
+		return new ThrottledInputStream(remoteStream, share.bucket, new Runnable() {
+
+			@Override
+			public void run() {
+				finishTransfer(share);
+			}
+		});
+	}
+
+	public synchronized long getCurrentRate(String hostKey) {
+
+		HostShare share = shares.get(hostKey);
+
+		return share == null ? 0 : share.bucket.getRate();
+	}
+
+	private synchronized void finishTransfer(HostShare share) {
+
+		share.activeTransfers--;
+		rebalance();
+	}
+
+	private HostShare shareFor(String hostKey) {
+
+		HostShare share = shares.get(hostKey);
+
+		if (share == null) {
+
+			share = new HostShare();
+			shares.put(hostKey, share);
+		}
+
+		return share;
+	}
+
+	private void rebalance() {
+
+		long totalWeight = 0;
+
+		for (HostShare share : shares.values())
+			totalWeight += share.weight * share.activeTransfers;
+
+		for (HostShare share : shares.values()) {
+
+			long rate = share.limit;
+
+			if (globalLimit > 0) {
+
+				long weight = Math.max(1, share.weight * share.activeTransfers);
+				long globalShare = Math.max(1, globalLimit * weight / Math.max(weight, totalWeight));
+
+				rate = rate > 0 ? Math.min(rate, globalShare) : globalShare;
+			}
+
+			share.bucket.setRate(rate);
+		}
+	}
+
+	private static class HostShare {
+
+		private long limit;
+		private int weight = 1;
+		private int activeTransfers;
+		private TokenBucket bucket = new TokenBucket(0);
+	}
+}
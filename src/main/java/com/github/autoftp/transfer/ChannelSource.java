@@ -0,0 +1,14 @@
+package com.github.autoftp.transfer;
+
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A stream whose bytes can also be read straight from the channel beneath it, bypassing the stream.
+ */
+public interface ChannelSource {
+
+	/**
+	 * The channel, or null if there isn't one after all.
+	 */
+	ReadableByteChannel getChannel();
+}
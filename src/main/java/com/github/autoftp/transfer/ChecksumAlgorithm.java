@@ -0,0 +1,158 @@
+package com.github.autoftp.transfer;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+
+/**
+ * A digest that can be worked out as a file is downloaded, along with the sidecar file that holds one. The
+ * sidecars are the ones the usual command line tools read and write: md5sum and sha256sum's "digest  name"
+ * lines, or an SFV file's "name CRC32" lines.
+ */
+public enum ChecksumAlgorithm {
+
+	CRC32(".sfv", 4),
+
+	CRC32C(".crc32c", 4),
+
+	MD5(".md5", 16),
+
+	SHA256(".sha256", 32);
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private String sidecarSuffix;
+	private int digestLength;
+
+	private ChecksumAlgorithm(String sidecarSuffix, int digestLength) {
+
+		this.sidecarSuffix = sidecarSuffix;
+		this.digestLength = digestLength;
+	}
+
+	/**
+	 * Reads an algorithm as written in the config file, e.g. "sha256", or null if the setting is blank.
+	 */
+	public static ChecksumAlgorithm fromSetting(String setting) {
+
+		if (setting == null || setting.trim().isEmpty())
+			return null;
+
+		return valueOf(setting.trim().toUpperCase().replace("-", ""));
+	}
+
+	public MessageDigest newDigest() {
+
+		switch (this) {
+
+		case CRC32:
+			return new CrcDigest("CRC32", new CRC32());
+
+		case CRC32C:
+			return new CrcDigest("CRC32C", new Crc32c());
+
+		case MD5:
+			return messageDigest("MD5");
+
+		default:
+			return messageDigest("SHA-256");
+		}
+	}
+
+	public String getSidecarSuffix() {
+		return sidecarSuffix;
+	}
+
+	public String formatSidecar(String fileName, String hexDigest) {
+
+		if (this == CRC32)
+			return String.format("%s %s\n", fileName, hexDigest.toUpperCase());
+
+		return String.format("%s  %s\n", hexDigest, fileName);
+	}
+
+	/**
+	 * The digest a sidecar gives for the named file, in lower case hex, or null if it doesn't give one. A
+	 * sidecar holding a single digest is taken to be for the file whatever name it gives.
+	 */
+	public String parseSidecar(String sidecar, String fileName) {
+
+		String onlyDigest = null;
+		int entries = 0;
+
+		for (String line : sidecar.split("\r?\n")) {
+
+			line = line.trim();
+
+			if (line.isEmpty() || line.startsWith(";") || line.startsWith("#"))
+				continue;
+
+			String[] entry = splitEntry(line);
+
+			if (entry == null || !isDigest(entry[1]))
+				continue;
+
+			if (entry[0].equalsIgnoreCase(fileName))
+				return entry[1].toLowerCase();
+
+			onlyDigest = entry[1].toLowerCase();
+			entries++;
+		}
+
+		return entries == 1 ? onlyDigest : null;
+	}
+
+	public static String toHex(byte[] digest) {
+
+		char[] hex = new char[digest.length * 2];
+
+		for (int i = 0; i < digest.length; i++) {
+
+			hex[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+			hex[i * 2 + 1] = HEX[digest[i] & 0xf];
+		}
+
+		return new String(hex);
+	}
+
+	/**
+	 * The name and digest of a sidecar line, the name being empty for a line holding only a digest.
+	 */
+	private String[] splitEntry(String line) {
+
+		if (this == CRC32) {
+
+			int separator = line.lastIndexOf(' ');
+
+			return separator < 0 ? null : new String[] { baseName(line.substring(0, separator).trim()),
+			        line.substring(separator + 1) };
+		}
+
+		String[] parts = line.split("\\s+", 2);
+		String name = parts.length < 2 ? "" : parts[1].startsWith("*") ? parts[1].substring(1) : parts[1];
+
+		return new String[] { baseName(name), parts[0] };
+	}
+
+	/**
+	 * True if the value is a digest of this kind written in hex.
+	 */
+	public boolean isDigest(String value) {
+		return value.length() == digestLength * 2 && value.matches("[0-9a-fA-F]+");
+	}
+
+	private String baseName(String path) {
+		return path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+	}
+
+	private static MessageDigest messageDigest(String algorithm) {
+
+		try {
+
+			return MessageDigest.getInstance(algorithm);
+
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(String.format("%s is missing from this JVM", algorithm), e);
+		}
+	}
+}
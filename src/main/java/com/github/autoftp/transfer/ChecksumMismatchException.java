@@ -0,0 +1,12 @@
+package com.github.autoftp.transfer;
+
+import jftp.exception.DownloadFailedException;
+
+public class ChecksumMismatchException extends DownloadFailedException {
+
+	private static final long serialVersionUID = 6032941150719824183L;
+
+	public ChecksumMismatchException(String message) {
+		super(message);
+	}
+}
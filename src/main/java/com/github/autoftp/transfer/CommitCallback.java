@@ -0,0 +1,11 @@
+package com.github.autoftp.transfer;
+
+import java.io.IOException;
+
+/**
+ * Told how far a download has got once every byte before that position has been forced to disk.
+ */
+public interface CommitCallback {
+
+	void onCommitted(long position) throws IOException;
+}
@@ -0,0 +1,53 @@
+package com.github.autoftp.transfer;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli), which java.util.zip only gains in Java 9. Table driven, a byte at a time.
+ */
+public class Crc32c implements Checksum {
+
+	private static final int POLYNOMIAL = 0x82f63b78;
+	private static final int[] TABLE = new int[256];
+
+	static {
+
+		for (int i = 0; i < 256; i++) {
+
+			int crc = i;
+
+			for (int bit = 0; bit < 8; bit++)
+				crc = (crc & 1) == 0 ? crc >>> 1 : (crc >>> 1) ^ POLYNOMIAL;
+
+			TABLE[i] = crc;
+		}
+	}
+
+	private int crc = 0xffffffff;
+
+	@Override
+	public void update(int b) {
+		crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xff];
+	}
+
+	@Override
+	public void update(byte[] b, int off, int len) {
+
+		int value = crc;
+
+		for (int i = off; i < off + len; i++)
+			value = (value >>> 8) ^ TABLE[(value ^ b[i]) & 0xff];
+
+		crc = value;
+	}
+
+	@Override
+	public long getValue() {
+		return ~crc & 0xffffffffl;
+	}
+
+	@Override
+	public void reset() {
+		crc = 0xffffffff;
+	}
+}
@@ -0,0 +1,50 @@
+package com.github.autoftp.transfer;
+
+import java.security.MessageDigest;
+import java.util.zip.Checksum;
+
+/**
+ * Lets a 32-bit CRC be used wherever a {@link MessageDigest} can, such as in a
+ * {@link java.security.DigestOutputStream}. The digest is the CRC's four bytes, most significant first.
+ */
+class CrcDigest extends MessageDigest {
+
+	private Checksum checksum;
+
+	CrcDigest(String algorithm, Checksum checksum) {
+
+		super(algorithm);
+
+		this.checksum = checksum;
+	}
+
+	@Override
+	protected void engineUpdate(byte input) {
+		checksum.update(input);
+	}
+
+	@Override
+	protected void engineUpdate(byte[] input, int offset, int len) {
+		checksum.update(input, offset, len);
+	}
+
+	@Override
+	protected byte[] engineDigest() {
+
+		long value = checksum.getValue();
+
+		checksum.reset();
+
+		return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+	}
+
+	@Override
+	protected int engineGetDigestLength() {
+		return 4;
+	}
+
+	@Override
+	protected void engineReset() {
+		checksum.reset();
+	}
+}
@@ -0,0 +1,230 @@
+package com.github.autoftp.transfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Writes downloads into the local file through its {@link FileChannel}, at explicit positions, after setting
+ * the file to its full size so that the file system sees its final size before the first write.
+ * <p>
+ * Where the remote stream is backed by a socket channel, as FTP data connections are, bytes are read into a
+ * direct buffer and written from it, never passing through the heap. Direct buffers are expensive to
+ * create, so they are pooled and reused across downloads. Other streams are read into a heap buffer of the
+ * same size. Each buffer written is counted into the download's {@link TransferProgress}, if it has one.
+ * <p>
+ * A preallocated file is its full size from the start, so how much of it has arrived is told to the
+ * download's {@link CommitCallback} instead, every {@link #DEFAULT_COMMIT_SIZE} bytes and when the copy
+ * stops, each time after forcing what has been written to disk. A download that dies with the process can
+ * then be resumed from the last position committed.
+ */
+public class DownloadWriter {
+
+	public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+	public static final long DEFAULT_COMMIT_SIZE = 16 * 1024 * 1024;
+
+	private static final int MAX_POOLED_BUFFERS = 16;
+
+	private volatile int bufferSize = DEFAULT_BUFFER_SIZE;
+	private volatile long commitSize = DEFAULT_COMMIT_SIZE;
+	private Queue<ByteBuffer> pool = new ConcurrentLinkedQueue<ByteBuffer>();
+
+	/**
+	 * Buffers of the old size are dropped as they are returned.
+	 */
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	void setCommitSize(long commitSize) {
+		this.commitSize = commitSize;
+	}
+
+	/**
+	 * Writes the stream into the local file from the offset until the file is the given size. If the stream
+	 * ends early or fails, the file is cut back to the bytes actually written, so that what is there can
+	 * still be resumed. Returns the length of the file. The digest, progress and commit callback may be null.
+	 */
+	public long write(InputStream remoteStream, File localFile, long offset, long size, MessageDigest digest,
+	        TransferProgress progress, CommitCallback commitCallback) throws IOException {
+
+		RandomAccessFile file = new RandomAccessFile(localFile, "rw");
+		Copy copy = new Copy(remoteStream, file.getChannel(), offset, digest, progress, commitCallback);
+
+		try {
+
+			file.setLength(Math.max(offset, size));
+			copy.to(size);
+
+		} finally {
+
+			try {
+
+				copy.commitQuietly();
+
+				if (copy.position < size)
+					file.setLength(copy.position);
+
+			} finally {
+				file.close();
+			}
+		}
+
+		return copy.position;
+	}
+
+	/**
+	 * Writes the stream into a range of a file that has already been set to its full size, returning the
+	 * position after the last byte written.
+	 */
+	public long writeRange(InputStream remoteStream, FileChannel target, long start, long end,
+	        TransferProgress progress, CommitCallback commitCallback) throws IOException {
+
+		Copy copy = new Copy(remoteStream, target, start, null, progress, commitCallback);
+
+		try {
+			copy.to(end);
+		} finally {
+			copy.commitQuietly();
+		}
+
+		return copy.position;
+	}
+
+	private ByteBuffer takeBuffer() {
+
+		ByteBuffer buffer = pool.poll();
+
+		return buffer != null && buffer.capacity() == bufferSize ? buffer : ByteBuffer.allocateDirect(bufferSize);
+	}
+
+	private void returnBuffer(ByteBuffer buffer) {
+
+		if (buffer.capacity() == bufferSize && pool.size() < MAX_POOLED_BUFFERS)
+			pool.offer(buffer);
+	}
+
+	private class Copy {
+
+		private InputStream source;
+		private FileChannel target;
+		private MessageDigest digest;
+		private TransferProgress progress;
+		private CommitCallback commitCallback;
+		private long position;
+		private long committed;
+
+		private Copy(InputStream source, FileChannel target, long position, MessageDigest digest,
+		        TransferProgress progress, CommitCallback commitCallback) {
+
+			this.source = source;
+			this.target = target;
+			this.position = position;
+			this.committed = position;
+			this.digest = digest;
+			this.progress = progress;
+			this.commitCallback = commitCallback;
+		}
+
+		private void to(long end) throws IOException {
+
+			ReadableByteChannel channel = source instanceof ChannelSource ? ((ChannelSource) source).getChannel()
+			        : null;
+
+			if (channel != null)
+				fromChannel(channel, end);
+			else
+				fromStream(end);
+		}
+
+		private void fromChannel(ReadableByteChannel channel, long end) throws IOException {
+
+			ByteBuffer buffer = takeBuffer();
+
+			try {
+
+				while (position < end) {
+
+					buffer.clear();
+					buffer.limit((int) Math.min(buffer.capacity(), end - position));
+
+					if (channel.read(buffer) == -1)
+						return;
+
+					buffer.flip();
+					writeBuffer(buffer);
+				}
+
+			} finally {
+				returnBuffer(buffer);
+			}
+		}
+
+		private void fromStream(long end) throws IOException {
+
+			byte[] bytes = new byte[bufferSize];
+
+			while (position < end) {
+
+				int read = source.read(bytes, 0, (int) Math.min(bytes.length, end - position));
+
+				if (read == -1)
+					return;
+
+				writeBuffer(ByteBuffer.wrap(bytes, 0, read));
+			}
+		}
+
+		private void writeBuffer(ByteBuffer buffer) throws IOException {
+
+			int length = buffer.remaining();
+
+			if (digest != null)
+				digest.update(buffer.duplicate());
+
+			while (buffer.hasRemaining())
+				position += target.write(buffer, position);
+
+			if (progress != null)
+				progress.add(length);
+
+			if (commitCallback != null && position - committed >= commitSize)
+				commit();
+		}
+
+		private void commit() throws IOException {
+
+			target.force(false);
+			commitCallback.onCommitted(position);
+
+			committed = position;
+		}
+
+		/**
+		 * On the way out, where a failure to commit only means resuming from an earlier position, and must
+		 * not hide why the copy stopped.
+		 */
+		private void commitQuietly() {
+
+			try {
+
+				if (commitCallback != null && position > committed && target.isOpen())
+					commit();
+
+			} catch (IOException e) {
+				// The last position committed still holds.
+			}
+		}
+	}
+}
@@ -0,0 +1,348 @@
+package com.github.autoftp.transfer;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+
+import javax.net.SocketFactory;
+
+import jftp.connection.FtpFile;
+import jftp.exception.ClientDisconnectionException;
+import jftp.exception.ConnectionInitialisationException;
+import jftp.exception.DownloadFailedException;
+import jftp.exception.FileListingException;
+import jftp.exception.NoSuchDirectoryException;
+
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPCmd;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPListParseEngine;
+import org.apache.commons.net.ftp.FTPReply;
+
+import com.github.autoftp.config.HostConfig;
+
+public class FtpRangedConnection implements RangedConnection {
+
+	private static final int FIVE_MINUTES = 300;
+	private static final int DATA_TIMEOUT_MILLIS = 60 * 1000;
+	private static final int LISTING_PAGE_SIZE = 500;
+	private static final String FILE_SEPARATOR = System.getProperty("file.separator");
+
+	private ChannelFtpClient ftpClient;
+
+	public FtpRangedConnection() {
+		ftpClient = new ChannelFtpClient();
+	}
+
+	/**
+	 * If the connection can't be set up, whatever of it had been opened is closed again before the
+	 * exception is thrown.
+	 */
+	@Override
+	public void connect(HostConfig host) {
+
+		boolean connected = false;
+
+		try {
+
+			ftpClient.connect(host.getHostname(), host.getPort());
+
+			if (!FTPReply.isPositiveCompletion(ftpClient.getReplyCode()))
+				throw new ConnectionInitialisationException(String.format("Unable to connect to host %s on port %d",
+				        host.getHostname(), host.getPort()));
+
+			ftpClient.enterLocalPassiveMode();
+			ftpClient.setControlKeepAliveTimeout(FIVE_MINUTES);
+
+			if (!ftpClient.login(host.getUsername(), host.getPassword()))
+				throw new ConnectionInitialisationException(String.format("Unable to login for user %s", host.getUsername()));
+
+			ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
+			ftpClient.setSocketFactory(new ChannelSocketFactory());
+			ftpClient.setDataTimeout(DATA_TIMEOUT_MILLIS);
+
+			connected = true;
+
+		} catch (IOException e) {
+			throw new ConnectionInitialisationException(String.format("Unable to connect to host %s on port %d",
+			        host.getHostname(), host.getPort()), e);
+		} finally {
+
+			if (!connected)
+				abandon();
+		}
+	}
+
+	private void abandon() {
+
+		try {
+
+			if (ftpClient.isConnected())
+				ftpClient.disconnect();
+
+		} catch (IOException e) {
+			// The reason the connection failed is what gets reported.
+		}
+	}
+
+	@Override
+	public InputStream retrieve(String remotePath, long offset) {
+
+		try {
+
+			ftpClient.setRestartOffset(offset);
+
+			Socket dataSocket = ftpClient.openRetrieveSocket(remotePath);
+
+			if (dataSocket == null)
+				throw new DownloadFailedException(String.format("Server refused to send %s from offset %d", remotePath, offset));
+
+			return new DataStream(dataSocket);
+
+		} catch (IOException e) {
+			throw new DownloadFailedException(String.format("Unable to download file %s", remotePath), e);
+		}
+	}
+
+	/**
+	 * commons-net reads the raw LIST lines before handing back the parse engine, but entries are only
+	 * parsed a page at a time, so no full set of parsed files is ever held.
+	 */
+	@Override
+	public void listFiles(String remoteDirectory, ListingCallback callback) {
+
+		String currentDirectory = changeDirectory(remoteDirectory);
+
+		try {
+
+			FTPListParseEngine listing = ftpClient.initiateListParsing();
+
+			while (listing.hasNext()) {
+
+				for (FTPFile entry : listing.getNext(LISTING_PAGE_SIZE)) {
+
+					if (entry != null)
+						callback.onFile(toFtpFile(currentDirectory, entry));
+				}
+			}
+
+		} catch (IOException e) {
+			throw new FileListingException(String.format("Unable to list files in directory %s", currentDirectory), e);
+		}
+	}
+
+	/**
+	 * Uses MLST where the server supports it, falling back to MDTM, which some servers also answer for
+	 * directories.
+	 */
+	@Override
+	public String probe(String remoteDirectory) {
+
+		try {
+
+			FTPFile directory = ftpClient.mlistFile(remoteDirectory);
+
+			if (directory != null && directory.getTimestamp() != null)
+				return String.format("modify=%d;size=%d", directory.getTimestamp().getTimeInMillis(), directory.getSize());
+
+			String modificationTime = ftpClient.getModificationTime(remoteDirectory);
+
+			return modificationTime == null ? null : "mdtm=" + modificationTime.trim();
+
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Uses HASH where the server supports it, falling back to the older XSHA256, XMD5 and XCRC commands.
+	 * None of them offer CRC-32C.
+	 */
+	@Override
+	public String checksum(String remotePath, ChecksumAlgorithm algorithm) {
+
+		try {
+
+			switch (algorithm) {
+
+			case SHA256:
+				return hash(remotePath, algorithm, "SHA-256", "XSHA256");
+
+			case MD5:
+				return hash(remotePath, algorithm, "MD5", "XMD5");
+
+			case CRC32:
+				return hash(remotePath, algorithm, "CRC32", "XCRC");
+
+			default:
+				return null;
+			}
+
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private String hash(String remotePath, ChecksumAlgorithm algorithm, String hashName, String legacyCommand)
+	        throws IOException {
+
+		if (FTPReply.isPositiveCompletion(ftpClient.sendCommand("OPTS", "HASH " + hashName))
+		        && FTPReply.isPositiveCompletion(ftpClient.sendCommand("HASH", remotePath)))
+			return digestFromReply(algorithm);
+
+		if (FTPReply.isPositiveCompletion(ftpClient.sendCommand(legacyCommand, remotePath)))
+			return digestFromReply(algorithm);
+
+		return null;
+	}
+
+	/**
+	 * HASH replies with the algorithm, the range hashed, the digest and the file name; the older commands
+	 * with the digest alone.
+	 */
+	private String digestFromReply(ChecksumAlgorithm algorithm) {
+
+		for (String token : ftpClient.getReplyString().trim().split("\\s+")) {
+
+			if (algorithm.isDigest(token))
+				return token.toLowerCase();
+		}
+
+		return null;
+	}
+
+	private String changeDirectory(String remoteDirectory) {
+
+		try {
+
+			if (!ftpClient.changeWorkingDirectory(remoteDirectory))
+				throw new NoSuchDirectoryException(String.format("The directory %s doesn't exist on the remote server.",
+				        remoteDirectory));
+
+			return ftpClient.printWorkingDirectory();
+
+		} catch (IOException e) {
+			throw new NoSuchDirectoryException("Remote server was unable to change directory.", e);
+		}
+	}
+
+	private FtpFile toFtpFile(String currentDirectory, FTPFile entry) {
+
+		long lastModified = entry.getTimestamp() == null ? 0l : entry.getTimestamp().getTimeInMillis();
+
+		return new FtpFile(entry.getName(), entry.getSize(), String.format("%s%s%s", currentDirectory, FILE_SEPARATOR,
+		        entry.getName()), lastModified, entry.isDirectory());
+	}
+
+	/**
+	 * The data connection as it was opened, so that it can be read through its channel. It is opened in binary
+	 * mode, where JFTP's retrieveFileStream would only have wrapped it. Reads through either give up once the
+	 * server has sent nothing for the data timeout.
+	 */
+	private class DataStream extends FilterInputStream implements ChannelSource {
+
+		private Socket dataSocket;
+		private TimedSocketChannel channel;
+
+		private DataStream(Socket dataSocket) throws IOException {
+
+			super(dataSocket.getInputStream());
+
+			this.dataSocket = dataSocket;
+		}
+
+		/**
+		 * The stream itself can't be read once the channel has been taken.
+		 */
+		@Override
+		public ReadableByteChannel getChannel() {
+
+			if (channel == null && dataSocket.getChannel() != null) {
+
+				try {
+					channel = new TimedSocketChannel(dataSocket.getChannel());
+				} catch (IOException e) {
+					return null;
+				}
+			}
+
+			return channel;
+		}
+
+		@Override
+		public void close() throws IOException {
+
+			if (channel != null)
+				channel.close();
+
+			dataSocket.close();
+
+			// The reply is a failure when the data channel is closed before the end of the file, which is
+			// expected when only a range was wanted.
+			ftpClient.completePendingCommand();
+		}
+	}
+
+	private static class ChannelFtpClient extends FTPClient {
+
+		private Socket openRetrieveSocket(String remotePath) throws IOException {
+			return _openDataConnection_(FTPCmd.RETR, remotePath);
+		}
+	}
+
+	/**
+	 * Opens sockets through {@link SocketChannel}s, so that each has a channel to read from. Only data
+	 * connections are opened after it is set, and only passive ones use it.
+	 */
+	private static class ChannelSocketFactory extends SocketFactory {
+
+		@Override
+		public Socket createSocket() throws IOException {
+			return SocketChannel.open().socket();
+		}
+
+		@Override
+		public Socket createSocket(String host, int port) throws IOException {
+			return connected(new InetSocketAddress(host, port));
+		}
+
+		@Override
+		public Socket createSocket(InetAddress host, int port) throws IOException {
+			return connected(new InetSocketAddress(host, port));
+		}
+
+		@Override
+		public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+			return connected(new InetSocketAddress(host, port));
+		}
+
+		@Override
+		public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+		        throws IOException {
+			return connected(new InetSocketAddress(address, port));
+		}
+
+		private Socket connected(InetSocketAddress address) throws IOException {
+			return SocketChannel.open(address).socket();
+		}
+	}
+
+	@Override
+	public void disconnect() {
+
+		try {
+
+			if (ftpClient.isConnected())
+				ftpClient.disconnect();
+
+		} catch (IOException e) {
+			throw new ClientDisconnectionException("There was an unexpected error while trying to disconnect.", e);
+		}
+	}
+}
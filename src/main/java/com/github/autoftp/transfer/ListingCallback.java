@@ -0,0 +1,11 @@
+package com.github.autoftp.transfer;
+
+import jftp.connection.FtpFile;
+
+/**
+ * Receives the entries of a remote directory one at a time, while the listing is still being read.
+ */
+public interface ListingCallback {
+
+	void onFile(FtpFile file);
+}
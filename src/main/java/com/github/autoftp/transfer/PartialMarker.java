@@ -0,0 +1,184 @@
+package com.github.autoftp.transfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import jftp.connection.FtpFile;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * The hidden marker kept beside a download in progress. It records the remote size and modified time, so
+ * that a partial file is only resumed if the remote file hasn't changed since, and for downloads written
+ * at explicit positions, each byte range of the file with how far into it the bytes are known to be on
+ * disk. A preallocated file is already its full size, so its length says nothing about how much of it
+ * has arrived.
+ * <p>
+ * The marker is written beside itself and renamed into place, so a crash never leaves half of one.
+ */
+class PartialMarker {
+
+	private static final String MARKER_SUFFIX = ".autoftp-partial";
+
+	private File markerFile;
+	private long size;
+	private long lastModified;
+	private long[] starts = new long[0];
+	private long[] ends = new long[0];
+	private long[] committed = new long[0];
+
+	private PartialMarker(File markerFile, long size, long lastModified) {
+
+		this.markerFile = markerFile;
+		this.size = size;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * A new marker, with no ranges, replacing any earlier one.
+	 */
+	static PartialMarker create(FtpFile file, String downloadDirectory) throws IOException {
+
+		PartialMarker marker = new PartialMarker(markerFile(file, downloadDirectory), file.getSize(), file
+		        .getLastModified().getMillis());
+
+		marker.write();
+
+		return marker;
+	}
+
+	/**
+	 * Returns null if there is no marker, or it can't be read.
+	 */
+	static PartialMarker read(FtpFile file, String downloadDirectory) {
+
+		File markerFile = markerFile(file, downloadDirectory);
+
+		if (!markerFile.exists())
+			return null;
+
+		try {
+
+			List<String> lines = FileUtils.readLines(markerFile);
+
+			if (lines.size() < 2)
+				return null;
+
+			PartialMarker marker = new PartialMarker(markerFile, Long.parseLong(lines.get(0).trim()), Long.parseLong(lines
+			        .get(1).trim()));
+
+			int rangeCount = lines.size() - 2;
+
+			marker.starts = new long[rangeCount];
+			marker.ends = new long[rangeCount];
+			marker.committed = new long[rangeCount];
+
+			for (int i = 0; i < rangeCount; i++) {
+
+				String[] range = lines.get(i + 2).trim().split("\\s+");
+
+				marker.starts[i] = Long.parseLong(range[0]);
+				marker.ends[i] = Long.parseLong(range[1]);
+				marker.committed[i] = Long.parseLong(range[2]);
+			}
+
+			return marker;
+
+		} catch (IOException e) {
+			return null;
+		} catch (NumberFormatException e) {
+			return null;
+		} catch (ArrayIndexOutOfBoundsException e) {
+			return null;
+		}
+	}
+
+	static void delete(FtpFile file, String downloadDirectory) {
+		FileUtils.deleteQuietly(markerFile(file, downloadDirectory));
+	}
+
+	/**
+	 * Whether the remote file is still the one that was being downloaded.
+	 */
+	boolean isFor(FtpFile file) {
+		return size == file.getSize() && lastModified == file.getLastModified().getMillis();
+	}
+
+	/**
+	 * Replaces the ranges, each committed up to the given position.
+	 */
+	synchronized void setRanges(long[] starts, long[] ends, long[] committed) throws IOException {
+
+		this.starts = starts.clone();
+		this.ends = ends.clone();
+		this.committed = committed.clone();
+
+		write();
+	}
+
+	/**
+	 * Records that the range is on disk up to the position. Only called once the bytes have been forced to
+	 * disk.
+	 */
+	synchronized void commit(int range, long position) throws IOException {
+
+		if (position <= committed[range])
+			return;
+
+		committed[range] = position;
+
+		write();
+	}
+
+	synchronized int getRangeCount() {
+		return starts.length;
+	}
+
+	synchronized long getStart(int range) {
+		return starts[range];
+	}
+
+	synchronized long getEnd(int range) {
+		return ends[range];
+	}
+
+	synchronized long getCommitted(int range) {
+		return committed[range];
+	}
+
+	/**
+	 * The bytes known to be on disk, over every range.
+	 */
+	synchronized long getCommittedBytes() {
+
+		long bytes = 0;
+
+		for (int i = 0; i < starts.length; i++)
+			bytes += committed[i] - starts[i];
+
+		return bytes;
+	}
+
+	private void write() throws IOException {
+
+		StringBuilder content = new StringBuilder();
+
+		content.append(size).append('\n').append(lastModified).append('\n');
+
+		for (int i = 0; i < starts.length; i++)
+			content.append(starts[i]).append(' ').append(ends[i]).append(' ').append(committed[i]).append('\n');
+
+		File partial = new File(markerFile.getParentFile(), markerFile.getName() + ".tmp");
+
+		FileUtils.writeStringToFile(partial, content.toString());
+		Files.move(partial.toPath(), markerFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+		        StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static File markerFile(FtpFile file, String downloadDirectory) {
+		return new File(downloadDirectory, "." + file.getName() + MARKER_SUFFIX);
+	}
+}
@@ -0,0 +1,12 @@
+package com.github.autoftp.transfer;
+
+/**
+ * Receives samples of a download's progress while it is still being written.
+ */
+public interface ProgressCallback {
+
+	/**
+	 * The rate is over the time since the previous sample, in bytes per second.
+	 */
+	void onProgress(long bytesTransferred, long totalBytes, long bytesPerSecond);
+}
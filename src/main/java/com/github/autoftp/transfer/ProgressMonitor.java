@@ -0,0 +1,72 @@
+package com.github.autoftp.transfer;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the downloads in progress and samples each of them once a second, whether or not any
+ * bytes have arrived. It ticks on a thread of its own, since the scheduler's threads are all taken by
+ * host checks while every host is downloading.
+ */
+public class ProgressMonitor {
+
+	private static final long TICK_MILLIS = 1000;
+
+	private Set<TransferProgress> downloads = Collections
+	        .newSetFromMap(new ConcurrentHashMap<TransferProgress, Boolean>());
+	private ScheduledExecutorService ticker;
+
+	public synchronized void start() {
+
+		if (ticker != null)
+			return;
+
+		ticker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+
+				Thread thread = new Thread(runnable, "progress-monitor");
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		});
+
+		ticker.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				tick();
+			}
+		}, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	public void add(TransferProgress progress) {
+		downloads.add(progress);
+	}
+
+	public void remove(TransferProgress progress) {
+		downloads.remove(progress);
+	}
+
+	/**
+	 * A callback that throws is left to the next tick rather than stopping the ticker.
+	 */
+	public void tick() {
+
+		for (TransferProgress progress : downloads) {
+
+			try {
+				progress.sampleIfDue();
+			} catch (RuntimeException e) {
+				continue;
+			}
+		}
+	}
+}
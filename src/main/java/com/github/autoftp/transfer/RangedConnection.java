@@ -0,0 +1,35 @@
+package com.github.autoftp.transfer;
+
+import java.io.InputStream;
+
+import com.github.autoftp.config.HostConfig;
+
+/**
+ * A connection that can read a remote file starting from any byte offset, and list a remote directory
+ * entry by entry, neither of which the JFTP {@link jftp.connection.Connection} exposes.
+ */
+public interface RangedConnection {
+
+	void connect(HostConfig host);
+
+	InputStream retrieve(String remotePath, long offset);
+
+	/**
+	 * Passes each entry of the remote directory to the callback as it is read. Full paths are built the
+	 * same way as JFTP's, from the absolute working directory, so they can be compared with its listings.
+	 */
+	void listFiles(String remoteDirectory, ListingCallback callback);
+
+	/**
+	 * A short description of the remote directory, such as its modified time, that changes when entries
+	 * are added to or removed from it. Returns null if the server can't say.
+	 */
+	String probe(String remoteDirectory);
+
+	/**
+	 * The digest the server works out for the remote file, in lower case hex, or null if it can't.
+	 */
+	String checksum(String remotePath, ChecksumAlgorithm algorithm);
+
+	void disconnect();
+}
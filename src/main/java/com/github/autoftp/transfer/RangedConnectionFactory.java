@@ -0,0 +1,41 @@
+package com.github.autoftp.transfer;
+
+import jftp.client.ClientFactory.ClientType;
+import jftp.exception.ClientNotSupportedException;
+
+public class RangedConnectionFactory {
+
+	private BandwidthLimiter bandwidthLimiter;
+
+	/**
+	 * Connections created from now on pass their downloads through the limiter.
+	 */
+	public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+		this.bandwidthLimiter = bandwidthLimiter;
+	}
+
+	public RangedConnection createConnection(ClientType clientType) {
+
+		RangedConnection connection = createUnthrottledConnection(clientType);
+
+		if (bandwidthLimiter == null)
+			return connection;
+
+		return new ThrottledRangedConnection(connection, bandwidthLimiter);
+	}
+
+	private RangedConnection createUnthrottledConnection(ClientType clientType) {
+
+		switch (clientType) {
+
+		case FTP:
+			return new FtpRangedConnection();
+
+		case SFTP:
+			return new SftpRangedConnection();
+
+		default:
+			throw new ClientNotSupportedException(String.format("Ranged transfers are not supported for %s", clientType));
+		}
+	}
+}
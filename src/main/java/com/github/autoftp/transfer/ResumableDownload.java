@@ -0,0 +1,373 @@
+package com.github.autoftp.transfer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import jftp.connection.FtpFile;
+import jftp.exception.ClientDisconnectionException;
+import jftp.exception.DownloadFailedException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import com.github.autoftp.config.HostConfig;
+
+/**
+ * Keeps a hidden {@link PartialMarker} beside every download that is in progress, recording the remote size
+ * and modified time. A marker left behind after a failure means the local file is partial and, as long as
+ * the remote file hasn't changed since, the rest of it can be fetched from where it stopped: from the
+ * position the marker last committed for files written here, which are preallocated, or from the end of
+ * the file for files JFTP wrote.
+ * <p>
+ * When the host has a checksum set, the digest is worked out from the bytes as they are written, so the
+ * file isn't read again afterwards; only a resumed file's existing part is read back once, before the rest
+ * is fetched. The digest is checked against the server's before being written to a sidecar.
+ * <p>
+ * A connection that a download went through on is kept, still logged in, for the next download, so workers
+ * downloading one file after another only log in once. Connections left idle for longer than
+ * {@link #MAX_IDLE_MILLIS} aren't trusted to still be open and are closed instead, as are all of them when
+ * {@link #closeConnections()} is called at the end of a run.
+ */
+public class ResumableDownload {
+
+	private static final long MAX_IDLE_MILLIS = 30 * 1000;
+
+	private RangedConnectionFactory rangedConnectionFactory;
+	private DownloadWriter downloadWriter;
+	private Deque<IdleConnection> idleConnections = new ArrayDeque<IdleConnection>();
+
+	public ResumableDownload() {
+
+		rangedConnectionFactory = new RangedConnectionFactory();
+		downloadWriter = new DownloadWriter();
+	}
+
+	public void setDownloadWriter(DownloadWriter downloadWriter) {
+		this.downloadWriter = downloadWriter;
+	}
+
+	public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+		rangedConnectionFactory.setBandwidthLimiter(bandwidthLimiter);
+	}
+
+	public void markStarted(FtpFile file, String downloadDirectory) {
+
+		try {
+
+			PartialMarker.create(file, downloadDirectory);
+
+		} catch (IOException e) {
+			throw new DownloadFailedException(String.format("Unable to write to local directory %s", downloadDirectory), e);
+		}
+	}
+
+	public void markFinished(FtpFile file, String downloadDirectory) {
+		PartialMarker.delete(file, downloadDirectory);
+	}
+
+	/**
+	 * Files downloaded in segments are resumed by {@link SegmentedDownload} instead.
+	 */
+	public boolean canResume(FtpFile file, String downloadDirectory) {
+
+		PartialMarker marker = PartialMarker.read(file, downloadDirectory);
+
+		if (marker == null || !marker.isFor(file) || marker.getRangeCount() > 1)
+			return false;
+
+		long offset = resumeOffset(marker, new File(downloadDirectory, file.getName()));
+
+		return offset > 0 && offset < file.getSize();
+	}
+
+	/**
+	 * The progress, if given, is counted from the part of the file already there.
+	 */
+	public void resume(HostConfig host, FtpFile file, String downloadDirectory, TransferProgress progress) {
+
+		File localFile = new File(downloadDirectory, file.getName());
+
+		fetchFrom(host, file, localFile, resumeOffset(PartialMarker.read(file, downloadDirectory), localFile),
+		        progress);
+	}
+
+	/**
+	 * A committed position is only trusted while the file still holds it; one that has since been cut back
+	 * or deleted starts again from the beginning.
+	 */
+	private long resumeOffset(PartialMarker marker, File localFile) {
+
+		if (marker == null)
+			return 0;
+
+		if (marker.getRangeCount() == 0)
+			return localFile.length();
+
+		long committed = marker.getCommitted(0);
+
+		return localFile.length() >= committed ? committed : 0;
+	}
+
+	/**
+	 * Downloads the whole file over a ranged connection, replacing any local copy. Used instead of the JFTP
+	 * connection when the download stream itself needs to be handled, e.g. to limit its bandwidth.
+	 */
+	public void download(HostConfig host, FtpFile file, String downloadDirectory, TransferProgress progress) {
+
+		File localFile = new File(downloadDirectory, file.getName());
+
+		FileUtils.deleteQuietly(localFile);
+
+		fetchFrom(host, file, localFile, 0, progress);
+	}
+
+	private void fetchFrom(HostConfig host, FtpFile file, File localFile, long offset, TransferProgress progress) {
+
+		ChecksumAlgorithm algorithm = ChecksumAlgorithm.fromSetting(host.getChecksum());
+		MessageDigest digest = null;
+		String expectedDigest = null;
+
+		final PartialMarker marker = commitFrom(file, localFile.getParent(), offset);
+
+		RangedConnection connection = openConnection(host);
+		boolean reusable = false;
+
+		try {
+
+			if (algorithm != null) {
+
+				expectedDigest = expectedDigest(connection, file, algorithm);
+				digest = algorithm.newDigest();
+
+				digestExisting(localFile, offset, digest);
+			}
+
+			InputStream remoteStream = connection.retrieve(file.getFullPath(), offset);
+
+			if (progress != null)
+				progress.restart(offset);
+
+			try {
+				downloadWriter.write(remoteStream, localFile, offset, file.getSize(), digest, progress,
+				        new CommitCallback() {
+
+					        @Override
+					        public void onCommitted(long position) throws IOException {
+						        marker.commit(0, position);
+					        }
+				        });
+			} finally {
+				IOUtils.closeQuietly(remoteStream);
+			}
+
+			reusable = true;
+
+		} catch (IOException e) {
+			throw new DownloadFailedException(String.format("Unable to download file %s from offset %d", file.getName(),
+			        offset), e);
+		} finally {
+
+			if (reusable)
+				keepConnection(host, connection);
+			else
+				disconnectQuietly(connection);
+		}
+
+		if (localFile.length() != file.getSize())
+			throw new DownloadFailedException(String.format("Downloaded file %s is %d bytes but should be %d", file.getName(),
+			        localFile.length(), file.getSize()));
+
+		if (digest != null)
+			verify(file, localFile, algorithm, ChecksumAlgorithm.toHex(digest.digest()), expectedDigest);
+	}
+
+	/**
+	 * Closes every connection kept for reuse.
+	 */
+	public void closeConnections() {
+
+		while (true) {
+
+			IdleConnection idle;
+
+			synchronized (idleConnections) {
+				idle = idleConnections.poll();
+			}
+
+			if (idle == null)
+				return;
+
+			disconnectQuietly(idle.connection);
+		}
+	}
+
+	/**
+	 * Takes the connection used most recently, as long as it hasn't been idle too long, or else connects a new
+	 * one.
+	 */
+	private RangedConnection openConnection(HostConfig host) {
+
+		long now = System.currentTimeMillis();
+		IdleConnection idle;
+
+		while (true) {
+
+			synchronized (idleConnections) {
+				idle = idleConnections.pollFirst();
+			}
+
+			if (idle == null)
+				break;
+
+			if (idle.host == host && now - idle.idleSince <= MAX_IDLE_MILLIS)
+				return idle.connection;
+
+			disconnectQuietly(idle.connection);
+		}
+
+		RangedConnection connection = rangedConnectionFactory.createConnection(host.getClientType());
+
+		connection.connect(host);
+
+		return connection;
+	}
+
+	private void keepConnection(HostConfig host, RangedConnection connection) {
+
+		synchronized (idleConnections) {
+			idleConnections.addFirst(new IdleConnection(host, connection));
+		}
+	}
+
+	private void disconnectQuietly(RangedConnection connection) {
+
+		try {
+
+			connection.disconnect();
+
+		} catch (ClientDisconnectionException e) {
+			// Nothing more is going to be read over it.
+		}
+	}
+
+	/**
+	 * The whole file is a single range in the marker, committed from the offset. A download started without
+	 * a marker gets one.
+	 */
+	private PartialMarker commitFrom(FtpFile file, String downloadDirectory, long offset) {
+
+		try {
+
+			PartialMarker marker = PartialMarker.read(file, downloadDirectory);
+
+			if (marker == null || !marker.isFor(file))
+				marker = PartialMarker.create(file, downloadDirectory);
+
+			marker.setRanges(new long[] { 0 }, new long[] { file.getSize() }, new long[] { offset });
+
+			return marker;
+
+		} catch (IOException e) {
+			throw new DownloadFailedException(String.format("Unable to write to local directory %s", downloadDirectory), e);
+		}
+	}
+
+	/**
+	 * Asks the server first, then looks for a sidecar beside the remote file. Returns null if neither gives
+	 * a digest, in which case the download can't be checked.
+	 */
+	private String expectedDigest(RangedConnection connection, FtpFile file, ChecksumAlgorithm algorithm) {
+
+		String expectedDigest = connection.checksum(file.getFullPath(), algorithm);
+
+		if (expectedDigest != null)
+			return expectedDigest;
+
+		try {
+
+			InputStream sidecar = connection.retrieve(file.getFullPath() + algorithm.getSidecarSuffix(), 0);
+
+			try {
+				return algorithm.parseSidecar(IOUtils.toString(sidecar, "UTF-8"), file.getName());
+			} finally {
+				IOUtils.closeQuietly(sidecar);
+			}
+
+		} catch (DownloadFailedException e) {
+			return null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private void digestExisting(File localFile, long length, MessageDigest digest) throws IOException {
+
+		if (length == 0)
+			return;
+
+		InputStream existing = new FileInputStream(localFile);
+
+		try {
+
+			byte[] buffer = new byte[64 * 1024];
+			long remaining = length;
+			int read;
+
+			while (remaining > 0 && (read = existing.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+
+				digest.update(buffer, 0, read);
+				remaining -= read;
+			}
+
+		} finally {
+			existing.close();
+		}
+	}
+
+	/**
+	 * A file that doesn't match is deleted, so that it is fetched from the start next time rather than
+	 * resumed.
+	 */
+	private void verify(FtpFile file, File localFile, ChecksumAlgorithm algorithm, String actualDigest,
+	        String expectedDigest) {
+
+		if (expectedDigest != null && !expectedDigest.equals(actualDigest)) {
+
+			FileUtils.deleteQuietly(localFile);
+
+			throw new ChecksumMismatchException(String.format("Downloaded file %s has %s %s but should have %s",
+			        file.getName(), algorithm.toString().toLowerCase(), actualDigest, expectedDigest));
+		}
+
+		try {
+
+			FileUtils.writeStringToFile(new File(localFile.getParentFile(), localFile.getName()
+			        + algorithm.getSidecarSuffix()), algorithm.formatSidecar(localFile.getName(), actualDigest));
+
+		} catch (IOException e) {
+			throw new DownloadFailedException(String.format("Unable to write %s digest of %s", algorithm.toString()
+			        .toLowerCase(), file.getName()), e);
+		}
+	}
+
+	/**
+	 * Connections are kept for the host settings they were opened with, which are read again for each run.
+	 */
+	private static class IdleConnection {
+
+		private HostConfig host;
+		private RangedConnection connection;
+		private long idleSince = System.currentTimeMillis();
+
+		private IdleConnection(HostConfig host, RangedConnection connection) {
+
+			this.host = host;
+			this.connection = connection;
+		}
+	}
+}
@@ -0,0 +1,264 @@
+package com.github.autoftp.transfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import jftp.connection.FtpFile;
+import jftp.exception.DownloadFailedException;
+
+import com.github.autoftp.config.HostConfig;
+
+/**
+ * Splits a large file into byte ranges and fetches each range over its own connection, writing every
+ * range straight into its place in a single preallocated local file.
+ * <p>
+ * The ranges are recorded in the download's {@link PartialMarker}, each with how far it has been committed
+ * to disk. A download that fails, or dies with the process, is resumed by fetching only what each range is
+ * still missing.
+ */
+public class SegmentedDownload {
+
+	private RangedConnectionFactory rangedConnectionFactory;
+	private DownloadWriter downloadWriter;
+
+	public SegmentedDownload() {
+
+		rangedConnectionFactory = new RangedConnectionFactory();
+		downloadWriter = new DownloadWriter();
+	}
+
+	public void setDownloadWriter(DownloadWriter downloadWriter) {
+		this.downloadWriter = downloadWriter;
+	}
+
+	public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+		rangedConnectionFactory.setBandwidthLimiter(bandwidthLimiter);
+	}
+
+	public boolean isSegmentable(HostConfig host, FtpFile file) {
+		return segmentCount(host, file) > 1;
+	}
+
+	/**
+	 * Whether a segmented download of the file was left unfinished, with the remote file unchanged since.
+	 */
+	public boolean canResume(FtpFile file, String downloadDirectory) {
+
+		PartialMarker marker = PartialMarker.read(file, downloadDirectory);
+
+		return marker != null && marker.isFor(file) && marker.getRangeCount() > 1
+		        && new File(downloadDirectory, file.getName()).length() == file.getSize();
+	}
+
+	/**
+	 * Every segment counts into the same progress, if one is given.
+	 */
+	public void download(HostConfig host, FtpFile file, String downloadDirectory, TransferProgress progress) {
+
+		int segmentCount = segmentCount(host, file);
+		long fileSize = file.getSize();
+		long segmentSize = fileSize / segmentCount;
+
+		long[] starts = new long[segmentCount];
+		long[] ends = new long[segmentCount];
+
+		for (int i = 0; i < segmentCount; i++) {
+
+			starts[i] = i * segmentSize;
+			ends[i] = (i == segmentCount - 1) ? fileSize : starts[i] + segmentSize;
+		}
+
+		try {
+
+			PartialMarker marker = PartialMarker.read(file, downloadDirectory);
+
+			if (marker == null || !marker.isFor(file))
+				marker = PartialMarker.create(file, downloadDirectory);
+
+			marker.setRanges(starts, ends, starts);
+
+			fetchRanges(host, file, downloadDirectory, marker, progress);
+
+		} catch (IOException e) {
+			throw new DownloadFailedException(String.format("Unable to write to local directory %s", downloadDirectory), e);
+		}
+	}
+
+	/**
+	 * Fetches the rest of each range the marker records as unfinished, in the same ranges as before whatever
+	 * the host's segments are now set to.
+	 */
+	public void resume(HostConfig host, FtpFile file, String downloadDirectory, TransferProgress progress) {
+
+		try {
+
+			fetchRanges(host, file, downloadDirectory, PartialMarker.read(file, downloadDirectory), progress);
+
+		} catch (IOException e) {
+			throw new DownloadFailedException(String.format("Unable to write to local directory %s", downloadDirectory), e);
+		}
+	}
+
+	private void fetchRanges(HostConfig host, FtpFile file, String downloadDirectory, PartialMarker marker,
+	        TransferProgress progress) throws IOException {
+
+		int rangeCount = marker.getRangeCount();
+
+		RandomAccessFile localFile = null;
+		ExecutorService segmentPool = Executors.newFixedThreadPool(rangeCount);
+
+		try {
+
+			localFile = new RandomAccessFile(new File(downloadDirectory, file.getName()), "rw");
+			localFile.setLength(file.getSize());
+
+			if (progress != null)
+				progress.restart(marker.getCommittedBytes());
+
+			List<Future<Void>> segments = new ArrayList<Future<Void>>();
+
+			for (int i = 0; i < rangeCount; i++) {
+
+				if (marker.getCommitted(i) < marker.getEnd(i))
+					segments.add(segmentPool.submit(new SegmentTransfer(host, file.getFullPath(), marker, i, localFile
+					        .getChannel(), progress)));
+			}
+
+			awaitSegments(file, segments);
+
+		} finally {
+
+			segmentPool.shutdownNow();
+			closeQuietly(localFile);
+		}
+	}
+
+	private void awaitSegments(FtpFile file, List<Future<Void>> segments) {
+
+		Exception failure = null;
+
+		for (Future<Void> segment : segments) {
+
+			try {
+
+				segment.get();
+
+			} catch (ExecutionException e) {
+
+				if (failure == null)
+					failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+
+			} catch (InterruptedException e) {
+
+				Thread.currentThread().interrupt();
+				failure = e;
+				break;
+			}
+		}
+
+		if (failure != null)
+			throw new DownloadFailedException(String.format("Unable to download file %s", file.getName()), failure);
+	}
+
+	/**
+	 * A file that is checksummed isn't split, as the digest has to see its bytes in order.
+	 */
+	private int segmentCount(HostConfig host, FtpFile file) {
+
+		if (host.getSegments() <= 1 || host.getMinSegmentSize() <= 0 
+		        || ChecksumAlgorithm.fromSetting(host.getChecksum()) != null)
+			return 1;
+
+		return (int) Math.max(1, Math.min(host.getSegments(), file.getSize() / host.getMinSegmentSize()));
+	}
+
+	private void closeQuietly(RandomAccessFile file) {
+
+		try {
+
+			if (file != null)
+				file.close();
+
+		} catch (IOException e) {
+			// Nothing more can be done with a file that won't close.
+		}
+	}
+
+	private class SegmentTransfer implements Callable<Void> {
+
+		private HostConfig host;
+		private String remotePath;
+		private PartialMarker marker;
+		private int range;
+		private long start;
+		private long end;
+		private FileChannel channel;
+		private TransferProgress progress;
+
+		/**
+		 * Starts from where the range was last committed.
+		 */
+		public SegmentTransfer(HostConfig host, String remotePath, PartialMarker marker, int range, FileChannel channel,
+		        TransferProgress progress) {
+
+			this.host = host;
+			this.remotePath = remotePath;
+			this.marker = marker;
+			this.range = range;
+			this.start = marker.getCommitted(range);
+			this.end = marker.getEnd(range);
+			this.channel = channel;
+			this.progress = progress;
+		}
+
+		@Override
+		public Void call() throws IOException {
+
+			RangedConnection connection = rangedConnectionFactory.createConnection(host.getClientType());
+
+			try {
+
+				connection.connect(host);
+
+				InputStream remoteStream = connection.retrieve(remotePath, start);
+
+				try {
+					copyRange(remoteStream);
+				} finally {
+					remoteStream.close();
+				}
+
+			} finally {
+				connection.disconnect();
+			}
+
+			return null;
+		}
+
+		private void copyRange(InputStream remoteStream) throws IOException {
+
+			long position = downloadWriter.writeRange(remoteStream, channel, start, end, progress,
+			        new CommitCallback() {
+
+				        @Override
+				        public void onCommitted(long committed) throws IOException {
+					        marker.commit(range, committed);
+				        }
+			        });
+
+			if (position < end)
+				throw new DownloadFailedException(String.format("%s ended %d bytes short of its segment", remotePath, end
+				        - position));
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package com.github.autoftp.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import jftp.connection.FtpFile;
+import jftp.exception.ConnectionInitialisationException;
+import jftp.exception.DownloadFailedException;
+import jftp.exception.FileListingException;
+import jftp.exception.NoSuchDirectoryException;
+
+import org.apache.commons.io.IOUtils;
+
+import com.github.autoftp.config.HostConfig;
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.ChannelSftp.LsEntry;
+import com.jcraft.jsch.ChannelSftp.LsEntrySelector;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+
+public class SftpRangedConnection implements RangedConnection {
+
+	private static final String FILE_SEPARATOR = System.getProperty("file.separator");
+	private static final long CHECKSUM_TIMEOUT_MILLIS = 60 * 1000;
+	private static final long CHECKSUM_POLL_MILLIS = 10;
+
+	private JSch jsch;
+	private Session session;
+	private ChannelSftp channel;
+
+	public SftpRangedConnection() {
+		jsch = new JSch();
+	}
+
+	/**
+	 * If the session connects but the channel can't be opened, the session is closed again before the
+	 * exception is thrown.
+	 */
+	@Override
+	public void connect(HostConfig host) {
+
+		boolean connected = false;
+
+		try {
+
+			session = jsch.getSession(host.getUsername(), host.getHostname(), host.getPort());
+			session.setConfig("StrictHostKeyChecking", "no");
+			session.setPassword(host.getPassword());
+			session.connect();
+
+			channel = (ChannelSftp) session.openChannel("sftp");
+			channel.connect();
+
+			connected = true;
+
+		} catch (JSchException e) {
+			throw new ConnectionInitialisationException(String.format("Unable to connect to host %s on port %d",
+			        host.getHostname(), host.getPort()), e);
+		} finally {
+
+			if (!connected)
+				disconnect();
+		}
+	}
+
+	@Override
+	public InputStream retrieve(String remotePath, long offset) {
+
+		try {
+
+			return channel.get(remotePath, null, offset);
+
+		} catch (SftpException e) {
+			throw new DownloadFailedException(String.format("Unable to download file %s", remotePath), e);
+		}
+	}
+
+	/**
+	 * The selector is called for each entry as JSch reads the directory, so nothing is collected.
+	 */
+	@Override
+	public void listFiles(String remoteDirectory, final ListingCallback callback) {
+
+		final String currentDirectory = changeDirectory(remoteDirectory);
+
+		try {
+
+			channel.ls(".", new LsEntrySelector() {
+
+				@Override
+				public int select(LsEntry entry) {
+
+					callback.onFile(toFtpFile(currentDirectory, entry));
+
+					return CONTINUE;
+				}
+			});
+
+		} catch (SftpException e) {
+			throw new FileListingException("Unable to list files in directory " + currentDirectory, e);
+		}
+	}
+
+	@Override
+	public String probe(String remoteDirectory) {
+
+		try {
+
+			SftpATTRS attributes = channel.stat(remoteDirectory);
+
+			return String.format("mtime=%d;size=%d", attributes.getMTime(), attributes.getSize());
+
+		} catch (SftpException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * SFTP has no way to ask for a digest, so this runs sha256sum or md5sum on the server, which only works
+	 * where the account is allowed a shell. Some servers accept the command but never answer, so it is
+	 * given up on after a minute.
+	 */
+	@Override
+	public String checksum(String remotePath, ChecksumAlgorithm algorithm) {
+
+		String command = algorithm == ChecksumAlgorithm.SHA256 ? "sha256sum" : algorithm == ChecksumAlgorithm.MD5 ? "md5sum"
+		        : null;
+
+		if (command == null)
+			return null;
+
+		try {
+
+			ChannelExec exec = (ChannelExec) session.openChannel("exec");
+			exec.setCommand(String.format("%s -- '%s'", command, remotePath.replace("'", "'\\''")));
+
+			InputStream output = exec.getInputStream();
+			exec.connect();
+
+			try {
+
+				if (!awaitClose(exec))
+					return null;
+
+				String digest = IOUtils.toString(output, "UTF-8").trim().split("\\s+")[0];
+
+				return algorithm.isDigest(digest) ? digest.toLowerCase() : null;
+
+			} finally {
+				exec.disconnect();
+			}
+
+		} catch (JSchException e) {
+			return null;
+		} catch (IOException e) {
+			return null;
+		} catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	private boolean awaitClose(ChannelExec exec) throws InterruptedException {
+
+		long deadline = System.currentTimeMillis() + CHECKSUM_TIMEOUT_MILLIS;
+
+		while (!exec.isClosed() && System.currentTimeMillis() < deadline)
+			Thread.sleep(CHECKSUM_POLL_MILLIS);
+
+		return exec.isClosed();
+	}
+
+	private String changeDirectory(String remoteDirectory) {
+
+		try {
+
+			channel.cd(remoteDirectory);
+
+			return channel.pwd();
+
+		} catch (SftpException e) {
+			throw new NoSuchDirectoryException(String.format("Directory %s does not exist.", remoteDirectory), e);
+		}
+	}
+
+	private FtpFile toFtpFile(String currentDirectory, LsEntry entry) {
+
+		return new FtpFile(entry.getFilename(), entry.getAttrs().getSize(), String.format("%s%s%s", currentDirectory,
+		        FILE_SEPARATOR, entry.getFilename()), entry.getAttrs().getMTime() * 1000l, entry.getAttrs().isDir());
+	}
+
+	@Override
+	public void disconnect() {
+
+		if (channel != null)
+			channel.disconnect();
+
+		if (session != null)
+			session.disconnect();
+	}
+}
@@ -0,0 +1,66 @@
+package com.github.autoftp.transfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import jftp.connection.FtpFile;
+import jftp.exception.DownloadFailedException;
+
+/**
+ * Downloads into a hidden directory inside the directory the file is meant for, then publishes the
+ * finished file with a single rename. The staging directory is always on the same filesystem as the file's
+ * final place, so the rename is atomic: anything watching the final directory sees a complete file appear
+ * under its own name, never a partial one.
+ * <p>
+ * Everything that is kept beside a download while it is in progress, such as the resume marker, stays in
+ * the staging directory. A digest sidecar written beside the file is published just before the file.
+ */
+public class StagingArea {
+
+	public static final String DIRECTORY_NAME = ".autoftp-staging";
+
+	/**
+	 * The staging directory for files meant for the given directory, created if it isn't there.
+	 */
+	public String directoryFor(String finalDirectory) {
+
+		File stagingDirectory = new File(finalDirectory, DIRECTORY_NAME);
+
+		if (!stagingDirectory.isDirectory() && !stagingDirectory.mkdirs())
+			throw new DownloadFailedException(String.format("Unable to create staging directory %s", stagingDirectory));
+
+		return stagingDirectory.getPath();
+	}
+
+	/**
+	 * Renames the staged file, and its sidecar if the algorithm is given and one was written, over anything
+	 * of the same name in the final directory.
+	 */
+	public void publish(FtpFile file, String finalDirectory, ChecksumAlgorithm algorithm) {
+
+		String stagingDirectory = directoryFor(finalDirectory);
+
+		if (algorithm != null) {
+
+			String sidecarName = file.getName() + algorithm.getSidecarSuffix();
+
+			if (new File(stagingDirectory, sidecarName).exists())
+				rename(new File(stagingDirectory, sidecarName), new File(finalDirectory, sidecarName));
+		}
+
+		rename(new File(stagingDirectory, file.getName()), new File(finalDirectory, file.getName()));
+	}
+
+	private void rename(File staged, File published) {
+
+		try {
+
+			Files.move(staged.toPath(), published.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (IOException e) {
+			throw new DownloadFailedException(String.format("Unable to publish %s to %s", staged, published), e);
+		}
+	}
+}
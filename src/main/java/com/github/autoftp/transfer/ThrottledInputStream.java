@@ -0,0 +1,89 @@
+package com.github.autoftp.transfer;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Reads no faster than its {@link TokenBucket} allows. Reads are capped at a small chunk so that other
+ * transfers sharing the bucket get their turn in between.
+ */
+public class ThrottledInputStream extends FilterInputStream {
+
+	private static final int MAX_CHUNK = 16 * 1024;
+
+	private TokenBucket bucket;
+	private Runnable onClose;
+	private boolean closed;
+
+	public ThrottledInputStream(InputStream in, TokenBucket bucket, Runnable onClose) {
+
+		super(in);
+
+		this.bucket = bucket;
+		this.onClose = onClose;
+	}
+
+	@Override
+	public int read() throws IOException {
+
+		int value = super.read();
+
+		if (value != -1)
+			take(1);
+
+		return value;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+
+		int read = super.read(buffer, offset, Math.min(length, MAX_CHUNK));
+
+		if (read > 0)
+			take(read);
+
+		return read;
+	}
+
+	@Override
+	public long skip(long count) throws IOException {
+
+		long skipped = super.skip(Math.min(count, MAX_CHUNK));
+
+		if (skipped > 0)
+			take(skipped);
+
+		return skipped;
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		try {
+
+			super.close();
+
+		} finally {
+
+			if (!closed && onClose != null)
+				onClose.run();
+
+			closed = true;
+		}
+	}
+
+	private void take(long bytes) throws IOException {
+
+		try {
+
+			bucket.acquire(bytes);
+
+		} catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.github.autoftp.transfer;
+
+import java.io.InputStream;
+
+import com.github.autoftp.config.HostConfig;
+
+/**
+ * Passes every stream it retrieves through the {@link BandwidthLimiter}.
+ */
+public class ThrottledRangedConnection implements RangedConnection {
+
+	private RangedConnection connection;
+	private BandwidthLimiter bandwidthLimiter;
+	private HostConfig host;
+
+	public ThrottledRangedConnection(RangedConnection connection, BandwidthLimiter bandwidthLimiter) {
+
+		this.connection = connection;
+		this.bandwidthLimiter = bandwidthLimiter;
+	}
+
+	@Override
+	public void connect(HostConfig host) {
+
+		this.host = host;
+
+		connection.connect(host);
+	}
+
+	@Override
+	public InputStream retrieve(String remotePath, long offset) {
+		return bandwidthLimiter.throttle(host, connection.retrieve(remotePath, offset));
+	}
+
+	@Override
+	public void listFiles(String remoteDirectory, ListingCallback callback) {
+		connection.listFiles(remoteDirectory, callback);
+	}
+
+	@Override
+	public String probe(String remoteDirectory) {
+		return connection.probe(remoteDirectory);
+	}
+
+	@Override
+	public String checksum(String remotePath, ChecksumAlgorithm algorithm) {
+		return connection.checksum(remotePath, algorithm);
+	}
+
+	@Override
+	public void disconnect() {
+		connection.disconnect();
+	}
+}
@@ -0,0 +1,86 @@
+package com.github.autoftp.transfer;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Reads a socket's channel, giving up once nothing has arrived for the socket's timeout. A blocking channel
+ * read ignores the timeout and would wait forever on a stalled server, so the channel is switched to
+ * non-blocking and waited on with a selector instead. Its socket's streams can't be read after that.
+ */
+class TimedSocketChannel implements ReadableByteChannel {
+
+	private SocketChannel channel;
+	private int timeoutMillis;
+	private Selector selector;
+
+	TimedSocketChannel(SocketChannel channel) throws IOException {
+
+		this.channel = channel;
+		this.timeoutMillis = channel.socket().getSoTimeout();
+
+		selector = Selector.open();
+
+		try {
+
+			channel.configureBlocking(false);
+			channel.register(selector, SelectionKey.OP_READ);
+
+		} catch (IOException e) {
+
+			selector.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Waits for at least one byte, as a blocking read would, unless the buffer is already full.
+	 */
+	@Override
+	public int read(ByteBuffer buffer) throws IOException {
+
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+
+		while (true) {
+
+			int read = channel.read(buffer);
+
+			if (read != 0 || !buffer.hasRemaining())
+				return read;
+
+			if (timeoutMillis == 0) {
+
+				selector.select();
+
+			} else {
+
+				long remaining = deadline - System.currentTimeMillis();
+
+				if (remaining <= 0)
+					throw new SocketTimeoutException(String.format("Nothing received for %d ms", timeoutMillis));
+
+				selector.select(remaining);
+			}
+
+			selector.selectedKeys().clear();
+		}
+	}
+
+	@Override
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+
+	/**
+	 * Closes the selector, leaving the socket to whoever opened it.
+	 */
+	@Override
+	public void close() throws IOException {
+		selector.close();
+	}
+}
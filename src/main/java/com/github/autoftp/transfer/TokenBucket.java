@@ -0,0 +1,72 @@
+package com.github.autoftp.transfer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out bytes at a steady rate, allowing a burst of up to one second's worth. A taker that asks for
+ * more than is available is put into debt and waits until the bucket has refilled enough to cover it, so
+ * everyone sharing the bucket gets through at the combined rate. The rate can be changed at any time; it
+ * applies from the next request.
+ */
+public class TokenBucket {
+
+	private static final long NANOS_IN_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private long bytesPerSecond;
+	private double tokens;
+	private long lastRefill;
+
+	public TokenBucket(long bytesPerSecond) {
+
+		this.bytesPerSecond = bytesPerSecond;
+		this.tokens = bytesPerSecond;
+		this.lastRefill = System.nanoTime();
+	}
+
+	public synchronized long getRate() {
+		return bytesPerSecond;
+	}
+
+	/**
+	 * A rate of zero or less lets everything through.
+	 */
+	public synchronized void setRate(long bytesPerSecond) {
+
+		refill();
+
+		this.bytesPerSecond = bytesPerSecond;
+		this.tokens = Math.min(tokens, bytesPerSecond);
+	}
+
+	public void acquire(long bytes) throws InterruptedException {
+
+		long waitNanos;
+
+		synchronized (this) {
+
+			if (bytesPerSecond <= 0)
+				return;
+
+			refill();
+
+			tokens -= bytes;
+
+			if (tokens >= 0)
+				return;
+
+			waitNanos = (long) (-tokens * NANOS_IN_SECOND / bytesPerSecond);
+		}
+
+		TimeUnit.NANOSECONDS.sleep(waitNanos);
+	}
+
+	private void refill() {
+
+		long now = System.nanoTime();
+
+		if (bytesPerSecond > 0)
+			tokens = Math.min(bytesPerSecond, tokens + (double) (now - lastRefill) * bytesPerSecond / NANOS_IN_SECOND);
+
+		lastRefill = now;
+	}
+}
@@ -0,0 +1,129 @@
+package com.github.autoftp.transfer;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes of one download as they are written and passes a sample to its callback whenever a
+ * set number of bytes or a set time has gone by since the last one. Counting a chunk is an atomic add and
+ * a clock read, so it allocates nothing and costs next to nothing on a path that sees every chunk; the
+ * ranges of a segmented download can all count into the same progress at once.
+ * <p>
+ * Chunks only arrive while bytes do, so a stalled download would never be sampled. A {@link ProgressMonitor}
+ * calls {@link #sampleIfDue()} on a timer to cover that, and to sample downloads whose bytes can't be
+ * counted, by watching the length of the file being written instead.
+ */
+public class TransferProgress {
+
+	private static final double NANOS_IN_SECOND = 1000000000.0;
+	private static final long NANOS_IN_MILLI = 1000000;
+
+	private ProgressCallback callback;
+	private long totalBytes;
+	private long sampleBytes;
+	private long sampleNanos;
+
+	private AtomicLong bytesTransferred = new AtomicLong();
+	private volatile long nextSampleBytes;
+	private volatile long nextSampleNanos;
+	private long lastSampleBytes;
+	private long lastSampleNanos;
+	private volatile File watchedFile;
+
+	/**
+	 * Samples are taken every sampleBytes or every sampleMillis, whichever comes first; zero turns either
+	 * off.
+	 */
+	public TransferProgress(long totalBytes, long sampleBytes, long sampleMillis, ProgressCallback callback) {
+
+		this.totalBytes = totalBytes;
+		this.sampleBytes = sampleBytes;
+		this.sampleNanos = sampleMillis * NANOS_IN_MILLI;
+		this.callback = callback;
+
+		restart(0);
+	}
+
+	/**
+	 * Starts counting again from the given number of bytes, such as the part of a file already there when a
+	 * download is resumed. The first rate is worked out from this point.
+	 */
+	public synchronized void restart(long bytesTransferred) {
+
+		this.bytesTransferred.set(bytesTransferred);
+
+		lastSampleBytes = bytesTransferred;
+		lastSampleNanos = System.nanoTime();
+
+		scheduleNextSample();
+	}
+
+	public void add(long bytes) {
+
+		long transferred = bytesTransferred.addAndGet(bytes);
+
+		if (transferred >= nextSampleBytes || System.nanoTime() - nextSampleNanos >= 0)
+			sample();
+	}
+
+	/**
+	 * Takes a sample if the time for one has come, even if no bytes have arrived since the last. The length
+	 * of the watched file, if there is one, is taken as the bytes transferred.
+	 */
+	public void sampleIfDue() {
+
+		File file = watchedFile;
+
+		if (file != null)
+			bytesTransferred.set(file.length());
+
+		if (sampleNanos > 0 && System.nanoTime() - nextSampleNanos >= 0)
+			sample();
+	}
+
+	/**
+	 * Counts the bytes by the length of the file instead, for as long as it is set; null stops watching.
+	 */
+	public void watch(File file) {
+		watchedFile = file;
+	}
+
+	public long getBytesTransferred() {
+		return bytesTransferred.get();
+	}
+
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * Another thread may have taken the sample while this one waited for the lock, in which case there is
+	 * nothing left to do.
+	 */
+	private synchronized void sample() {
+
+		long now = System.nanoTime();
+		long transferred = bytesTransferred.get();
+
+		if (transferred < nextSampleBytes && now - nextSampleNanos < 0)
+			return;
+
+		long elapsed = now - lastSampleNanos;
+		long bytesPerSecond = elapsed <= 0 ? 0 : (long) ((transferred - lastSampleBytes) * NANOS_IN_SECOND / elapsed);
+
+		lastSampleBytes = transferred;
+		lastSampleNanos = now;
+
+		scheduleNextSample();
+
+		callback.onProgress(transferred, totalBytes, bytesPerSecond);
+	}
+
+	private void scheduleNextSample() {
+
+		nextSampleBytes = sampleBytes > 0 ? lastSampleBytes + sampleBytes : Long.MAX_VALUE;
+
+		// Far enough ahead never to come round, but not so far that adding to the clock overflows.
+		nextSampleNanos = lastSampleNanos + (sampleNanos > 0 ? sampleNanos : Long.MAX_VALUE / 2);
+	}
+}
@@ -2,28 +2,48 @@ package com.github.autoftp.url;
 
 import java.io.IOException;
 
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.utils.HttpClientUtils;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 
+/**
+ * Sends pushes through one client for its whole life, whose pooled connection is kept alive between
+ * pushes, so only the first push pays for the TLS handshake.
+ */
 public class PushbulletConnection {
 
+	private static final int STATUS_TOO_MANY_REQUESTS = 429;
+	private static final int MAX_CONNECTIONS = 2;
+
 	private String apiKey;
 	private String apiUrl;
+	private HttpClient httpClient;
 
 	public PushbulletConnection(String apiUrl, String apiKey) {
 
 		this.apiUrl = apiUrl;
 		this.apiKey = apiKey;
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(MAX_CONNECTIONS);
+		connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+
+		httpClient = HttpClientBuilder.create().setConnectionManager(connectionManager).build();
 	}
 
+	/**
+	 * Throws a {@link PushbulletRateLimitException} if Pushbullet asks for fewer pushes, and a
+	 * {@link PushbulletException} for anything else that isn't a success.
+	 */
 	public void sendNotification(String title, String body) {
 
-		HttpClient client = HttpClientBuilder.create().build();
-
 		HttpPost request = new HttpPost(apiUrl);
 		request.addHeader("Authorization", "Bearer " + apiKey);
 
@@ -34,9 +54,16 @@ public class PushbulletConnection {
 
 		try {
 
-			HttpResponse response = client.execute(request);
+			HttpResponse response = httpClient.execute(request);
 			int statusCode = response.getStatusLine().getStatusCode();
 
+			// Reading the body to the end hands the connection back to the pool.
+			EntityUtils.consume(response.getEntity());
+
+			if (statusCode == STATUS_TOO_MANY_REQUESTS)
+				throw new PushbulletRateLimitException("Pushbullet is limiting how often pushes are sent",
+				        retryAfterMillis(response));
+
 			if (statusCode != 200)
 				throw new PushbulletException("Response from Pushbullet did not show success. Was " + statusCode);
 
@@ -47,10 +74,70 @@ public class PushbulletConnection {
 		}
 	}
 
+	/**
+	 * Closes the pooled connections.
+	 */
+	public void close() {
+		HttpClientUtils.closeQuietly(httpClient);
+	}
+
+	/**
+	 * From Retry-After, in seconds, or else X-Ratelimit-Reset, the epoch second the limit is lifted. -1 if
+	 * the response has neither.
+	 */
+	private long retryAfterMillis(HttpResponse response) {
+
+		try {
+
+			Header retryAfter = response.getFirstHeader("Retry-After");
+
+			if (retryAfter != null)
+				return Long.parseLong(retryAfter.getValue().trim()) * 1000;
+
+			Header reset = response.getFirstHeader("X-Ratelimit-Reset");
+
+			if (reset != null)
+				return Math.max(0, Long.parseLong(reset.getValue().trim()) * 1000 - System.currentTimeMillis());
+
+		} catch (NumberFormatException e) {
+			// Retry-After may be an HTTP date instead, which is left to the caller's own backoff.
+		}
+
+		return -1;
+	}
+
 	private String buildJsonMessage(String title, String body) {
 
 		String jsonFormat = "{\"type\": \"note\", \"title\": \"%s\", \"body\": \"%s\"}";
 
-		return String.format(jsonFormat, title, body);
+		return String.format(jsonFormat, escape(title), escape(body));
+	}
+
+	/**
+	 * File names may contain quotes and backslashes, and summaries span several lines.
+	 */
+	private String escape(String value) {
+
+		StringBuilder escaped = new StringBuilder(value.length());
+
+		for (int i = 0; i < value.length(); i++) {
+
+			char c = value.charAt(i);
+
+			if (c == '"' || c == '\\')
+				escaped.append('\\').append(c);
+			else if (c == '\n')
+				escaped.append("\\n");
+			else if (c == '\r')
+				escaped.append("\\r");
+			else if (c == '\t')
+				escaped.append("\\t");
+			else if (c < 0x20)
+				escaped.append(String.format("\\u%04x", (int) c));
+			else
+				escaped.append(c);
+		}
+
+		return escaped.toString();
 	}
 }
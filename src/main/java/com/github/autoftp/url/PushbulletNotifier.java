@@ -0,0 +1,188 @@
+package com.github.autoftp.url;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects finished downloads and sends them as a single summary push from a thread of its own, so that
+ * nothing waits on Pushbullet and a run that downloads hundreds of files sends one push rather than
+ * hundreds. Downloads are either sent when {@link #flush()} is called, once per run, or collected for a
+ * window of time starting with the first of them.
+ * <p>
+ * A push that Pushbullet turns away for sending too many is sent again, together with anything finished
+ * in the meantime, after the wait Pushbullet asks for. If it doesn't say, the wait starts at 30 seconds and
+ * doubles each time, up to 15 minutes.
+ */
+public class PushbulletNotifier {
+
+	private static final int MAX_LISTED_FILES = 20;
+	private static final long INITIAL_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+	private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(15);
+	private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+	private PushbulletConnection connection;
+	private long windowMillis;
+	private ErrorHandler errorHandler;
+	private ScheduledExecutorService sender;
+
+	private List<String> pending = new ArrayList<String>();
+	private ScheduledFuture<?> scheduledSend;
+	private long backoffMillis;
+
+	public interface ErrorHandler {
+
+		void onSendFailed(RuntimeException e);
+	}
+
+	/**
+	 * With a window of zero, downloads are only sent when flushed.
+	 */
+	public PushbulletNotifier(PushbulletConnection connection, long windowMillis, ErrorHandler errorHandler) {
+
+		this.connection = connection;
+		this.windowMillis = windowMillis;
+		this.errorHandler = errorHandler;
+
+		sender = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+
+				Thread thread = new Thread(runnable, "pushbullet-notifier");
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		});
+	}
+
+	public synchronized void add(String filename) {
+
+		pending.add(filename);
+
+		if (windowMillis > 0 && scheduledSend == null)
+			scheduleSend(windowMillis);
+	}
+
+	/**
+	 * Sends everything collected so far, unless a send is already waiting out a window or a backoff, in
+	 * which case it takes these downloads with it.
+	 */
+	public synchronized void flush() {
+
+		if (!pending.isEmpty() && scheduledSend == null)
+			scheduleSend(0);
+	}
+
+	/**
+	 * Sends anything still collected, even during a backoff, waiting a few seconds for it to go, then closes
+	 * the connection.
+	 */
+	public void close() {
+
+		synchronized (this) {
+
+			if (scheduledSend != null)
+				scheduledSend.cancel(false);
+
+			if (!pending.isEmpty() && !sender.isShutdown())
+				sender.execute(new Send());
+
+			sender.shutdown();
+		}
+
+		try {
+
+			sender.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		connection.close();
+	}
+
+	private void scheduleSend(long delayMillis) {
+
+		if (sender.isShutdown())
+			return;
+
+		scheduledSend = sender.schedule(new Send(), delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void send() {
+
+		List<String> files;
+
+		synchronized (this) {
+
+			files = pending;
+			pending = new ArrayList<String>();
+			scheduledSend = null;
+		}
+
+		if (files.isEmpty())
+			return;
+
+		try {
+
+			connection.sendNotification(title(files), body(files));
+
+			synchronized (this) {
+				backoffMillis = 0;
+			}
+
+		} catch (PushbulletRateLimitException e) {
+
+			synchronized (this) {
+
+				pending.addAll(0, files);
+				backoffMillis = backoffMillis == 0 ? INITIAL_BACKOFF_MILLIS : Math.min(backoffMillis * 2,
+				        MAX_BACKOFF_MILLIS);
+
+				if (sender.isShutdown())
+					errorHandler.onSendFailed(e);
+				else
+					scheduleSend(e.getRetryAfterMillis() >= 0 ? e.getRetryAfterMillis() : backoffMillis);
+			}
+
+		} catch (RuntimeException e) {
+			errorHandler.onSendFailed(e);
+		}
+	}
+
+	private String title(List<String> files) {
+
+		if (files.size() == 1)
+			return "A new file has been downloaded";
+
+		return files.size() + " new files have been downloaded";
+	}
+
+	private String body(List<String> files) {
+
+		StringBuilder body = new StringBuilder();
+		int listed = Math.min(files.size(), MAX_LISTED_FILES);
+
+		for (int i = 0; i < listed; i++)
+			body.append(i == 0 ? "" : "\n").append(files.get(i));
+
+		if (listed < files.size())
+			body.append("\n... and ").append(files.size() - listed).append(" more");
+
+		return body.toString();
+	}
+
+	private class Send implements Runnable {
+
+		@Override
+		public void run() {
+			send();
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package com.github.autoftp.url;
+
+/**
+ * Pushbullet turned a push away for sending too many. The push can be sent again later.
+ */
+public class PushbulletRateLimitException extends PushbulletException {
+
+	private static final long serialVersionUID = 2387112601638850237L;
+
+	private final long retryAfterMillis;
+
+	public PushbulletRateLimitException(String message, long retryAfterMillis) {
+
+		super(message);
+
+		this.retryAfterMillis = retryAfterMillis;
+	}
+
+	/**
+	 * How long Pushbullet asked to wait, or -1 if it didn't say.
+	 */
+	public long getRetryAfterMillis() {
+		return retryAfterMillis;
+	}
+}
@@ -0,0 +1,82 @@
+package com.github.autoftp;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileUtilitiesTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FileUtilities fileUtilities = new FileUtilities();
+
+	private File source;
+
+	@Before
+	public void setUp() throws IOException {
+
+		source = folder.newFile("episode.mkv");
+
+		Files.write(source.toPath(), "downloaded content".getBytes(UTF_8));
+		source.setLastModified(1400000000000l);
+	}
+
+	@Test
+	public void moveFileShouldCreateDestinationAndMoveFileIntoIt() throws IOException {
+
+		File destination = new File(folder.getRoot(), "done/series");
+
+		fileUtilities.moveFile(source, destination);
+
+		assertThat(source.exists(), is(equalTo(false)));
+		assertThat(contentOf(new File(destination, "episode.mkv").toPath()), is(equalTo("downloaded content")));
+	}
+
+	@Test(expected = FileAlreadyExistsException.class)
+	public void moveFileShouldNotOverwriteAnExistingFile() throws IOException {
+
+		File destination = folder.newFolder("done");
+		folder.newFile("done/episode.mkv");
+
+		fileUtilities.moveFile(source, destination);
+	}
+
+	@Test(expected = IOException.class)
+	public void moveFileShouldFailIfSourceIsMissing() throws IOException {
+
+		fileUtilities.moveFile(new File(folder.getRoot(), "missing.mkv"), folder.newFolder("done"));
+	}
+
+	@Test
+	public void transferFileShouldCopyContentAndModifiedTimeWithoutLeavingAPartialFile() throws IOException {
+
+		File destination = folder.newFolder("done");
+		Path target = new File(destination, "episode.mkv").toPath();
+
+		fileUtilities.transferFile(source.toPath(), target);
+
+		assertThat(contentOf(target), is(equalTo("downloaded content")));
+		assertThat(target.toFile().lastModified(), is(equalTo(source.lastModified())));
+		assertThat(Arrays.asList(destination.list()), is(equalTo(Arrays.asList("episode.mkv"))));
+	}
+
+	private String contentOf(Path file) throws IOException {
+		return new String(Files.readAllBytes(file), UTF_8);
+	}
+}
@@ -0,0 +1,120 @@
+package com.github.autoftp;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FilterMatcherTest {
+
+	private PatternBuilder patternBuilder = new PatternBuilder();
+
+	@Test
+	public void exactExpressionShouldOnlyMatchSameName() {
+
+		FilterMatcher matcher = new FilterMatcher(Arrays.asList("Clean Code"));
+
+		assertThat(matcher.matches("Clean Code"), is(equalTo(true)));
+		assertThat(matcher.matches("Clean Code 2"), is(equalTo(false)));
+	}
+
+	@Test
+	public void matchingShouldIgnoreCase() {
+
+		FilterMatcher matcher = new FilterMatcher(Arrays.asList("clean?code*"));
+
+		assertThat(matcher.matches("CLEAN CODE.pdf"), is(equalTo(true)));
+	}
+
+	@Test
+	public void asterixShouldMatchAtLeastOneCharacter() {
+
+		FilterMatcher matcher = new FilterMatcher(Arrays.asList("File*"));
+
+		assertThat(matcher.matches("File 1"), is(equalTo(true)));
+		assertThat(matcher.matches("File"), is(equalTo(false)));
+	}
+
+	@Test
+	public void expressionsStartingWithWildcardShouldMatchOnTheirEnding() {
+
+		FilterMatcher matcher = new FilterMatcher(Arrays.asList("*.mkv", "*part?"));
+
+		assertThat(matcher.matches("Some Show.mkv"), is(equalTo(true)));
+		assertThat(matcher.matches("archive.part1"), is(equalTo(true)));
+		assertThat(matcher.matches("Some Show.avi"), is(equalTo(false)));
+	}
+
+	@Test
+	public void expressionsUsingRegexSyntaxShouldStillBeHonoured() {
+
+		FilterMatcher matcher = new FilterMatcher(Arrays.asList("report-(daily|weekly)*"));
+
+		assertThat(matcher.matches("report-weekly-2014.csv"), is(equalTo(true)));
+		assertThat(matcher.matches("report-monthly-2014.csv"), is(equalTo(false)));
+	}
+
+	@Test
+	public void emptyFilterListShouldMatchNothing() {
+
+		FilterMatcher matcher = new FilterMatcher(new ArrayList<String>());
+
+		assertThat(matcher.matches("File 1"), is(equalTo(false)));
+	}
+
+	@Test
+	public void matcherShouldAgreeWithPatternBuilderRegexesForRandomExpressionsAndNames() {
+
+		Random random = new Random(42);
+		List<String> expressions = new ArrayList<String>();
+		List<String> names = new ArrayList<String>();
+
+		for (int i = 0; i < 200; i++)
+			expressions.add(randomString(random, "ab.?*", 1 + random.nextInt(6)));
+
+		for (int i = 0; i < 2000; i++)
+			names.add(randomString(random, "abAB.", random.nextInt(8)));
+
+		for (String expression : expressions) {
+
+			FilterMatcher matcher = new FilterMatcher(Arrays.asList(expression));
+			String regex = patternBuilder.buildFromFilterString(expression).toLowerCase();
+
+			for (String name : names)
+				assertThat(expression + " against " + name, matcher.matches(name),
+				        is(equalTo(name.toLowerCase().matches(regex))));
+		}
+
+		FilterMatcher combinedMatcher = new FilterMatcher(expressions);
+
+		for (String name : names)
+			assertThat(name, combinedMatcher.matches(name), is(equalTo(matchesAnyRegex(expressions, name))));
+	}
+
+	private boolean matchesAnyRegex(List<String> expressions, String name) {
+
+		for (String expression : expressions) {
+
+			if (name.toLowerCase().matches(patternBuilder.buildFromFilterString(expression).toLowerCase()))
+				return true;
+		}
+
+		return false;
+	}
+
+	private String randomString(Random random, String alphabet, int length) {
+
+		StringBuilder builder = new StringBuilder();
+
+		for (int i = 0; i < length; i++)
+			builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+
+		return builder.toString();
+	}
+}
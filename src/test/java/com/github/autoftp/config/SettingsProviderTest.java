@@ -13,6 +13,8 @@ import static org.mockito.MockitoAnnotations.initMocks;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import jftp.client.ClientFactory.ClientType;
@@ -38,6 +40,7 @@ public class SettingsProviderTest {
 	private static final String HOST_PASSWORD = "host.password";
 	private static final String HOST_USER = "host.user";
 	private static final String HOST_NAME = "host.name";
+	private static final String HOST_MAX_CONNECTIONS = "host.max-connections";
 	private static final String LAST_RUN = "last-run";
 	private static final String APP_DOWNLOAD_DIR = "download-dir";
 	private static final String FILE_FILTER_LIST = "filters.expression";
@@ -290,6 +293,7 @@ public class SettingsProviderTest {
 		config.setPort(80);
 		config.setUsername("username");
 		config.setFileDirectory("remote/directory");
+		config.setMaxConnections(4);
 		
 		settingsProvider.setHost(config);
 		
@@ -299,10 +303,59 @@ public class SettingsProviderTest {
 		verify(propertiesConfiguration).setProperty(HOST_TYPE, "SFTP");
 		verify(propertiesConfiguration).setProperty(HOST_USER, "username");
 		verify(propertiesConfiguration).setProperty(HOST_FILE_DIR, "remote/directory");
+		verify(propertiesConfiguration).setProperty(HOST_MAX_CONNECTIONS, 4);
 		
 		verify(propertiesConfiguration).save();
 	}
 	
+	@Test
+	public void getHostsShouldReturnEveryHostDefinedUnderHostsPrefixInFileOrder() {
+		
+		when(propertiesConfiguration.getKeys("hosts")).thenReturn(
+		        Arrays.asList("hosts.alpha.name", "hosts.alpha.type", "hosts.beta.name", "hosts.beta.type").iterator());
+		when(propertiesConfiguration.getString("hosts.alpha.name")).thenReturn("alpha.host");
+		when(propertiesConfiguration.getString("hosts.alpha.type")).thenReturn("FTP");
+		when(propertiesConfiguration.getString("hosts.beta.name")).thenReturn("beta.host");
+		when(propertiesConfiguration.getString("hosts.beta.type")).thenReturn("SFTP");
+		when(propertiesConfiguration.getInt(INTERVAL, 60)).thenReturn(60);
+		when(propertiesConfiguration.getInt("hosts.beta.interval", 60)).thenReturn(5);
+		
+		List<HostConfig> hosts = settingsProvider.getHosts();
+		
+		assertThat(hosts.size(), is(equalTo(2)));
+		assertThat(hosts.get(0).getId(), is(equalTo("alpha")));
+		assertThat(hosts.get(0).getHostname(), is(equalTo("alpha.host")));
+		assertThat(hosts.get(0).getClientType(), is(equalTo(ClientType.FTP)));
+		assertThat(hosts.get(1).getId(), is(equalTo("beta")));
+		assertThat(hosts.get(1).getClientType(), is(equalTo(ClientType.SFTP)));
+		assertThat(hosts.get(1).getInterval(), is(equalTo(5)));
+	}
+	
+	@Test
+	public void ifNoHostsAreDefinedThenGetHostsShouldReturnSingleHost() {
+		
+		when(propertiesConfiguration.getKeys("hosts")).thenReturn(Collections.<String> emptyList().iterator());
+		when(propertiesConfiguration.getString(HOST_NAME)).thenReturn("hostname");
+		when(propertiesConfiguration.getString(HOST_TYPE)).thenReturn("SFTP");
+		
+		List<HostConfig> hosts = settingsProvider.getHosts();
+		
+		assertThat(hosts.size(), is(equalTo(1)));
+		assertThat(hosts.get(0).getId(), is(equalTo(null)));
+		assertThat(hosts.get(0).getHostname(), is(equalTo("hostname")));
+	}
+	
+	@Test
+	public void lastRunDateOfNamedHostShouldBeKeptUnderThatHost() throws ConfigurationException {
+		
+		HostConfig host = new HostConfig();
+		host.setId("alpha");
+		
+		settingsProvider.setLastRunDate(host, new DateTime(123456789));
+		
+		verify(propertiesConfiguration).setProperty("hosts.alpha.last-run", 123456789l);
+	}
+	
 	@Test
 	public void ifConfigFileDoesNotExistThenConstructorShouldCreateIt() {
 		
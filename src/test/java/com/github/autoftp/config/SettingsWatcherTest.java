@@ -0,0 +1,207 @@
+package com.github.autoftp.config;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jftp.client.ClientFactory.ClientType;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SettingsWatcherTest {
+
+	private static final String VALID_SETTINGS = "download-dir = /downloads\n" + "filters.expression = *.mkv\n"
+	        + "move.enabled = false\n" + "pushbullet.notify.enabled = false\n"
+	        + "hosts.alpha.name = alpha.host\n" + "hosts.alpha.port = 21\n" + "hosts.alpha.type = FTP\n"
+	        + "hosts.beta.name = beta.host\n" + "hosts.beta.port = 22\n" + "hosts.beta.type = SFTP\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File configFile;
+
+	private SettingsWatcher watcher;
+
+	@Before
+	public void setUp() throws IOException {
+
+		configFile = new File(folder.getRoot(), "autoftp.conf");
+
+		FileUtils.write(configFile, VALID_SETTINGS, "UTF-8");
+
+		watcher = new SettingsWatcher(configFile.getPath());
+	}
+
+	@After
+	public void tearDown() {
+		watcher.stop();
+	}
+
+	@Test
+	public void snapshotShouldHoldEveryHostById() {
+
+		Settings settings = watcher.get();
+
+		assertThat(settings.getHosts().size(), is(equalTo(2)));
+		assertThat(settings.getHost("alpha").getHostname(), is(equalTo("alpha.host")));
+		assertThat(settings.getHost("beta").getClientType(), is(equalTo(ClientType.SFTP)));
+		assertThat(settings.getHost("gamma"), is(nullValue()));
+		assertThat(settings.getFilterExpressions(), is(equalTo(Arrays.asList("*.mkv"))));
+	}
+
+	@Test
+	public void readingTheSameSettingTwiceShouldNotRebuildIt() {
+
+		Settings settings = watcher.get();
+
+		assertThat(settings.getHost("alpha"), is(sameInstance(settings.getHost("alpha"))));
+		assertThat(watcher.get(), is(sameInstance(settings)));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void hostsInTheSnapshotShouldNotBeChangeable() {
+		watcher.get().getHost("alpha").setHostname("gamma.host");
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void directoryListsOfHostsInTheSnapshotShouldNotBeChangeable() {
+		watcher.get().getHost("alpha").getIncludedDirectories().add("extra");
+	}
+
+	@Test
+	public void everyProblemWithTheSettingsShouldBeReported() throws IOException {
+
+		FileUtils.write(configFile, "host.name = \nhost.port = 0\nhost.type = FTP\nmove.enabled = true\n"
+		        + "pushbullet.notify.enabled = false\n", "UTF-8");
+
+		try {
+
+			new SettingsWatcher(configFile.getPath());
+			fail();
+
+		} catch (InvalidSettingsException e) {
+
+			assertThat(e.getMessage(), containsString("host.name must be set"));
+			assertThat(e.getMessage(), containsString("host.port must be between 1 and 65535"));
+			assertThat(e.getMessage(), containsString("download-dir must be set"));
+			assertThat(e.getMessage(), containsString("move.directory must be set"));
+		}
+	}
+
+	@Test
+	public void unknownListenerOverflowPolicyShouldBeReported() throws IOException {
+
+		FileUtils.write(configFile, VALID_SETTINGS + "listeners.overflow = discard-newset\n", "UTF-8");
+
+		try {
+
+			watcher.reload();
+			fail();
+
+		} catch (InvalidSettingsException e) {
+			assertThat(e.getMessage(), containsString("listeners.overflow must be one of"));
+		}
+	}
+
+	@Test
+	public void missingRequiredSettingsShouldBeReported() throws IOException {
+
+		FileUtils.write(configFile, VALID_SETTINGS.replace("move.enabled = false\n", ""), "UTF-8");
+
+		try {
+
+			watcher.reload();
+			fail();
+
+		} catch (InvalidSettingsException e) {
+			assertThat(e.getMessage(), containsString("move.enabled"));
+		}
+	}
+
+	@Test
+	public void reloadShouldSwapInANewSnapshotAndLeaveTheOldOneAlone() throws IOException {
+
+		Settings before = watcher.get();
+
+		FileUtils.write(configFile, VALID_SETTINGS.replace("alpha.host", "gamma.host"), "UTF-8");
+		watcher.reload();
+
+		assertThat(watcher.get().getHost("alpha").getHostname(), is(equalTo("gamma.host")));
+		assertThat(before.getHost("alpha").getHostname(), is(equalTo("alpha.host")));
+	}
+
+	@Test
+	public void invalidReloadShouldKeepThePreviousSnapshot() throws IOException {
+
+		Settings before = watcher.get();
+
+		FileUtils.write(configFile, VALID_SETTINGS.replace("hosts.beta.port = 22", "hosts.beta.port = 70000"),
+		        "UTF-8");
+
+		try {
+
+			watcher.reload();
+			fail();
+
+		} catch (InvalidSettingsException e) {
+			assertThat(watcher.get(), is(sameInstance(before)));
+		}
+	}
+
+	@Test
+	public void editsToTheFileShouldBePickedUpOnceWatching() throws Exception {
+
+		watcher.start(new FailingErrorHandler());
+
+		FileUtils.write(configFile, VALID_SETTINGS.replace("*.mkv", "*.avi"), "UTF-8");
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+		while (!watcher.get().getFilterExpressions().contains("*.avi") && System.nanoTime() < deadline)
+			Thread.sleep(20);
+
+		assertThat(watcher.get().getFilterExpressions(), is(equalTo(Arrays.asList("*.avi"))));
+	}
+
+	@Test
+	public void badEditsToTheFileShouldBeReported() throws Exception {
+
+		final CountDownLatch reported = new CountDownLatch(1);
+
+		watcher.start(new SettingsWatcher.ErrorHandler() {
+
+			@Override
+			public void onReloadFailed(String message) {
+				reported.countDown();
+			}
+		});
+
+		FileUtils.write(configFile, VALID_SETTINGS.replace("download-dir = /downloads", ""), "UTF-8");
+
+		assertThat(reported.await(10, TimeUnit.SECONDS), is(true));
+		assertThat(watcher.get().getDownloadDirectory(), is(equalTo("/downloads")));
+	}
+
+	private static class FailingErrorHandler implements SettingsWatcher.ErrorHandler {
+
+		@Override
+		public void onReloadFailed(String message) {
+			throw new AssertionError(message);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.github.autoftp.index;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+
+import jftp.connection.FtpFile;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SeenFileIndexTest {
+
+	@Rule
+	public TemporaryFolder indexDirectory = new TemporaryFolder();
+
+	private File indexFile;
+
+	private SeenFileIndex index;
+
+	@Before
+	public void setUp() {
+
+		indexFile = new File(indexDirectory.getRoot(), "seen.idx");
+		index = new SeenFileIndex(indexFile, 4);
+	}
+
+	@Test
+	public void indexShouldKnowWhenItHasJustBeenCreated() {
+
+		assertThat(index.isNewlyCreated(), is(equalTo(true)));
+
+		index.close();
+
+		assertThat(new SeenFileIndex(indexFile).isNewlyCreated(), is(equalTo(false)));
+	}
+
+	@Test
+	public void fileShouldNotBeSeenUntilItIsRecorded() {
+
+		FtpFile file = createFile("/remote/File 1", 8000l, 1);
+
+		assertThat(index.isSeen(file), is(equalTo(false)));
+
+		index.record(file);
+
+		assertThat(index.isSeen(file), is(equalTo(true)));
+	}
+
+	@Test
+	public void fileRewrittenInPlaceWithTheSameSizeShouldNotBeSeen() {
+
+		index.record(createFile("/remote/File 1", 8000l, 1));
+
+		assertThat(index.isSeen(createFile("/remote/File 1", 8000l, 2)), is(equalTo(false)));
+	}
+
+	@Test
+	public void fileThatIsOnlyTouchedShouldStillBeSeenWhenModifiedTimesAreNotMatched() {
+
+		index.setMatchModifiedTime(false);
+		index.record(createFile("/remote/File 1", 8000l, 1));
+
+		assertThat(index.isSeen(createFile("/remote/File 1", 8000l, 2)), is(equalTo(true)));
+		assertThat(index.isSeen(createFile("/remote/File 1", 9000l, 2)), is(equalTo(false)));
+	}
+
+	@Test
+	public void fileWhoseSizeHasChangedShouldNotBeSeen() {
+
+		index.record(createFile("/remote/File 1", 8000l, 1));
+
+		assertThat(index.isSeen(createFile("/remote/File 1", 9000l, 2)), is(equalTo(false)));
+	}
+
+	@Test
+	public void recordingSameFileAgainShouldNotAddAnotherEntry() {
+
+		index.record(createFile("/remote/File 1", 8000l, 1));
+		index.record(createFile("/remote/File 1", 9000l, 2));
+
+		assertThat(index.size(), is(equalTo(1)));
+	}
+
+	@Test
+	public void indexShouldGrowPastItsInitialCapacityAndKeepEveryEntry() {
+
+		for (int i = 0; i < 1000; i++)
+			index.record(createFile("/remote/File " + i, i, i));
+
+		assertThat(index.size(), is(equalTo(1000)));
+
+		for (int i = 0; i < 1000; i++)
+			assertThat(index.isSeen(createFile("/remote/File " + i, i, i)), is(equalTo(true)));
+	}
+
+	@Test
+	public void recordedFilesShouldStillBeSeenAfterIndexIsReopened() {
+
+		for (int i = 0; i < 100; i++)
+			index.record(createFile("/remote/File " + i, i, i));
+
+		index.close();
+
+		SeenFileIndex reopened = new SeenFileIndex(indexFile);
+
+		assertThat(reopened.size(), is(equalTo(100)));
+		assertThat(reopened.isSeen(createFile("/remote/File 42", 42, 42)), is(equalTo(true)));
+		assertThat(reopened.isSeen(createFile("/remote/File 100", 100, 100)), is(equalTo(false)));
+	}
+
+	private FtpFile createFile(String fullPath, long size, int day) {
+		return new FtpFile(fullPath.substring(fullPath.lastIndexOf('/') + 1), size, fullPath, new DateTime(2014, 1, 1, 0, 0)
+		        .plusDays(day % 365).getMillis(), false);
+	}
+}
@@ -0,0 +1,136 @@
+package com.github.autoftp.log;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AsyncLogTest {
+
+	private RecordingOutput output = new RecordingOutput();
+
+	@Test
+	public void linesShouldBeWrittenWithTheirTimeAndCategory() {
+
+		AsyncLog log = new AsyncLog(output);
+
+		log.log(Category.ERROR, "Unable to move file.");
+		log.close();
+
+		List<String> lines = output.lines();
+
+		assertThat(lines.size(), is(equalTo(1)));
+		assertThat(lines.get(0).matches("\\d{2}/\\d{2}/\\d{4} \\d{2}:\\d{2}:\\d{2} \\[Error\\]\t Unable to move file\\."),
+		        is(equalTo(true)));
+	}
+
+	@Test
+	public void closingShouldWriteEveryLineInTheOrderTheyWereLogged() {
+
+		AsyncLog log = new AsyncLog(output, 4);
+
+		for (int i = 0; i < 1000; i++)
+			log.log(Category.FILE, "File " + i);
+
+		log.close();
+
+		List<String> lines = output.lines();
+
+		assertThat(lines.size(), is(equalTo(1000)));
+
+		for (int i = 0; i < 1000; i++)
+			assertThat(lines.get(i).endsWith("[File]\t File " + i), is(equalTo(true)));
+
+		assertThat(output.closed, is(equalTo(true)));
+	}
+
+	@Test
+	public void loggingShouldWaitForTheWriterWhenTheRingIsFull() throws InterruptedException {
+
+		final CountDownLatch release = new CountDownLatch(1);
+		final AsyncLog log = new AsyncLog(new RecordingOutput() {
+
+			@Override
+			public void write(CharSequence batch) throws IOException {
+
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+
+				super.write(batch);
+			}
+		}, 2);
+
+		final CountDownLatch logged = new CountDownLatch(1);
+
+		Thread producer = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+
+				// The writer holds at most one batch of two while it is stuck, with two more waiting in the ring.
+				for (int i = 0; i < 5; i++)
+					log.log(Category.INFO, "Line " + i);
+
+				logged.countDown();
+			}
+		});
+
+		producer.start();
+
+		assertThat(logged.await(200, TimeUnit.MILLISECONDS), is(equalTo(false)));
+
+		release.countDown();
+
+		assertThat(logged.await(5, TimeUnit.SECONDS), is(equalTo(true)));
+
+		log.close();
+	}
+
+	@Test
+	public void linesLoggedAfterClosingShouldBeWrittenStraightAway() {
+
+		AsyncLog log = new AsyncLog(output);
+
+		log.close();
+		log.log(Category.INFO, "Going idle.");
+
+		assertThat(output.lines().size(), is(equalTo(1)));
+	}
+
+	private static class RecordingOutput implements LogOutput {
+
+		private StringBuilder written = new StringBuilder();
+		private boolean closed;
+
+		@Override
+		public synchronized void write(CharSequence batch) throws IOException {
+			written.append(batch);
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+
+		private synchronized List<String> lines() {
+
+			List<String> lines = new ArrayList<String>();
+
+			for (String line : written.toString().split(System.getProperty("line.separator")))
+				if (!line.isEmpty())
+					lines.add(line);
+
+			return lines;
+		}
+	}
+}
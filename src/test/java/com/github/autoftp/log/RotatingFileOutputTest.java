@@ -0,0 +1,51 @@
+package com.github.autoftp.log;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RotatingFileOutputTest {
+
+	@Rule
+	public TemporaryFolder logDirectory = new TemporaryFolder();
+
+	@Test
+	public void theFileShouldBeRotatedBeforeItGrowsPastItsMaximumSize() throws IOException {
+
+		File logFile = new File(logDirectory.getRoot(), "autoftp.log");
+		RotatingFileOutput output = new RotatingFileOutput(logFile, 10, 3);
+
+		output.write("first\n");
+		output.write("second\n");
+		output.write("third\n");
+		output.write("fourth\n");
+		output.close();
+
+		assertThat(FileUtils.readFileToString(logFile), is(equalTo("fourth\n")));
+		assertThat(FileUtils.readFileToString(new File(logFile.getPath() + ".1")), is(equalTo("third\n")));
+		assertThat(FileUtils.readFileToString(new File(logFile.getPath() + ".2")), is(equalTo("second\n")));
+		assertThat(new File(logFile.getPath() + ".3").exists(), is(equalTo(false)));
+	}
+
+	@Test
+	public void writingShouldAppendToAnExistingFile() throws IOException {
+
+		File logFile = new File(logDirectory.getRoot(), "autoftp.log");
+		FileUtils.writeStringToFile(logFile, "earlier\n");
+
+		RotatingFileOutput output = new RotatingFileOutput(logFile, 1024, 2);
+
+		output.write("later\n");
+		output.close();
+
+		assertThat(FileUtils.readFileToString(logFile), is(equalTo("earlier\nlater\n")));
+	}
+}
@@ -0,0 +1,144 @@
+package com.github.autoftp.metrics;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PrometheusTextFileExporterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private MetricsRegistry registry;
+
+	private File textFile;
+
+	private PrometheusTextFileExporter exporter;
+
+	@Before
+	public void setUp() throws IOException {
+
+		registry = new MetricsRegistry();
+		textFile = new File(folder.getRoot(), "autoftp.prom");
+
+		exporter = new PrometheusTextFileExporter(registry, textFile, new PrometheusTextFileExporter.ErrorHandler() {
+
+			@Override
+			public void onExportFailed(IOException e) {
+				throw new AssertionError(e);
+			}
+		});
+	}
+
+	@Test
+	public void histogramsShouldCountEachDurationInEveryBucketAtOrAboveIt() throws IOException {
+
+		HostMetrics host = registry.host("archive");
+
+		host.getConnectLatency().record(TimeUnit.MILLISECONDS.toNanos(3));
+		host.getConnectLatency().record(TimeUnit.SECONDS.toNanos(2));
+
+		exporter.export();
+
+		String text = FileUtils.readFileToString(textFile, "UTF-8");
+
+		assertThat(text, containsString("# TYPE autoftp_connect_seconds histogram\n"));
+		assertThat(text, containsString("autoftp_connect_seconds_bucket{host=\"archive\",le=\"0.001\"} 0\n"));
+		assertThat(text, containsString("autoftp_connect_seconds_bucket{host=\"archive\",le=\"0.005\"} 1\n"));
+		assertThat(text, containsString("autoftp_connect_seconds_bucket{host=\"archive\",le=\"1.0\"} 1\n"));
+		assertThat(text, containsString("autoftp_connect_seconds_bucket{host=\"archive\",le=\"2.5\"} 2\n"));
+		assertThat(text, containsString("autoftp_connect_seconds_bucket{host=\"archive\",le=\"+Inf\"} 2\n"));
+		assertThat(text, containsString("autoftp_connect_seconds_sum{host=\"archive\"} 2.003\n"));
+		assertThat(text, containsString("autoftp_connect_seconds_count{host=\"archive\"} 2\n"));
+	}
+
+	@Test
+	public void downloadsShouldBeCountedWithThroughput() throws IOException {
+
+		HostMetrics host = registry.host("archive");
+
+		host.downloadStarted(0);
+		host.recordDownload(1000, TimeUnit.SECONDS.toNanos(2));
+		host.downloadEnded(TimeUnit.SECONDS.toNanos(2));
+		host.downloadStarted(TimeUnit.SECONDS.toNanos(2));
+		host.recordDownload(3000, TimeUnit.SECONDS.toNanos(2));
+		host.downloadEnded(TimeUnit.SECONDS.toNanos(4));
+		host.recordFailedDownload();
+
+		exporter.export();
+
+		String text = FileUtils.readFileToString(textFile, "UTF-8");
+
+		assertThat(text, containsString("autoftp_downloaded_bytes_total{host=\"archive\"} 4000\n"));
+		assertThat(text, containsString("autoftp_downloaded_files_total{host=\"archive\"} 2\n"));
+		assertThat(text, containsString("autoftp_failed_downloads_total{host=\"archive\"} 1\n"));
+		assertThat(text, containsString("autoftp_throughput_bytes_per_second{host=\"archive\"} 1000.0\n"));
+	}
+
+	@Test
+	public void downloadsRunningSideBySideShouldAddUpToTheHostsThroughput() throws IOException {
+
+		HostMetrics host = registry.host("archive");
+
+		host.downloadStarted(0);
+		host.downloadStarted(0);
+		host.recordDownload(1000, TimeUnit.SECONDS.toNanos(1));
+		host.downloadEnded(TimeUnit.SECONDS.toNanos(1));
+		host.recordDownload(3000, TimeUnit.SECONDS.toNanos(2));
+		host.downloadEnded(TimeUnit.SECONDS.toNanos(2));
+
+		exporter.export();
+
+		String text = FileUtils.readFileToString(textFile, "UTF-8");
+
+		assertThat(text, containsString("autoftp_throughput_bytes_per_second{host=\"archive\"} 2000.0\n"));
+	}
+
+	@Test
+	public void errorsShouldBeCountedByType() throws IOException {
+
+		registry.recordError(IOException.class);
+		registry.recordError(IOException.class);
+		registry.recordError(IllegalStateException.class);
+
+		exporter.export();
+
+		String text = FileUtils.readFileToString(textFile, "UTF-8");
+
+		assertThat(text, containsString("autoftp_errors_total{type=\"IOException\"} 2\n"));
+		assertThat(text, containsString("autoftp_errors_total{type=\"IllegalStateException\"} 1\n"));
+	}
+
+	@Test
+	public void labelValuesShouldBeEscaped() throws IOException {
+
+		registry.host("say \"hi\"");
+
+		exporter.export();
+
+		assertThat(FileUtils.readFileToString(textFile, "UTF-8"),
+		        containsString("autoftp_download_queue_depth{host=\"say \\\"hi\\\"\"} 0\n"));
+	}
+
+	@Test
+	public void exportShouldReplaceThePreviousFileWithoutLeavingAPartialOneBehind() throws IOException {
+
+		FileUtils.write(textFile, "stale", "UTF-8");
+
+		exporter.export();
+
+		assertThat(FileUtils.readFileToString(textFile, "UTF-8").startsWith("stale"), is(false));
+		assertThat(folder.getRoot().list().length, is(equalTo(1)));
+	}
+}
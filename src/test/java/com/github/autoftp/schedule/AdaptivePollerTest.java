@@ -0,0 +1,165 @@
+package com.github.autoftp.schedule;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+
+import com.github.autoftp.config.HostConfig;
+import com.github.autoftp.config.Settings;
+import com.github.autoftp.config.SettingsProvider;
+import com.github.autoftp.config.SettingsWatcher;
+import com.github.autoftp.state.RuntimeStateJournal;
+
+public class AdaptivePollerTest {
+
+	@Mock
+	private ConnectionSchedule mockConnectionSchedule;
+
+	@Mock
+	private ScheduledExecutorService mockScheduledExecutorService;
+
+	@Mock
+	private SettingsWatcher mockSettingsWatcher;
+
+	@Mock
+	private Settings mockSettings;
+
+	@Mock
+	private SettingsProvider mockSettingsProvider;
+
+	@Mock
+	private RuntimeStateJournal mockRuntimeState;
+
+	private HostConfig host;
+
+	private AdaptivePoller poller;
+
+	@Before
+	public void setUp() {
+
+		initMocks(this);
+
+		host = new HostConfig();
+		host.setId("archive");
+		host.setMinInterval(1);
+		host.setMaxInterval(8);
+
+		when(mockSettingsWatcher.get()).thenReturn(mockSettings);
+		when(mockSettingsWatcher.getSettingsProvider()).thenReturn(mockSettingsProvider);
+		when(mockSettings.getHost("archive")).thenReturn(host);
+
+		poller = new AdaptivePoller(mockConnectionSchedule, host, mockScheduledExecutorService, mockSettingsWatcher,
+		        mockRuntimeState);
+	}
+
+	@Test
+	public void firstCheckShouldBeScheduledAfterTheStartOffset() {
+
+		poller.start(30);
+
+		verify(mockScheduledExecutorService).schedule(poller, 30, TimeUnit.SECONDS);
+		assertThat(poller.getCurrentDelaySeconds(), is(equalTo(60l)));
+	}
+
+	@Test
+	public void whenNothingIsFoundThenTheWaitShouldDoubleUpToTheMaximum() {
+
+		poller.start(0);
+
+		for (int i = 0; i < 5; i++)
+			poller.run();
+
+		InOrder order = inOrder(mockScheduledExecutorService);
+		order.verify(mockScheduledExecutorService).schedule(poller, 120, TimeUnit.SECONDS);
+		order.verify(mockScheduledExecutorService).schedule(poller, 240, TimeUnit.SECONDS);
+		order.verify(mockScheduledExecutorService, times(3)).schedule(poller, 480, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void whenFilesAreFoundThenTheWaitShouldDropToTheMinimum() {
+
+		when(mockRuntimeState.getPollDelay(eq(host), anyLong())).thenReturn(480l);
+		when(mockConnectionSchedule.getFilesFoundInLastRun()).thenReturn(3);
+
+		poller.start(0);
+		poller.run();
+
+		verify(mockScheduledExecutorService).schedule(poller, 60, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void nextCheckShouldOnlyBeScheduledOnceTheCurrentOneHasFinished() {
+
+		poller.start(0);
+		poller.run();
+
+		InOrder order = inOrder(mockConnectionSchedule, mockScheduledExecutorService);
+		order.verify(mockConnectionSchedule).run();
+		order.verify(mockScheduledExecutorService).schedule(poller, 120, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void chosenWaitShouldBeRecorded() {
+
+		poller.start(0);
+		poller.run();
+
+		verify(mockRuntimeState).setPollDelay(host, 120);
+		assertThat(poller.getCurrentDelaySeconds(), is(equalTo(120l)));
+	}
+
+	@Test
+	public void ifTheCheckFailsThenTheNextOneShouldStillBeScheduled() {
+
+		when(mockConnectionSchedule.getFilesFoundInLastRun()).thenThrow(new IllegalStateException("Broken"));
+
+		poller.start(0);
+
+		try {
+			poller.run();
+		} catch (IllegalStateException e) {
+		}
+
+		verify(mockScheduledExecutorService).schedule(poller, 120, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void keepAliveHostShouldBePrewarmedBeforeEachCheck() {
+
+		host.setKeepAlive(true);
+		host.setPrewarmSeconds(10);
+
+		poller.start(0);
+		poller.run();
+
+		verify(mockScheduledExecutorService).schedule(any(Runnable.class), eq(110l), eq(TimeUnit.SECONDS));
+		verify(mockScheduledExecutorService, times(2)).schedule(eq(poller), anyLong(), eq(TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void waitRecordedInTheConfigFileByAnOlderVersionShouldBeTheFallback() {
+
+		when(mockSettingsProvider.getPollDelay(host)).thenReturn(240l);
+		when(mockRuntimeState.getPollDelay(host, 240l)).thenReturn(240l);
+
+		poller.start(0);
+
+		assertThat(poller.getCurrentDelaySeconds(), is(equalTo(240l)));
+	}
+}
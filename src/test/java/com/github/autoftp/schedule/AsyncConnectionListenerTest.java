@@ -0,0 +1,198 @@
+package com.github.autoftp.schedule;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jftp.connection.FtpFile;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.github.autoftp.ConnectionListener;
+
+public class AsyncConnectionListenerTest {
+
+	private SlowListener slowListener = new SlowListener();
+
+	private AsyncConnectionListener asyncListener;
+
+	@After
+	public void tearDown() {
+
+		slowListener.release();
+		asyncListener.shutdown(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void eventsShouldBeDeliveredInOrderOnAnotherThread() {
+
+		asyncListener = new AsyncConnectionListener(slowListener, 10, OverflowPolicy.BLOCK);
+		slowListener.release();
+
+		asyncListener.onDownloadStarted("File 1");
+		asyncListener.onDownloadFinished("File 1");
+		asyncListener.shutdown(5, TimeUnit.SECONDS);
+
+		assertThat(slowListener.events, contains("started File 1", "finished File 1"));
+		assertThat(slowListener.deliveredOn == Thread.currentThread(), is(equalTo(false)));
+	}
+
+	@Test
+	public void raisingAnEventShouldNotWaitForASlowListener() {
+
+		asyncListener = new AsyncConnectionListener(slowListener, 10, OverflowPolicy.BLOCK);
+
+		long start = System.nanoTime();
+
+		asyncListener.onDownloadStarted("File 1");
+		asyncListener.onDownloadFinished("File 1");
+
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(lessThan(1000l)));
+		assertThat(slowListener.events.isEmpty(), is(equalTo(true)));
+	}
+
+	@Test
+	public void whenQueueIsFullThenDiscardNewestShouldDropTheNewEvent() throws InterruptedException {
+
+		asyncListener = new AsyncConnectionListener(slowListener, 1, OverflowPolicy.DISCARD_NEWEST);
+
+		fillQueue();
+		asyncListener.onError("Dropped");
+
+		slowListener.release();
+		asyncListener.shutdown(5, TimeUnit.SECONDS);
+
+		assertThat(slowListener.events, contains("started Busy", "error Queued"));
+		assertThat(asyncListener.getDroppedEvents(), is(equalTo(1l)));
+	}
+
+	@Test
+	public void whenQueueIsFullThenDiscardOldestShouldDropTheQueuedEvent() throws InterruptedException {
+
+		asyncListener = new AsyncConnectionListener(slowListener, 1, OverflowPolicy.DISCARD_OLDEST);
+
+		fillQueue();
+		asyncListener.onError("Kept");
+
+		slowListener.release();
+		asyncListener.shutdown(5, TimeUnit.SECONDS);
+
+		assertThat(slowListener.events, contains("started Busy", "error Kept"));
+		assertThat(asyncListener.getDroppedEvents(), is(equalTo(1l)));
+	}
+
+	@Test
+	public void latencyShouldBeRecordedForEachDeliveredEvent() throws InterruptedException {
+
+		asyncListener = new AsyncConnectionListener(slowListener, 10, OverflowPolicy.BLOCK);
+
+		asyncListener.onDownloadStarted("File 1");
+		slowListener.awaitBusy();
+
+		Thread.sleep(50);
+
+		slowListener.release();
+		asyncListener.shutdown(5, TimeUnit.SECONDS);
+
+		assertThat(asyncListener.getDeliveredEvents(), is(equalTo(1l)));
+		assertThat(asyncListener.getMaxLatencyMillis(), is(greaterThan(40.0)));
+		assertThat(asyncListener.getAverageLatencyMillis(), is(equalTo(asyncListener.getMaxLatencyMillis())));
+	}
+
+	/**
+	 * Leaves the dispatch thread busy with one event and one more event waiting in the queue.
+	 */
+	private void fillQueue() throws InterruptedException {
+
+		asyncListener.onDownloadStarted("Busy");
+		slowListener.awaitBusy();
+		asyncListener.onError("Queued");
+
+		assertThat(asyncListener.getQueueDepth(), is(equalTo(1)));
+	}
+
+	/**
+	 * Holds on to the first event it is given until released.
+	 */
+	private static class SlowListener implements ConnectionListener {
+
+		private List<String> events = Collections.synchronizedList(new ArrayList<String>());
+		private CountDownLatch busy = new CountDownLatch(1);
+		private CountDownLatch released = new CountDownLatch(1);
+		private volatile Thread deliveredOn;
+
+		public void release() {
+			released.countDown();
+		}
+
+		public void awaitBusy() throws InterruptedException {
+			busy.await(5, TimeUnit.SECONDS);
+		}
+
+		private void handle(String event) {
+
+			deliveredOn = Thread.currentThread();
+			busy.countDown();
+
+			try {
+
+				released.await(5, TimeUnit.SECONDS);
+
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			events.add(event);
+		}
+
+		@Override
+		public void onConnection() {
+			handle("connected");
+		}
+
+		@Override
+		public void onDisconnection() {
+			handle("disconnected");
+		}
+
+		@Override
+		public void onFilterListObtained(List<FtpFile> files) {
+			handle("listed");
+		}
+
+		@Override
+		public void onError(String errorMessage) {
+			handle("error " + errorMessage);
+		}
+
+		@Override
+		public void onDownloadStarted(String filename) {
+			handle("started " + filename);
+		}
+
+		@Override
+		public void onDownloadProgress(String filename, long bytesTransferred, long totalBytes, long bytesPerSecond) {
+			handle("progress " + filename + " " + bytesTransferred);
+		}
+
+		@Override
+		public void onDownloadFinished(String filename) {
+			handle("finished " + filename);
+		}
+
+		@Override
+		public void onRunFinished() {
+			handle("run finished");
+		}
+	}
+}
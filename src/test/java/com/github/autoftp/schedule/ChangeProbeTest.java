@@ -0,0 +1,153 @@
+package com.github.autoftp.schedule;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import jftp.client.ClientFactory.ClientType;
+import jftp.exception.ConnectionInitialisationException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+
+import com.github.autoftp.config.HostConfig;
+import com.github.autoftp.transfer.RangedConnection;
+import com.github.autoftp.transfer.RangedConnectionFactory;
+
+public class ChangeProbeTest {
+
+	@InjectMocks
+	private ChangeProbe changeProbe = new ChangeProbe();
+
+	@Mock
+	private RangedConnectionFactory mockRangedConnectionFactory;
+
+	@Mock
+	private RangedConnection mockRangedConnection;
+
+	private HostConfig host;
+
+	@Before
+	public void setUp() {
+
+		initMocks(this);
+
+		host = new HostConfig();
+		host.setClientType(ClientType.SFTP);
+		host.setFileDirectory("outgoing");
+		host.setFullListingEvery(3);
+
+		when(mockRangedConnectionFactory.createConnection(ClientType.SFTP)).thenReturn(mockRangedConnection);
+		when(mockRangedConnection.probe("outgoing")).thenReturn("mtime=1400000000;size=4096");
+	}
+
+	@Test
+	public void fingerprintShouldBeReadOverItsOwnConnection() {
+
+		String fingerprint = changeProbe.fingerprint(host);
+
+		assertThat(fingerprint, is(equalTo("mtime=1400000000;size=4096")));
+		verify(mockRangedConnection).connect(host);
+		verify(mockRangedConnection).disconnect();
+	}
+
+	@Test
+	public void keepAliveHostShouldBeProbedOverTheSameConnectionEachTime() {
+
+		host.setKeepAlive(true);
+
+		changeProbe.fingerprint(host);
+		String fingerprint = changeProbe.fingerprint(host);
+
+		assertThat(fingerprint, is(equalTo("mtime=1400000000;size=4096")));
+		verify(mockRangedConnection, times(1)).connect(host);
+		verify(mockRangedConnection, never()).disconnect();
+
+		changeProbe.close();
+
+		verify(mockRangedConnection).disconnect();
+	}
+
+	@Test
+	public void keptConnectionThatCanNoLongerAnswerShouldBeReplaced() {
+
+		host.setKeepAlive(true);
+
+		when(mockRangedConnection.probe("outgoing")).thenReturn("mtime=1400000000;size=4096", null,
+		        "mtime=1400000060;size=4096");
+
+		changeProbe.fingerprint(host);
+		String fingerprint = changeProbe.fingerprint(host);
+
+		assertThat(fingerprint, is(equalTo("mtime=1400000060;size=4096")));
+		verify(mockRangedConnection, times(2)).connect(host);
+		verify(mockRangedConnection).disconnect();
+	}
+
+	@Test
+	public void connectionShouldStillBeClosedWhenItFailsToConnect() {
+
+		doThrow(new ConnectionInitialisationException("Unable to login for user user")).when(mockRangedConnection)
+		        .connect(host);
+
+		try {
+
+			changeProbe.fingerprint(host);
+			fail("Expected the failed connection to be reported");
+
+		} catch (ConnectionInitialisationException e) {
+			verify(mockRangedConnection).disconnect();
+		}
+	}
+
+	@Test
+	public void directoryShouldNotBeUnchangedBeforeAnyCompleteCheck() {
+
+		assertThat(changeProbe.isUnchanged(host, "mtime=1400000000;size=4096"), is(equalTo(false)));
+	}
+
+	@Test
+	public void sameFingerprintAsLastCompleteCheckShouldBeUnchanged() {
+
+		changeProbe.recordCompleteCheck("mtime=1400000000;size=4096");
+
+		assertThat(changeProbe.isUnchanged(host, "mtime=1400000000;size=4096"), is(equalTo(true)));
+		assertThat(changeProbe.isUnchanged(host, "mtime=1400000060;size=4096"), is(equalTo(false)));
+	}
+
+	@Test
+	public void serverWithoutAFingerprintShouldAlwaysBeChecked() {
+
+		changeProbe.recordCompleteCheck(null);
+
+		assertThat(changeProbe.isUnchanged(host, null), is(equalTo(false)));
+	}
+
+	@Test
+	public void fullListingShouldBeForcedEverySoManyChecks() {
+
+		changeProbe.recordCompleteCheck("same");
+
+		assertThat(changeProbe.isUnchanged(host, "same"), is(equalTo(true)));
+		assertThat(changeProbe.isUnchanged(host, "same"), is(equalTo(true)));
+		assertThat(changeProbe.isUnchanged(host, "same"), is(equalTo(false)));
+	}
+
+	@Test
+	public void afterResetTheNextCheckShouldListInFull() {
+
+		changeProbe.recordCompleteCheck("same");
+		changeProbe.reset();
+
+		assertThat(changeProbe.isUnchanged(host, "same"), is(equalTo(false)));
+	}
+}
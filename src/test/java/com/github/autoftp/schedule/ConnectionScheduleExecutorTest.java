@@ -3,32 +3,43 @@ package com.github.autoftp.schedule;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
-import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 
 import com.github.autoftp.ConnectionListener;
-import com.github.autoftp.config.SettingsProvider;
+import com.github.autoftp.config.HostConfig;
+import com.github.autoftp.config.Settings;
+import com.github.autoftp.config.SettingsWatcher;
 import com.github.autoftp.strategies.ExternalNotificationStrategy;
 import com.github.autoftp.strategies.MoveOnCompleteStrategy;
 
-@Ignore
 public class ConnectionScheduleExecutorTest {
 
-	@InjectMocks
-	private ConnectionScheduleExecutor executor = new ConnectionScheduleExecutor();
+	@Rule
+	public TemporaryFolder indexDirectory = new TemporaryFolder();
+
+	private ConnectionScheduleExecutor executor;
 
 	@Mock
 	private ScheduledExecutorService mockScheduledExecutorService;
@@ -37,7 +48,10 @@ public class ConnectionScheduleExecutorTest {
 	private ConnectionSchedule mockConnectionSchedule;
 
 	@Mock
-	private SettingsProvider mockSettingsProvider;
+	private SettingsWatcher mockSettingsWatcher;
+
+	@Mock
+	private Settings mockSettings;
 
 	@Mock
 	private ConnectionListener listener;
@@ -45,30 +59,112 @@ public class ConnectionScheduleExecutorTest {
 	@Captor
 	public ArgumentCaptor<ConnectionListener> captor;
 
+	private List<HostConfig> hosts;
+
 	@Before
 	public void setUp() {
 		
 		initMocks(this);
 
-		when(mockSettingsProvider.isMoveEnabled()).thenReturn(false);
+		hosts = new ArrayList<HostConfig>();
+		hosts.add(createHost("first", 5));
+
+		when(mockSettingsWatcher.get()).thenReturn(mockSettings);
+		when(mockSettings.getHosts()).thenReturn(hosts);
+		when(mockSettings.isMoveEnabled()).thenReturn(false);
+		when(mockSettings.getSchedulerThreads()).thenReturn(1);
+		when(mockSettings.getIndexDirectory()).thenReturn(indexDirectory.getRoot().getPath());
+		when(mockSettings.getMetricsTextFile()).thenReturn("");
+		when(mockSettings.getListenerOverflowPolicy()).thenReturn("block");
+
+		executor = new ConnectionScheduleExecutor(mockSettingsWatcher, mockScheduledExecutorService) {
+
+			@Override
+			protected ConnectionSchedule createSchedule(String hostId) {
+				return mockConnectionSchedule;
+			}
+		};
+	}
+
+	@Test
+	public void executeMethodShouldCallOnSettingsToGetHosts() {
+
+		executor.scheduleAndListen(listener);
+
+		verify(mockSettings).getHosts();
+	}
+
+	@Test
+	public void executeMethodShouldScheduleConnectionAtHostInterval() {
+
+		executor.scheduleAndListen(listener);
+
+		verify(mockScheduledExecutorService).scheduleAtFixedRate(any(Runnable.class), eq(0L), eq(300L),
+		        eq(TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void scheduledCheckShouldRunTheHostsSchedule() {
+
+		executor.scheduleAndListen(listener);
+
+		scheduledCheck().run();
+
+		verify(mockConnectionSchedule).run();
+	}
+
+	@Test
+	public void scheduledCheckThatThrowsShouldBeReportedRatherThanStopTheSchedule() {
+
+		doThrow(new IllegalStateException("Unable to check host")).when(mockConnectionSchedule).run();
+
+		executor.scheduleAndListen(listener);
+
+		scheduledCheck().run();
+
+		verify(listener).onError("Unable to check host");
 	}
 
 	@Test
-	public void executeMethodShouldCallOnSettingsToGetIntervalTime() {
+	public void everyHostShouldBeScheduled() {
+
+		hosts.add(createHost("second", 10));
 
 		executor.scheduleAndListen(listener);
 
-		verify(mockSettingsProvider).getConnectionInterval();
+		verify(mockScheduledExecutorService).scheduleAtFixedRate(any(Runnable.class), eq(0L), eq(300L),
+		        eq(TimeUnit.SECONDS));
+		verify(mockScheduledExecutorService).scheduleAtFixedRate(any(Runnable.class), eq(0L), eq(600L),
+		        eq(TimeUnit.SECONDS));
 	}
 
 	@Test
-	public void executeMethodShouldScheduleConnection() {
+	public void startOfEachHostShouldBeOffsetByNoMoreThanJitter() {
+
+		hosts.add(createHost("second", 10));
+		when(mockSettings.getStartJitterSeconds()).thenReturn(30);
+
+		executor.scheduleAndListen(listener);
+
+		ArgumentCaptor<Long> offset = ArgumentCaptor.forClass(Long.class);
 
-		when(mockSettingsProvider.getConnectionInterval()).thenReturn(5);
+		verify(mockScheduledExecutorService, times(2)).scheduleAtFixedRate(any(Runnable.class),
+		        offset.capture(), anyLong(), eq(TimeUnit.SECONDS));
+
+		for (long hostOffset : offset.getAllValues())
+			assertThat(hostOffset >= 0 && hostOffset <= 30, is(true));
+	}
+
+	@Test
+	public void shutdownShouldStopSchedulingBeforeClosingEverySchedule() {
 
 		executor.scheduleAndListen(listener);
+		executor.shutdown();
 
-		verify(mockScheduledExecutorService).scheduleAtFixedRate(mockConnectionSchedule, 0, 5, TimeUnit.MINUTES);
+		InOrder inOrder = Mockito.inOrder(mockScheduledExecutorService, mockConnectionSchedule);
+
+		inOrder.verify(mockScheduledExecutorService).shutdown();
+		inOrder.verify(mockConnectionSchedule).close();
 	}
 
 	@Test
@@ -82,7 +178,7 @@ public class ConnectionScheduleExecutorTest {
 	@Test
 	public void ifMoveIsEnabledThenMoveStrategyShouldBeEmployed() {
 
-		when(mockSettingsProvider.isMoveEnabled()).thenReturn(true);
+		when(mockSettings.isMoveEnabled()).thenReturn(true);
 
 		executor.scheduleAndListen(listener);
 
@@ -94,7 +190,7 @@ public class ConnectionScheduleExecutorTest {
 	@Test
 	public void ifPushbulletIsEnabledThenNotificationStrategyShouldBeEmployed() {
 
-		when(mockSettingsProvider.isPushbulletNotificationEnabled()).thenReturn(true);
+		when(mockSettings.isPushbulletNotificationEnabled()).thenReturn(true);
 
 		executor.scheduleAndListen(listener);
 
@@ -102,4 +198,38 @@ public class ConnectionScheduleExecutorTest {
 		
 		assertThat(captor.getAllValues().get(1), is(instanceOf(ExternalNotificationStrategy.class)));
 	}
+
+	@Test
+	public void ifAsyncListenersAreEnabledThenListenerShouldBeWrapped() {
+
+		when(mockSettings.isAsyncListenersEnabled()).thenReturn(true);
+		when(mockSettings.getListenerQueueSize()).thenReturn(10);
+
+		executor.scheduleAndListen(listener);
+
+		verify(mockConnectionSchedule).registerListener(captor.capture());
+
+		assertThat(captor.getValue(), is(instanceOf(AsyncConnectionListener.class)));
+		assertThat(((AsyncConnectionListener) captor.getValue()).getListener(), is(listener));
+	}
+
+	private Runnable scheduledCheck() {
+
+		ArgumentCaptor<Runnable> check = ArgumentCaptor.forClass(Runnable.class);
+
+		verify(mockScheduledExecutorService).scheduleAtFixedRate(check.capture(), anyLong(), anyLong(),
+		        eq(TimeUnit.SECONDS));
+
+		return check.getValue();
+	}
+
+	private HostConfig createHost(String id, int interval) {
+
+		HostConfig host = new HostConfig();
+
+		host.setId(id);
+		host.setInterval(interval);
+
+		return host;
+	}
 }
@@ -0,0 +1,107 @@
+package com.github.autoftp.schedule;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import jftp.client.Client;
+import jftp.connection.Connection;
+import jftp.connection.FtpFile;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+
+import com.github.autoftp.ConnectionListener;
+import com.github.autoftp.config.HostConfig;
+import com.github.autoftp.config.SettingsWatcher;
+
+/**
+ * Whole runs of a schedule against a mocked JFTP client, with settings read from a config file.
+ */
+public class ConnectionScheduleRunTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Mock
+	private Client mockClient;
+
+	@Mock
+	private Connection mockConnection;
+
+	@Mock
+	private ConnectionListener mockListener;
+
+	private SettingsWatcher settings;
+
+	@Before
+	public void setUp() {
+
+		initMocks(this);
+
+		when(mockClient.connect()).thenReturn(mockConnection);
+		when(mockConnection.listFiles()).thenReturn(new ArrayList<FtpFile>());
+	}
+
+	@After
+	public void tearDown() {
+		settings.stop();
+	}
+
+	@Test
+	public void theEndOfARunShouldBeSignalledEvenWhenTheConnectionIsKeptOpen() throws IOException {
+
+		ConnectionSchedule connectionSchedule = createSchedule(true);
+
+		connectionSchedule.run();
+
+		verify(mockListener).onRunFinished();
+		verify(mockListener, never()).onDisconnection();
+	}
+
+	@Test
+	public void theEndOfARunShouldBeSignalledAfterDisconnecting() throws IOException {
+
+		ConnectionSchedule connectionSchedule = createSchedule(false);
+
+		connectionSchedule.run();
+
+		verify(mockListener).onDisconnection();
+		verify(mockListener).onRunFinished();
+	}
+
+	private ConnectionSchedule createSchedule(boolean keepAlive) throws IOException {
+
+		File configFile = new File(folder.getRoot(), "autoftp.conf");
+
+		FileUtils.write(configFile, "download-dir = " + folder.newFolder("downloads").getPath() + "\n"
+		        + "index.directory = " + folder.newFolder("index").getPath() + "\n" + "move.enabled = false\n"
+		        + "pushbullet.notify.enabled = false\n" + "hosts.alpha.name = alpha.host\n"
+		        + "hosts.alpha.port = 21\n" + "hosts.alpha.type = FTP\n" + "hosts.alpha.keep-alive = " + keepAlive
+		        + "\n", "UTF-8");
+
+		settings = new SettingsWatcher(configFile.getPath());
+
+		ConnectionSchedule connectionSchedule = new ConnectionSchedule("alpha", settings) {
+
+			@Override
+			protected Client createClient(HostConfig host) {
+				return mockClient;
+			}
+		};
+
+		connectionSchedule.registerListener(mockListener);
+
+		return connectionSchedule;
+	}
+}
@@ -6,6 +6,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -28,10 +29,10 @@ import jftp.exception.NoSuchDirectoryException;
 
 import org.joda.time.DateTime;
 import org.junit.Before;
-import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -39,16 +40,29 @@ import org.mockito.Mockito;
 
 import com.github.autoftp.ConnectionListener;
 import com.github.autoftp.config.HostConfig;
+import com.github.autoftp.config.Settings;
 import com.github.autoftp.config.SettingsProvider;
+import com.github.autoftp.config.SettingsWatcher;
+import com.github.autoftp.index.SeenFileIndex;
+import com.github.autoftp.index.SeenFileIndexException;
+import com.github.autoftp.state.RuntimeStateJournal;
 
-@Ignore
 public class ConnectionScheduleTest {
 
+	private Settings mockSettings = mock(Settings.class);
+
+	private SettingsProvider mockSettingsProvider = mock(SettingsProvider.class);
+
+	private SettingsWatcher mockSettingsWatcher = watching(mockSettings, mockSettingsProvider);
+
 	@InjectMocks
-	private ConnectionSchedule connectionScheduler = new ConnectionSchedule();
+	private ConnectionSchedule connectionScheduler = new ConnectionSchedule(null, mockSettingsWatcher);
+
+	@Mock
+	private RuntimeStateJournal mockRuntimeState;
 
 	@Mock
-	private SettingsProvider mockSettingsProvider;
+	private SeenFileIndex mockSeenFileIndex;
 
 	@Mock
 	private ClientFactory mockClientFactory;
@@ -64,9 +78,14 @@ public class ConnectionScheduleTest {
 
 	private HostConfig hostConfig;
 
+	private String localDirectory;
+
 	@Rule
 	public ExpectedException expectedException = ExpectedException.none();
 
+	@Rule
+	public TemporaryFolder downloadDirectory = new TemporaryFolder();
+
 	@Before
 	public void setUp() {
 
@@ -80,14 +99,17 @@ public class ConnectionScheduleTest {
 		hostConfig.setPort(80);
 		hostConfig.setUsername("username");
 
-		when(mockSettingsProvider.getHost()).thenReturn(hostConfig);
-		when(mockSettingsProvider.getLastRunDate()).thenReturn(new DateTime(2014, 1, 1, 07, 0, 0));
+		localDirectory = downloadDirectory.getRoot().getPath();
+
+		when(mockSettings.getHost(null)).thenReturn(hostConfig);
+		when(mockSettings.getDownloadDirectory()).thenReturn(localDirectory);
+		when(mockSettingsProvider.getLastRunDate(any(HostConfig.class))).thenReturn(new DateTime(2014, 1, 1, 07, 0, 0));
 
 		when(mockClientFactory.createClient(hostConfig.getClientType())).thenReturn(mockClient);
 		when(mockClient.connect()).thenReturn(mockConnection);
 
 		List<String> filterExpressions = createExpressions();
-		when(mockSettingsProvider.getFilterExpressions()).thenReturn(filterExpressions);
+		when(mockSettings.getFilterExpressions()).thenReturn(filterExpressions);
 
 		connectionScheduler.registerListener(mockListener);
 	}
@@ -95,15 +117,15 @@ public class ConnectionScheduleTest {
 	@Test
 	public void openingAConnectionShouldGetHostConfigFromSettings() {
 
-		connectionScheduler.openConnectionToHost(mockSettingsProvider.getHost());
+		connectionScheduler.openConnectionToHost(mockSettings.getHost(null));
 
-		verify(mockSettingsProvider).getHost();
+		verify(mockSettings).getHost(null);
 	}
 
 	@Test
 	public void openingAConnectionToHostShouldCallOnClientFactoryToReturnClient() {
 
-		connectionScheduler.openConnectionToHost(mockSettingsProvider.getHost());
+		connectionScheduler.openConnectionToHost(mockSettings.getHost(null));
 
 		verify(mockClientFactory).createClient(ClientType.SFTP);
 	}
@@ -111,7 +133,7 @@ public class ConnectionScheduleTest {
 	@Test
 	public void openingAConnectionShouldInsertHostDetailsToClient() {
 
-		connectionScheduler.openConnectionToHost(mockSettingsProvider.getHost());
+		connectionScheduler.openConnectionToHost(mockSettings.getHost(null));
 
 		verify(mockClient).setHost(hostConfig.getHostname());
 		verify(mockClient).setPort(hostConfig.getPort());
@@ -121,7 +143,7 @@ public class ConnectionScheduleTest {
 	@Test
 	public void clientConnectMethodShouldBeCalledWhenOpeningAConnection() {
 
-		connectionScheduler.openConnectionToHost(mockSettingsProvider.getHost());
+		connectionScheduler.openConnectionToHost(mockSettings.getHost(null));
 
 		verify(mockClient).connect();
 	}
@@ -129,7 +151,7 @@ public class ConnectionScheduleTest {
 	@Test
 	public void ifConnectionWasSuccessfulThenListenersShouldBeNotified() {
 
-		connectionScheduler.openConnectionToHost(mockSettingsProvider.getHost());
+		connectionScheduler.openConnectionToHost(mockSettings.getHost(null));
 
 		verify(mockListener).onConnection();
 	}
@@ -139,7 +161,7 @@ public class ConnectionScheduleTest {
 
 		when(mockClient.connect()).thenThrow(new ConnectionInitialisationException("Unable to connect"));
 
-		connectionScheduler.openConnectionToHost(mockSettingsProvider.getHost());
+		connectionScheduler.openConnectionToHost(mockSettings.getHost(null));
 
 		verify(mockListener, times(0)).onConnection();
 		verify(mockListener).onError("Unable to connect");
@@ -165,19 +187,26 @@ public class ConnectionScheduleTest {
 	}
 
 	@Test
-	public void whenRetrievingFilesFromServerThenLastRunDateShouldBeObtainedFromSettings() {
+	public void whenRetrievingFilesFromServerThenEachShouldBeLookedUpInTheSeenFileIndex() {
+
+		List<FtpFile> allFiles = createFiles();
+
+		when(mockConnection.listFiles()).thenReturn(allFiles);
 
 		connectionScheduler.retrieveFilesAfterLastScan();
 
-		verify(mockSettingsProvider).getLastRunDate();
+		verify(mockSeenFileIndex).isSeen(allFiles.get(0));
+		verify(mockSeenFileIndex, never()).isSeen(allFiles.get(4));
 	}
 
 	@Test
-	public void afterGettingFilesFromServerThenClientShouldFilterOutFilesIfDirectoryOrModifiedBeforeLastScan() {
+	public void afterGettingFilesFromServerThenClientShouldFilterOutDirectoriesAndFilesAlreadySeen() {
 
 		List<FtpFile> allFiles = createFiles();
 
 		when(mockConnection.listFiles()).thenReturn(allFiles);
+		when(mockSeenFileIndex.isSeen(allFiles.get(1))).thenReturn(true);
+		when(mockSeenFileIndex.isSeen(allFiles.get(3))).thenReturn(true);
 
 		List<FtpFile> filteredFiles = connectionScheduler.retrieveFilesAfterLastScan();
 
@@ -191,7 +220,7 @@ public class ConnectionScheduleTest {
 
 		connectionScheduler.filterFilesToCreateDownloadQueue(new ArrayList<FtpFile>());
 
-		verify(mockSettingsProvider).getFilterExpressions();
+		verify(mockSettings).getFilterExpressions();
 	}
 
 	@Test
@@ -212,10 +241,32 @@ public class ConnectionScheduleTest {
 		List<FtpFile> filesToFilter = createFiles();
 		List<FtpFile> filteredFiles = connectionScheduler.filterFilesToCreateDownloadQueue(filesToFilter);
 
-		InOrder inOrder = Mockito.inOrder(mockListener, mockSettingsProvider);
+		verify(mockListener).onFilterListObtained(filteredFiles);
+	}
+
+	@Test
+	public void lastRunShouldOnlyBeRecordedOnceTheFilesHaveBeenDownloaded() {
+
+		when(mockConnection.listFiles()).thenReturn(createFiles());
+
+		connectionScheduler.run();
+
+		InOrder inOrder = Mockito.inOrder(mockListener, mockConnection, mockRuntimeState);
+
+		inOrder.verify(mockListener).onFilterListObtained(any(List.class));
+		inOrder.verify(mockConnection, times(2)).download(any(FtpFile.class), anyString());
+		inOrder.verify(mockRuntimeState).setLastRunDate(any(HostConfig.class), any(DateTime.class));
+	}
+
+	@Test
+	public void downloadedFilesShouldBeRecordedInTheSeenFileIndex() {
+
+		FtpFile fileToDownload = new FtpFile("File 1", 8000l, "/full/path/to/File 1",
+		        new DateTime(2014, 1, 5, 07, 0, 0).getMillis(), false);
+
+		connectionScheduler.downloadFile(fileToDownload);
 
-		inOrder.verify(mockListener).onFilterListObtained(filteredFiles);
-		inOrder.verify(mockSettingsProvider).setLastRunDate(any(DateTime.class));
+		verify(mockSeenFileIndex).record(fileToDownload);
 	}
 
 	@Test
@@ -248,27 +299,23 @@ public class ConnectionScheduleTest {
 
 		connectionScheduler.downloadFile(fileToDownload);
 
-		verify(mockSettingsProvider).getDownloadDirectory();
+		verify(mockSettings).getDownloadDirectory();
 	}
 
 	@Test
 	public void toDownloadAFileTheSchedulerShouldCallOnConnectionDownloadMethodWithFileAndDirectory() {
 
-		when(mockSettingsProvider.getDownloadDirectory()).thenReturn("local/directory");
-
 		FtpFile fileToDownload = new FtpFile("File 1", 8000l, "/full/path/to/File 1",
 		        new DateTime(2014, 1, 5, 07, 0, 0).getMillis(), false);
 
 		connectionScheduler.downloadFile(fileToDownload);
 
-		verify(mockConnection).download(fileToDownload, "local/directory");
+		verify(mockConnection).download(fileToDownload, localDirectory);
 	}
 
 	@Test
 	public void beforeDownloadingAFileTheSchedulerShouldNotifyListenersItIsAboutToStartDownloadingThenNotifyWhenFinished() {
 
-		when(mockSettingsProvider.getDownloadDirectory()).thenReturn("local/directory");
-
 		FtpFile fileToDownload = new FtpFile("File 1", 8000l, "/full/path/to/File 1",
 		        new DateTime(2014, 1, 5, 07, 0, 0).getMillis(), false);
 
@@ -277,25 +324,57 @@ public class ConnectionScheduleTest {
 		connectionScheduler.downloadFile(fileToDownload);
 
 		inOrder.verify(mockListener).onDownloadStarted("File 1");
-		inOrder.verify(mockConnection).download(fileToDownload, "local/directory");
+		inOrder.verify(mockConnection).download(fileToDownload, localDirectory);
 		inOrder.verify(mockListener).onDownloadFinished("File 1");
 	}
 
 	@Test
-	public void ifCurrentDownloadFailsThenListenersShouldBeNotified() {
+	public void ifTheDownloadCannotBeRecordedAsSeenThenListenersShouldBeNotified() {
+
+		FtpFile fileToDownload = new FtpFile("File 1", 8000l, "/full/path/to/File 1",
+		        new DateTime(2014, 1, 5, 07, 0, 0).getMillis(), false);
+
+		doThrow(new SeenFileIndexException("Unable to grow seen file index")).when(mockSeenFileIndex).record(
+		        fileToDownload);
+
+		connectionScheduler.downloadFile(fileToDownload);
+
+		verify(mockListener).onError("Unable to grow seen file index");
+		verify(mockListener).onDownloadFinished("File 1");
+	}
+
+	@Test
+	public void ifTheSeenFileIndexCannotBeFlushedThenListenersShouldBeNotified() {
+
+		doThrow(new SeenFileIndexException("Unable to flush seen file index")).when(mockSeenFileIndex).flush();
+
+		connectionScheduler.run();
+
+		verify(mockListener).onError("Unable to flush seen file index");
+	}
+
+	@Test
+	public void closingTheScheduleShouldCloseTheSeenFileIndex() {
+
+		connectionScheduler.close();
 
-		when(mockSettingsProvider.getDownloadDirectory()).thenReturn("local/directory");
+		verify(mockSeenFileIndex).close();
+	}
+
+	@Test
+	public void ifCurrentDownloadFailsThenListenersShouldBeNotified() {
 
 		FtpFile fileToDownload = new FtpFile("File 1", 8000l, "/full/path/to/File 1",
 		        new DateTime(2014, 1, 5, 07, 0, 0).getMillis(), false);
 
 		doThrow(new DownloadFailedException("Unable to download file")).when(mockConnection).download(fileToDownload,
-		        "local/directory");
+		        localDirectory);
 
 		connectionScheduler.downloadFile(fileToDownload);
 
 		verify(mockListener).onError("Unable to download file");
 		verify(mockListener, times(0)).onDownloadFinished("File 1");
+		verify(mockSeenFileIndex, never()).record(fileToDownload);
 	}
 
 	@Test
@@ -326,11 +405,11 @@ public class ConnectionScheduleTest {
 		connectionScheduler.run();
 
 		verify(mockConnection, never()).setRemoteDirectory(anyString());
-		verify(mockSettingsProvider, never()).getLastRunDate();
+		verify(mockSettingsProvider, never()).getLastRunDate(any(HostConfig.class));
 		verify(mockConnection, never()).listFiles();
-		verify(mockSettingsProvider, never()).getFilterExpressions();
-		verify(mockSettingsProvider, never()).setLastRunDate(any(DateTime.class));
-		verify(mockSettingsProvider, never()).getDownloadDirectory();
+		verify(mockSettings, never()).getFilterExpressions();
+		verify(mockRuntimeState, never()).setLastRunDate(any(HostConfig.class), any(DateTime.class));
+		verify(mockSettings, never()).getDownloadDirectory();
 		verify(mockConnection, never()).download(any(FtpFile.class), anyString());
 		verify(mockClient, never()).disconnect();
 	}
@@ -344,11 +423,10 @@ public class ConnectionScheduleTest {
 
 		verify(mockClient).connect();
 		verify(mockConnection).setRemoteDirectory(anyString());
-		verify(mockSettingsProvider).getLastRunDate();
 		verify(mockConnection).listFiles();
-		verify(mockSettingsProvider, never()).getFilterExpressions();
-		verify(mockSettingsProvider, never()).setLastRunDate(any(DateTime.class));
-		verify(mockSettingsProvider, never()).getDownloadDirectory();
+		verify(mockSettings, never()).getFilterExpressions();
+		verify(mockRuntimeState, never()).setLastRunDate(any(HostConfig.class), any(DateTime.class));
+		verify(mockSettings, never()).getDownloadDirectory();
 		verify(mockConnection, never()).download(any(FtpFile.class), anyString());
 		verify(mockClient).disconnect();
 	}
@@ -364,10 +442,10 @@ public class ConnectionScheduleTest {
 
 		verify(mockClient).connect();
 		verify(mockConnection).setRemoteDirectory(anyString());
-		verify(mockSettingsProvider).getLastRunDate();
-		verify(mockSettingsProvider).getFilterExpressions();
-		verify(mockSettingsProvider).setLastRunDate(any(DateTime.class));
-		verify(mockSettingsProvider).getDownloadDirectory();
+		verify(mockSettings).getFilterExpressions();
+		verify(mockRuntimeState).setLastRunDate(any(HostConfig.class), any(DateTime.class));
+		verify(mockSettings, times(2)).getDownloadDirectory();
+		verify(mockSeenFileIndex, never()).record(any(FtpFile.class));
 		verify(mockClient).disconnect();
 	}
 
@@ -378,11 +456,11 @@ public class ConnectionScheduleTest {
 
 		connectionScheduler.run();
 
-		verify(mockSettingsProvider, never()).getLastRunDate();
+		verify(mockSettingsProvider, never()).getLastRunDate(any(HostConfig.class));
 		verify(mockConnection, never()).listFiles();
-		verify(mockSettingsProvider, never()).getFilterExpressions();
-		verify(mockSettingsProvider, never()).setLastRunDate(any(DateTime.class));
-		verify(mockSettingsProvider, never()).getDownloadDirectory();
+		verify(mockSettings, never()).getFilterExpressions();
+		verify(mockRuntimeState, never()).setLastRunDate(any(HostConfig.class), any(DateTime.class));
+		verify(mockSettings, never()).getDownloadDirectory();
 		verify(mockConnection, never()).download(any(FtpFile.class), anyString());
 		verify(mockClient).disconnect();
 	}
@@ -393,9 +471,9 @@ public class ConnectionScheduleTest {
 
 		files.add(new FtpFile("File 1", 8000l, "/full/path/to/File 1", new DateTime(2014, 1, 5, 07, 0, 0).getMillis(), false));
 		files.add(new FtpFile("File 2", 54000l, "/full/path/to/File 2", new DateTime(2014, 1, 1, 06, 40, 0).getMillis(), false));
-		files.add(new FtpFile("File 3 with some text", 240l, "/full/path/to/File 3", new DateTime(2014, 1, 1, 07, 0, 1)
+		files.add(new FtpFile("File 3 with some text", 240l, "/full/path/to/File 3 with some text", new DateTime(2014, 1, 1, 07, 0, 1)
 		        .getMillis(), false));
-		files.add(new FtpFile("Unusual File 4", 873l, "/full/path/to/File 4", new DateTime(2013, 12, 15, 07, 0, 0).getMillis(),
+		files.add(new FtpFile("Unusual File 4", 873l, "/full/path/to/Unusual File 4", new DateTime(2013, 12, 15, 07, 0, 0).getMillis(),
 		        false));
 		files.add(new FtpFile("Directory 1", 0l, "/full/path/dir", new DateTime(2014, 1, 6, 07, 0, 0).getMillis(), true));
 		files.add(new FtpFile("Directory 2", 0l, "/full/dir", new DateTime(2014, 2, 15, 07, 0, 0).getMillis(), true));
@@ -412,4 +490,14 @@ public class ConnectionScheduleTest {
 
 		return expressions;
 	}
+
+	private static SettingsWatcher watching(Settings settings, SettingsProvider settingsProvider) {
+
+		SettingsWatcher settingsWatcher = mock(SettingsWatcher.class);
+
+		when(settingsWatcher.get()).thenReturn(settings);
+		when(settingsWatcher.getSettingsProvider()).thenReturn(settingsProvider);
+
+		return settingsWatcher;
+	}
 }
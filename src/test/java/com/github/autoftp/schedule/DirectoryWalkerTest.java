@@ -0,0 +1,139 @@
+package com.github.autoftp.schedule;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jftp.connection.Connection;
+import jftp.connection.FtpFile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.autoftp.config.HostConfig;
+
+public class DirectoryWalkerTest {
+
+	private HostConfig hostConfig;
+
+	private RemoteTree remoteTree;
+
+	@Before
+	public void setUp() {
+
+		hostConfig = new HostConfig();
+		hostConfig.setMaxConnections(1);
+		hostConfig.setMaxDepth(5);
+
+		remoteTree = new RemoteTree();
+		remoteTree.add("/out", file("/out/top.txt"), directory("/out/2014-01-01"), directory("/out/tmp"));
+		remoteTree.add("/out/2014-01-01", file("/out/2014-01-01/day.txt"), directory("/out/2014-01-01/late"));
+		remoteTree.add("/out/2014-01-01/late", file("/out/2014-01-01/late/late.txt"));
+		remoteTree.add("/out/tmp", file("/out/tmp/partial.txt"));
+	}
+
+	@Test
+	public void walkShouldReturnFilesFromEveryDirectoryBelowRoot() {
+
+		List<FtpFile> files = new DirectoryWalker(null, hostConfig).walk(remoteTree);
+
+		assertThat(namesOf(files), containsInAnyOrder("top.txt", "day.txt", "late.txt", "partial.txt"));
+	}
+
+	@Test
+	public void walkShouldNotGoDeeperThanMaxDepth() {
+
+		hostConfig.setMaxDepth(1);
+
+		List<FtpFile> files = new DirectoryWalker(null, hostConfig).walk(remoteTree);
+
+		assertThat(namesOf(files), containsInAnyOrder("top.txt", "day.txt", "partial.txt"));
+	}
+
+	@Test
+	public void excludedDirectoriesShouldNotBeListed() {
+
+		hostConfig.setExcludedDirectories(Arrays.asList("tmp"));
+
+		List<FtpFile> files = new DirectoryWalker(null, hostConfig).walk(remoteTree);
+
+		assertThat(namesOf(files), containsInAnyOrder("top.txt", "day.txt", "late.txt"));
+	}
+
+	@Test
+	public void ifIncludedDirectoriesAreGivenThenOnlyThoseShouldBeListed() {
+
+		hostConfig.setIncludedDirectories(Arrays.asList("2014-??-??"));
+
+		List<FtpFile> files = new DirectoryWalker(null, hostConfig).walk(remoteTree);
+
+		assertThat(namesOf(files), containsInAnyOrder("top.txt", "day.txt"));
+	}
+
+	@Test
+	public void walkShouldLeaveConnectionInDirectoryItStartedIn() {
+
+		DirectoryWalker walker = new DirectoryWalker(null, hostConfig);
+		walker.walk(remoteTree);
+
+		assertThat(remoteTree.currentDirectory, is(equalTo("/out")));
+		assertThat(walker.getRoot(), is(equalTo("/out")));
+	}
+
+	@Test
+	public void filesShouldBePlacedRelativeToRoot() {
+
+		assertThat(RemotePaths.relativeDirectoryOf("/out", file("/out/2014-01-01/late/late.txt")),
+		        is(equalTo("2014-01-01/late")));
+		assertThat(RemotePaths.relativeDirectoryOf("/out", file("/out/top.txt")), is(equalTo("")));
+	}
+
+	private List<String> namesOf(List<FtpFile> files) {
+
+		List<String> names = new ArrayList<String>();
+
+		for (FtpFile file : files)
+			names.add(file.getName());
+
+		return names;
+	}
+
+	private FtpFile file(String fullPath) {
+		return new FtpFile(fullPath.substring(fullPath.lastIndexOf('/') + 1), 10l, fullPath, 0l, false);
+	}
+
+	private FtpFile directory(String fullPath) {
+		return new FtpFile(fullPath.substring(fullPath.lastIndexOf('/') + 1), 0l, fullPath, 0l, true);
+	}
+
+	private static class RemoteTree implements Connection {
+
+		private Map<String, List<FtpFile>> listings = new HashMap<String, List<FtpFile>>();
+		private String currentDirectory = "/out";
+
+		public void add(String directory, FtpFile... entries) {
+			listings.put(directory, Arrays.asList(entries));
+		}
+
+		@Override
+		public void setRemoteDirectory(String remoteDirectory) {
+			currentDirectory = remoteDirectory;
+		}
+
+		@Override
+		public List<FtpFile> listFiles() {
+			return new ArrayList<FtpFile>(listings.get(currentDirectory));
+		}
+
+		@Override
+		public void download(FtpFile file, String localDirectory) {
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package com.github.autoftp.schedule;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import jftp.client.Client;
+import jftp.connection.Connection;
+import jftp.connection.FtpFile;
+import jftp.exception.ConnectionInitialisationException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import com.github.autoftp.config.HostConfig;
+
+public class DownloadWorkerTest {
+
+	@Mock
+	private ConnectionSchedule mockConnectionSchedule;
+
+	@Mock
+	private Client mockClient;
+
+	@Mock
+	private Connection mockConnection;
+
+	private HostConfig hostConfig;
+
+	private DownloadQueue downloadQueue;
+
+	private FtpFile first;
+
+	private DownloadWorker worker;
+
+	@Before
+	public void setUp() {
+
+		initMocks(this);
+
+		hostConfig = new HostConfig();
+		hostConfig.setFileDirectory("remote/directory");
+
+		first = new FtpFile("File 1", 8000l, "/full/path/to/File 1", 0l, false);
+
+		downloadQueue = new DownloadQueue();
+		downloadQueue.add(first);
+		downloadQueue.add(new FtpFile("File 2", 54000l, "/full/path/to/File 2", 0l, false));
+		downloadQueue.close();
+
+		when(mockConnectionSchedule.createClient(hostConfig)).thenReturn(mockClient);
+		when(mockClient.connect()).thenReturn(mockConnection);
+
+		worker = new DownloadWorker(mockConnectionSchedule, hostConfig, downloadQueue);
+	}
+
+	@Test
+	public void workerShouldOpenItsOwnConnectionAndMoveToRemoteDirectory() {
+
+		worker.run();
+
+		verify(mockClient).connect();
+		verify(mockConnection).setRemoteDirectory("remote/directory");
+	}
+
+	@Test
+	public void workerShouldDownloadEveryQueuedFileOverItsOwnConnection() {
+
+		worker.run();
+
+		verify(mockConnectionSchedule).downloadFile(mockConnection, first);
+		assertThat(downloadQueue.isEmpty(), is(equalTo(true)));
+	}
+
+	@Test
+	public void workerShouldDisconnectOnceQueueIsEmpty() {
+
+		worker.run();
+
+		verify(mockClient).disconnect();
+	}
+
+	@Test
+	public void ifWorkerCannotConnectThenErrorShouldBeReportedAndQueueLeftForOtherWorkers() {
+
+		when(mockClient.connect()).thenThrow(new ConnectionInitialisationException("Unable to connect"));
+
+		worker.run();
+
+		verify(mockConnectionSchedule).notifyOfError("Unable to connect");
+		verify(mockConnectionSchedule, never()).downloadFile(any(Connection.class), any(FtpFile.class));
+		assertThat(downloadQueue.size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void workerGivenAnOpenConnectionShouldUseItWithoutConnectingOrDisconnecting() {
+
+		Connection openConnection = mock(Connection.class);
+
+		new DownloadWorker(mockConnectionSchedule, hostConfig, downloadQueue, openConnection).run();
+
+		verify(mockConnectionSchedule).downloadFile(openConnection, first);
+		verify(mockConnectionSchedule, never()).createClient(hostConfig);
+		verify(openConnection, never()).setRemoteDirectory(anyString());
+	}
+
+	@Test
+	public void workerShouldWaitForFilesAddedBeforeTheQueueIsClosed() throws InterruptedException {
+
+		final DownloadQueue openQueue = new DownloadQueue();
+		final FtpFile late = new FtpFile("Late", 10l, "/full/path/to/Late", 0l, false);
+
+		Thread worker = new Thread(new DownloadWorker(mockConnectionSchedule, hostConfig, openQueue));
+		worker.start();
+
+		Thread.sleep(200);
+
+		openQueue.add(late);
+		openQueue.close();
+
+		worker.join(5000);
+
+		assertThat(worker.isAlive(), is(equalTo(false)));
+		verify(mockConnectionSchedule).downloadFile(mockConnection, late);
+	}
+}
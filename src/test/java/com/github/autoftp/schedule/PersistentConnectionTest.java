@@ -0,0 +1,131 @@
+package com.github.autoftp.schedule;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import jftp.client.Client;
+import jftp.client.ClientFactory.ClientType;
+import jftp.connection.Connection;
+import jftp.exception.NoSuchDirectoryException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import com.github.autoftp.config.HostConfig;
+
+public class PersistentConnectionTest {
+
+	@Mock
+	private ConnectionSchedule mockConnectionSchedule;
+
+	@Mock
+	private Client mockClient;
+
+	@Mock
+	private Connection mockConnection;
+
+	private HostConfig hostConfig;
+
+	private PersistentConnection persistentConnection;
+
+	@Before
+	public void setUp() {
+
+		initMocks(this);
+
+		hostConfig = new HostConfig();
+		hostConfig.setClientType(ClientType.SFTP);
+		hostConfig.setHostname("hostname");
+		hostConfig.setFileDirectory("remote/directory");
+
+		when(mockConnectionSchedule.createClient(hostConfig)).thenReturn(mockClient);
+		when(mockClient.connect()).thenReturn(mockConnection);
+
+		persistentConnection = new PersistentConnection(mockConnectionSchedule);
+	}
+
+	@Test
+	public void acquiringShouldConnectAndMoveToRemoteDirectory() {
+
+		Connection connection = persistentConnection.acquire(hostConfig);
+
+		assertThat(connection, is(sameInstance(mockConnection)));
+		verify(mockConnection).setRemoteDirectory("remote/directory");
+	}
+
+	@Test
+	public void healthyConnectionShouldBeReusedOnNextRun() {
+
+		persistentConnection.acquire(hostConfig);
+		persistentConnection.release();
+		persistentConnection.acquire(hostConfig);
+
+		verify(mockClient, times(1)).connect();
+		verify(mockConnection).setRemoteDirectory(".");
+	}
+
+	@Test
+	public void ifConnectionHasDroppedThenItShouldBeReopenedTransparently() {
+
+		persistentConnection.acquire(hostConfig);
+		persistentConnection.release();
+
+		doThrow(new NoSuchDirectoryException("Session closed")).when(mockConnection).setRemoteDirectory(".");
+
+		persistentConnection.acquire(hostConfig);
+
+		verify(mockClient).disconnect();
+		verify(mockClient, times(2)).connect();
+	}
+
+	@Test
+	public void ifHostSettingsChangeThenConnectionShouldBeReopened() {
+
+		persistentConnection.acquire(hostConfig);
+		persistentConnection.release();
+
+		hostConfig.setFileDirectory("another/directory");
+		persistentConnection.acquire(hostConfig);
+
+		verify(mockClient, times(2)).connect();
+	}
+
+	@Test
+	public void keepAliveShouldNotTouchConnectionWhileARunIsUsingIt() {
+
+		persistentConnection.acquire(hostConfig);
+		persistentConnection.keepAlive();
+
+		verify(mockConnection, never()).setRemoteDirectory(".");
+	}
+
+	@Test
+	public void ifKeepAliveFailsThenConnectionShouldBeClosed() {
+
+		persistentConnection.acquire(hostConfig);
+		persistentConnection.release();
+
+		doThrow(new NoSuchDirectoryException("Session closed")).when(mockConnection).setRemoteDirectory(".");
+
+		persistentConnection.keepAlive();
+
+		assertThat(persistentConnection.isOpen(), is(equalTo(false)));
+	}
+
+	@Test
+	public void prewarmShouldOpenConnectionAheadOfRun() {
+
+		persistentConnection.prewarm(hostConfig);
+
+		assertThat(persistentConnection.isOpen(), is(equalTo(true)));
+	}
+}
@@ -0,0 +1,211 @@
+package com.github.autoftp.schedule;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jftp.client.ClientFactory.ClientType;
+import jftp.connection.Connection;
+import jftp.connection.FtpFile;
+import jftp.exception.FileListingException;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.github.autoftp.FilterMatcher;
+import com.github.autoftp.config.HostConfig;
+import com.github.autoftp.transfer.ListingCallback;
+import com.github.autoftp.transfer.ChecksumAlgorithm;
+import com.github.autoftp.transfer.RangedConnection;
+import com.github.autoftp.transfer.RangedConnectionFactory;
+
+public class StreamingScanTest {
+
+	@Mock
+	private ConnectionSchedule mockConnectionSchedule;
+
+	@Mock
+	private Connection mockConnection;
+
+	@Mock
+	private RangedConnectionFactory mockRangedConnectionFactory;
+
+	private HostConfig hostConfig;
+
+	private List<FtpFile> remoteEntries;
+
+	private List<String> downloadedFiles;
+
+	private CountDownLatch firstDownloadStarted;
+
+	private boolean listingSawFirstDownload;
+
+	@Before
+	public void setUp() {
+
+		initMocks(this);
+
+		hostConfig = new HostConfig();
+		hostConfig.setClientType(ClientType.FTP);
+		hostConfig.setFileDirectory("out");
+		hostConfig.setMaxConnections(1);
+
+		remoteEntries = Arrays.asList(file("first.mkv"), directory("subs"), file("notes.txt"), file("second.mkv"));
+		downloadedFiles = Collections.synchronizedList(new ArrayList<String>());
+		firstDownloadStarted = new CountDownLatch(1);
+
+		when(mockConnectionSchedule.isNewFile(any(FtpFile.class), any(DateTime.class))).thenAnswer(new Answer<Boolean>() {
+
+			@Override
+			public Boolean answer(InvocationOnMock invocation) {
+				return !((FtpFile) invocation.getArguments()[0]).isDirectory();
+			}
+		});
+
+		doAnswer(new Answer<Void>() {
+
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+
+				downloadedFiles.add(((FtpFile) invocation.getArguments()[1]).getName());
+				firstDownloadStarted.countDown();
+
+				return null;
+			}
+		}).when(mockConnectionSchedule).downloadFile(any(Connection.class), any(FtpFile.class));
+
+		when(mockRangedConnectionFactory.createConnection(ClientType.FTP)).thenReturn(new RemoteListing());
+	}
+
+	@Test
+	public void onlyNewMatchingFilesShouldBeDownloaded() {
+
+		List<FtpFile> queued = scan().scan(mockConnection);
+
+		assertThat(downloadedFiles, containsInAnyOrder("first.mkv", "second.mkv"));
+		assertThat(queued.size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void downloadsShouldStartBeforeTheListingHasFinished() {
+
+		scan().scan(mockConnection);
+
+		assertThat(listingSawFirstDownload, is(equalTo(true)));
+	}
+
+	@Test
+	public void listenersShouldBeToldWhichFilesAreQueued() {
+
+		List<FtpFile> queued = scan().scan(mockConnection);
+
+		verify(mockConnectionSchedule).notifyOfFilesToDownload(queued);
+	}
+
+	@Test
+	public void filesQueuedBeforeTheListingFailsShouldStillBeDownloaded() {
+
+		remoteEntries = Arrays.asList(file("first.mkv"), null);
+
+		try {
+
+			scan().scan(mockConnection);
+
+		} catch (FileListingException e) {
+			assertThat(downloadedFiles, containsInAnyOrder("first.mkv"));
+			verify(mockConnectionSchedule, never()).notifyOfFilesToDownload(anyListOf(FtpFile.class));
+			return;
+		}
+
+		throw new AssertionError("Listing failure should be passed on");
+	}
+
+	private StreamingScan scan() {
+		return new StreamingScan(mockConnectionSchedule, hostConfig, new FilterMatcher(Arrays.asList("*.mkv")), null,
+		        mockRangedConnectionFactory);
+	}
+
+	private FtpFile file(String name) {
+		return new FtpFile(name, 10l, "/out/" + name, 0l, false);
+	}
+
+	private FtpFile directory(String name) {
+		return new FtpFile(name, 0l, "/out/" + name, 0l, true);
+	}
+
+	/**
+	 * Hands over its entries one at a time, waiting after the first until a download has started. A null
+	 * entry fails the listing.
+	 */
+	private class RemoteListing implements RangedConnection {
+
+		@Override
+		public void connect(HostConfig host) {
+		}
+
+		@Override
+		public InputStream retrieve(String remotePath, long offset) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void listFiles(String remoteDirectory, ListingCallback callback) {
+
+			for (FtpFile entry : remoteEntries) {
+
+				if (entry == null)
+					throw new FileListingException("Unable to list files in directory /out", null);
+
+				callback.onFile(entry);
+
+				if (!listingSawFirstDownload)
+					listingSawFirstDownload = awaitFirstDownload();
+			}
+		}
+
+		private boolean awaitFirstDownload() {
+
+			try {
+
+				return firstDownloadStarted.await(5, TimeUnit.SECONDS);
+
+			} catch (InterruptedException e) {
+				return false;
+			}
+		}
+
+		@Override
+		public String probe(String remoteDirectory) {
+			return null;
+		}
+
+		@Override
+		public String checksum(String remotePath, ChecksumAlgorithm algorithm) {
+			return null;
+		}
+
+		@Override
+		public void disconnect() {
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package com.github.autoftp.state;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.autoftp.config.HostConfig;
+
+public class RuntimeStateJournalTest {
+
+	@Rule
+	public TemporaryFolder indexDirectory = new TemporaryFolder();
+
+	private File journalFile;
+
+	private RuntimeStateJournal journal;
+
+	private HostConfig host;
+
+	@Before
+	public void setUp() {
+
+		journalFile = new File(indexDirectory.getRoot(), RuntimeStateJournal.FILE_NAME);
+		journal = new RuntimeStateJournal(journalFile, 8);
+
+		host = new HostConfig();
+		host.setId("archive");
+	}
+
+	@Test
+	public void defaultsShouldBeReturnedUntilAValueIsRecorded() {
+
+		assertThat(journal.getLastRunDate(host, new DateTime(5)), is(equalTo(new DateTime(5))));
+		assertThat(journal.getPollDelay(host, 60), is(equalTo(60l)));
+	}
+
+	@Test
+	public void latestValuesShouldBeReadBackAfterReopening() {
+
+		journal.setLastRunDate(host, new DateTime(1000));
+		journal.setLastRunDate(host, new DateTime(2000));
+		journal.setLastRunDate(null, new DateTime(3000));
+		journal.setPollDelay(host, 240);
+		journal.close();
+
+		RuntimeStateJournal reopened = new RuntimeStateJournal(journalFile);
+
+		assertThat(reopened.getLastRunDate(host, null), is(equalTo(new DateTime(2000))));
+		assertThat(reopened.getLastRunDate(null, null), is(equalTo(new DateTime(3000))));
+		assertThat(reopened.getPollDelay(host, 0), is(equalTo(240l)));
+	}
+
+	@Test
+	public void valuesShouldBeReadableBeforeTheyAreFlushed() {
+
+		journal.setPollDelay(host, 120);
+
+		assertThat(new RuntimeStateJournal(journalFile).getPollDelay(host, 0), is(equalTo(120l)));
+	}
+
+	@Test
+	public void unchangedValueShouldNotBeAppendedAgain() {
+
+		journal.setPollDelay(host, 480);
+		long length = journalFile.length();
+
+		journal.setPollDelay(host, 480);
+
+		assertThat(journalFile.length(), is(equalTo(length)));
+	}
+
+	@Test
+	public void partialLineLeftByACrashShouldBeIgnoredAndAppendedPast() throws IOException {
+
+		journal.setPollDelay(host, 120);
+		journal.close();
+
+		FileOutputStream out = new FileOutputStream(journalFile, true);
+		out.write("hosts.archive.poll-de".getBytes("UTF-8"));
+		out.close();
+
+		RuntimeStateJournal reopened = new RuntimeStateJournal(journalFile);
+		reopened.setLastRunDate(host, new DateTime(4000));
+		reopened.close();
+
+		RuntimeStateJournal again = new RuntimeStateJournal(journalFile);
+
+		assertThat(again.getPollDelay(host, 0), is(equalTo(120l)));
+		assertThat(again.getLastRunDate(host, null), is(equalTo(new DateTime(4000))));
+	}
+
+	@Test
+	public void flushingShouldCompactAJournalOfMostlyReplacedValues() {
+
+		for (int i = 1; i <= 100; i++)
+			journal.setLastRunDate(host, new DateTime(i));
+
+		long length = journalFile.length();
+
+		journal.flush();
+		journal.setPollDelay(host, 60);
+		journal.close();
+
+		assertThat(journalFile.length(), is(lessThan(length)));
+
+		RuntimeStateJournal reopened = new RuntimeStateJournal(journalFile);
+
+		assertThat(reopened.getLastRunDate(host, null), is(equalTo(new DateTime(100))));
+		assertThat(reopened.getPollDelay(host, 0), is(equalTo(60l)));
+		assertThat(new File(journalFile.getPath() + ".compact").exists(), is(equalTo(false)));
+	}
+}
@@ -1,35 +1,75 @@
 package com.github.autoftp.strategies;
 
-import static org.mockito.Mockito.verify;
-import static org.mockito.MockitoAnnotations.initMocks;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
 import org.junit.Before;
-import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
-import org.mockito.InjectMocks;
-import org.mockito.Mock;
+import org.junit.rules.TemporaryFolder;
 
-import com.github.autoftp.url.PushbulletConnection;
+import com.github.autoftp.config.SettingsWatcher;
+import com.github.autoftp.url.PushbulletStandIn;
 
-@Ignore
 public class ExternalNotificationStrategyTest {
 
-	@InjectMocks
-	private ExternalNotificationStrategy externalNotificationStrategy = new ExternalNotificationStrategy();
-	
-	@Mock
-	private PushbulletConnection mockPushbulletConnection;
-	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private PushbulletStandIn pushbullet;
+
+	private SettingsWatcher settings;
+
+	private ExternalNotificationStrategy externalNotificationStrategy;
+
 	@Before
-	public void setUp() {
-		initMocks(this);
+	public void setUp() throws IOException {
+
+		pushbullet = new PushbulletStandIn();
+
+		File configFile = new File(folder.getRoot(), "autoftp.conf");
+
+		FileUtils.write(configFile, "download-dir = /downloads\n" + "move.enabled = false\n"
+		        + "pushbullet.notify.enabled = true\n" + "pushbullet.api.key = someApiKey\n" + "pushbullet.api.url = "
+		        + pushbullet.getUrl() + "\n" + "host.name = host\n" + "host.port = 21\n" + "host.type = FTP\n", "UTF-8");
+
+		settings = new SettingsWatcher(configFile.getPath());
+		externalNotificationStrategy = new ExternalNotificationStrategy(settings);
+	}
+
+	@After
+	public void tearDown() {
+
+		settings.stop();
+		pushbullet.stop();
 	}
-	
+
 	@Test
-	public void whenDownloadFinishesThenPushbulletNotificationShouldBeSent() {
-		
+	public void whenTheRunEndsThenItsDownloadsShouldBeSentInOnePushbulletNotification() throws InterruptedException {
+
 		externalNotificationStrategy.onDownloadFinished("fileName");
-		
-		verify(mockPushbulletConnection).sendNotification("A new file has been downloaded", "fileName");
+		externalNotificationStrategy.onDownloadFinished("otherFileName");
+		externalNotificationStrategy.onRunFinished();
+
+		List<String> pushes = pushbullet.awaitPushes(1, 5000);
+
+		assertThat(pushes.size(), is(equalTo(1)));
+		assertThat(pushes.get(0).contains("\"body\": \"fileName\\notherFileName\""), is(equalTo(true)));
+	}
+
+	@Test
+	public void disconnectingShouldNotSendAnythingBeforeTheRunEnds() throws InterruptedException {
+
+		externalNotificationStrategy.onDownloadFinished("fileName");
+		externalNotificationStrategy.onDisconnection();
+
+		assertThat(pushbullet.awaitPushes(1, 200).isEmpty(), is(equalTo(true)));
 	}
 }
@@ -1,30 +1,33 @@
 package com.github.autoftp.strategies;
 
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.Executor;
 
 import org.junit.Before;
-import org.junit.Ignore;
 import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 
 import com.github.autoftp.FileUtilities;
-import com.github.autoftp.config.SettingsProvider;
+import com.github.autoftp.config.Settings;
+import com.github.autoftp.config.SettingsWatcher;
 
-@Ignore
 public class MoveOnCompleteStrategyTest {
 
+	private Settings mockSettings = mock(Settings.class);
+
+	private SettingsWatcher mockSettingsWatcher = watching(mockSettings);
+
 	@InjectMocks
-	private MoveOnCompleteStrategy moveOnCompleteStrategy = new MoveOnCompleteStrategy();
-	
-	@Mock
-	private SettingsProvider mockSettingsProvider;
+	private MoveOnCompleteStrategy moveOnCompleteStrategy = new MoveOnCompleteStrategy(mockSettingsWatcher);
 	
 	@Mock
 	private FileUtilities mockFileFactory;
@@ -34,23 +37,26 @@ public class MoveOnCompleteStrategyTest {
 	
 	@Mock
 	private File mockDestinationDirectory;
+
+	@Spy
+	private Executor moveWorkers = new InlineExecutor();
 	
 	@Before
 	public void setUp() {
 		initMocks(this);
 		
-		when(mockSettingsProvider.getDownloadDirectory()).thenReturn("downloaddir");
-		when(mockSettingsProvider.getMoveDirectory()).thenReturn("movedir");
+		when(mockSettings.getDownloadDirectory()).thenReturn("downloaddir");
+		when(mockSettings.getMoveDirectory()).thenReturn("movedir");
 		when(mockFileFactory.getFile(Mockito.anyString())).thenReturn(mockFileToMove).thenReturn(mockDestinationDirectory);
 	}
 	
 	@Test
-	public void onDownloadCompleteShouldCallSettingsProviderToGetMoveAndDownloadDirectory() {
+	public void onDownloadCompleteShouldReadMoveAndDownloadDirectoryFromSettings() {
 		
 		moveOnCompleteStrategy.onDownloadFinished("file");
 		
-		verify(mockSettingsProvider).getMoveDirectory();
-		verify(mockSettingsProvider).getDownloadDirectory();
+		verify(mockSettings).getMoveDirectory();
+		verify(mockSettings).getDownloadDirectory();
 	}
 	
 	@Test
@@ -69,4 +75,21 @@ public class MoveOnCompleteStrategyTest {
 		
 		verify(mockFileFactory).moveFile(mockFileToMove, mockDestinationDirectory);
 	}
+
+	private static SettingsWatcher watching(Settings settings) {
+
+		SettingsWatcher settingsWatcher = mock(SettingsWatcher.class);
+
+		when(settingsWatcher.get()).thenReturn(settings);
+
+		return settingsWatcher;
+	}
+
+	private static class InlineExecutor implements Executor {
+
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	}
 }
@@ -0,0 +1,141 @@
+package com.github.autoftp.transfer;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.autoftp.config.HostConfig;
+
+public class BandwidthLimiterTest {
+
+	private BandwidthLimiter limiter;
+
+	private HostConfig archive;
+
+	private HostConfig media;
+
+	@Before
+	public void setUp() {
+
+		limiter = new BandwidthLimiter();
+
+		archive = createHost("archive", 0, 3);
+		media = createHost("media", 0, 1);
+	}
+
+	@Test
+	public void withNoLimitsStreamsShouldBePassedThroughUntouched() {
+
+		InputStream remoteStream = new ByteArrayInputStream(new byte[10]);
+
+		limiter.configure(0, archive);
+
+		assertThat(limiter.isLimited(archive), is(equalTo(false)));
+		assertThat(limiter.throttle(archive, remoteStream), is(sameInstance(remoteStream)));
+	}
+
+	@Test
+	public void overallLimitShouldBeSharedInProportionToWeight() {
+
+		limiter.configure(400, archive);
+		limiter.configure(400, media);
+
+		limiter.throttle(archive, new ByteArrayInputStream(new byte[10]));
+		limiter.throttle(media, new ByteArrayInputStream(new byte[10]));
+
+		assertThat(limiter.getCurrentRate("archive"), is(equalTo(300l)));
+		assertThat(limiter.getCurrentRate("media"), is(equalTo(100l)));
+	}
+
+	@Test
+	public void hostShouldNotGetMoreThanItsOwnLimit() {
+
+		archive.setBandwidthLimit(50);
+
+		limiter.configure(400, archive);
+		limiter.configure(400, media);
+
+		limiter.throttle(archive, new ByteArrayInputStream(new byte[10]));
+		limiter.throttle(media, new ByteArrayInputStream(new byte[10]));
+
+		assertThat(limiter.getCurrentRate("archive"), is(equalTo(50l)));
+	}
+
+	@Test
+	public void closingATransferShouldHandItsShareBack() throws IOException {
+
+		limiter.configure(400, archive);
+		limiter.configure(400, media);
+
+		InputStream archiveStream = limiter.throttle(archive, new ByteArrayInputStream(new byte[10]));
+		limiter.throttle(media, new ByteArrayInputStream(new byte[10]));
+
+		archiveStream.close();
+
+		assertThat(limiter.getCurrentRate("media"), is(equalTo(400l)));
+	}
+
+	@Test
+	public void changingTheOverallLimitShouldApplyToRunningTransfers() {
+
+		limiter.configure(400, media);
+		limiter.throttle(media, new ByteArrayInputStream(new byte[10]));
+
+		limiter.setGlobalLimit(1000);
+
+		assertThat(limiter.getCurrentRate("media"), is(equalTo(1000l)));
+	}
+
+	@Test
+	public void throttledStreamShouldNotReadFasterThanTheLimit() throws IOException {
+
+		limiter.configure(32 * 1024, media);
+
+		byte[] remoteContent = new byte[64 * 1024];
+		InputStream throttled = limiter.throttle(media, new ByteArrayInputStream(remoteContent));
+
+		long start = System.nanoTime();
+		byte[] read = IOUtils.toByteArray(throttled);
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		throttled.close();
+
+		// The first second's worth is allowed as a burst, the rest arrives at the limit.
+		assertThat(read.length, is(equalTo(remoteContent.length)));
+		assertThat(elapsedMillis, is(greaterThanOrEqualTo(900l)));
+	}
+
+	@Test
+	public void unlimitedHostShouldBecomeLimitedWhenOverallLimitIsSet() {
+
+		limiter.configure(0, media);
+		limiter.setGlobalLimit(100);
+
+		InputStream remoteStream = new ByteArrayInputStream(new byte[10]);
+
+		assertThat(limiter.throttle(media, remoteStream), is(not(sameInstance(remoteStream))));
+	}
+
+	private HostConfig createHost(String id, long limit, int weight) {
+
+		HostConfig host = new HostConfig();
+
+		host.setId(id);
+		host.setBandwidthLimit(limit);
+		host.setBandwidthWeight(weight);
+
+		return host;
+	}
+}
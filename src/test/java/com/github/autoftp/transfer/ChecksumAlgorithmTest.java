@@ -0,0 +1,96 @@
+package com.github.autoftp.transfer;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.security.MessageDigest;
+
+import org.junit.Test;
+
+public class ChecksumAlgorithmTest {
+
+	private static final byte[] CHECK_INPUT = "123456789".getBytes();
+
+	@Test
+	public void digestsShouldMatchTheStandardCheckValues() {
+
+		assertThat(digestOf(ChecksumAlgorithm.CRC32), is(equalTo("cbf43926")));
+		assertThat(digestOf(ChecksumAlgorithm.CRC32C), is(equalTo("e3069283")));
+		assertThat(digestOf(ChecksumAlgorithm.MD5), is(equalTo("25f9e794323b453885f5181f1b624d0b")));
+		assertThat(digestOf(ChecksumAlgorithm.SHA256),
+		        is(equalTo("15e2b0d3c33891ebb0f1ef609ec419420c20e320ce94c65fbc8c3312448eb225")));
+	}
+
+	@Test
+	public void digestWorkedOutInPiecesShouldMatchTheWholeOne() {
+
+		MessageDigest digest = ChecksumAlgorithm.CRC32C.newDigest();
+
+		digest.update(CHECK_INPUT, 0, 4);
+		digest.update(CHECK_INPUT[4]);
+		digest.update(CHECK_INPUT, 5, 4);
+
+		assertThat(ChecksumAlgorithm.toHex(digest.digest()), is(equalTo("e3069283")));
+	}
+
+	@Test
+	public void settingShouldBeReadIgnoringCaseAndDashes() {
+
+		assertThat(ChecksumAlgorithm.fromSetting(" SHA-256 "), is(equalTo(ChecksumAlgorithm.SHA256)));
+		assertThat(ChecksumAlgorithm.fromSetting("crc32c"), is(equalTo(ChecksumAlgorithm.CRC32C)));
+		assertThat(ChecksumAlgorithm.fromSetting(" "), is(nullValue()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownSettingShouldBeRejected() {
+		ChecksumAlgorithm.fromSetting("sha1");
+	}
+
+	@Test
+	public void md5sumSidecarShouldGiveTheDigestForTheNamedFile() {
+
+		String sidecar = "d41d8cd98f00b204e9800998ecf8427e  other.file\n"
+		        + "25F9E794323B453885F5181F1B624D0B *dir/File 1\n";
+
+		assertThat(ChecksumAlgorithm.MD5.parseSidecar(sidecar, "File 1"),
+		        is(equalTo("25f9e794323b453885f5181f1b624d0b")));
+		assertThat(ChecksumAlgorithm.MD5.parseSidecar(sidecar, "missing.file"), is(nullValue()));
+	}
+
+	@Test
+	public void sidecarWithOnlyADigestShouldBeTakenToBeForTheFile() {
+
+		assertThat(ChecksumAlgorithm.MD5.parseSidecar("25f9e794323b453885f5181f1b624d0b\n", "File 1"),
+		        is(equalTo("25f9e794323b453885f5181f1b624d0b")));
+	}
+
+	@Test
+	public void sfvSidecarShouldSkipCommentsAndAllowSpacesInNames() {
+
+		String sidecar = "; Generated by an SFV tool\r\nFile 1 CBF43926\r\nFile 2 00000000\r\n";
+
+		assertThat(ChecksumAlgorithm.CRC32.parseSidecar(sidecar, "File 1"), is(equalTo("cbf43926")));
+	}
+
+	@Test
+	public void sidecarShouldBeWrittenInTheFormatItIsRead() {
+
+		String md5 = ChecksumAlgorithm.MD5.formatSidecar("File 1", "25f9e794323b453885f5181f1b624d0b");
+		String sfv = ChecksumAlgorithm.CRC32.formatSidecar("File 1", "cbf43926");
+
+		assertThat(md5, is(equalTo("25f9e794323b453885f5181f1b624d0b  File 1\n")));
+		assertThat(sfv, is(equalTo("File 1 CBF43926\n")));
+		assertThat(ChecksumAlgorithm.CRC32.parseSidecar(sfv, "File 1"), is(equalTo("cbf43926")));
+	}
+
+	private String digestOf(ChecksumAlgorithm algorithm) {
+
+		MessageDigest digest = algorithm.newDigest();
+
+		digest.update(CHECK_INPUT);
+
+		return ChecksumAlgorithm.toHex(digest.digest());
+	}
+}
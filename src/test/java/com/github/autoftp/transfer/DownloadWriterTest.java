@@ -0,0 +1,155 @@
+package com.github.autoftp.transfer;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DownloadWriterTest {
+
+	@Rule
+	public TemporaryFolder downloadDirectory = new TemporaryFolder();
+
+	private DownloadWriter downloadWriter;
+
+	private File localFile;
+
+	private byte[] remoteContent = "0123456789abcdefghij".getBytes();
+
+	@Before
+	public void setUp() {
+
+		downloadWriter = new DownloadWriter();
+		downloadWriter.setBufferSize(3);
+
+		localFile = new File(downloadDirectory.getRoot(), "File 1");
+	}
+
+	@Test
+	public void streamShouldBeWrittenWholeInBufferSizedPieces() throws IOException {
+
+		long length = downloadWriter.write(new ByteArrayInputStream(remoteContent), localFile, 0, remoteContent.length,
+		        null, null, null);
+
+		assertThat(length, is(equalTo((long) remoteContent.length)));
+		assertThat(FileUtils.readFileToByteArray(localFile), is(equalTo(remoteContent)));
+	}
+
+	@Test
+	public void channelShouldBeReadWhenTheStreamHasOne() throws IOException {
+
+		downloadWriter.write(new ChannelStream(remoteContent), localFile, 0, remoteContent.length, null, null, null);
+
+		assertThat(FileUtils.readFileToByteArray(localFile), is(equalTo(remoteContent)));
+	}
+
+	@Test
+	public void streamShouldBeWrittenAfterThePartAlreadyThere() throws IOException {
+
+		FileUtils.writeByteArrayToFile(localFile, Arrays.copyOf(remoteContent, 8));
+
+		downloadWriter.write(new ChannelStream(Arrays.copyOfRange(remoteContent, 8, remoteContent.length)), localFile,
+		        8, remoteContent.length, null, null, null);
+
+		assertThat(FileUtils.readFileToByteArray(localFile), is(equalTo(remoteContent)));
+	}
+
+	@Test
+	public void fileShouldBeCutBackToWhatWasWrittenWhenTheStreamEndsEarly() throws IOException {
+
+		long length = downloadWriter.write(new ChannelStream(Arrays.copyOf(remoteContent, 7)), localFile, 0,
+		        remoteContent.length, null, null, null);
+
+		assertThat(length, is(equalTo(7l)));
+		assertThat(localFile.length(), is(equalTo(7l)));
+	}
+
+	@Test
+	public void digestShouldSeeEveryByteWritten() throws Exception {
+
+		MessageDigest digest = MessageDigest.getInstance("MD5");
+
+		downloadWriter.write(new ChannelStream(remoteContent), localFile, 0, remoteContent.length, digest, null, null);
+
+		assertThat(digest.digest(), is(equalTo(MessageDigest.getInstance("MD5").digest(remoteContent))));
+	}
+
+	@Test
+	public void rangeShouldBeWrittenInPlaceWithoutReadingPastItsEnd() throws IOException {
+
+		RandomAccessFile file = new RandomAccessFile(localFile, "rw");
+
+		try {
+
+			file.setLength(remoteContent.length);
+
+			long end = downloadWriter.writeRange(new ChannelStream(Arrays.copyOfRange(remoteContent, 5,
+			        remoteContent.length)), file.getChannel(), 5, 10, null, null);
+
+			assertThat(end, is(equalTo(10l)));
+
+		} finally {
+			file.close();
+		}
+
+		byte[] written = FileUtils.readFileToByteArray(localFile);
+
+		assertThat(Arrays.copyOfRange(written, 5, 10), is(equalTo(Arrays.copyOfRange(remoteContent, 5, 10))));
+		assertThat(written[10], is(equalTo((byte) 0)));
+	}
+
+	@Test
+	public void positionShouldBeCommittedEveryCommitSizeAndWhenTheStreamEnds() throws IOException {
+
+		final List<Long> commits = new ArrayList<Long>();
+
+		downloadWriter.setCommitSize(6);
+
+		downloadWriter.write(new ChannelStream(Arrays.copyOf(remoteContent, 17)), localFile, 0, remoteContent.length,
+		        null, null, new CommitCallback() {
+
+			        @Override
+			        public void onCommitted(long position) {
+				        commits.add(position);
+			        }
+		        });
+
+		assertThat(commits, is(equalTo(Arrays.asList(6l, 12l, 17l))));
+	}
+
+	private static class ChannelStream extends ByteArrayInputStream implements ChannelSource {
+
+		private ReadableByteChannel channel;
+
+		private ChannelStream(byte[] content) {
+
+			super(new byte[0]);
+
+			InputStream source = new ByteArrayInputStream(content);
+
+			channel = Channels.newChannel(source);
+		}
+
+		@Override
+		public ReadableByteChannel getChannel() {
+			return channel;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.github.autoftp.transfer;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import jftp.client.ClientFactory.ClientType;
+import jftp.exception.ConnectionInitialisationException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.autoftp.config.HostConfig;
+
+public class FtpRangedConnectionTest {
+
+	private ServerSocket server;
+
+	private HostConfig host;
+
+	@Before
+	public void setUp() throws IOException {
+
+		server = new ServerSocket(0);
+		server.setSoTimeout(5000);
+
+		host = new HostConfig();
+		host.setClientType(ClientType.FTP);
+		host.setHostname("localhost");
+		host.setPort(server.getLocalPort());
+		host.setUsername("user");
+		host.setPassword("wrong");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		server.close();
+	}
+
+	@Test(timeout = 10000)
+	public void controlConnectionShouldBeClosedWhenLoginIsRefused() throws Exception {
+
+		final boolean[] closedByClient = new boolean[1];
+
+		Thread standIn = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+
+				try {
+
+					closedByClient[0] = refuseLogin();
+
+				} catch (IOException e) {
+					// Left as not closed.
+				}
+			}
+		});
+
+		standIn.start();
+
+		try {
+
+			new FtpRangedConnection().connect(host);
+
+		} catch (ConnectionInitialisationException e) {
+			// Expected, the login was refused.
+		}
+
+		standIn.join();
+
+		assertThat(closedByClient[0], is(equalTo(true)));
+	}
+
+	/**
+	 * Greets the client, refuses every command and reports whether the client then closed the connection.
+	 */
+	private boolean refuseLogin() throws IOException {
+
+		Socket socket = server.accept();
+
+		try {
+
+			socket.setSoTimeout(5000);
+
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+			PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+
+			out.print("220 Stand-in ready\r\n");
+			out.flush();
+
+			String command;
+
+			while ((command = in.readLine()) != null) {
+
+				if (command.startsWith("QUIT"))
+					out.print("221 Goodbye\r\n");
+				else
+					out.print("530 Login incorrect\r\n");
+
+				out.flush();
+			}
+
+			return true;
+
+		} finally {
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package com.github.autoftp.transfer;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.fail;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import jftp.client.ClientFactory.ClientType;
+import jftp.connection.FtpFile;
+import jftp.exception.DownloadFailedException;
+
+import org.apache.commons.io.FileUtils;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+
+import com.github.autoftp.config.HostConfig;
+
+public class ResumableDownloadTest {
+
+	@InjectMocks
+	private ResumableDownload resumableDownload = new ResumableDownload();
+
+	@Mock
+	private RangedConnectionFactory mockRangedConnectionFactory;
+
+	@Mock
+	private RangedConnection mockRangedConnection;
+
+	@Rule
+	public TemporaryFolder downloadDirectory = new TemporaryFolder();
+
+	private String directory;
+
+	private HostConfig hostConfig;
+
+	private FtpFile remoteFile;
+
+	private byte[] remoteContent = "0123456789abcdefghij".getBytes();
+
+	@Before
+	public void setUp() {
+
+		initMocks(this);
+
+		directory = downloadDirectory.getRoot().getPath();
+
+		hostConfig = new HostConfig();
+		hostConfig.setClientType(ClientType.SFTP);
+
+		remoteFile = new FtpFile("File 1", remoteContent.length, "/full/path/to/File 1",
+		        new DateTime(2014, 1, 5, 07, 0, 0).getMillis(), false);
+
+		when(mockRangedConnectionFactory.createConnection(ClientType.SFTP)).thenReturn(mockRangedConnection);
+		when(mockRangedConnection.retrieve("/full/path/to/File 1", 8l)).thenReturn(
+		        new ByteArrayInputStream(remoteContent, 8, remoteContent.length - 8));
+	}
+
+	@Test
+	public void partialFileWithMatchingMarkerShouldBeResumable() throws IOException {
+
+		writePartialFile();
+
+		assertThat(resumableDownload.canResume(remoteFile, directory), is(equalTo(true)));
+	}
+
+	@Test
+	public void partialFileWithoutMarkerShouldNotBeResumable() throws IOException {
+
+		writePartialFile();
+		resumableDownload.markFinished(remoteFile, directory);
+
+		assertThat(resumableDownload.canResume(remoteFile, directory), is(equalTo(false)));
+	}
+
+	@Test
+	public void ifRemoteFileHasChangedSinceMarkedThenItShouldNotBeResumed() throws IOException {
+
+		writePartialFile();
+
+		FtpFile changedFile = new FtpFile("File 1", remoteContent.length, "/full/path/to/File 1", new DateTime(2014, 1, 6,
+		        07, 0, 0).getMillis(), false);
+
+		assertThat(resumableDownload.canResume(changedFile, directory), is(equalTo(false)));
+	}
+
+	@Test
+	public void resumingShouldRequestRemainderFromEndOfLocalFileAndAppendIt() throws IOException {
+
+		writePartialFile();
+
+		resumableDownload.resume(hostConfig, remoteFile, directory, null);
+
+		verify(mockRangedConnection).retrieve("/full/path/to/File 1", 8l);
+
+		byte[] localContent = FileUtils.readFileToByteArray(new File(directory, "File 1"));
+
+		assertThat(localContent, is(equalTo(remoteContent)));
+	}
+
+	@Test
+	public void connectionShouldBeKeptLoggedInForTheNextDownloadUntilClosed() {
+
+		when(mockRangedConnection.retrieve("/full/path/to/File 1", 0l)).thenReturn(
+		        new ByteArrayInputStream(remoteContent), new ByteArrayInputStream(remoteContent));
+
+		resumableDownload.download(hostConfig, remoteFile, directory, null);
+		resumableDownload.download(hostConfig, remoteFile, directory, null);
+
+		verify(mockRangedConnection, times(1)).connect(hostConfig);
+		verify(mockRangedConnection, never()).disconnect();
+
+		resumableDownload.closeConnections();
+
+		verify(mockRangedConnection).disconnect();
+	}
+
+	@Test
+	public void connectionShouldBeClosedRatherThanKeptWhenTheDownloadFails() {
+
+		when(mockRangedConnection.retrieve("/full/path/to/File 1", 0l)).thenThrow(
+		        new DownloadFailedException("Unable to download file /full/path/to/File 1"));
+
+		try {
+
+			resumableDownload.download(hostConfig, remoteFile, directory, null);
+			fail("Expected the download to fail");
+
+		} catch (DownloadFailedException e) {
+			verify(mockRangedConnection).disconnect();
+		}
+
+		try {
+			resumableDownload.download(hostConfig, remoteFile, directory, null);
+		} catch (DownloadFailedException e) {
+			// Fails the same way, over a new connection.
+		}
+
+		verify(mockRangedConnection, times(2)).connect(hostConfig);
+	}
+
+	@Test
+	public void preallocatedFileShouldBeResumedFromThePositionLastCommitted() throws IOException {
+
+		PartialMarker marker = PartialMarker.create(remoteFile, directory);
+		marker.setRanges(new long[] { 0 }, new long[] { remoteContent.length }, new long[] { 8 });
+
+		byte[] preallocated = new byte[remoteContent.length];
+		System.arraycopy(remoteContent, 0, preallocated, 0, 12);
+		FileUtils.writeByteArrayToFile(new File(directory, "File 1"), preallocated);
+
+		assertThat(resumableDownload.canResume(remoteFile, directory), is(equalTo(true)));
+
+		resumableDownload.resume(hostConfig, remoteFile, directory, null);
+
+		verify(mockRangedConnection).retrieve("/full/path/to/File 1", 8l);
+		assertThat(FileUtils.readFileToByteArray(new File(directory, "File 1")), is(equalTo(remoteContent)));
+	}
+
+	@Test
+	public void preallocatedFileWithNothingCommittedShouldNotBeResumable() throws IOException {
+
+		PartialMarker marker = PartialMarker.create(remoteFile, directory);
+		marker.setRanges(new long[] { 0 }, new long[] { remoteContent.length }, new long[] { 0 });
+
+		FileUtils.writeByteArrayToFile(new File(directory, "File 1"), new byte[remoteContent.length]);
+
+		assertThat(resumableDownload.canResume(remoteFile, directory), is(equalTo(false)));
+	}
+
+	@Test
+	public void downloadMatchingTheServersDigestShouldBeWrittenWithASidecar() throws Exception {
+
+		hostConfig.setChecksum("md5");
+		when(mockRangedConnection.retrieve("/full/path/to/File 1", 0l)).thenReturn(new ByteArrayInputStream(remoteContent));
+		when(mockRangedConnection.checksum("/full/path/to/File 1", ChecksumAlgorithm.MD5)).thenReturn(digest("MD5"));
+
+		resumableDownload.download(hostConfig, remoteFile, directory, null);
+
+		assertThat(FileUtils.readFileToString(new File(directory, "File 1.md5")),
+		        is(equalTo(digest("MD5") + "  File 1\n")));
+	}
+
+	@Test
+	public void downloadNotMatchingTheServersDigestShouldBeDeleted() throws Exception {
+
+		hostConfig.setChecksum("md5");
+		when(mockRangedConnection.retrieve("/full/path/to/File 1", 0l)).thenReturn(new ByteArrayInputStream(remoteContent));
+		when(mockRangedConnection.checksum("/full/path/to/File 1", ChecksumAlgorithm.MD5)).thenReturn(
+		        "d41d8cd98f00b204e9800998ecf8427e");
+
+		try {
+
+			resumableDownload.download(hostConfig, remoteFile, directory, null);
+			fail("Expected a checksum mismatch");
+
+		} catch (ChecksumMismatchException e) {
+
+			assertThat(new File(directory, "File 1").exists(), is(equalTo(false)));
+			assertThat(new File(directory, "File 1.md5").exists(), is(equalTo(false)));
+		}
+	}
+
+	@Test(expected = ChecksumMismatchException.class)
+	public void ifTheServerCantGiveADigestThenARemoteSidecarShouldBeUsed() {
+
+		hostConfig.setChecksum("crc32");
+		when(mockRangedConnection.retrieve("/full/path/to/File 1", 0l)).thenReturn(new ByteArrayInputStream(remoteContent));
+		when(mockRangedConnection.retrieve("/full/path/to/File 1.sfv", 0l)).thenReturn(
+		        new ByteArrayInputStream("File 1 00000000\n".getBytes()));
+
+		resumableDownload.download(hostConfig, remoteFile, directory, null);
+	}
+
+	@Test
+	public void digestOfAResumedFileShouldIncludeThePartAlreadyDownloaded() throws Exception {
+
+		hostConfig.setChecksum("sha256");
+		when(mockRangedConnection.checksum("/full/path/to/File 1", ChecksumAlgorithm.SHA256)).thenReturn(
+		        digest("SHA-256"));
+
+		writePartialFile();
+
+		resumableDownload.resume(hostConfig, remoteFile, directory, null);
+
+		assertThat(FileUtils.readFileToString(new File(directory, "File 1.sha256")),
+		        is(equalTo(digest("SHA-256") + "  File 1\n")));
+	}
+
+	private String digest(String algorithm) throws NoSuchAlgorithmException {
+		return ChecksumAlgorithm.toHex(MessageDigest.getInstance(algorithm).digest(remoteContent));
+	}
+
+	private void writePartialFile() throws IOException {
+
+		resumableDownload.markStarted(remoteFile, directory);
+
+		FileUtils.writeByteArrayToFile(new File(directory, "File 1"), Arrays.copyOf(remoteContent, 8));
+	}
+}
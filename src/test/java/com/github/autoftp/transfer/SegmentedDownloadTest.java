@@ -0,0 +1,217 @@
+package com.github.autoftp.transfer;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import jftp.client.ClientFactory.ClientType;
+import jftp.connection.FtpFile;
+import jftp.exception.DownloadFailedException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.github.autoftp.config.HostConfig;
+
+public class SegmentedDownloadTest {
+
+	private static final String REMOTE_PATH = "/full/path/to/big.file";
+
+	@InjectMocks
+	private SegmentedDownload segmentedDownload = new SegmentedDownload();
+
+	@Mock
+	private RangedConnectionFactory mockRangedConnectionFactory;
+
+	@Rule
+	public TemporaryFolder downloadDirectory = new TemporaryFolder();
+
+	private HostConfig hostConfig;
+
+	private byte[] remoteContent;
+
+	private FtpFile remoteFile;
+
+	private List<Long> requestedOffsets = Collections.synchronizedList(new ArrayList<Long>());
+
+	private volatile long failingOffset = -1;
+
+	private volatile int failingLength;
+
+	@Before
+	public void setUp() {
+
+		initMocks(this);
+
+		hostConfig = new HostConfig();
+		hostConfig.setClientType(ClientType.FTP);
+		hostConfig.setSegments(4);
+		hostConfig.setMinSegmentSize(1000);
+
+		remoteContent = new byte[10007];
+
+		for (int i = 0; i < remoteContent.length; i++)
+			remoteContent[i] = (byte) (i % 251);
+
+		remoteFile = new FtpFile("big.file", remoteContent.length, REMOTE_PATH, 0l, false);
+
+		when(mockRangedConnectionFactory.createConnection(ClientType.FTP)).thenAnswer(new Answer<RangedConnection>() {
+
+			@Override
+			public RangedConnection answer(InvocationOnMock invocation) {
+				return createRemoteConnection();
+			}
+		});
+	}
+
+	@Test
+	public void fileSmallerThanTwoMinimumSegmentsShouldNotBeSegmented() {
+
+		hostConfig.setMinSegmentSize(6000);
+
+		assertThat(segmentedDownload.isSegmentable(hostConfig, remoteFile), is(equalTo(false)));
+	}
+
+	@Test
+	public void ifSegmentsAreDisabledThenFileShouldNotBeSegmented() {
+
+		hostConfig.setSegments(1);
+
+		assertThat(segmentedDownload.isSegmentable(hostConfig, remoteFile), is(equalTo(false)));
+	}
+
+	@Test
+	public void eachSegmentShouldBeFetchedOverItsOwnConnection() {
+
+		segmentedDownload.download(hostConfig, remoteFile, downloadDirectory.getRoot().getPath(), null);
+
+		verify(mockRangedConnectionFactory, times(4)).createConnection(ClientType.FTP);
+	}
+
+	@Test
+	public void segmentsShouldBeWrittenIntoTheirPlaceInTheLocalFile() throws IOException {
+
+		segmentedDownload.download(hostConfig, remoteFile, downloadDirectory.getRoot().getPath(), null);
+
+		byte[] localContent = FileUtils.readFileToByteArray(new File(downloadDirectory.getRoot(), "big.file"));
+
+		assertThat(localContent, is(equalTo(remoteContent)));
+	}
+
+	@Test(expected = DownloadFailedException.class)
+	public void ifAnySegmentFailsThenDownloadShouldFail() {
+
+		RangedConnection failingConnection = mock(RangedConnection.class);
+		when(failingConnection.retrieve(eq(REMOTE_PATH), anyLong())).thenThrow(new DownloadFailedException("Refused"));
+
+		when(mockRangedConnectionFactory.createConnection(ClientType.FTP)).thenReturn(failingConnection);
+
+		segmentedDownload.download(hostConfig, remoteFile, downloadDirectory.getRoot().getPath(), null);
+	}
+
+	@Test
+	public void aFailedSegmentShouldBeResumedFromWhereItStoppedWithoutFetchingTheOthersAgain() throws IOException {
+
+		String directory = downloadDirectory.getRoot().getPath();
+
+		// The third segment, 5002 to 7503, is cut off 1000 bytes in.
+		failAfter(5002, 1000);
+
+		try {
+
+			segmentedDownload.download(hostConfig, remoteFile, directory, null);
+			fail("Expected the third segment to fail");
+
+		} catch (DownloadFailedException e) {
+			assertThat(segmentedDownload.canResume(remoteFile, directory), is(equalTo(true)));
+		}
+
+		failingOffset = -1;
+		requestedOffsets.clear();
+
+		segmentedDownload.resume(hostConfig, remoteFile, directory, null);
+
+		assertThat(requestedOffsets, is(equalTo(Arrays.asList(6002l))));
+		assertThat(FileUtils.readFileToByteArray(new File(downloadDirectory.getRoot(), "big.file")),
+		        is(equalTo(remoteContent)));
+	}
+
+	@Test
+	public void aFinishedSegmentedDownloadShouldNotBeResumable() {
+
+		String directory = downloadDirectory.getRoot().getPath();
+
+		segmentedDownload.download(hostConfig, remoteFile, directory, null);
+		PartialMarker.delete(remoteFile, directory);
+
+		assertThat(segmentedDownload.canResume(remoteFile, directory), is(equalTo(false)));
+	}
+
+	private void failAfter(long offset, int length) {
+
+		failingOffset = offset;
+		failingLength = length;
+	}
+
+	private RangedConnection createRemoteConnection() {
+
+		return new RangedConnection() {
+
+			@Override
+			public void connect(HostConfig host) {
+			}
+
+			@Override
+			public InputStream retrieve(String remotePath, long offset) {
+
+				requestedOffsets.add(offset);
+
+				int length = offset == failingOffset ? failingLength : remoteContent.length - (int) offset;
+
+				return new ByteArrayInputStream(remoteContent, (int) offset, length);
+			}
+
+			@Override
+			public void listFiles(String remoteDirectory, ListingCallback callback) {
+			}
+
+			@Override
+			public String probe(String remoteDirectory) {
+				return null;
+			}
+
+			@Override
+			public String checksum(String remotePath, ChecksumAlgorithm algorithm) {
+				return null;
+			}
+
+			@Override
+			public void disconnect() {
+			}
+		};
+	}
+}
@@ -0,0 +1,70 @@
+package com.github.autoftp.transfer;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import jftp.connection.FtpFile;
+import jftp.exception.DownloadFailedException;
+
+import org.apache.commons.io.FileUtils;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StagingAreaTest {
+
+	@Rule
+	public TemporaryFolder downloadDirectory = new TemporaryFolder();
+
+	private StagingArea stagingArea = new StagingArea();
+
+	private String finalDirectory;
+
+	private FtpFile remoteFile;
+
+	@Before
+	public void setUp() {
+
+		finalDirectory = downloadDirectory.getRoot().getPath();
+
+		remoteFile = new FtpFile("File 1", 4, "/full/path/to/File 1", new DateTime(2014, 1, 5, 07, 0, 0).getMillis(),
+		        false);
+	}
+
+	@Test
+	public void stagingDirectoryShouldBeAHiddenDirectoryInsideTheFinalOne() {
+
+		File stagingDirectory = new File(stagingArea.directoryFor(finalDirectory));
+
+		assertThat(stagingDirectory.isDirectory(), is(equalTo(true)));
+		assertThat(stagingDirectory.getParentFile(), is(equalTo(downloadDirectory.getRoot())));
+		assertThat(stagingDirectory.getName().startsWith("."), is(equalTo(true)));
+	}
+
+	@Test
+	public void publishingShouldRenameTheFileAndItsSidecarOverAnyOlderCopy() throws IOException {
+
+		String stagingDirectory = stagingArea.directoryFor(finalDirectory);
+
+		FileUtils.writeStringToFile(new File(stagingDirectory, "File 1"), "new!");
+		FileUtils.writeStringToFile(new File(stagingDirectory, "File 1.md5"), "digest");
+		FileUtils.writeStringToFile(new File(finalDirectory, "File 1"), "old");
+
+		stagingArea.publish(remoteFile, finalDirectory, ChecksumAlgorithm.MD5);
+
+		assertThat(FileUtils.readFileToString(new File(finalDirectory, "File 1")), is(equalTo("new!")));
+		assertThat(FileUtils.readFileToString(new File(finalDirectory, "File 1.md5")), is(equalTo("digest")));
+		assertThat(new File(stagingDirectory, "File 1").exists(), is(equalTo(false)));
+	}
+
+	@Test(expected = DownloadFailedException.class)
+	public void publishingAFileThatWasNeverStagedShouldFail() {
+		stagingArea.publish(remoteFile, finalDirectory, null);
+	}
+}
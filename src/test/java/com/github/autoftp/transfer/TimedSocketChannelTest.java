@@ -0,0 +1,73 @@
+package com.github.autoftp.transfer;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimedSocketChannelTest {
+
+	private ServerSocket server;
+	private SocketChannel client;
+	private Socket sender;
+	private TimedSocketChannel channel;
+
+	@Before
+	public void setUp() throws IOException {
+
+		server = new ServerSocket(0);
+		server.setSoTimeout(5000);
+
+		client = SocketChannel.open(new InetSocketAddress("localhost", server.getLocalPort()));
+		client.socket().setSoTimeout(200);
+
+		sender = server.accept();
+		channel = new TimedSocketChannel(client);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+
+		channel.close();
+		client.close();
+		sender.close();
+		server.close();
+	}
+
+	@Test(timeout = 5000)
+	public void bytesSentShouldBeRead() throws IOException {
+
+		sender.getOutputStream().write(new byte[] { 1, 2, 3 });
+
+		ByteBuffer buffer = ByteBuffer.allocate(8);
+
+		while (buffer.position() < 3)
+			channel.read(buffer);
+
+		assertThat(buffer.get(2), is(equalTo((byte) 3)));
+	}
+
+	@Test(timeout = 5000)
+	public void endOfStreamShouldBeReported() throws IOException {
+
+		sender.close();
+
+		assertThat(channel.read(ByteBuffer.allocate(8)), is(equalTo(-1)));
+	}
+
+	@Test(timeout = 5000, expected = SocketTimeoutException.class)
+	public void readShouldGiveUpWhenNothingArrivesWithinTheSocketTimeout() throws IOException {
+		channel.read(ByteBuffer.allocate(8));
+	}
+}
@@ -0,0 +1,111 @@
+package com.github.autoftp.transfer;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TransferProgressTest {
+
+	@Rule
+	public TemporaryFolder downloadDirectory = new TemporaryFolder();
+
+	private RecordingCallback callback = new RecordingCallback();
+
+	@Test
+	public void sampleShouldBeTakenEachTimeTheByteCadenceIsPassed() {
+
+		TransferProgress progress = new TransferProgress(1000, 100, 0, callback);
+
+		for (int i = 0; i < 25; i++)
+			progress.add(10);
+
+		assertThat(callback.bytesTransferred, is(equalTo(listOf(100l, 200l))));
+		assertThat(callback.totalBytes, is(equalTo(1000l)));
+	}
+
+	@Test
+	public void restartShouldCountOnFromThePartAlreadyThere() {
+
+		TransferProgress progress = new TransferProgress(1000, 100, 0, callback);
+
+		progress.restart(400);
+		progress.add(60);
+		progress.add(60);
+
+		assertThat(callback.bytesTransferred, is(equalTo(listOf(520l))));
+	}
+
+	@Test
+	public void stalledDownloadShouldBeSampledAtZeroBytesPerSecondOnceItsTimeComes() throws InterruptedException {
+
+		TransferProgress progress = new TransferProgress(1000, 0, 1, callback);
+
+		progress.sampleIfDue();
+		Thread.sleep(5);
+		progress.sampleIfDue();
+
+		assertThat(callback.bytesTransferred, is(equalTo(listOf(0l))));
+		assertThat(callback.bytesPerSecond, is(equalTo(0l)));
+	}
+
+	@Test
+	public void watchedFileLengthShouldBeTakenAsTheBytesTransferred() throws IOException, InterruptedException {
+
+		File localFile = downloadDirectory.newFile("File 1");
+		TransferProgress progress = new TransferProgress(1000, 0, 1, callback);
+
+		FileUtils.writeByteArrayToFile(localFile, new byte[300]);
+		progress.watch(localFile);
+
+		Thread.sleep(5);
+		progress.sampleIfDue();
+
+		assertThat(callback.bytesTransferred, is(equalTo(listOf(300l))));
+	}
+
+	@Test
+	public void progressShouldNotBeSampledByTimeWhenThatIsTurnedOff() throws InterruptedException {
+
+		TransferProgress progress = new TransferProgress(1000, 100, 0, callback);
+
+		Thread.sleep(5);
+		progress.sampleIfDue();
+
+		assertThat(callback.bytesTransferred.isEmpty(), is(equalTo(true)));
+	}
+
+	private List<Long> listOf(Long... values) {
+
+		List<Long> list = new ArrayList<Long>();
+
+		for (Long value : values)
+			list.add(value);
+
+		return list;
+	}
+
+	private static class RecordingCallback implements ProgressCallback {
+
+		private List<Long> bytesTransferred = new ArrayList<Long>();
+		private long totalBytes;
+		private long bytesPerSecond;
+
+		@Override
+		public void onProgress(long bytesTransferred, long totalBytes, long bytesPerSecond) {
+
+			this.bytesTransferred.add(bytesTransferred);
+			this.totalBytes = totalBytes;
+			this.bytesPerSecond = bytesPerSecond;
+		}
+	}
+}
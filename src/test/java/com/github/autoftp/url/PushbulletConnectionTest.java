@@ -15,9 +15,9 @@ import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.message.BasicHeader;
 import org.apache.http.util.EntityUtils;
 import org.junit.Before;
-import org.junit.Ignore;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
@@ -25,7 +25,6 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 
-@Ignore
 public class PushbulletConnectionTest {
 
 	@InjectMocks
@@ -91,4 +90,34 @@ public class PushbulletConnectionTest {
 
 		pushbulletConnection.sendNotification("Title", "some message");
 	}
+
+	@Test
+	public void aRateLimitedResponseShouldSayHowLongPushbulletAskedToWait() throws Exception {
+
+		when(mockStatusLine.getStatusCode()).thenReturn(429);
+		when(mockHttpResponse.getFirstHeader("Retry-After")).thenReturn(new BasicHeader("Retry-After", "30"));
+
+		try {
+
+			pushbulletConnection.sendNotification("Title", "some message");
+
+		} catch (PushbulletRateLimitException e) {
+
+			assertThat(e.getRetryAfterMillis(), is(equalTo(30000l)));
+			return;
+		}
+
+		throw new AssertionError("Expected a PushbulletRateLimitException");
+	}
+
+	@Test
+	public void quotesAndLineBreaksShouldBeEscapedInTheJson() throws ClientProtocolException, IOException {
+
+		pushbulletConnection.sendNotification("Title", "\"quoted\"\nsecond line");
+
+		verify(mockHttpClient).execute(captor.capture());
+
+		assertThat(EntityUtils.toString(captor.getValue().getEntity()),
+		        is(equalTo("{\"type\": \"note\", \"title\": \"Title\", \"body\": \"\\\"quoted\\\"\\nsecond line\"}")));
+	}
 }
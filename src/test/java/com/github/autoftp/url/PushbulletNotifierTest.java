@@ -0,0 +1,171 @@
+package com.github.autoftp.url;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PushbulletNotifierTest {
+
+	private PushbulletStandIn pushbullet;
+
+	private List<RuntimeException> failures = new ArrayList<RuntimeException>();
+
+	private PushbulletNotifier.ErrorHandler recordFailures = new PushbulletNotifier.ErrorHandler() {
+
+		@Override
+		public void onSendFailed(RuntimeException e) {
+
+			synchronized (failures) {
+				failures.add(e);
+			}
+		}
+	};
+
+	@Before
+	public void setUp() throws IOException {
+		pushbullet = new PushbulletStandIn();
+	}
+
+	@After
+	public void tearDown() {
+		pushbullet.stop();
+	}
+
+	@Test
+	public void aSingleDownloadShouldBeSentOnItsOwnWhenFlushed() throws InterruptedException {
+
+		PushbulletNotifier notifier = notifier(0);
+
+		notifier.add("File 1");
+		notifier.flush();
+
+		List<String> pushes = pushbullet.awaitPushes(1, 5000);
+		notifier.close();
+
+		assertThat(pushes, is(equalTo(list(
+		        "{\"type\": \"note\", \"title\": \"A new file has been downloaded\", \"body\": \"File 1\"}"))));
+		assertThat(pushbullet.getAuthorizations(), is(equalTo(list("Bearer someApiKey"))));
+	}
+
+	@Test
+	public void everyDownloadInARunShouldBeSummedUpInOnePush() throws InterruptedException {
+
+		PushbulletNotifier notifier = notifier(0);
+
+		for (int i = 1; i <= 25; i++)
+			notifier.add("File " + i);
+
+		notifier.flush();
+
+		List<String> pushes = pushbullet.awaitPushes(1, 5000);
+		notifier.close();
+
+		assertThat(pushes.size(), is(equalTo(1)));
+		assertThat(pushes.get(0).contains("\"title\": \"25 new files have been downloaded\""), is(equalTo(true)));
+		assertThat(pushes.get(0).contains("File 1\\nFile 2\\n"), is(equalTo(true)));
+		assertThat(pushes.get(0).contains("File 20\\n... and 5 more\""), is(equalTo(true)));
+		assertThat(pushes.get(0).contains("File 21"), is(equalTo(false)));
+	}
+
+	@Test
+	public void downloadsShouldBeSentOnceTheWindowHasPassedWithoutBeingFlushed() throws InterruptedException {
+
+		PushbulletNotifier notifier = notifier(200);
+
+		notifier.add("File 1");
+		notifier.add("File 2");
+
+		assertThat(pushbullet.getRequestCount(), is(equalTo(0)));
+
+		List<String> pushes = pushbullet.awaitPushes(1, 5000);
+		notifier.close();
+
+		assertThat(pushes.size(), is(equalTo(1)));
+		assertThat(pushes.get(0).contains("\"body\": \"File 1\\nFile 2\""), is(equalTo(true)));
+	}
+
+	@Test
+	public void aRateLimitedPushShouldBeSentAgainWithAnythingFinishedInTheMeantime() throws InterruptedException {
+
+		PushbulletNotifier notifier = notifier(0);
+
+		pushbullet.rateLimitNext(1);
+
+		notifier.add("File 1");
+		notifier.flush();
+
+		waitForRequests(1);
+
+		notifier.add("File 2");
+		notifier.flush();
+
+		List<String> pushes = pushbullet.awaitPushes(1, 5000);
+		int requestsBeforeClosing = pushbullet.getRequestCount();
+		notifier.close();
+
+		assertThat(requestsBeforeClosing, is(equalTo(2)));
+		assertThat(pushes.size(), is(equalTo(1)));
+		assertThat(pushes.get(0).contains("\"body\": \"File 1\\nFile 2\""), is(equalTo(true)));
+		assertThat(failures.isEmpty(), is(equalTo(true)));
+	}
+
+	@Test
+	public void closingShouldSendAnythingStillCollected() {
+
+		PushbulletNotifier notifier = notifier(60000);
+
+		notifier.add("File 1");
+		notifier.close();
+
+		assertThat(pushbullet.getPushes().size(), is(equalTo(1)));
+	}
+
+	@Test
+	public void aPushThatFailsShouldBeReportedAndDropped() throws InterruptedException {
+
+		pushbullet.stop();
+
+		PushbulletNotifier notifier = notifier(0);
+
+		notifier.add("File 1");
+		notifier.flush();
+		notifier.close();
+
+		synchronized (failures) {
+
+			assertThat(failures.size(), is(equalTo(1)));
+			assertThat(failures.get(0) instanceof PushbulletException, is(equalTo(true)));
+		}
+	}
+
+	private PushbulletNotifier notifier(long windowMillis) {
+		return new PushbulletNotifier(new PushbulletConnection(pushbullet.getUrl(), "someApiKey"), windowMillis,
+		        recordFailures);
+	}
+
+	private void waitForRequests(int count) throws InterruptedException {
+
+		long deadline = System.currentTimeMillis() + 5000;
+
+		while (pushbullet.getRequestCount() < count && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+	}
+
+	private List<String> list(String... values) {
+
+		List<String> list = new ArrayList<String>();
+
+		for (String value : values)
+			list.add(value);
+
+		return list;
+	}
+}
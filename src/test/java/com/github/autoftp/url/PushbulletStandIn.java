@@ -0,0 +1,124 @@
+package com.github.autoftp.url;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.IOUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local server answering pushes the way Pushbullet does, for pointing a {@link PushbulletConnection} at
+ * in tests. It records each push it accepts, and turns pushes away with a 429 as many times as asked.
+ */
+public class PushbulletStandIn {
+
+	private HttpServer server;
+	private List<String> pushes = new ArrayList<String>();
+	private List<String> authorizations = new ArrayList<String>();
+	private Queue<Integer> rateLimitSeconds = new LinkedList<Integer>();
+	private int requests;
+
+	public PushbulletStandIn() throws IOException {
+
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.setExecutor(Executors.newSingleThreadExecutor());
+
+		server.createContext("/v2/pushes", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				answer(exchange);
+			}
+		});
+
+		server.start();
+	}
+
+	public String getUrl() {
+		return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/v2/pushes";
+	}
+
+	/**
+	 * The next push is turned away, asking for the given wait in Retry-After.
+	 */
+	public synchronized void rateLimitNext(int retryAfterSeconds) {
+		rateLimitSeconds.add(retryAfterSeconds);
+	}
+
+	/**
+	 * The JSON of every push accepted so far.
+	 */
+	public synchronized List<String> getPushes() {
+		return new ArrayList<String>(pushes);
+	}
+
+	public synchronized List<String> getAuthorizations() {
+		return new ArrayList<String>(authorizations);
+	}
+
+	/**
+	 * Waits up to the given time for at least that many pushes to be accepted.
+	 */
+	public synchronized List<String> awaitPushes(int count, long timeoutMillis) throws InterruptedException {
+
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+
+		while (pushes.size() < count && System.currentTimeMillis() < deadline)
+			wait(Math.max(1, deadline - System.currentTimeMillis()));
+
+		return new ArrayList<String>(pushes);
+	}
+
+	public void stop() {
+		server.stop(0);
+	}
+
+	private void answer(HttpExchange exchange) throws IOException {
+
+		InputStream requestBody = exchange.getRequestBody();
+		String push = IOUtils.toString(requestBody, "UTF-8");
+		Integer retryAfter;
+
+		synchronized (this) {
+
+			requests++;
+			retryAfter = rateLimitSeconds.poll();
+
+			if (retryAfter == null) {
+
+				pushes.add(push);
+				authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+				notifyAll();
+			}
+		}
+
+		byte[] response = "{}".getBytes("UTF-8");
+
+		if (retryAfter != null)
+			exchange.getResponseHeaders().add("Retry-After", String.valueOf(retryAfter));
+
+		exchange.sendResponseHeaders(retryAfter == null ? 200 : 429, response.length);
+
+		OutputStream responseBody = exchange.getResponseBody();
+		responseBody.write(response);
+		responseBody.close();
+	}
+
+	/**
+	 * Every request answered, accepted or not.
+	 */
+	public synchronized int getRequestCount() {
+		return requests;
+	}
+}